@@ -0,0 +1,152 @@
+/*
+ * This file is part of Tuskex.
+ *
+ * Tuskex is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Tuskex is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Tuskex. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package tuskex.benchmark;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the JMH results of a run with the results of a baseline run and writes a markdown report.
+ *
+ * Arguments: baseline results file, results file, report file, threshold in percent, fail on regression (true|false).
+ * A benchmark regressed if its score got worse by more than the threshold and by more than the sum of the score
+ * errors. With fail on regression, the exit code is 1 if any benchmark regressed.
+ */
+public class BaselineReport {
+
+    private static class Result {
+        private final String mode;
+        private final double score;
+        private final double scoreError;
+        private final String unit;
+
+        private Result(JsonObject jsonObject) {
+            mode = jsonObject.get("mode").getAsString();
+            JsonObject primaryMetric = jsonObject.getAsJsonObject("primaryMetric");
+            score = primaryMetric.get("score").getAsDouble();
+            JsonElement scoreError = primaryMetric.get("scoreError");
+            this.scoreError = scoreError.isJsonPrimitive() && scoreError.getAsJsonPrimitive().isNumber() ?
+                    scoreError.getAsDouble() : 0; // "NaN" for single iterations
+            unit = primaryMetric.get("scoreUnit").getAsString();
+        }
+
+        // Throughput is better if higher, the time modes are better if lower
+        private boolean isHigherBetter() {
+            return mode.equals("thrpt");
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 5) {
+            System.err.println("Usage: BaselineReport <baseline> <results> <report> <thresholdPercent> <failOnRegression>");
+            System.exit(2);
+        }
+        Path baselineFile = Path.of(args[0]);
+        Path resultsFile = Path.of(args[1]);
+        if (!Files.exists(baselineFile) || !Files.exists(resultsFile)) {
+            System.err.println("Missing " + (Files.exists(baselineFile) ? resultsFile : baselineFile) +
+                    ". Run the benchmarks and save a baseline first.");
+            System.exit(2);
+        }
+        double threshold = Double.parseDouble(args[3]) / 100;
+        boolean failOnRegression = Boolean.parseBoolean(args[4]);
+
+        Map<String, Result> baseline = read(baselineFile);
+        Map<String, Result> results = read(resultsFile);
+
+        StringBuilder report = new StringBuilder("| Benchmark | Mode | Baseline | Current | Change | |\n" +
+                "|---|---|---:|---:|---:|---|\n");
+        int numRegressions = 0;
+        for (Map.Entry<String, Result> entry : results.entrySet()) {
+            Result result = entry.getValue();
+            Result baselineResult = baseline.get(entry.getKey());
+            if (baselineResult == null || !baselineResult.unit.equals(result.unit)) {
+                report.append(String.format("| %s | %s | | %.3f %s | | new |\n",
+                        entry.getKey(), result.mode, result.score, result.unit));
+                continue;
+            }
+            double change = (result.score - baselineResult.score) / baselineResult.score;
+            double worsening = result.isHigherBetter() ? -change : change;
+            double difference = Math.abs(result.score - baselineResult.score);
+            boolean isSignificant = difference > result.scoreError + baselineResult.scoreError;
+            String status = "";
+            if (isSignificant && worsening > threshold) {
+                status = "regression";
+                numRegressions++;
+            } else if (isSignificant && -worsening > threshold) {
+                status = "improvement";
+            }
+            report.append(String.format("| %s | %s | %.3f %s | %.3f %s | %+.1f%% | %s |\n",
+                    entry.getKey(), result.mode, baselineResult.score, result.unit, result.score, result.unit,
+                    change * 100, status));
+        }
+        baseline.keySet().stream()
+                .filter(key -> !results.containsKey(key))
+                .forEach(key -> report.append(String.format("| %s | %s | %.3f %s | | | removed |\n",
+                        key, baseline.get(key).mode, baseline.get(key).score, baseline.get(key).unit)));
+        report.append(String.format("\n%d regressions with a threshold of %s%%.\n", numRegressions, args[3]));
+
+        Path reportFile = Path.of(args[2]);
+        Files.createDirectories(reportFile.toAbsolutePath().getParent());
+        Files.writeString(reportFile, report.toString(), StandardCharsets.UTF_8);
+        System.out.println(report);
+        System.out.println("Report written to " + reportFile);
+
+        if (failOnRegression && numRegressions > 0) {
+            System.exit(1);
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // Results by benchmark name and params
+    private static Map<String, Result> read(Path file) throws IOException {
+        Map<String, Result> results = new LinkedHashMap<>();
+        for (JsonElement element : new JsonParser().parse(Files.readString(file, StandardCharsets.UTF_8)).getAsJsonArray()) {
+            JsonObject jsonObject = element.getAsJsonObject();
+            results.put(getKey(jsonObject), new Result(jsonObject));
+        }
+        return results;
+    }
+
+    private static String getKey(JsonObject jsonObject) {
+        String benchmark = jsonObject.get("benchmark").getAsString();
+        benchmark = benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1);
+        if (!jsonObject.has("params")) return benchmark;
+
+        Map<String, String> params = new TreeMap<>();
+        jsonObject.getAsJsonObject("params").entrySet()
+                .forEach(param -> params.put(param.getKey(), param.getValue().getAsString()));
+        return benchmark + params.entrySet().stream()
+                .map(param -> param.getKey() + "=" + param.getValue())
+                .collect(Collectors.joining(", ", " (", ")"));
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * This file is part of Tuskex.
+ *
+ * Tuskex is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Tuskex is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Tuskex. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package tuskex.benchmark;
+
+import tuskex.common.app.Version;
+import tuskex.common.crypto.CryptoException;
+import tuskex.common.crypto.Encryption;
+import tuskex.common.crypto.PubKeyRing;
+import tuskex.common.crypto.SealedAndSigned;
+import tuskex.common.crypto.Sig;
+import tuskex.common.proto.persistable.PersistableEnvelope;
+import tuskex.core.offer.OfferDirection;
+import tuskex.core.offer.OfferPayload;
+import tuskex.core.proto.network.CoreNetworkProtoResolver;
+import tuskex.core.trade.statistics.TradeStatistics3;
+import tuskex.network.p2p.NodeAddress;
+import tuskex.network.p2p.PrefixedSealedAndSignedMessage;
+import tuskex.network.p2p.network.LocalhostNetworkNode;
+import tuskex.network.p2p.network.NetworkNode;
+import tuskex.network.p2p.storage.P2PDataStorage;
+import tuskex.network.p2p.storage.payload.MailboxStoragePayload;
+import tuskex.network.p2p.storage.payload.PersistableNetworkPayload;
+import tuskex.network.p2p.storage.payload.ProtectedMailboxStorageEntry;
+import tuskex.network.p2p.storage.payload.ProtectedStorageEntry;
+import tuskex.network.p2p.storage.payload.ProtectedStoragePayload;
+import tuskex.network.p2p.storage.persistence.AppendOnlyDataStoreService;
+import tuskex.network.p2p.storage.persistence.PersistableNetworkPayloadStore;
+import tuskex.network.p2p.storage.persistence.ProtectedDataStoreService;
+import tuskex.network.p2p.storage.persistence.RemovedPayloadsService;
+import tuskex.network.p2p.storage.persistence.ResourceDataStoreService;
+import java.security.KeyPair;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates synthetic network data for the benchmarks. The payloads have the size and structure of the data on the
+ * network, so serialization and hashing costs are realistic. A fixed seed keeps the data equal between runs.
+ */
+public class BenchmarkData {
+    public static final Clock CLOCK = Clock.systemDefaultZone();
+
+    private static final int NUM_OWNERS = 20;
+    private static final String[] CURRENCIES = {"USD", "EUR", "GBP", "CAD", "BRL", "AUD", "CHF", "JPY"};
+    private static final String[] PAYMENT_METHODS = {"SEPA", "ZELLE", "REVOLUT", "F2F", "CASH_APP", "PAYPAL"};
+
+    private final Random random = new Random(42);
+    private final List<KeyPair> signatureKeyPairs = new ArrayList<>();
+    private final List<PubKeyRing> pubKeyRings = new ArrayList<>();
+
+    public BenchmarkData() {
+        KeyPair encryptionKeyPair = Encryption.generateKeyPair();
+        for (int i = 0; i < NUM_OWNERS; i++) {
+            KeyPair signatureKeyPair = Sig.generateKeyPair();
+            signatureKeyPairs.add(signatureKeyPair);
+            pubKeyRings.add(new PubKeyRing(signatureKeyPair.getPublic(), encryptionKeyPair.getPublic()));
+        }
+    }
+
+    // P2PDataStorage with in-memory stores and without network and disk access
+    public static P2PDataStorage createP2PDataStorage() {
+        AppendOnlyDataStoreService appendOnlyDataStoreService = new AppendOnlyDataStoreService();
+        appendOnlyDataStoreService.addService(new InMemoryMapStoreService<PersistableNetworkPayloadStore<PersistableNetworkPayload>, PersistableNetworkPayload>());
+        ProtectedDataStoreService protectedDataStoreService = new ProtectedDataStoreService();
+        protectedDataStoreService.addService(new InMemoryMapStoreService<PersistableEnvelope, ProtectedStorageEntry>());
+        // The network node is never started
+        NetworkNode networkNode = new LocalhostNetworkNode(0, new CoreNetworkProtoResolver(CLOCK), null, 1);
+        return new P2PDataStorage(networkNode,
+                new NoOpBroadcaster(networkNode),
+                appendOnlyDataStoreService,
+                protectedDataStoreService,
+                new ResourceDataStoreService(),
+                new NoOpPersistenceManager<>(),
+                new RemovedPayloadsService(new NoOpPersistenceManager<>()),
+                CLOCK,
+                Integer.MAX_VALUE);
+    }
+
+    public OfferPayload createOfferPayload(int ownerIndex) {
+        List<String> reserveTxKeyImages = List.of(randomHex(32), randomHex(32));
+        return new OfferPayload(randomId(),
+                CLOCK.millis(),
+                randomNodeAddress(),
+                pubKeyRings.get(ownerIndex % NUM_OWNERS),
+                random.nextBoolean() ? OfferDirection.BUY : OfferDirection.SELL,
+                1_000_000 + random.nextInt(100_000_000),
+                random.nextDouble() * 0.1 - 0.05,
+                random.nextBoolean(),
+                1_000_000_000_000L + random.nextInt(1_000_000_000),
+                100_000_000_000L,
+                0.0015,
+                0.0075,
+                0.25,
+                0.15,
+                0.15,
+                "TSK",
+                CURRENCIES[random.nextInt(CURRENCIES.length)],
+                PAYMENT_METHODS[random.nextInt(PAYMENT_METHODS.length)],
+                randomId(),
+                "DE",
+                List.of("DE", "AT", "FR", "IT", "ES", "NL", "BE"),
+                null,
+                null,
+                Version.VERSION,
+                3_000_000 + random.nextInt(100_000),
+                10_000_000_000_000L,
+                TimeUnit.DAYS.toMillis(8),
+                false,
+                false,
+                0,
+                0,
+                false,
+                null,
+                null,
+                Version.TRADE_PROTOCOL_VERSION,
+                randomNodeAddress(),
+                randomBytes(64),
+                reserveTxKeyImages);
+    }
+
+    public ProtectedStorageEntry createOfferEntry(int ownerIndex) throws CryptoException {
+        return sign(createOfferPayload(ownerIndex), ownerIndex, 1);
+    }
+
+    // Entry for the payload with the given sequence number, e.g. to add or to remove it
+    public ProtectedStorageEntry sign(ProtectedStoragePayload payload, int ownerIndex, int sequenceNumber) throws CryptoException {
+        KeyPair keyPair = signatureKeyPairs.get(ownerIndex % NUM_OWNERS);
+        byte[] hashOfDataAndSeqNr = P2PDataStorage.get32ByteHash(new P2PDataStorage.DataAndSeqNrPair(payload, sequenceNumber));
+        return new ProtectedStorageEntry(payload, keyPair.getPublic(), sequenceNumber,
+                Sig.sign(keyPair.getPrivate(), hashOfDataAndSeqNr), CLOCK);
+    }
+
+    public MailboxStoragePayload createMailboxPayload(int senderIndex) {
+        KeyPair senderKeyPair = signatureKeyPairs.get(senderIndex % NUM_OWNERS);
+        KeyPair receiverKeyPair = signatureKeyPairs.get((senderIndex + 1) % NUM_OWNERS);
+        SealedAndSigned sealedAndSigned = new SealedAndSigned(randomBytes(256),
+                randomBytes(1000 + random.nextInt(4000)),
+                randomBytes(46),
+                senderKeyPair.getPublic());
+        PrefixedSealedAndSignedMessage message = new PrefixedSealedAndSignedMessage(randomNodeAddress(), sealedAndSigned);
+        return new MailboxStoragePayload(message, senderKeyPair.getPublic(), receiverKeyPair.getPublic(), MailboxStoragePayload.TTL);
+    }
+
+    public ProtectedMailboxStorageEntry createMailboxEntry(int senderIndex) throws CryptoException {
+        MailboxStoragePayload payload = createMailboxPayload(senderIndex);
+        KeyPair senderKeyPair = signatureKeyPairs.get(senderIndex % NUM_OWNERS);
+        byte[] hashOfDataAndSeqNr = P2PDataStorage.get32ByteHash(new P2PDataStorage.DataAndSeqNrPair(payload, 1));
+        return new ProtectedMailboxStorageEntry(payload, senderKeyPair.getPublic(), 1,
+                Sig.sign(senderKeyPair.getPrivate(), hashOfDataAndSeqNr), payload.getOwnerPubKey(), CLOCK);
+    }
+
+    // Trade statistics of the last two years
+    public TradeStatistics3 createTradeStatistics() {
+        return new TradeStatistics3(CURRENCIES[random.nextInt(CURRENCIES.length)],
+                1_000_000 + random.nextInt(100_000_000),
+                1_000_000_000_000L + random.nextInt(1_000_000_000),
+                PAYMENT_METHODS[random.nextInt(PAYMENT_METHODS.length)],
+                CLOCK.millis() - (long) (random.nextDouble() * TimeUnit.DAYS.toMillis(730)),
+                null,
+                null);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // Mocks used in the benchmarked code must not record invocations
+    private String randomId() {
+        return new UUID(random.nextLong(), random.nextLong()).toString();
+    }
+
+    private NodeAddress randomNodeAddress() {
+        return new NodeAddress(randomHex(28) + ".onion", 9999);
+    }
+
+    private String randomHex(int numBytes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : randomBytes(numBytes)) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+}
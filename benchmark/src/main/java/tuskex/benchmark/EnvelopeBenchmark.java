@@ -0,0 +1,128 @@
+/*
+ * This file is part of Tuskex.
+ *
+ * Tuskex is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Tuskex is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Tuskex. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package tuskex.benchmark;
+
+import tuskex.common.proto.network.NetworkEnvelope;
+import tuskex.core.proto.network.CoreNetworkProtoResolver;
+import tuskex.network.p2p.peers.getdata.messages.GetDataResponse;
+import tuskex.network.p2p.storage.messages.AddDataMessage;
+import tuskex.network.p2p.storage.payload.PersistableNetworkPayload;
+import tuskex.network.p2p.storage.payload.ProtectedStorageEntry;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of writing envelopes as done by ProtoOutputStream and of parsing them as done by the input handler of
+ * Connection, for a single offer and for the GetDataResponse to an initial data request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class EnvelopeBenchmark {
+    private static final int NUM_OFFERS = 1000;
+    // GetDataRequestHandler limits the number of trade statistics of a response to 5000
+    private static final int NUM_TRADE_STATISTICS = 5000;
+
+    private final CoreNetworkProtoResolver networkProtoResolver = new CoreNetworkProtoResolver(BenchmarkData.CLOCK);
+    private final OutputStream outputStream = OutputStream.nullOutputStream();
+    private AddDataMessage addDataMessage;
+    private GetDataResponse getDataResponse;
+    private byte[] addDataMessageBytes;
+    private byte[] getDataResponseBytes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        BenchmarkData data = new BenchmarkData();
+        addDataMessage = new AddDataMessage(data.createOfferEntry(0));
+
+        Set<ProtectedStorageEntry> offers = new HashSet<>();
+        for (int i = 0; i < NUM_OFFERS; i++) {
+            offers.add(data.createOfferEntry(i));
+        }
+        Set<PersistableNetworkPayload> tradeStatistics = new HashSet<>();
+        for (int i = 0; i < NUM_TRADE_STATISTICS; i++) {
+            tradeStatistics.add(data.createTradeStatistics());
+        }
+        getDataResponse = new GetDataResponse(offers, tradeStatistics, 1, false, false);
+
+        addDataMessageBytes = toDelimitedBytes(addDataMessage);
+        getDataResponseBytes = toDelimitedBytes(getDataResponse);
+    }
+
+    @Benchmark
+    public void writeAddDataMessage() throws IOException {
+        write(addDataMessage);
+    }
+
+    @Benchmark
+    public void writeGetDataResponse() throws IOException {
+        write(getDataResponse);
+    }
+
+    @Benchmark
+    public NetworkEnvelope parseAddDataMessage() throws Exception {
+        return parse(addDataMessageBytes);
+    }
+
+    @Benchmark
+    public NetworkEnvelope parseGetDataResponse() throws Exception {
+        return parse(getDataResponseBytes);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // Same as ProtoOutputStream.writeEnvelopeOrThrow
+    private void write(NetworkEnvelope envelope) throws IOException {
+        envelope.toProtoNetworkEnvelope().writeDelimitedTo(outputStream);
+        outputStream.flush();
+    }
+
+    private NetworkEnvelope parse(byte[] bytes) throws Exception {
+        protobuf.NetworkEnvelope proto = protobuf.NetworkEnvelope.parseDelimitedFrom(new ByteArrayInputStream(bytes));
+        return networkProtoResolver.fromProto(proto);
+    }
+
+    private static byte[] toDelimitedBytes(NetworkEnvelope envelope) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        envelope.toProtoNetworkEnvelope().writeDelimitedTo(outputStream);
+        return outputStream.toByteArray();
+    }
+}
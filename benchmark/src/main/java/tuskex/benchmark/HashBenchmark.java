@@ -0,0 +1,74 @@
+/*
+ * This file is part of Tuskex.
+ *
+ * Tuskex is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Tuskex is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Tuskex. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package tuskex.benchmark;
+
+import tuskex.core.offer.OfferPayload;
+import tuskex.network.p2p.storage.P2PDataStorage;
+import tuskex.network.p2p.storage.payload.MailboxStoragePayload;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of P2PDataStorage.get32ByteHash, which serializes and hashes a payload for every storage operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HashBenchmark {
+    private OfferPayload offerPayload;
+    private MailboxStoragePayload mailboxStoragePayload;
+    private P2PDataStorage.DataAndSeqNrPair dataAndSeqNrPair;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData data = new BenchmarkData();
+        offerPayload = data.createOfferPayload(0);
+        mailboxStoragePayload = data.createMailboxPayload(0);
+        dataAndSeqNrPair = new P2PDataStorage.DataAndSeqNrPair(offerPayload, 1);
+    }
+
+    @Benchmark
+    public byte[] get32ByteHashOfOffer() {
+        return P2PDataStorage.get32ByteHash(offerPayload);
+    }
+
+    @Benchmark
+    public byte[] get32ByteHashOfMailbox() {
+        return P2PDataStorage.get32ByteHash(mailboxStoragePayload);
+    }
+
+    // Hash which is signed by ProtectedStorageEntries
+    @Benchmark
+    public byte[] get32ByteHashOfDataAndSeqNr() {
+        return P2PDataStorage.get32ByteHash(dataAndSeqNrPair);
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * This file is part of Tuskex.
+ *
+ * Tuskex is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Tuskex is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Tuskex. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package tuskex.benchmark;
+
+import tuskex.common.proto.persistable.PersistableEnvelope;
+import tuskex.common.proto.persistable.PersistablePayload;
+import tuskex.network.p2p.storage.P2PDataStorage;
+import tuskex.network.p2p.storage.persistence.MapStoreService;
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.Getter;
+
+/**
+ * MapStoreService which only keeps the data in memory, so the benchmarks don't measure disk IO.
+ */
+class InMemoryMapStoreService<T extends PersistableEnvelope, R extends PersistablePayload> extends MapStoreService<T, R> {
+    @Getter
+    private final Map<P2PDataStorage.ByteArray, R> map = new ConcurrentHashMap<>();
+
+    InMemoryMapStoreService() {
+        super(new File(System.getProperty("java.io.tmpdir")), new NoOpPersistenceManager<>());
+    }
+
+    @Override
+    public String getFileName() {
+        return "InMemoryStore";
+    }
+
+    @Override
+    public boolean canHandle(R payload) {
+        return true;
+    }
+
+    @Override
+    protected void readFromResourcesSync(String postFix) {
+    }
+
+    @Override
+    protected void initializePersistenceManager() {
+    }
+
+    @Override
+    protected T createStore() {
+        return null;
+    }
+}
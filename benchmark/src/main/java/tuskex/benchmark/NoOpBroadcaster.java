@@ -0,0 +1,39 @@
+/*
+ * This file is part of Tuskex.
+ *
+ * Tuskex is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Tuskex is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Tuskex. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.benchmark;
+
+import tuskex.network.p2p.NodeAddress;
+import tuskex.network.p2p.network.NetworkNode;
+import tuskex.network.p2p.peers.BroadcastHandler;
+import tuskex.network.p2p.peers.Broadcaster;
+import tuskex.network.p2p.storage.messages.BroadcastMessage;
+
+/**
+ * Broadcaster which drops all messages, so the benchmarks measure the storage only.
+ */
+class NoOpBroadcaster extends Broadcaster {
+    NoOpBroadcaster(NetworkNode networkNode) {
+        super(networkNode, null, 1);
+    }
+
+    @Override
+    public void broadcast(BroadcastMessage message,
+            NodeAddress sender,
+            BroadcastHandler.Listener listener) {
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * This file is part of Tuskex.
+ *
+ * Tuskex is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Tuskex is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Tuskex. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.benchmark;
+
+import tuskex.common.file.CorruptedStorageFileHandler;
+import tuskex.common.persistence.PersistenceManager;
+import tuskex.common.proto.persistable.PersistableEnvelope;
+import java.io.File;
+import java.util.function.Consumer;
+
+/**
+ * PersistenceManager which never reads or writes, so the benchmarks don't measure disk IO. It is not registered at
+ * initialize, so several instances for the same file can exist in one JVM.
+ */
+class NoOpPersistenceManager<T extends PersistableEnvelope> extends PersistenceManager<T> {
+    NoOpPersistenceManager() {
+        super(new File(System.getProperty("java.io.tmpdir")), null, new CorruptedStorageFileHandler(), null);
+    }
+
+    @Override
+    public void initialize(T persistable, String fileName, Source source) {
+    }
+
+    @Override
+    public void readPersisted(Consumer<T> resultHandler, Runnable orElse) {
+        orElse.run();
+    }
+
+    @Override
+    public void readPersisted(String fileName, Consumer<T> resultHandler, Runnable orElse) {
+        orElse.run();
+    }
+
+    @Override
+    public void requestPersistence() {
+    }
+}
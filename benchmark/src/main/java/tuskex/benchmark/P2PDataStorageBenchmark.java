@@ -0,0 +1,162 @@
+/*
+ * This file is part of Tuskex.
+ *
+ * Tuskex is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Tuskex is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Tuskex. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package tuskex.benchmark;
+
+import tuskex.common.app.Capabilities;
+import tuskex.common.app.Capability;
+import tuskex.common.crypto.CryptoException;
+import tuskex.core.offer.OfferPayload;
+import tuskex.network.p2p.peers.getdata.messages.GetDataRequest;
+import tuskex.network.p2p.peers.getdata.messages.GetDataResponse;
+import tuskex.network.p2p.peers.getdata.messages.PreliminaryGetDataRequest;
+import tuskex.network.p2p.storage.P2PDataStorage;
+import tuskex.network.p2p.storage.payload.PersistableNetworkPayload;
+import tuskex.network.p2p.storage.payload.ProtectedStorageEntry;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the P2PDataStorage operations which run for every message from the network: adding offers and
+ * building the response to the initial data request of a peer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class P2PDataStorageBenchmark {
+    // Offers added per measured batch
+    private static final int BATCH_SIZE = 200;
+    // Same as in GetDataRequestHandler
+    private static final int MAX_ENTRIES = 5000;
+    // Share of the data the requester of a GetDataRequest is missing
+    private static final double MISSING_DATA_RATIO = 0.05;
+
+    @Param({"2000", "10000"})
+    public int numProtectedStorageEntries;
+
+    @Param({"20000", "100000"})
+    public int numTradeStatistics;
+
+    private BenchmarkData data;
+    private P2PDataStorage storage;
+    private GetDataRequest getDataRequest;
+    private Capabilities peerCapabilities;
+
+    @Setup(Level.Trial)
+    public void setUp() throws CryptoException {
+        data = new BenchmarkData();
+        storage = BenchmarkData.createP2PDataStorage();
+
+        // Three of four entries are offers, the others mailbox messages
+        for (int i = 0; i < numProtectedStorageEntries; i++) {
+            ProtectedStorageEntry entry = i % 4 == 3 ? data.createMailboxEntry(i) : data.createOfferEntry(i);
+            storage.addProtectedStorageEntry(entry, null, null);
+        }
+        List<PersistableNetworkPayload> tradeStatistics = new ArrayList<>();
+        for (int i = 0; i < numTradeStatistics; i++) {
+            PersistableNetworkPayload payload = data.createTradeStatistics();
+            tradeStatistics.add(payload);
+            storage.addPersistableNetworkPayload(payload, null, false);
+        }
+
+        Random random = new Random(42);
+        Set<byte[]> excludedKeys = new HashSet<>();
+        storage.getMap().keySet().stream()
+                .filter(hash -> random.nextDouble() >= MISSING_DATA_RATIO)
+                .forEach(hash -> excludedKeys.add(hash.bytes));
+        tradeStatistics.stream()
+                .filter(payload -> random.nextDouble() >= MISSING_DATA_RATIO)
+                .forEach(payload -> excludedKeys.add(payload.getHash()));
+        getDataRequest = new PreliminaryGetDataRequest(1, excludedKeys);
+        peerCapabilities = new Capabilities(Capability.values());
+    }
+
+    @Benchmark
+    public GetDataResponse buildGetDataResponse() {
+        return storage.buildGetDataResponse(getDataRequest,
+                MAX_ENTRIES,
+                new AtomicBoolean(),
+                new AtomicBoolean(),
+                peerCapabilities);
+    }
+
+    /**
+     * Offers which are added and removed again after each iteration so the size of the storage does not grow. Signing
+     * the entries is part of the setup and not measured.
+     */
+    @State(Scope.Benchmark)
+    public static class OfferBatch {
+        private final List<ProtectedStorageEntry> addEntries = new ArrayList<>();
+        private final List<ProtectedStorageEntry> removeEntries = new ArrayList<>();
+        private int index;
+        private int ownerIndex;
+
+        @Setup(Level.Iteration)
+        public void setUp(P2PDataStorageBenchmark benchmark) throws CryptoException {
+            addEntries.clear();
+            removeEntries.clear();
+            index = 0;
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                OfferPayload payload = benchmark.data.createOfferPayload(ownerIndex);
+                addEntries.add(benchmark.data.sign(payload, ownerIndex, 1));
+                removeEntries.add(benchmark.data.sign(payload, ownerIndex, 2));
+                ownerIndex++;
+            }
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown(P2PDataStorageBenchmark benchmark) {
+            removeEntries.forEach(entry -> benchmark.storage.remove(entry, null));
+        }
+
+        // If the batch size is overridden at the command line, additional calls add duplicates which are rejected
+        private ProtectedStorageEntry next() {
+            return addEntries.get(index++ % addEntries.size());
+        }
+    }
+
+    // The score is the time to add a batch of offers
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 5, batchSize = BATCH_SIZE)
+    @Measurement(iterations = 10, batchSize = BATCH_SIZE)
+    public boolean addProtectedStorageEntry(OfferBatch offerBatch) {
+        return storage.addProtectedStorageEntry(offerBatch.next(), null, null);
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * This file is part of Tuskex.
+ *
+ * Tuskex is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Tuskex is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Tuskex. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.common;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs tasks submitted with the same key one after another in submission order, while tasks of different keys run
+ * concurrently on a shared executor. A key only holds a thread while it has queued tasks, and its state is dropped as
+ * soon as its queue is empty.
+ */
+public class KeyedSerialExecutor {
+
+    // after this many tasks a busy key yields its thread so other keys are not starved
+    private static final int MAX_TASKS_PER_TURN = 16;
+
+    private static class KeyQueue {
+        private final ArrayDeque<FutureTask<?>> tasks = new ArrayDeque<>();
+        private FutureTask<?> currentTask;
+    }
+
+    private final Executor executor;
+    private final Map<String, KeyQueue> queues = new ConcurrentHashMap<>();
+    private final AtomicInteger queueDepth = new AtomicInteger();
+
+    public KeyedSerialExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Execute the given command after all commands submitted before with the same key.
+     *
+     * @param command the command to execute
+     * @param key the key
+     * @return the future of the command
+     */
+    public Future<?> execute(Runnable command, String key) {
+        FutureTask<?> task = new FutureTask<>(command, null);
+        boolean[] start = new boolean[1];
+        queues.compute(key, (k, queue) -> {
+            if (queue == null) {
+                queue = new KeyQueue();
+                start[0] = true;
+            }
+            queue.tasks.add(task);
+            queueDepth.incrementAndGet();
+            return queue;
+        });
+        if (start[0]) executor.execute(() -> runTasks(key));
+        return task;
+    }
+
+    /**
+     * Wait until the tasks queued for the given key are completed. If they do not complete within the timeout, the
+     * remaining tasks are cancelled and the running task is interrupted.
+     *
+     * @param key the key
+     * @param timeoutMs the timeout in milliseconds
+     */
+    public void await(String key, long timeoutMs) {
+        FutureTask<?> lastTask = getLastTask(key);
+        if (lastTask == null) return;
+        try {
+            lastTask.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            cancel(key);
+        } catch (InterruptedException e) {
+            cancel(key);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (Exception e) {
+            // the exception of a task is only reported by its own future
+        }
+    }
+
+    /**
+     * @return the number of keys which have running or queued tasks
+     */
+    public int getNumActiveKeys() {
+        return queues.size();
+    }
+
+    /**
+     * @return the number of tasks which wait to be run
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void runTasks(String key) {
+        for (int i = 0; i < MAX_TASKS_PER_TURN; i++) {
+            KeyQueue queue = nextTask(key);
+            if (queue == null) return; // key is idle and removed
+            try {
+                queue.currentTask.run();
+            } finally {
+                Thread.interrupted(); // clear interrupt of a cancelled task before the thread is reused
+            }
+        }
+
+        // continue after tasks of other keys
+        executor.execute(() -> runTasks(key));
+    }
+
+    // Polls the next task of the key or removes the key if it has no more tasks
+    private KeyQueue nextTask(String key) {
+        KeyQueue[] result = new KeyQueue[1];
+        queues.computeIfPresent(key, (k, queue) -> {
+            FutureTask<?> task = queue.tasks.poll();
+            queue.currentTask = task;
+            if (task == null) return null;
+            queueDepth.decrementAndGet();
+            result[0] = queue;
+            return queue;
+        });
+        return result[0];
+    }
+
+    private FutureTask<?> getLastTask(String key) {
+        FutureTask<?>[] result = new FutureTask<?>[1];
+        queues.computeIfPresent(key, (k, queue) -> {
+            result[0] = queue.tasks.isEmpty() ? queue.currentTask : queue.tasks.peekLast();
+            return queue;
+        });
+        return result[0];
+    }
+
+    private void cancel(String key) {
+        List<FutureTask<?>> cancelledTasks = new ArrayList<>();
+        queues.computeIfPresent(key, (k, queue) -> {
+            cancelledTasks.addAll(queue.tasks);
+            queueDepth.addAndGet(-queue.tasks.size());
+            queue.tasks.clear();
+            if (queue.currentTask != null) cancelledTasks.add(queue.currentTask);
+            return queue;
+        });
+        cancelledTasks.forEach(task -> task.cancel(true));
+    }
+}
@@ -16,40 +16,53 @@
  */
 
 package tuskex.common;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import tuskex.common.metrics.Metrics;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 public class ThreadUtils {
     
-    private static final Map<String, ExecutorService> EXECUTORS = new HashMap<>();
-    private static final Map<String, Thread> THREADS = new HashMap<>();
     private static final int POOL_SIZE = 10;
     private static final ExecutorService POOL = Executors.newFixedThreadPool(POOL_SIZE);
 
+    // daemon threads shared by all thread ids, idle threads are released after the keep alive time. The pool hands
+    // every thread id with queued commands its own thread up to the maximum, so busy thread ids (e.g. trades blocking
+    // in wallet calls) do not queue behind each other. Beyond the maximum, thread ids wait for a free thread.
+    @VisibleForTesting
+    static final int KEYED_POOL_MAX_THREADS = Math.max(64, Runtime.getRuntime().availableProcessors() * 8);
+    private static final long KEYED_POOL_KEEP_ALIVE_SEC = 60;
+    private static final ThreadPoolExecutor KEYED_POOL = newKeyedPool();
+    private static final KeyedSerialExecutor KEYED_EXECUTOR = new KeyedSerialExecutor(KEYED_POOL);
+
+    static {
+        Metrics.gauge("tuskex_thread_utils_queue_depth", "Commands waiting to be executed by thread id", ThreadUtils::getQueueDepth);
+        Metrics.gauge("tuskex_thread_utils_active_thread_ids", "Thread ids with running or queued commands", ThreadUtils::getNumActiveThreadIds);
+        Metrics.gauge("tuskex_thread_utils_pool_threads", "Threads used to execute commands by thread id", ThreadUtils::getNumPoolThreads);
+    }
+
     /**
      * Execute the given command in a thread with the given id.
      * 
+     * Commands with the same thread id run one after another in submission order. Commands of different thread ids
+     * share a bounded pool of daemon threads, so a thread id does not hold a thread while it has nothing to execute,
+     * and a thread id which blocks does not delay the commands of other thread ids while the pool has free threads.
+     * 
      * @param command the command to execute
      * @param threadId the thread id
      */
     public static Future<?> execute(Runnable command, String threadId) {
-        synchronized (EXECUTORS) {
-            if (!EXECUTORS.containsKey(threadId)) EXECUTORS.put(threadId, Executors.newFixedThreadPool(1));
-            return EXECUTORS.get(threadId).submit(() -> {
-                synchronized (THREADS) {
-                    THREADS.put(threadId, Thread.currentThread());
-                }
-                command.run();
-            });
-        }
+        return KEYED_EXECUTOR.execute(command, threadId);
     }
 
     /**
@@ -70,31 +83,37 @@ public class ThreadUtils {
         shutDown(threadId, null);
     }
 
+    /**
+     * Waits for the commands submitted with the given thread id. Commands which are not done after the timeout are
+     * cancelled.
+     * 
+     * @param threadId the thread id
+     * @param timeoutMs the timeout in milliseconds, or null to wait without timeout
+     */
     public static void shutDown(String threadId, Long timeoutMs) {
         if (timeoutMs == null) timeoutMs = Long.MAX_VALUE;
-        ExecutorService pool = null;
-        synchronized (EXECUTORS) {
-            pool = EXECUTORS.get(threadId);
-        }
-        if (pool == null) return; // thread not found
-        pool.shutdown();
-        try {
-            if (!pool.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS)) pool.shutdownNow();
-        } catch (InterruptedException e) {
-            pool.shutdownNow();
-            throw new RuntimeException(e);
-        } finally {
-            remove(threadId);
-        }
+        KEYED_EXECUTOR.await(threadId, timeoutMs);
     }
 
-    public static void remove(String threadId) {
-        synchronized (EXECUTORS) {
-            EXECUTORS.remove(threadId);
-        }
-        synchronized (THREADS) {
-            THREADS.remove(threadId);
-        }
+    /**
+     * @return the number of thread ids with running or queued commands
+     */
+    public static int getNumActiveThreadIds() {
+        return KEYED_EXECUTOR.getNumActiveKeys();
+    }
+
+    /**
+     * @return the number of commands waiting to be executed across all thread ids
+     */
+    public static int getQueueDepth() {
+        return KEYED_EXECUTOR.getQueueDepth();
+    }
+
+    /**
+     * @return the number of threads currently used to execute commands by thread id
+     */
+    public static int getNumPoolThreads() {
+        return KEYED_POOL.getPoolSize();
     }
 
     // TODO: consolidate and cleanup apis
@@ -141,10 +160,20 @@ public class ThreadUtils {
         }
     }
 
-    private static boolean isCurrentThread(Thread thread, String threadId) {
-        synchronized (THREADS) {
-            if (!THREADS.containsKey(threadId)) return false;
-            return thread == THREADS.get(threadId);
-        }
+    private static ThreadPoolExecutor newKeyedPool() {
+        ThreadFactory threadFactory = new ThreadFactoryBuilder()
+                .setNameFormat("ThreadUtils-%d")
+                .setDaemon(true)
+                .build();
+        // a thread id runs on at most one thread at a time, so the number of threads is also bounded by the busy
+        // thread ids
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(KEYED_POOL_MAX_THREADS,
+                KEYED_POOL_MAX_THREADS,
+                KEYED_POOL_KEEP_ALIVE_SEC,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                threadFactory);
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
     }
 }
@@ -72,12 +72,14 @@ public class Config {
     public static final String WALLET_RPC_BIND_PORT = "walletRpcBindPort";
     public static final String USE_DEV_PRIVILEGE_KEYS = "useDevPrivilegeKeys";
     public static final String DUMP_STATISTICS = "dumpStatistics";
+    public static final String DUMP_STATISTICS_INCREMENTALLY = "dumpStatisticsIncrementally";
     public static final String IGNORE_DEV_MSG = "ignoreDevMsg";
     public static final String PROVIDERS = "providers";
     public static final String SEED_NODES = "seedNodes";
     public static final String BAN_LIST = "banList";
     public static final String NODE_PORT = "nodePort";
     public static final String USE_LOCALHOST_FOR_P2P = "useLocalhostForP2P";
+    public static final String USE_NIO_FOR_P2P = "useNioForP2P";
     public static final String MAX_CONNECTIONS = "maxConnections";
     public static final String SOCKS_5_PROXY_TSK_ADDRESS = "socks5ProxyTskAddress";
     public static final String SOCKS_5_PROXY_HTTP_ADDRESS = "socks5ProxyHttpAddress";
@@ -107,6 +109,7 @@ public class Config {
     public static final String NUM_CONNECTIONS_FOR_BTC = "numConnectionsForBtc";
     public static final String API_PASSWORD = "apiPassword";
     public static final String API_PORT = "apiPort";
+    public static final String METRICS_PORT = "metricsPort";
     public static final String PREVENT_PERIODIC_SHUTDOWN_AT_SEED_NODE = "preventPeriodicShutdownAtSeedNode";
     public static final String REPUBLISH_MAILBOX_ENTRIES = "republishMailboxEntries";
     public static final String LEGACY_FEE_DATAMAP = "dataMap";
@@ -165,11 +168,13 @@ public class Config {
     public final boolean useDevModeHeader;
     public final boolean useDevPrivilegeKeys;
     public final boolean dumpStatistics;
+    public final boolean dumpStatisticsIncrementally;
     public final boolean ignoreDevMsg;
     public final List<String> providers;
     public final List<String> seedNodes;
     public final List<String> banList;
     public final boolean useLocalhostForP2P;
+    public final boolean useNioForP2P;
     public final int maxConnections;
     public final String socks5ProxyTskAddress;
     public final String socks5ProxyHttpAddress;
@@ -198,6 +203,7 @@ public class Config {
     public final int numConnectionsForBtc;
     public final String apiPassword;
     public final int apiPort;
+    public final int metricsPort;
     public final boolean preventPeriodicShutdownAtSeedNode;
     public final boolean republishMailboxEntries;
     public final boolean bypassMempoolValidation;
@@ -381,6 +387,14 @@ public class Config {
                         .ofType(boolean.class)
                         .defaultsTo(false);
 
+        ArgumentAcceptingOptionSpec<Boolean> dumpStatisticsIncrementallyOpt =
+                parser.accepts(DUMP_STATISTICS_INCREMENTALLY, "If set to true together with " + DUMP_STATISTICS +
+                                " append new trade statistics and offer events to newline-delimited json files " +
+                                "partitioned by day and currency instead of rewriting the full json files")
+                        .withRequiredArg()
+                        .ofType(boolean.class)
+                        .defaultsTo(false);
+
         ArgumentAcceptingOptionSpec<Boolean> ignoreDevMsgOpt =
                 parser.accepts(IGNORE_DEV_MSG, "If set to true all signed " +
                         "network_messages from tuskex developers are ignored (Global " +
@@ -416,6 +430,14 @@ public class Config {
                         .ofType(boolean.class)
                         .defaultsTo(false);
 
+        ArgumentAcceptingOptionSpec<Boolean> useNioForP2POpt =
+                parser.accepts(USE_NIO_FOR_P2P, "Use non-blocking connections served by a small thread pool " +
+                                "for the localhost P2P network, e.g. for seed nodes with many connections. " +
+                                "Requires --" + USE_LOCALHOST_FOR_P2P + ", connections over Tor are always blocking.")
+                        .withRequiredArg()
+                        .ofType(boolean.class)
+                        .defaultsTo(false);
+
         ArgumentAcceptingOptionSpec<Integer> maxConnectionsOpt =
                 parser.accepts(MAX_CONNECTIONS, "Max. connections a peer will try to keep")
                         .withRequiredArg()
@@ -585,6 +607,13 @@ public class Config {
                         .ofType(Integer.class)
                         .defaultsTo(9998);
 
+        ArgumentAcceptingOptionSpec<Integer> metricsPortOpt =
+                parser.accepts(METRICS_PORT, "Port of the local metrics endpoint (http://127.0.0.1:port/metrics), " +
+                                "disabled if not set")
+                        .withRequiredArg()
+                        .ofType(Integer.class)
+                        .defaultsTo(UNSPECIFIED_PORT);
+
         ArgumentAcceptingOptionSpec<Boolean> preventPeriodicShutdownAtSeedNodeOpt =
                 parser.accepts(PREVENT_PERIODIC_SHUTDOWN_AT_SEED_NODE,
                         "Prevents periodic shutdown at seed nodes")
@@ -694,11 +723,16 @@ public class Config {
             this.useDevModeHeader = options.valueOf(useDevModeHeaderOpt);
             this.useDevPrivilegeKeys = options.valueOf(useDevPrivilegeKeysOpt);
             this.dumpStatistics = options.valueOf(dumpStatisticsOpt);
+            this.dumpStatisticsIncrementally = options.valueOf(dumpStatisticsIncrementallyOpt);
             this.ignoreDevMsg = options.valueOf(ignoreDevMsgOpt);
             this.providers = options.valuesOf(providersOpt);
             this.seedNodes = options.valuesOf(seedNodesOpt);
             this.banList = options.valuesOf(banListOpt);
             this.useLocalhostForP2P = !this.baseCurrencyNetwork.isMainnet() && options.valueOf(useLocalhostForP2POpt);
+            this.useNioForP2P = options.valueOf(useNioForP2POpt);
+            if (this.useNioForP2P && !this.useLocalhostForP2P)
+                throw new ConfigException("The '%s' option requires '%s' on a non-mainnet network, " +
+                        "connections over Tor are always blocking", USE_NIO_FOR_P2P, USE_LOCALHOST_FOR_P2P);
             this.maxConnections = options.valueOf(maxConnectionsOpt);
             this.socks5ProxyTskAddress = options.valueOf(socks5ProxyTskAddressOpt);
             this.socks5ProxyHttpAddress = options.valueOf(socks5ProxyHttpAddressOpt);
@@ -720,6 +754,7 @@ public class Config {
 
             this.apiPassword = options.valueOf(apiPasswordOpt);
             this.apiPort = options.valueOf(apiPortOpt);
+            this.metricsPort = options.valueOf(metricsPortOpt);
             this.preventPeriodicShutdownAtSeedNode = options.valueOf(preventPeriodicShutdownAtSeedNodeOpt);
             this.republishMailboxEntries = options.valueOf(republishMailboxEntriesOpt);
             this.bypassMempoolValidation = options.valueOf(bypassMempoolValidationOpt);
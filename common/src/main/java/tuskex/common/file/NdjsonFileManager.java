@@ -0,0 +1,217 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.common.file;
+
+import com.google.common.hash.Hashing;
+import tuskex.common.util.SingleThreadExecutorUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes records as newline-delimited JSON into segments partitioned by day (UTC) and partition key, e.g.
+ * {@code trade_statistics/2024-06-01/USD.ndjson}. Records are only appended, existing lines are never rewritten, so
+ * consumers can tail the segments. A small manifest.json lists the segments with their record count and size.
+ *
+ * If deduplicating, a record with the same JSON as a record written before (also in a previous run) is skipped.
+ */
+@Slf4j
+public class NdjsonFileManager {
+    public static final String FILE_EXTENSION = ".ndjson";
+    public static final String MANIFEST_FILE_NAME = "manifest";
+
+    public static class Record {
+        private final String day;
+        private final String partition;
+        private final String json;
+
+        /**
+         * @param timestamp the time of the record in ms since epoch, determines the day of the segment
+         * @param partition the partition key, e.g. the currency code
+         * @param json the record as single line json
+         */
+        public Record(long timestamp, String partition, String json) {
+            if (json.indexOf('\n') >= 0) throw new IllegalArgumentException("Record json must be a single line");
+            this.day = LocalDate.ofEpochDay(Math.floorDiv(timestamp, TimeUnit.DAYS.toMillis(1))).toString();
+            this.partition = partition.replaceAll("[^A-Za-z0-9_-]", "_");
+            this.json = json;
+        }
+    }
+
+    private static class Segment {
+        private long numRecords;
+        private long size;
+    }
+
+    private final File dir;
+    private final boolean deduplicate;
+    private final JsonFileManager manifestFileManager;
+    private final ExecutorService executor;
+    // accessed only by the executor
+    private final Map<String, Segment> segments = new TreeMap<>();
+    private final Set<Long> writtenRecordHashes = new HashSet<>();
+    private boolean initialized;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public NdjsonFileManager(File dir, boolean deduplicate) {
+        this.dir = dir;
+        this.deduplicate = deduplicate;
+        this.manifestFileManager = new JsonFileManager(dir);
+        this.executor = SingleThreadExecutorUtils.getSingleThreadExecutor("NdjsonFileManager-" + dir.getName());
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public void appendThreaded(Collection<Record> records) {
+        if (records.isEmpty()) return;
+        List<Record> copy = new ArrayList<>(records);
+        executor.execute(() -> append(copy));
+    }
+
+    public void shutDown() {
+        executor.shutdown();
+        manifestFileManager.shutDown();
+    }
+
+    public void append(Collection<Record> records) {
+        if (!initialized) {
+            readSegments();
+            initialized = true;
+        }
+
+        // group by segment so each segment file is opened once per batch
+        Map<String, StringBuilder> linesBySegment = new LinkedHashMap<>();
+        for (Record record : records) {
+            if (deduplicate && !writtenRecordHashes.add(hash(record.json))) continue;
+            String segmentPath = record.day + "/" + record.partition + FILE_EXTENSION;
+            linesBySegment.computeIfAbsent(segmentPath, key -> new StringBuilder()).append(record.json).append('\n');
+            segments.computeIfAbsent(segmentPath, key -> new Segment()).numRecords++;
+        }
+        if (linesBySegment.isEmpty()) return;
+
+        linesBySegment.forEach((segmentPath, lines) -> {
+            File file = new File(dir, segmentPath);
+            byte[] bytes = lines.toString().getBytes(StandardCharsets.UTF_8);
+            try {
+                File dayDir = file.getParentFile();
+                if (!dayDir.exists() && !dayDir.mkdirs()) log.warn("make dir failed {}", dayDir);
+                try (OutputStream outputStream = new FileOutputStream(file, true)) {
+                    outputStream.write(bytes);
+                }
+                segments.get(segmentPath).size = file.length();
+            } catch (IOException e) {
+                log.error("Could not append to {}: {}", file, e.toString());
+            }
+        });
+        manifestFileManager.writeToDisc(toManifestJson(), MANIFEST_FILE_NAME);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void readSegments() {
+        File[] dayDirs = dir.listFiles(File::isDirectory);
+        if (dayDirs == null) return;
+        for (File dayDir : dayDirs) {
+            File[] files = dayDir.listFiles((d, name) -> name.endsWith(FILE_EXTENSION));
+            if (files == null) continue;
+            for (File file : files) {
+                try {
+                    truncateIncompleteLine(file);
+                    Segment segment = new Segment();
+                    try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                        String line;
+                        while ((line = reader.readLine()) != null) {
+                            segment.numRecords++;
+                            if (deduplicate) writtenRecordHashes.add(hash(line));
+                        }
+                    }
+                    segment.size = file.length();
+                    segments.put(dayDir.getName() + "/" + file.getName(), segment);
+                } catch (IOException e) {
+                    log.error("Could not read segment {}: {}", file, e.toString());
+                }
+            }
+        }
+    }
+
+    // A write interrupted by a crash can leave a partial last line, which we drop
+    private static void truncateIncompleteLine(File file) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            long length = randomAccessFile.length();
+            long end = length;
+            while (end > 0) {
+                randomAccessFile.seek(end - 1);
+                if (randomAccessFile.read() == '\n') break;
+                end--;
+            }
+            if (end < length) {
+                log.warn("Dropping incomplete last record of {}", file);
+                randomAccessFile.setLength(end);
+            }
+        }
+    }
+
+    private static long hash(String json) {
+        return Hashing.murmur3_128().hashString(json, StandardCharsets.UTF_8).asLong();
+    }
+
+    private String toManifestJson() {
+        StringBuilder json = new StringBuilder("{\n  \"updated\": ").append(System.currentTimeMillis())
+                .append(",\n  \"segments\": [");
+        String separator = "\n";
+        for (Map.Entry<String, Segment> entry : segments.entrySet()) {
+            String segmentPath = entry.getKey();
+            json.append(separator)
+                    .append("    {\"day\": \"").append(segmentPath, 0, segmentPath.indexOf('/'))
+                    .append("\", \"partition\": \"").append(segmentPath, segmentPath.indexOf('/') + 1, segmentPath.length() - FILE_EXTENSION.length())
+                    .append("\", \"file\": \"").append(segmentPath)
+                    .append("\", \"records\": ").append(entry.getValue().numRecords)
+                    .append(", \"bytes\": ").append(entry.getValue().size).append("}");
+            separator = ",\n";
+        }
+        return json.append("\n  ]\n}").toString();
+    }
+}
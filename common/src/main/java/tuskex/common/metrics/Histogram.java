@@ -0,0 +1,75 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.common.metrics;
+
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribution of observed values over fixed buckets, e.g. latencies in seconds.
+ */
+public class Histogram {
+    // upper bounds in seconds, suited for latencies from a millisecond up to a minute
+    static final double[] LATENCY_BUCKETS = {0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60};
+
+    private final double[] upperBounds;
+    private final LongAdder[] bucketCounts; // last bucket counts the values above all upper bounds
+    private final LongAdder count = new LongAdder();
+    private final DoubleAdder sum = new DoubleAdder();
+
+    Histogram(double[] upperBounds) {
+        this.upperBounds = upperBounds;
+        this.bucketCounts = new LongAdder[upperBounds.length + 1];
+        for (int i = 0; i < bucketCounts.length; i++) bucketCounts[i] = new LongAdder();
+    }
+
+    public void observe(double value) {
+        int i = 0;
+        while (i < upperBounds.length && value > upperBounds[i]) i++;
+        bucketCounts[i].increment();
+        count.increment();
+        sum.add(value);
+    }
+
+    public void observeMillis(long durationMs) {
+        observe(durationMs / 1000d);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getSum() {
+        return sum.sum();
+    }
+
+    double[] getUpperBounds() {
+        return upperBounds;
+    }
+
+    // cumulative counts per upper bound, as required by the exposition format
+    long[] getCumulativeCounts() {
+        long[] counts = new long[bucketCounts.length];
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            total += bucketCounts[i].sum();
+            counts[i] = total;
+        }
+        return counts;
+    }
+}
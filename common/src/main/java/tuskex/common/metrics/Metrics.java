@@ -0,0 +1,58 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.common.metrics;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * Static access to the metrics registry of the application, for code which is not created by Guice.
+ *
+ * Metric names follow the Prometheus conventions: prefixed with tuskex_, counters end with _total and latency
+ * histograms with _seconds.
+ */
+public class Metrics {
+    private static final MetricsRegistry REGISTRY = new MetricsRegistry();
+
+    public static MetricsRegistry getRegistry() {
+        return REGISTRY;
+    }
+
+    public static Counter counter(String name, String help) {
+        return REGISTRY.counter(name, help);
+    }
+
+    public static Counter counter(String name, String help, String labelName, String labelValue) {
+        return REGISTRY.counter(name, help, labelName, labelValue);
+    }
+
+    public static Histogram histogram(String name, String help) {
+        return REGISTRY.histogram(name, help);
+    }
+
+    public static Histogram histogram(String name, String help, String labelName, String labelValue) {
+        return REGISTRY.histogram(name, help, labelName, labelValue);
+    }
+
+    public static void gauge(String name, String help, DoubleSupplier supplier) {
+        REGISTRY.gauge(name, help, supplier);
+    }
+
+    public static void gauge(String name, String help, String labelName, String labelValue, DoubleSupplier supplier) {
+        REGISTRY.gauge(name, help, labelName, labelValue, supplier);
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.common.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Registry of counters, gauges and histograms which are written in the Prometheus text format.
+ *
+ * A metric is identified by its name and optional label. Looking up a metric which exists already returns the
+ * existing instance, so hot paths can look up metrics by label value without keeping references.
+ */
+@Slf4j
+public class MetricsRegistry {
+
+    private enum Type {
+        COUNTER, GAUGE, HISTOGRAM
+    }
+
+    private static class Family {
+        private final Type type;
+        private final String help;
+        // metrics by formatted labels
+        private final Map<String, Object> metrics = new ConcurrentHashMap<>();
+
+        private Family(Type type, String help) {
+            this.type = type;
+            this.help = help;
+        }
+    }
+
+    private final Map<String, Family> families = new ConcurrentHashMap<>();
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public Counter counter(String name, String help) {
+        return counter(name, help, null, null);
+    }
+
+    public Counter counter(String name, String help, String labelName, String labelValue) {
+        return (Counter) getOrCreate(name, help, Type.COUNTER, labelName, labelValue, labels -> new Counter());
+    }
+
+    public Histogram histogram(String name, String help) {
+        return histogram(name, help, null, null);
+    }
+
+    public Histogram histogram(String name, String help, String labelName, String labelValue) {
+        return (Histogram) getOrCreate(name, help, Type.HISTOGRAM, labelName, labelValue,
+                labels -> new Histogram(Histogram.LATENCY_BUCKETS));
+    }
+
+    /**
+     * Register a gauge. A gauge registered again with the same name replaces the previous one.
+     *
+     * @param name the metric name
+     * @param help the description of the metric
+     * @param supplier supplies the current value, called on every scrape so it must be cheap and thread safe
+     */
+    public void gauge(String name, String help, DoubleSupplier supplier) {
+        gauge(name, help, null, null, supplier);
+    }
+
+    public void gauge(String name, String help, String labelName, String labelValue, DoubleSupplier supplier) {
+        getFamily(name, help, Type.GAUGE).metrics.put(formatLabels(labelName, labelValue), supplier);
+    }
+
+    public void write(Writer writer) throws IOException {
+        for (Map.Entry<String, Family> familyEntry : new TreeMap<>(families).entrySet()) {
+            String name = familyEntry.getKey();
+            Family family = familyEntry.getValue();
+            writer.write("# HELP " + name + " " + family.help + "\n");
+            writer.write("# TYPE " + name + " " + family.type.name().toLowerCase() + "\n");
+            for (Map.Entry<String, Object> entry : new TreeMap<>(family.metrics).entrySet()) {
+                String labels = entry.getKey();
+                switch (family.type) {
+                    case COUNTER:
+                        writeSample(writer, name, labels, ((Counter) entry.getValue()).get());
+                        break;
+                    case GAUGE:
+                        writeSample(writer, name, labels, getGaugeValue(name, (DoubleSupplier) entry.getValue()));
+                        break;
+                    case HISTOGRAM:
+                        writeHistogram(writer, name, labels, (Histogram) entry.getValue());
+                        break;
+                }
+            }
+        }
+        writer.flush();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private Object getOrCreate(String name, String help, Type type, String labelName, String labelValue,
+                               Function<String, Object> factory) {
+        return getFamily(name, help, type).metrics.computeIfAbsent(formatLabels(labelName, labelValue), factory);
+    }
+
+    private Family getFamily(String name, String help, Type type) {
+        Family family = families.get(name);
+        if (family == null) family = families.computeIfAbsent(name, key -> new Family(type, help));
+        if (family.type != type)
+            throw new IllegalArgumentException("Metric " + name + " is already registered as " + family.type);
+        return family;
+    }
+
+    private static String formatLabels(String labelName, String labelValue) {
+        if (labelName == null) return "";
+        String escapedValue = labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        return labelName + "=\"" + escapedValue + "\"";
+    }
+
+    private static double getGaugeValue(String name, DoubleSupplier supplier) {
+        try {
+            return supplier.getAsDouble();
+        } catch (Throwable t) {
+            log.warn("Could not get value of gauge {}: {}", name, t.toString());
+            return Double.NaN;
+        }
+    }
+
+    private static void writeHistogram(Writer writer, String name, String labels, Histogram histogram) throws IOException {
+        String labelPrefix = labels.isEmpty() ? "" : labels + ",";
+        double[] upperBounds = histogram.getUpperBounds();
+        long[] cumulativeCounts = histogram.getCumulativeCounts();
+        for (int i = 0; i < upperBounds.length; i++) {
+            writeSample(writer, name + "_bucket", labelPrefix + "le=\"" + upperBounds[i] + "\"", cumulativeCounts[i]);
+        }
+        long count = cumulativeCounts[upperBounds.length];
+        writeSample(writer, name + "_bucket", labelPrefix + "le=\"+Inf\"", count);
+        writeSample(writer, name + "_sum", labels, histogram.getSum());
+        writeSample(writer, name + "_count", labels, count);
+    }
+
+    private static void writeSample(Writer writer, String name, String labels, double value) throws IOException {
+        writer.write(name);
+        if (!labels.isEmpty()) writer.write("{" + labels + "}");
+        writer.write(" ");
+        writer.write(value == (long) value ? Long.toString((long) value) : Double.toString(value));
+        writer.write("\n");
+    }
+}
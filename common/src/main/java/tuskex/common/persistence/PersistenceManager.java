@@ -20,6 +20,7 @@ package tuskex.common.persistence;
 import static com.google.common.base.Preconditions.checkNotNull;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
+import com.google.protobuf.Message;
 import tuskex.common.Timer;
 import tuskex.common.UserThread;
 import tuskex.common.app.DevEnv;
@@ -30,16 +31,22 @@ import tuskex.common.crypto.KeyRing;
 import tuskex.common.file.CorruptedStorageFileHandler;
 import tuskex.common.file.FileUtil;
 import tuskex.common.handlers.ResultHandler;
+import tuskex.common.metrics.Metrics;
+import tuskex.common.proto.persistable.JournaledPersistableEnvelope;
 import tuskex.common.proto.persistable.PersistableEnvelope;
 import tuskex.common.proto.persistable.PersistenceProtoResolver;
 import tuskex.common.util.GcUtil;
 import static tuskex.common.util.Preconditions.checkDir;
 import tuskex.common.util.SingleThreadExecutorUtils;
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -49,6 +56,8 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
 import javax.annotation.Nullable;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
@@ -66,6 +75,9 @@ import lombok.extern.slf4j.Slf4j;
  * previously we wasted a lot of resources as way too many threads have been created without doing actual work as well
  * the write operations got triggered way too often specially for the very frequent changes at SequenceNumberMap
  *
+ * Envelopes implementing {@link JournaledPersistableEnvelope} are written incrementally: their changes are appended as
+ * length-delimited records to a journal file next to the snapshot, and the full snapshot is only written if the journal
+ * grew larger than the snapshot or the changes cannot be expressed as delta. The journal is replayed on reading.
  *
  * @param <T>   The type of the {@link PersistableEnvelope} to be written or read from disk
  */
@@ -77,6 +89,11 @@ public class PersistenceManager<T extends PersistableEnvelope> {
     ///////////////////////////////////////////////////////////////////////////////////////////
 
     public static final Map<String, PersistenceManager<?>> ALL_PERSISTENCE_MANAGERS = new HashMap<>();
+    private static final String JOURNAL_FILE_SUFFIX = ".journal";
+    private static final int JOURNAL_MAGIC = 0x544a524e;
+    private static final int JOURNAL_HEADER_SIZE = 12; // magic and snapshot checksum
+    private static final int JOURNAL_RECORD_HEADER_SIZE = 8; // length and checksum
+    private static final long MIN_JOURNAL_SIZE_BEFORE_COMPACTION = 1024 * 1024;
     private static boolean flushAtShutdownCalled;
     private static final AtomicBoolean allServicesInitialized = new AtomicBoolean(false);
 
@@ -216,6 +233,7 @@ public class PersistenceManager<T extends PersistableEnvelope> {
     ///////////////////////////////////////////////////////////////////////////////////////////
 
     private final File dir;
+    @Getter
     private final PersistenceProtoResolver persistenceProtoResolver;
     private final CorruptedStorageFileHandler corruptedStorageFileHandler;
     @Nullable
@@ -227,6 +245,10 @@ public class PersistenceManager<T extends PersistableEnvelope> {
     private Path usedTempFilePath;
     private volatile boolean persistenceRequested;
     @Nullable
+    private volatile Long journalSnapshotChecksum; // checksum of the snapshot the journal applies to, null if a snapshot must be written
+    private volatile long journalSize;
+    private volatile long journalSnapshotSize;
+    @Nullable
     private Timer timer;
     private ExecutorService writeToDiskExecutor;
     public final AtomicBoolean initCalled = new AtomicBoolean(false);
@@ -368,18 +390,23 @@ public class PersistenceManager<T extends PersistableEnvelope> {
         long ts = System.currentTimeMillis();
         try (FileInputStream fileInputStream = new FileInputStream(storageFile)) {
             protobuf.PersistableEnvelope proto;
+            byte[] bytes = fileInputStream.readAllBytes();
             if (keyRing != null) {
-                byte[] encryptedBytes = fileInputStream.readAllBytes();
                 try {
-                    byte[] decryptedBytes = Encryption.decryptPayloadWithHmac(encryptedBytes, keyRing.getSymmetricKey());
+                    byte[] decryptedBytes = Encryption.decryptPayloadWithHmac(bytes, keyRing.getSymmetricKey());
                     proto = protobuf.PersistableEnvelope.parseFrom(decryptedBytes);
                 } catch (CryptoException ce) {
                     log.warn("Expected encrypted persisted file, attempting to getPersisted without decryption");
-                    ByteArrayInputStream bs = new ByteArrayInputStream(encryptedBytes);
+                    ByteArrayInputStream bs = new ByteArrayInputStream(bytes);
                     proto = protobuf.PersistableEnvelope.parseDelimitedFrom(bs);
                 }
             } else {
-                proto = protobuf.PersistableEnvelope.parseDelimitedFrom(fileInputStream);
+                proto = protobuf.PersistableEnvelope.parseDelimitedFrom(new ByteArrayInputStream(bytes));
+            }
+
+            // apply changes written to the journal after the snapshot
+            if (isJournaled() && fileName.equals(this.fileName)) {
+                proto = replayJournal(proto, getChecksum(bytes), bytes.length);
             }
 
             //noinspection unchecked
@@ -452,6 +479,16 @@ public class PersistenceManager<T extends PersistableEnvelope> {
 
     private synchronized void persistNow(@Nullable Runnable completeHandler, boolean force) {
         long ts = System.currentTimeMillis();
+
+        // append changes to journal if possible
+        if (isJournaled()) {
+            Message delta = ((JournaledPersistableEnvelope) persistable).toPersistableDelta();
+            if (delta != null && canAppendToJournal()) {
+                getWriteToDiskExecutor().execute(() -> appendToJournal((protobuf.PersistableEnvelope) delta, completeHandler, force));
+                return;
+            }
+        }
+
         try {
             // The serialisation is done on the user thread to avoid threading issue with potential mutations of the
             // persistable object. Keeping it on the user thread we are in a synchronize model.
@@ -476,6 +513,7 @@ public class PersistenceManager<T extends PersistableEnvelope> {
     private void writeToDisk(protobuf.PersistableEnvelope serialized, @Nullable Runnable completeHandler, boolean force) {
         if (!allServicesInitialized.get() && !force) {
             log.warn("Application has not completed start up yet so we do not permit writing data to disk.");
+            journalSnapshotChecksum = null;
             if (completeHandler != null) {
                 UserThread.execute(completeHandler);
             }
@@ -483,6 +521,7 @@ public class PersistenceManager<T extends PersistableEnvelope> {
         }
         if (keyRing != null && !keyRing.isUnlocked()) {
             log.warn("Account is not open, ignoring writeToDisk.");
+            journalSnapshotChecksum = null;
             if (completeHandler != null) {
                 UserThread.execute(completeHandler);
             }
@@ -507,12 +546,13 @@ public class PersistenceManager<T extends PersistableEnvelope> {
             tempFile.deleteOnExit();
 
             fileOutputStream = new FileOutputStream(tempFile);
+            CheckedOutputStream checkedOutputStream = new CheckedOutputStream(fileOutputStream, new CRC32());
 
             if (keyRing != null) {
                 byte[] encryptedBytes = Encryption.encryptPayloadWithHmac(serialized.toByteArray(), keyRing.getSymmetricKey());
-                fileOutputStream.write(encryptedBytes);
+                checkedOutputStream.write(encryptedBytes);
             } else {
-                serialized.writeDelimitedTo(fileOutputStream);
+                serialized.writeDelimitedTo(checkedOutputStream);
             }
 
             // Attempt to force the bits to hit the disk. In reality the OS or hard disk itself may still decide
@@ -526,9 +566,13 @@ public class PersistenceManager<T extends PersistableEnvelope> {
 
             FileUtil.renameFile(tempFile, storageFile);
             usedTempFilePath = tempFile.toPath();
+
+            // start new journal for the snapshot
+            if (isJournaled()) resetJournal(checkedOutputStream.getChecksum().getValue(), storageFile.length());
         } catch (Throwable t) {
             // If an error occurred, don't attempt to reuse this path again, in case temp file cleanup fails.
             usedTempFilePath = null;
+            journalSnapshotChecksum = null;
             log.error("Error at saveToFile, storageFile={}", fileName, t);
         } finally {
             if (tempFile != null && tempFile.exists()) {
@@ -551,13 +595,150 @@ public class PersistenceManager<T extends PersistableEnvelope> {
             if (duration > 100) {
                 log.info("Writing the serialized {} completed in {} msec", fileName, duration);
             }
+            Metrics.histogram("tuskex_persistence_write_seconds", "Duration of writing a snapshot to disk", "file", fileName)
+                    .observeMillis(duration);
+            persistenceRequested = false;
+            if (completeHandler != null) {
+                UserThread.execute(completeHandler);
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Journal
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private boolean isJournaled() {
+        return persistable instanceof JournaledPersistableEnvelope;
+    }
+
+    private boolean canAppendToJournal() {
+        return journalSnapshotChecksum != null && journalSize < Math.max(MIN_JOURNAL_SIZE_BEFORE_COMPACTION, journalSnapshotSize);
+    }
+
+    private File getJournalFile() {
+        return new File(dir, fileName + JOURNAL_FILE_SUFFIX);
+    }
+
+    private static long getChecksum(byte[] bytes) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(bytes);
+        return crc32.getValue();
+    }
+
+    // Replaces the journal with an empty journal for the snapshot with the given checksum. A crash before the rename
+    // leaves the old journal, which is ignored on reading as its checksum does not match the new snapshot.
+    private void resetJournal(long snapshotChecksum, long snapshotSize) {
+        journalSnapshotChecksum = null;
+        File tempFile = new File(dir, "temp_" + fileName + JOURNAL_FILE_SUFFIX);
+        try {
+            try (FileOutputStream fileOutputStream = new FileOutputStream(tempFile);
+                 DataOutputStream dataOutputStream = new DataOutputStream(fileOutputStream)) {
+                dataOutputStream.writeInt(JOURNAL_MAGIC);
+                dataOutputStream.writeLong(snapshotChecksum);
+                dataOutputStream.flush();
+                fileOutputStream.getFD().sync();
+            }
+            FileUtil.renameFile(tempFile, getJournalFile());
+            journalSize = JOURNAL_HEADER_SIZE;
+            journalSnapshotSize = snapshotSize;
+            journalSnapshotChecksum = snapshotChecksum;
+        } catch (Throwable t) {
+            log.error("Error resetting journal of {}, changes are written as snapshot", fileName, t);
+            if (tempFile.exists() && !tempFile.delete()) log.error("Cannot delete temp journal file.");
+        }
+    }
+
+    private void appendToJournal(protobuf.PersistableEnvelope delta, @Nullable Runnable completeHandler, boolean force) {
+        if ((!allServicesInitialized.get() && !force) || (keyRing != null && !keyRing.isUnlocked())) {
+            log.warn("Not permitted to write {} to disk, ignoring journal write.", fileName);
+            journalSnapshotChecksum = null; // the changes are written with the next snapshot
+            if (completeHandler != null) UserThread.execute(completeHandler);
+            return;
+        }
+
+        long ts = System.currentTimeMillis();
+        try {
+            byte[] payload = delta.toByteArray();
+            if (keyRing != null) payload = Encryption.encryptPayloadWithHmac(payload, keyRing.getSymmetricKey());
+            try (FileOutputStream fileOutputStream = new FileOutputStream(getJournalFile(), true);
+                 DataOutputStream dataOutputStream = new DataOutputStream(fileOutputStream)) {
+                dataOutputStream.writeInt(payload.length);
+                dataOutputStream.writeInt((int) getChecksum(payload));
+                dataOutputStream.write(payload);
+                dataOutputStream.flush();
+                fileOutputStream.getFD().sync();
+            }
+            journalSize += JOURNAL_RECORD_HEADER_SIZE + payload.length;
             persistenceRequested = false;
+        } catch (Throwable t) {
+            // write the changes with the next snapshot
+            journalSnapshotChecksum = null;
+            log.error("Error appending to journal of {}", fileName, t);
+        } finally {
+            long duration = System.currentTimeMillis() - ts;
+            if (duration > 100) {
+                log.info("Appending to journal of {} completed in {} msec", fileName, duration);
+            }
             if (completeHandler != null) {
                 UserThread.execute(completeHandler);
             }
         }
     }
 
+    // Merges the records of the journal into the snapshot. Reading stops at the first incomplete or corrupted record,
+    // which is truncated so new records are appended after the last valid record.
+    private protobuf.PersistableEnvelope replayJournal(protobuf.PersistableEnvelope snapshot, long snapshotChecksum, long snapshotSize) {
+        File journalFile = getJournalFile();
+        if (!journalFile.exists()) return snapshot;
+
+        long ts = System.currentTimeMillis();
+        protobuf.PersistableEnvelope.Builder builder = snapshot.toBuilder();
+        int numRecords = 0;
+        long validSize = 0;
+        try (DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)))) {
+            if (journalFile.length() < JOURNAL_HEADER_SIZE ||
+                    dataInputStream.readInt() != JOURNAL_MAGIC ||
+                    dataInputStream.readLong() != snapshotChecksum) {
+                log.info("Journal of {} does not belong to the snapshot, ignoring it", fileName);
+                return snapshot;
+            }
+            validSize = JOURNAL_HEADER_SIZE;
+            while (validSize + JOURNAL_RECORD_HEADER_SIZE <= journalFile.length()) {
+                int length = dataInputStream.readInt();
+                int checksum = dataInputStream.readInt();
+                if (length < 0 || validSize + JOURNAL_RECORD_HEADER_SIZE + length > journalFile.length()) break;
+                byte[] payload = new byte[length];
+                dataInputStream.readFully(payload);
+                if ((int) getChecksum(payload) != checksum) break;
+                if (keyRing != null) payload = Encryption.decryptPayloadWithHmac(payload, keyRing.getSymmetricKey());
+                builder.mergeFrom(payload);
+                validSize += JOURNAL_RECORD_HEADER_SIZE + length;
+                numRecords++;
+            }
+        } catch (Throwable t) {
+            log.warn("Reading journal of {} stopped after {} records: {}", fileName, numRecords, t.getMessage());
+        }
+
+        // drop incomplete record of interrupted write
+        if (validSize < journalFile.length()) {
+            log.warn("Truncating journal of {} from {} to {} bytes", fileName, journalFile.length(), validSize);
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(journalFile, "rw")) {
+                randomAccessFile.setLength(validSize);
+            } catch (IOException e) {
+                log.error("Cannot truncate journal of {}", fileName, e);
+                validSize = -1;
+            }
+        }
+        if (validSize >= JOURNAL_HEADER_SIZE) {
+            journalSize = validSize;
+            journalSnapshotSize = snapshotSize;
+            journalSnapshotChecksum = snapshotChecksum;
+        }
+        log.info("Replaying {} journal records of {} completed in {} ms", numRecords, fileName, System.currentTimeMillis() - ts);
+        return builder.build();
+    }
+
     private ExecutorService getWriteToDiskExecutor() {
         if (writeToDiskExecutor == null) {
             String name = "Write-" + fileName + "_to-disk";
@@ -0,0 +1,40 @@
+/*
+ * This file is part of Tuskex.
+ *
+ * Tuskex is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Tuskex is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Tuskex. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.common.proto.persistable;
+
+import com.google.protobuf.Message;
+import javax.annotation.Nullable;
+
+/**
+ * Envelope which is persisted incrementally. The PersistenceManager appends the changes to a journal and only writes
+ * the full envelope from time to time.
+ *
+ * On reading, the journaled deltas are merged into the proto of the full envelope in the order they were written.
+ * Repeated fields are appended by the merge, so deserialization must let later entries replace earlier entries with
+ * the same key.
+ */
+public interface JournaledPersistableEnvelope extends PersistableEnvelope {
+
+    /**
+     * Get the changes since the last call. Called on every persist, also if the full envelope is written.
+     *
+     * @return the changes as envelope proto, or null if they cannot be expressed as delta, e.g. if entries were removed
+     */
+    @Nullable
+    Message toPersistableDelta();
+}
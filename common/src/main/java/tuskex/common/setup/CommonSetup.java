@@ -24,6 +24,8 @@ import tuskex.common.app.DevEnv;
 import tuskex.common.app.Log;
 import tuskex.common.app.Version;
 import tuskex.common.config.Config;
+import tuskex.common.metrics.Metrics;
+import tuskex.common.metrics.MetricsServer;
 import tuskex.common.util.Profiler;
 import tuskex.common.util.Utilities;
 import lombok.extern.slf4j.Slf4j;
@@ -31,6 +33,7 @@ import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.bitcoinj.store.BlockStoreException;
 import sun.misc.Signal;
 
+import java.io.IOException;
 import java.net.URISyntaxException;
 import java.nio.file.Paths;
 import java.util.concurrent.TimeUnit;
@@ -50,6 +53,7 @@ public class CommonSetup {
         setupSigIntHandlers(gracefulShutDownHandler);
 
         DevEnv.setup(config);
+        maybeStartMetricsServer(config);
     }
 
     public static void printSystemLoadPeriodically(int delayMin) {
@@ -107,6 +111,21 @@ public class CommonSetup {
         });
     }
 
+    protected static void maybeStartMetricsServer(Config config) {
+        if (config.metricsPort == Config.UNSPECIFIED_PORT)
+            return;
+
+        Runtime runtime = Runtime.getRuntime();
+        Metrics.gauge("tuskex_jvm_memory_used_bytes", "Used heap memory", () -> runtime.totalMemory() - runtime.freeMemory());
+        Metrics.gauge("tuskex_jvm_memory_max_bytes", "Max heap memory", runtime::maxMemory);
+        Metrics.gauge("tuskex_jvm_threads", "Number of live threads", Thread::activeCount);
+        try {
+            new MetricsServer(Metrics.getRegistry(), config.metricsPort).start();
+        } catch (IOException e) {
+            log.error("Could not start metrics server at port {}: {}", config.metricsPort, e.toString());
+        }
+    }
+
     protected static void maybePrintPathOfCodeSource() {
         try {
             final String pathOfCodeSource = Utilities.getPathOfCodeSource();
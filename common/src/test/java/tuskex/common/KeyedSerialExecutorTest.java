@@ -0,0 +1,98 @@
+/*
+ * This file is part of Tuskex.
+ *
+ * Tuskex is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Tuskex is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Tuskex. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.common;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class KeyedSerialExecutorTest {
+    private final ExecutorService pool = Executors.newFixedThreadPool(2);
+    private final KeyedSerialExecutor executor = new KeyedSerialExecutor(pool);
+
+    @AfterEach
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void testTasksOfSameKeyRunInOrder() throws Exception {
+        List<Integer> results = new ArrayList<>();
+        Future<?> last = null;
+        for (int i = 0; i < 100; i++) {
+            int value = i;
+            last = executor.execute(() -> results.add(value), "key");
+        }
+        last.get(5, TimeUnit.SECONDS);
+
+        for (int i = 0; i < 100; i++) assertEquals(i, results.get(i));
+    }
+
+    @Test
+    public void testKeysRunConcurrentlyAndIdleKeysAreRemoved() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        Future<?> blocking = executor.execute(() -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "blocked");
+        executor.execute(() -> {}, "blocked");
+        executor.execute(() -> {}, "other").get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, executor.getQueueDepth());
+        blocked.countDown();
+        blocking.get(5, TimeUnit.SECONDS);
+        executor.await("blocked", 5000);
+        executor.await("other", 5000);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (executor.getNumActiveKeys() > 0 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertEquals(0, executor.getNumActiveKeys());
+        assertEquals(0, executor.getQueueDepth());
+    }
+
+    @Test
+    public void testAwaitCancelsTasksAfterTimeout() throws Exception {
+        Future<?> blocking = executor.execute(() -> {
+            try {
+                Thread.sleep(60000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "key");
+        Future<?> queued = executor.execute(() -> {}, "key");
+
+        executor.await("key", 100);
+
+        assertTrue(blocking.isCancelled());
+        assertTrue(queued.isCancelled());
+        executor.execute(() -> {}, "key").get(5, TimeUnit.SECONDS);
+    }
+}
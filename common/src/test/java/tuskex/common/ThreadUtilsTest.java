@@ -0,0 +1,100 @@
+/*
+ * This file is part of Tuskex.
+ *
+ * Tuskex is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Tuskex is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Tuskex. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ThreadUtilsTest {
+
+    @Test
+    public void testBlockedThreadIdsDoNotDelayOtherThreadIds() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<?>> blocking = new ArrayList<>();
+        try {
+            for (int i = 0; i < ThreadUtils.KEYED_POOL_MAX_THREADS - 1; i++) {
+                blocking.add(ThreadUtils.execute(() -> awaitUninterruptibly(release), "blocked-" + i));
+            }
+
+            ThreadUtils.execute(() -> {}, "not-blocked").get(5, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+        }
+        for (Future<?> future : blocking) future.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testPoolThreadsAreBoundedDaemonThreads() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<?>> blocking = new ArrayList<>();
+        AtomicBoolean nonDaemonThread = new AtomicBoolean();
+        try {
+            for (int i = 0; i < ThreadUtils.KEYED_POOL_MAX_THREADS + 10; i++) {
+                blocking.add(ThreadUtils.execute(() -> {
+                    if (!Thread.currentThread().isDaemon()) nonDaemonThread.set(true);
+                    awaitUninterruptibly(release);
+                }, "bounded-" + i));
+            }
+
+            assertTrue(ThreadUtils.getNumPoolThreads() <= ThreadUtils.KEYED_POOL_MAX_THREADS);
+        } finally {
+            release.countDown();
+        }
+        for (Future<?> future : blocking) future.get(5, TimeUnit.SECONDS);
+        assertFalse(nonDaemonThread.get());
+    }
+
+    @Test
+    public void testShutDownWaitIsBounded() {
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            Future<?> blocking = ThreadUtils.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "blocked");
+            Future<?> queued = ThreadUtils.execute(() -> {}, "blocked");
+
+            ThreadUtils.shutDown("blocked", 100L);
+
+            assertTrue(blocking.isCancelled());
+            assertTrue(queued.isCancelled());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
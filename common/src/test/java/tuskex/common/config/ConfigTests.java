@@ -18,6 +18,7 @@ import static tuskex.common.config.Config.CONFIG_FILE;
 import static tuskex.common.config.Config.DEFAULT_CONFIG_FILE_NAME;
 import static tuskex.common.config.Config.HELP;
 import static tuskex.common.config.Config.TORRC_FILE;
+import static tuskex.common.config.Config.USE_NIO_FOR_P2P;
 import static tuskex.common.config.Config.USER_DATA_DIR;
 import static java.io.File.createTempFile;
 import static java.lang.String.format;
@@ -123,6 +124,13 @@ public class ConfigTests {
         assertTrue(actualMessage.contains(expectedMessage));
     }
 
+    @Test
+    public void whenNioOptionIsSetWithoutLocalhostForP2P_thenConfigExceptionIsThrown() {
+        Exception exception = assertThrows(ConfigException.class, () -> configWithOpts(opt(USE_NIO_FOR_P2P, "true")));
+
+        assertTrue(exception.getMessage().contains("The 'useNioForP2P' option requires 'useLocalhostForP2P'"));
+    }
+
     @Test
     public void whenUnrecognizedOptionIsSetInConfigFile_thenNoExceptionIsThrown() throws IOException {
         File configFile = createTempFile("tuskex", "properties");
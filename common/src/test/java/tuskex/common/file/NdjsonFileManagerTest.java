@@ -0,0 +1,88 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.common.file;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NdjsonFileManagerTest {
+    private static final long DAY_MS = 86400000;
+
+    @TempDir
+    File dir;
+
+    private List<String> lines(String segmentPath) throws IOException {
+        return Files.readAllLines(new File(dir, segmentPath).toPath(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testRecordsArePartitionedByDayAndKey() throws IOException {
+        NdjsonFileManager manager = new NdjsonFileManager(dir, true);
+        manager.append(List.of(
+                new NdjsonFileManager.Record(DAY_MS - 1, "USD", "{\"a\":1}"),
+                new NdjsonFileManager.Record(DAY_MS, "USD", "{\"a\":2}"),
+                new NdjsonFileManager.Record(DAY_MS + 1, "EUR", "{\"a\":3}")));
+        manager.append(List.of(new NdjsonFileManager.Record(DAY_MS + 2, "USD", "{\"a\":4}")));
+
+        assertEquals(List.of("{\"a\":1}"), lines("1970-01-01/USD.ndjson"));
+        assertEquals(List.of("{\"a\":2}", "{\"a\":4}"), lines("1970-01-02/USD.ndjson"));
+        assertEquals(List.of("{\"a\":3}"), lines("1970-01-02/EUR.ndjson"));
+        String manifest = Files.readString(new File(dir, "manifest.json").toPath());
+        assertTrue(manifest.contains("{\"day\": \"1970-01-02\", \"partition\": \"USD\", \"file\": \"1970-01-02/USD.ndjson\", \"records\": 2, \"bytes\": 16}"));
+    }
+
+    @Test
+    public void testRecordsOfPreviousRunAreSkipped() throws IOException {
+        new NdjsonFileManager(dir, true).append(List.of(new NdjsonFileManager.Record(0, "USD", "{\"a\":1}")));
+
+        NdjsonFileManager manager = new NdjsonFileManager(dir, true);
+        manager.append(List.of(
+                new NdjsonFileManager.Record(0, "USD", "{\"a\":1}"),
+                new NdjsonFileManager.Record(0, "USD", "{\"a\":2}")));
+
+        assertEquals(List.of("{\"a\":1}", "{\"a\":2}"), lines("1970-01-01/USD.ndjson"));
+    }
+
+    @Test
+    public void testIncompleteLineIsDropped() throws IOException {
+        new NdjsonFileManager(dir, true).append(List.of(new NdjsonFileManager.Record(0, "USD", "{\"a\":1}")));
+        try (FileOutputStream outputStream = new FileOutputStream(new File(dir, "1970-01-01/USD.ndjson"), true)) {
+            outputStream.write("{\"a\":".getBytes(StandardCharsets.UTF_8));
+        }
+
+        new NdjsonFileManager(dir, true).append(List.of(new NdjsonFileManager.Record(0, "USD", "{\"a\":2}")));
+
+        assertEquals(List.of("{\"a\":1}", "{\"a\":2}"), lines("1970-01-01/USD.ndjson"));
+    }
+
+    @Test
+    public void testMultiLineJsonIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new NdjsonFileManager.Record(0, "USD", "{\n}"));
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.common.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MetricsRegistryTest {
+    private final MetricsRegistry registry = new MetricsRegistry();
+
+    private String write() throws IOException {
+        StringWriter writer = new StringWriter();
+        registry.write(writer);
+        return writer.toString();
+    }
+
+    @Test
+    public void testCounterWithLabels() throws IOException {
+        registry.counter("test_messages_total", "Messages", "type", "Ping").inc();
+        registry.counter("test_messages_total", "Messages", "type", "Ping").inc(2);
+        registry.counter("test_messages_total", "Messages", "type", "Pong").inc();
+
+        assertSame(registry.counter("test_messages_total", "Messages", "type", "Ping"),
+                registry.counter("test_messages_total", "Messages", "type", "Ping"));
+        assertEquals("# HELP test_messages_total Messages\n" +
+                "# TYPE test_messages_total counter\n" +
+                "test_messages_total{type=\"Ping\"} 3\n" +
+                "test_messages_total{type=\"Pong\"} 1\n", write());
+    }
+
+    @Test
+    public void testGauge() throws IOException {
+        registry.gauge("test_size", "Size", () -> 1);
+        registry.gauge("test_size", "Size", () -> 2.5);
+
+        assertTrue(write().contains("test_size 2.5\n"));
+    }
+
+    @Test
+    public void testHistogram() throws IOException {
+        Histogram histogram = registry.histogram("test_seconds", "Latency");
+        histogram.observeMillis(3);
+        histogram.observeMillis(200);
+        histogram.observeMillis(120000);
+
+        String output = write();
+        assertTrue(output.contains("test_seconds_bucket{le=\"0.001\"} 0\n"));
+        assertTrue(output.contains("test_seconds_bucket{le=\"0.005\"} 1\n"));
+        assertTrue(output.contains("test_seconds_bucket{le=\"0.25\"} 2\n"));
+        assertTrue(output.contains("test_seconds_bucket{le=\"60.0\"} 2\n"));
+        assertTrue(output.contains("test_seconds_bucket{le=\"+Inf\"} 3\n"));
+        assertTrue(output.contains("test_seconds_count 3\n"));
+        assertEquals(120.203, histogram.getSum(), 1e-9);
+    }
+
+    @Test
+    public void testTypeConflict() {
+        registry.counter("test_metric", "Metric");
+
+        assertThrows(IllegalArgumentException.class, () -> registry.histogram("test_metric", "Metric"));
+    }
+}
@@ -60,6 +60,8 @@ import org.bitcoinj.core.Utils;
 public class SignedWitnessService {
     public static final long SIGNER_AGE_DAYS = 30;
     private static final long SIGNER_AGE = SIGNER_AGE_DAYS * ChronoUnit.DAYS.getDuration().toMillis();
+    // Max. number of witnesses signed by peers in a chain from an arbitrator signed witness
+    private static final int MAX_PEER_SIGNATURES_IN_CHAIN = 1000;
     public static final BigInteger MINIMUM_TRADE_AMOUNT_FOR_SIGNING = TuskexUtils.tskToAtomicUnits(.1);
 
     private final KeyRing keyRing;
@@ -86,6 +88,10 @@ public class SignedWitnessService {
     private final Map<P2PDataStorage.ByteArray, Boolean> verifySignatureWithDSAKeyResultCache = new HashMap<>();
     private final Map<P2PDataStorage.ByteArray, Boolean> verifySignatureWithECKeyResultCache = new HashMap<>();
 
+    // Signer checks are called at filtering the offer book and at trade limit checks many times, so we keep the time
+    // from which accounts are signers up to date instead of searching the signature chains on each call.
+    private final SignerTrustGraph signerTrustGraph;
+
 
     ///////////////////////////////////////////////////////////////////////////////////////////
     // Constructor
@@ -105,6 +111,9 @@ public class SignedWitnessService {
         this.signedWitnessStorageService = signedWitnessStorageService;
         this.user = user;
         this.filterManager = filterManager;
+        this.signerTrustGraph = new SignerTrustGraph(SIGNER_AGE, signedWitness ->
+                !filterManager.isWitnessSignerPubKeyBanned(Utils.HEX.encode(signedWitness.getWitnessOwnerPubKey())) &&
+                        verifySignature(signedWitness));
 
         // We need to add that early (before onAllServicesInitialized) as it will be used at startup.
         appendOnlyDataStoreService.addService(signedWitnessStorageService);
@@ -127,6 +136,8 @@ public class SignedWitnessService {
                 addToMap((SignedWitness) e);
         });
 
+        filterManager.filterProperty().addListener((observable, oldValue, newValue) -> onWitnessSignerBansChanged());
+
         if (p2PService.isBootstrapped()) {
             onBootstrapComplete();
         } else {
@@ -436,7 +447,7 @@ public class SignedWitnessService {
 
     private boolean verifySigner(SignedWitness signedWitness) {
         return getSignedWitnessSetByOwnerPubKey(signedWitness.getWitnessOwnerPubKey(), new Stack<>()).stream()
-                .anyMatch(w -> isValidSignerWitnessInternal(w, signedWitness.getDate(), new Stack<>()));
+                .anyMatch(w -> isValidSignerWitness(w, signedWitness.getDate()));
     }
 
     /**
@@ -448,10 +459,9 @@ public class SignedWitnessService {
      * @return true if accountAgeWitness is allowed to sign at time, false otherwise.
      */
     private boolean isSignerAccountAgeWitness(AccountAgeWitness accountAgeWitness, long time) {
-        Stack<P2PDataStorage.ByteArray> excludedPubKeys = new Stack<>();
         Set<SignedWitness> signedWitnessSet = getSignedWitnessSet(accountAgeWitness);
         for (SignedWitness signedWitness : signedWitnessSet) {
-            if (isValidSignerWitnessInternal(signedWitness, time, excludedPubKeys)) {
+            if (isValidSignerWitness(signedWitness, time)) {
                 return true;
             }
         }
@@ -459,6 +469,37 @@ public class SignedWitnessService {
         return false;
     }
 
+    /**
+     * Same result as isValidSignerWitnessInternal with an empty stack, but uses the signer trust graph. The chains
+     * are only searched if the signer is a signer early enough, but not by a chain which is acceptable here.
+     *
+     * @param signedWitness the signedWitness to validate
+     * @param time          the date the child SignedWitness was signed or current time if it is a leaf.
+     * @return true if signedWitness is valid, false otherwise.
+     */
+    private boolean isValidSignerWitness(SignedWitness signedWitness, long time) {
+        if (filterManager.isWitnessSignerPubKeyBanned(Utils.HEX.encode(signedWitness.getWitnessOwnerPubKey()))) {
+            return false;
+        }
+        if (!verifySignature(signedWitness)) {
+            return false;
+        }
+        if (signedWitness.isSignedByArbitrator()) {
+            return true;
+        }
+        if (!verifyDate(signedWitness, time)) {
+            return false;
+        }
+        // The trust graph has the earliest time over all chains, so if that is too late no chain is valid
+        Long signerSince = signerTrustGraph.getSignerSince(signedWitness.getSignerPubKey());
+        if (signerSince == null || signerSince > signedWitness.getDate()) {
+            return false;
+        }
+        return signerTrustGraph.isEarliestChainAcceptable(signedWitness.getSignerPubKey(),
+                signedWitness.getWitnessOwnerPubKey(), MAX_PEER_SIGNATURES_IN_CHAIN - 1) ||
+                isValidSignerWitnessInternal(signedWitness, time, new Stack<>());
+    }
+
     /**
      * Helper to isValidAccountAgeWitness(accountAgeWitness)
      *
@@ -483,7 +524,7 @@ public class SignedWitnessService {
             if (!verifyDate(signedWitness, childSignedWitnessDateMillis)) {
                 return false;
             }
-            if (excludedPubKeys.size() >= 2000) {
+            if (excludedPubKeys.size() >= 2 * MAX_PEER_SIGNATURES_IN_CHAIN) {
                 // Prevent DoS attack: an attacker floods the SignedWitness db with a long chain that takes lots of time to verify.
                 return false;
             }
@@ -510,6 +551,12 @@ public class SignedWitnessService {
         return signedWitnessDateMillis <= childSignedWitnessDateMinusChargebackPeriodMillis;
     }
 
+    // Bans can revoke signers, so the signer times are recomputed
+    @VisibleForTesting
+    void onWitnessSignerBansChanged() {
+        signerTrustGraph.invalidate();
+    }
+
     ///////////////////////////////////////////////////////////////////////////////////////////
     // Private
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -525,6 +572,8 @@ public class SignedWitnessService {
         P2PDataStorage.ByteArray ownerPubKey = new P2PDataStorage.ByteArray(signedWitness.getWitnessOwnerPubKey());
         signedWitnessSetByOwnerPubKey.putIfAbsent(ownerPubKey, new HashSet<>());
         signedWitnessSetByOwnerPubKey.get(ownerPubKey).add(signedWitness);
+
+        signerTrustGraph.add(signedWitness);
     }
 
     private void publishSignedWitness(SignedWitness signedWitness) {
@@ -544,6 +593,7 @@ public class SignedWitnessService {
     @VisibleForTesting
     public void removeSignedWitness(SignedWitness signedWitness) {
         signedWitnessMap.remove(signedWitness.getHashAsByteArray());
+        signerTrustGraph.remove(signedWitness);
 
         P2PDataStorage.ByteArray accountAgeWitnessHash = new P2PDataStorage.ByteArray(signedWitness.getAccountAgeWitnessHash());
         if (signedWitnessSetByAccountAgeWitnessHash.containsKey(accountAgeWitnessHash)) {
@@ -0,0 +1,182 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.core.account.sign;
+
+import tuskex.network.p2p.storage.P2PDataStorage;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Predicate;
+import javax.annotation.Nullable;
+
+/**
+ * Keeps for each witness owner pub key the earliest time from which it is a valid signer and the signed witness which
+ * made it a signer at that time, so signer checks are map lookups instead of a search through the signature chains.
+ *
+ * A signed witness makes its owner a signer signerAge after the date of the signature, if the signer of the witness
+ * was a signer at that date. A witness signed by an arbitrator makes its owner a signer at any time. The times grow
+ * along every chain of signatures, so they are computed like shortest paths in increasing order, starting from the
+ * witnesses signed by arbitrators. New witnesses can only lower times and are propagated incrementally. Anything
+ * which can raise times (removed witnesses, changed bans) invalidates the graph, which is rebuilt on the next query.
+ *
+ * The times are a lower bound: a chain is only used by SignedWitnessService if it does not loop back to the owner of
+ * the witness which is checked and is not too long, otherwise the chains are searched.
+ */
+class SignerTrustGraph {
+    static final long ALWAYS = Long.MIN_VALUE;
+
+    private static class Signer {
+        private final long since;
+        private final SignedWitness signedWitness;
+
+        private Signer(long since, SignedWitness signedWitness) {
+            this.since = since;
+            this.signedWitness = signedWitness;
+        }
+    }
+
+    private final long signerAge;
+    // whether a signed witness counts at all, i.e. its signature is valid and its owner is not banned
+    private final Predicate<SignedWitness> isAcceptable;
+
+    private final Set<SignedWitness> signedWitnesses = new HashSet<>();
+    private final Map<P2PDataStorage.ByteArray, Set<SignedWitness>> signedWitnessSetBySignerPubKey = new HashMap<>();
+    private final Map<P2PDataStorage.ByteArray, Signer> signerByOwnerPubKey = new HashMap<>();
+    private boolean isValid;
+
+    SignerTrustGraph(long signerAge, Predicate<SignedWitness> isAcceptable) {
+        this.signerAge = signerAge;
+        this.isAcceptable = isAcceptable;
+    }
+
+    synchronized void add(SignedWitness signedWitness) {
+        if (!signedWitnesses.add(signedWitness)) return;
+        signedWitnessSetBySignerPubKey.computeIfAbsent(new P2PDataStorage.ByteArray(signedWitness.getSignerPubKey()),
+                key -> new HashSet<>()).add(signedWitness);
+        if (!isValid) return;
+
+        PriorityQueue<Map.Entry<P2PDataStorage.ByteArray, Long>> queue = newQueue();
+        relax(signedWitness, queue);
+        propagate(queue);
+    }
+
+    synchronized void remove(SignedWitness signedWitness) {
+        if (!signedWitnesses.remove(signedWitness)) return;
+        P2PDataStorage.ByteArray signerPubKey = new P2PDataStorage.ByteArray(signedWitness.getSignerPubKey());
+        Set<SignedWitness> set = signedWitnessSetBySignerPubKey.get(signerPubKey);
+        if (set != null) {
+            set.remove(signedWitness);
+            if (set.isEmpty()) signedWitnessSetBySignerPubKey.remove(signerPubKey);
+        }
+        isValid = false;
+    }
+
+    synchronized void invalidate() {
+        isValid = false;
+    }
+
+    /**
+     * @return the earliest time from which the owner of the pub key is a signer, {@link #ALWAYS} if signed by an
+     * arbitrator, or null if it is no signer
+     */
+    @Nullable
+    synchronized Long getSignerSince(byte[] ownerPubKey) {
+        maybeRebuild();
+        Signer signer = signerByOwnerPubKey.get(new P2PDataStorage.ByteArray(ownerPubKey));
+        return signer != null ? signer.since : null;
+    }
+
+    /**
+     * Checks the chain of signatures which made the pub key a signer at the earliest time.
+     *
+     * @param signerPubKey the pub key of the signer
+     * @param excludedPubKey the pub key which must not have signed any witness in the chain
+     * @param maxPeerSignatures the maximum number of witnesses in the chain which are not signed by an arbitrator
+     * @return true if the chain ends at an arbitrator and satisfies the conditions, false otherwise
+     */
+    synchronized boolean isEarliestChainAcceptable(byte[] signerPubKey, byte[] excludedPubKey, int maxPeerSignatures) {
+        maybeRebuild();
+        Signer signer = signerByOwnerPubKey.get(new P2PDataStorage.ByteArray(signerPubKey));
+        int numPeerSignatures = 0;
+        // the times strictly decrease along the chain, so it cannot loop
+        while (signer != null && !signer.signedWitness.isSignedByArbitrator()) {
+            if (++numPeerSignatures > maxPeerSignatures) return false;
+            byte[] nextSignerPubKey = signer.signedWitness.getSignerPubKey();
+            if (Arrays.equals(nextSignerPubKey, excludedPubKey)) return false;
+            signer = signerByOwnerPubKey.get(new P2PDataStorage.ByteArray(nextSignerPubKey));
+        }
+        return signer != null;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void maybeRebuild() {
+        if (isValid) return;
+        signerByOwnerPubKey.clear();
+        PriorityQueue<Map.Entry<P2PDataStorage.ByteArray, Long>> queue = newQueue();
+        signedWitnesses.stream()
+                .filter(SignedWitness::isSignedByArbitrator)
+                .forEach(signedWitness -> relax(signedWitness, queue));
+        propagate(queue);
+        isValid = true;
+    }
+
+    // Applies the signed witness if its signer was a signer at the date of the signature
+    private void relax(SignedWitness signedWitness, PriorityQueue<Map.Entry<P2PDataStorage.ByteArray, Long>> queue) {
+        long since;
+        if (signedWitness.isSignedByArbitrator()) {
+            since = ALWAYS;
+        } else {
+            Signer signer = signerByOwnerPubKey.get(new P2PDataStorage.ByteArray(signedWitness.getSignerPubKey()));
+            if (signer == null || signer.since > signedWitness.getDate()) return;
+            since = signedWitness.getDate() + signerAge;
+        }
+
+        P2PDataStorage.ByteArray ownerPubKey = new P2PDataStorage.ByteArray(signedWitness.getWitnessOwnerPubKey());
+        Signer current = signerByOwnerPubKey.get(ownerPubKey);
+        if (current != null && current.since <= since) return;
+        if (!isAcceptable.test(signedWitness)) return;
+        signerByOwnerPubKey.put(ownerPubKey, new Signer(since, signedWitness));
+        queue.add(new AbstractMap.SimpleImmutableEntry<>(ownerPubKey, since));
+    }
+
+    // Owners are taken in order of their time, so each is final when it is taken unless it was lowered since
+    private void propagate(PriorityQueue<Map.Entry<P2PDataStorage.ByteArray, Long>> queue) {
+        while (!queue.isEmpty()) {
+            Map.Entry<P2PDataStorage.ByteArray, Long> entry = queue.poll();
+            Signer signer = signerByOwnerPubKey.get(entry.getKey());
+            if (signer == null || signer.since != entry.getValue()) continue;
+            Set<SignedWitness> signedBySigner = signedWitnessSetBySignerPubKey.get(entry.getKey());
+            if (signedBySigner == null) continue;
+            for (SignedWitness signedWitness : signedBySigner) {
+                if (!signedWitness.isSignedByArbitrator()) relax(signedWitness, queue);
+            }
+        }
+    }
+
+    private static PriorityQueue<Map.Entry<P2PDataStorage.ByteArray, Long>> newQueue() {
+        return new PriorityQueue<>(Map.Entry.comparingByValue());
+    }
+}
@@ -51,6 +51,7 @@ import tuskex.core.api.model.PaymentAccountFormField;
 import tuskex.core.app.AppStartupState;
 import tuskex.core.monetary.Price;
 import tuskex.core.offer.Offer;
+import tuskex.core.offer.OfferBookService.OfferBookChangedListener;
 import tuskex.core.offer.OfferDirection;
 import tuskex.core.offer.OpenOffer;
 import tuskex.core.payment.PaymentAccount;
@@ -59,9 +60,13 @@ import tuskex.core.support.dispute.Attachment;
 import tuskex.core.support.dispute.Dispute;
 import tuskex.core.support.dispute.DisputeResult;
 import tuskex.core.support.messages.ChatMessage;
+import tuskex.core.trade.ClosedTradeSummary;
 import tuskex.core.trade.Trade;
+import tuskex.core.trade.statistics.Candle;
+import tuskex.core.trade.statistics.CandleInterval;
 import tuskex.core.trade.statistics.TradeStatistics3;
 import tuskex.core.trade.statistics.TradeStatisticsManager;
+import tuskex.core.trade.statistics.TradeStatisticsManager.TradeStatisticsPage;
 import tuskex.core.tsk.TskNodeSettings;
 import tuskex.proto.grpc.NotificationMessage;
 import java.io.IOException;
@@ -73,6 +78,7 @@ import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
+import javax.annotation.Nullable;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import monero.common.MoneroRpcConnection;
@@ -335,6 +341,14 @@ public class CoreApi {
         return new ArrayList<>(tradeStatisticsManager.getObservableTradeStatisticsSet());
     }
 
+    public TradeStatisticsPage getTradeStatistics(@Nullable String currencyCode, long fromDate, long toDate, @Nullable String cursor, int limit) {
+        return tradeStatisticsManager.getTradeStatistics(currencyCode, fromDate, toDate, cursor, limit);
+    }
+
+    public List<Candle> getCandles(String currencyCode, CandleInterval interval, long fromDate, long toDate) {
+        return tradeStatisticsManager.getCandles(currencyCode, interval, fromDate, toDate);
+    }
+
     public int getNumConfirmationsForMostRecentTransaction(String addressString) {
         return walletsService.getNumConfirmationsForMostRecentTransaction(addressString);
     }
@@ -400,6 +414,18 @@ public class CoreApi {
         return coreOffersService.getOffers(direction, currencyCode);
     }
 
+    public boolean isOfferListed(Offer offer, String direction, String currencyCode) {
+        return coreOffersService.isOfferListed(offer, direction, currencyCode);
+    }
+
+    public void addOfferBookChangedListener(OfferBookChangedListener listener) {
+        coreOffersService.addOfferBookChangedListener(listener);
+    }
+
+    public void removeOfferBookChangedListener(OfferBookChangedListener listener) {
+        coreOffersService.removeOfferBookChangedListener(listener);
+    }
+
     public List<OpenOffer> getMyOffers(String direction, String currencyCode) {
         return coreOffersService.getMyOffers(direction, currencyCode);
     }
@@ -520,6 +546,18 @@ public class CoreApi {
         return corePriceService.getMarketDepth(currencyCode);
     }
 
+    public MarketDepthInfo getMarketDepthWithLastPrices(String currencyCode) {
+        return corePriceService.getMarketDepthWithLastPrices(currencyCode);
+    }
+
+    public void addPriceUpdateListener(Runnable listener) {
+        corePriceService.addPriceUpdateListener(listener);
+    }
+
+    public void removePriceUpdateListener(Runnable listener) {
+        corePriceService.removePriceUpdateListener(listener);
+    }
+
     ///////////////////////////////////////////////////////////////////////////////////////////
     // Trades
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -557,6 +595,10 @@ public class CoreApi {
         return coreTradesService.getTrades();
     }
 
+    public List<ClosedTradeSummary> getArchivedTradeSummaries() {
+        return coreTradesService.getArchivedTradeSummaries();
+    }
+
     public String getTradeRole(String tradeId) {
         return coreTradesService.getTradeRole(tradeId);
     }
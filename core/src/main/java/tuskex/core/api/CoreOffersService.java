@@ -49,6 +49,7 @@ import tuskex.core.monetary.TraditionalMoney;
 import tuskex.core.offer.CreateOfferService;
 import tuskex.core.offer.Offer;
 import tuskex.core.offer.OfferBookService;
+import tuskex.core.offer.OfferBookService.OfferBookChangedListener;
 import tuskex.core.offer.OfferDirection;
 import static tuskex.core.offer.OfferDirection.BUY;
 import tuskex.core.offer.OfferFilterService;
@@ -118,11 +119,7 @@ public class CoreOffersService {
     // excludes my offers
     List<Offer> getOffers() {
         List<Offer> offers = new ArrayList<>(offerBookService.getOffers()).stream()
-                .filter(o -> !o.isMyOffer(keyRing))
-                .filter(o -> {
-                    Result result = offerFilter.canTakeOffer(o, coreContext.isApiUser());
-                    return result.isValid() || result == Result.HAS_NO_PAYMENT_ACCOUNT_VALID_FOR_OFFER;
-                })
+                .filter(this::isVisibleOffer)
                 .collect(Collectors.toList());
         offers.removeAll(getOffersWithDuplicateKeyImages(offers));
         return offers;
@@ -136,12 +133,29 @@ public class CoreOffersService {
     }
 
     Offer getOffer(String id) {
-        return getOffers().stream()
-                .filter(o -> o.getId().equals(id))
-                .findAny().orElseThrow(() ->
+        return offerBookService.getOffer(id)
+                .filter(this::isVisibleOffer)
+                .filter(o -> !hasVisibleOfferWithSameKeyImage(o))
+                .orElseThrow(() ->
                         new IllegalStateException(format("offer with id '%s' not found", id)));
     }
 
+    // true if the offer is in the offer book and returned by getOffers(direction, currencyCode)
+    boolean isOfferListed(Offer offer, String direction, String currencyCode) {
+        return offerMatchesDirectionAndCurrency(offer, direction, currencyCode)
+                && offerBookService.getOffer(offer.getId()).filter(o -> o == offer).isPresent()
+                && isVisibleOffer(offer)
+                && !hasVisibleOfferWithSameKeyImage(offer);
+    }
+
+    void addOfferBookChangedListener(OfferBookChangedListener listener) {
+        offerBookService.addOfferBookChangedListener(listener);
+    }
+
+    void removeOfferBookChangedListener(OfferBookChangedListener listener) {
+        offerBookService.removeOfferBookChangedListener(listener);
+    }
+
     List<OpenOffer> getMyOffers() {
         List<OpenOffer> offers = openOfferManager.getOpenOffers().stream()
                 .filter(o -> o.getOffer().isMyOffer(keyRing))
@@ -244,6 +258,24 @@ public class CoreOffersService {
 
     // -------------------------- PRIVATE HELPERS -----------------------------
 
+    private boolean isVisibleOffer(Offer offer) {
+        if (offer.isMyOffer(keyRing)) return false;
+        Result result = offerFilter.canTakeOffer(offer, coreContext.isApiUser());
+        return result.isValid() || result == Result.HAS_NO_PAYMENT_ACCOUNT_VALID_FOR_OFFER;
+    }
+
+    private boolean hasVisibleOfferWithSameKeyImage(Offer offer) {
+        if (offer.getOfferPayload().getReserveTxKeyImages() == null) return false;
+        for (String keyImage : offer.getOfferPayload().getReserveTxKeyImages()) {
+            for (Offer offer2 : offerBookService.getOffersByKeyImage(keyImage)) {
+                if (offer2.getId().equals(offer.getId()) || !isVisibleOffer(offer2)) continue;
+                log.warn("Key image {} belongs to multiple offers, seen in offer {} and {}", keyImage, offer.getId(), offer2.getId());
+                return true;
+            }
+        }
+        return false;
+    }
+
     private Set<Offer> getOffersWithDuplicateKeyImages(List<Offer> offers) {
         Set<Offer> duplicateFundedOffers = new HashSet<Offer>();
         Set<String> seenKeyImages = new HashSet<String>();
@@ -37,6 +37,7 @@ package tuskex.core.api;
 import com.google.common.math.LongMath;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import tuskex.common.UserThread;
 import tuskex.core.api.model.MarketDepthInfo;
 import tuskex.core.api.model.MarketPriceInfo;
 import tuskex.core.locale.CurrencyUtil;
@@ -49,6 +50,7 @@ import tuskex.core.trade.TuskexUtils;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
@@ -62,10 +64,26 @@ class CorePriceService {
     private final PriceFeedService priceFeedService;
     private final OfferBookService offerBookService;
 
+    private final List<Runnable> priceUpdateListeners = new CopyOnWriteArrayList<>();
+
     @Inject
     public CorePriceService(PriceFeedService priceFeedService, OfferBookService offerBookService) {
         this.priceFeedService = priceFeedService;
         this.offerBookService = offerBookService;
+        UserThread.execute(() -> priceFeedService.updateCounterProperty().addListener((observable, oldValue, newValue) -> {
+            priceUpdateListeners.forEach(Runnable::run);
+        }));
+    }
+
+    /**
+     * Add a listener which is called on the user thread when market prices are updated.
+     */
+    public void addPriceUpdateListener(Runnable listener) {
+        priceUpdateListeners.add(listener);
+    }
+
+    public void removePriceUpdateListener(Runnable listener) {
+        priceUpdateListeners.remove(listener);
     }
 
     /**
@@ -96,6 +114,13 @@ class CorePriceService {
      */
      public MarketDepthInfo getMarketDepth(String currencyCode) throws ExecutionException, InterruptedException, TimeoutException, IllegalArgumentException  {
         if (priceFeedService.requestAllPrices().get(currencyCode.toUpperCase()) == null) throw new IllegalArgumentException("Currency not found: " + currencyCode) ;
+        return getMarketDepthWithLastPrices(currencyCode);
+    }
+
+    /**
+     * @return Data for market depth chart based on the last received market prices
+     */
+    public MarketDepthInfo getMarketDepthWithLastPrices(String currencyCode) {
 
         // Offer price can be null (if price feed unavailable), thus a null-tolerant comparator is used.
         Comparator<Offer> offerPriceComparator = Comparator.comparing(Offer::getPrice, Comparator.nullsLast(Comparator.naturalOrder()));
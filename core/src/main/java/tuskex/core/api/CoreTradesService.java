@@ -47,6 +47,7 @@ import tuskex.core.support.messages.ChatMessage;
 import tuskex.core.support.traderchat.TradeChatSession;
 import tuskex.core.support.traderchat.TraderChatManager;
 import tuskex.core.trade.ClosedTradableManager;
+import tuskex.core.trade.ClosedTradeSummary;
 import tuskex.core.trade.Tradable;
 import tuskex.core.trade.Trade;
 import tuskex.core.trade.TradeManager;
@@ -233,6 +234,12 @@ class CoreTradesService {
         return trades;
     }
 
+    List<ClosedTradeSummary> getArchivedTradeSummaries() {
+        coreWalletsService.verifyWalletsAreAvailable();
+        coreWalletsService.verifyEncryptedWalletIsUnlocked();
+        return closedTradableManager.getArchivedTradeSummaries();
+    }
+
     List<ChatMessage> getChatMessages(String tradeId) {
         Trade trade;
         var tradeOptional = tradeManager.getOpenTrade(tradeId);
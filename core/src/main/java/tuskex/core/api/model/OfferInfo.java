@@ -22,11 +22,15 @@ import tuskex.core.api.model.builder.OfferInfoBuilder;
 import tuskex.core.monetary.Price;
 import tuskex.core.offer.Offer;
 import tuskex.core.offer.OpenOffer;
+import tuskex.core.payment.payload.PaymentMethod;
+import tuskex.core.trade.ClosedTradeSummary;
+import tuskex.core.util.VolumeUtil;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.ToString;
 
 import javax.annotation.Nullable;
+import java.math.BigInteger;
 import java.util.Optional;
 
 import static tuskex.common.util.MathUtils.exactMultiply;
@@ -120,6 +124,39 @@ public class OfferInfo implements Payload {
                 .build();
     }
 
+    /**
+     * Build the offer info of an archived trade from its summary. Fields which the summary does not hold are empty.
+     */
+    public static OfferInfo toOfferInfo(ClosedTradeSummary summary) {
+        var currencyCode = summary.getCurrencyCode();
+        var price = summary.getOfferPrice() == 0 ?
+                requireNonNull(summary.getTradePrice()) :
+                Price.valueOf(currencyCode, summary.getOfferPrice());
+        return new OfferInfoBuilder()
+                .withId(summary.getId())
+                .withDirection(summary.getOfferDirection().name())
+                .withPrice(reformatMarketPrice(price.toPlainString(), currencyCode))
+                .withUseMarketBasedPrice(summary.isUseMarketBasedPrice())
+                .withMarketPriceMarginPct(exactMultiply(summary.getMarketPriceMarginPct(), 100))
+                .withAmount(summary.getOfferAmount())
+                .withMinAmount(summary.getOfferMinAmount())
+                .withVolume(formatVolume(VolumeUtil.getVolume(BigInteger.valueOf(summary.getOfferAmount()), price)))
+                .withMinVolume(formatVolume(VolumeUtil.getVolume(BigInteger.valueOf(summary.getOfferMinAmount()), price)))
+                .withPaymentAccountId("")
+                .withPaymentMethodId(summary.getPaymentMethodId())
+                .withPaymentMethodShortName(PaymentMethod.getPaymentMethodOrNA(summary.getPaymentMethodId()).getShortName())
+                .withBaseCurrencyCode(summary.getBaseCurrencyCode())
+                .withCounterCurrencyCode(summary.getCounterCurrencyCode())
+                .withDate(summary.getOfferDate())
+                .withState(Offer.State.UNKNOWN.name())
+                .withIsMyOffer(summary.isMyOffer())
+                .withIsActivated(true)
+                .withOwnerNodeAddress("")
+                .withPubKeyRing("")
+                .withVersionNumber("")
+                .build();
+    }
+
     public static OfferInfo toMyOfferInfo(OpenOffer openOffer) {
         // An OpenOffer is always my offer.
         var offer = openOffer.getOffer();
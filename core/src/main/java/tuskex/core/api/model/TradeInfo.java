@@ -19,6 +19,9 @@ package tuskex.core.api.model;
 
 import tuskex.common.Payload;
 import tuskex.core.api.model.builder.TradeInfoV1Builder;
+import tuskex.core.monetary.Price;
+import tuskex.core.monetary.Volume;
+import tuskex.core.trade.ClosedTradeSummary;
 import tuskex.core.trade.Contract;
 import tuskex.core.trade.Trade;
 import lombok.EqualsAndHashCode;
@@ -207,6 +210,57 @@ public class TradeInfo implements Payload {
                 .build();
     }
 
+    /**
+     * Build the trade info of an archived trade from its summary. The contract is empty, the full trade info of an
+     * archived trade is returned for a single trade only.
+     */
+    public static TradeInfo toTradeInfo(ClosedTradeSummary summary) {
+        Price price = summary.getTradePrice();
+        Volume volume = summary.getTradeVolume();
+        return new TradeInfoV1Builder()
+                .withTradeId(summary.getId())
+                .withShortId(summary.getShortId())
+                .withDate(summary.getDate())
+                .withRole(summary.getRole())
+                .withMakerDepositTxId(summary.getMakerDepositTxId())
+                .withTakerDepositTxId(summary.getTakerDepositTxId())
+                .withPayoutTxId(summary.getPayoutTxId())
+                .withAmount(summary.getAmount())
+                .withMakerFee(summary.getMakerFee())
+                .withTakerFee(summary.getTakerFee())
+                .withBuyerSecurityDeposit(summary.getBuyerSecurityDeposit())
+                .withSellerSecurityDeposit(summary.getSellerSecurityDeposit())
+                .withBuyerDepositTxFee(summary.getBuyerDepositTxFee())
+                .withSellerDepositTxFee(summary.getSellerDepositTxFee())
+                .withBuyerPayoutTxFee(summary.getBuyerPayoutTxFee())
+                .withSellerPayoutTxFee(summary.getSellerPayoutTxFee())
+                .withBuyerPayoutAmount(summary.getBuyerPayoutAmount())
+                .withSellerPayoutAmount(summary.getSellerPayoutAmount())
+                .withTotalTxFee(summary.getTotalTxFee())
+                .withPrice(price == null ? "" : reformatMarketPrice(price.toPlainString(), summary.getCurrencyCode()))
+                .withVolume(volume == null ? "" : formatVolume(volume))
+                .withArbitratorNodeAddress(summary.getArbitratorAddress() == null ? "" : summary.getArbitratorAddress())
+                .withTradePeerNodeAddress(summary.getTradePeerAddress() == null ? "" : summary.getTradePeerAddress())
+                .withState(summary.getState().name())
+                .withPhase(summary.getState().getPhase().name())
+                .withPeriodState(summary.getPeriodState().name())
+                .withPayoutState(summary.getPayoutState().name())
+                .withDisputeState(summary.getDisputeState().name())
+                .withIsDepositsPublished(summary.isDepositsPublished())
+                .withIsDepositsConfirmed(summary.isDepositsConfirmed())
+                .withIsDepositsUnlocked(summary.isDepositsUnlocked())
+                .withIsPaymentSent(summary.isPaymentSent())
+                .withIsPaymentReceived(summary.isPaymentReceived())
+                .withIsPayoutPublished(summary.isPayoutPublished())
+                .withIsPayoutConfirmed(summary.isPayoutConfirmed())
+                .withIsPayoutUnlocked(summary.isPayoutUnlocked())
+                .withIsCompleted(summary.isCompleted())
+                .withContractAsJson("")
+                .withContract(ContractInfo.emptyContract.get())
+                .withOffer(toOfferInfo(summary))
+                .build();
+    }
+
     ///////////////////////////////////////////////////////////////////////////////////////////
     // PROTO BUFFER
     ///////////////////////////////////////////////////////////////////////////////////////////
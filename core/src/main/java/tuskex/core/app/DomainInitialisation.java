@@ -20,6 +20,7 @@ package tuskex.core.app;
 import com.google.inject.Inject;
 import tuskex.common.ClockWatcher;
 import tuskex.common.persistence.PersistenceManager;
+import tuskex.common.util.Utilities;
 import tuskex.core.account.sign.SignedWitnessService;
 import tuskex.core.account.witness.AccountAgeWitnessService;
 import tuskex.core.alert.PrivateNotificationManager;
@@ -36,6 +37,8 @@ import tuskex.core.offer.TriggerPriceService;
 import tuskex.core.payment.AmazonGiftCardAccount;
 import tuskex.core.payment.RevolutAccount;
 import tuskex.core.provider.price.PriceFeedService;
+import tuskex.core.support.dispute.AttachmentStore;
+import tuskex.core.support.dispute.DisputeManager;
 import tuskex.core.support.dispute.arbitration.ArbitrationManager;
 import tuskex.core.support.dispute.arbitration.arbitrator.ArbitratorManager;
 import tuskex.core.support.dispute.mediation.MediationManager;
@@ -51,9 +54,12 @@ import tuskex.core.user.User;
 import tuskex.core.tsk.Balances;
 import tuskex.network.p2p.P2PService;
 import tuskex.network.p2p.mailbox.MailboxMessageService;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Handles the initialisation of domain classes. We should refactor to the model that the domain classes listen on the
@@ -92,6 +98,7 @@ public class DomainInitialisation {
     private final User user;
     private final TriggerPriceService triggerPriceService;
     private final MailboxMessageService mailboxMessageService;
+    private final AttachmentStore attachmentStore;
 
     @Inject
     public DomainInitialisation(ClockWatcher clockWatcher,
@@ -123,7 +130,8 @@ public class DomainInitialisation {
                                 MarketAlerts marketAlerts,
                                 User user,
                                 TriggerPriceService triggerPriceService,
-                                MailboxMessageService mailboxMessageService) {
+                                MailboxMessageService mailboxMessageService,
+                                AttachmentStore attachmentStore) {
         this.clockWatcher = clockWatcher;
         this.arbitrationManager = arbitrationManager;
         this.mediationManager = mediationManager;
@@ -154,6 +162,7 @@ public class DomainInitialisation {
         this.user = user;
         this.triggerPriceService = triggerPriceService;
         this.mailboxMessageService = mailboxMessageService;
+        this.attachmentStore = attachmentStore;
     }
 
     public void initDomainServices(Consumer<String> rejectedTxErrorMessageHandler,
@@ -178,6 +187,9 @@ public class DomainInitialisation {
         closedTradableManager.onAllServicesInitialized();
         failedTradesManager.onAllServicesInitialized();
 
+        // after the sensitive data of old trades and disputes was cleared
+        removeUnreferencedAttachments();
+
         openOfferManager.onAllServicesInitialized();
 
         balances.onAllServicesInitialized();
@@ -228,4 +240,18 @@ public class DomainInitialisation {
                     .collect(Collectors.toList()));
         }
     }
+
+    private void removeUnreferencedAttachments() {
+        // archived trades written by an older version can reference attachments which are not known without reading them
+        closedTradableManager.getArchivedAttachmentHashes().ifPresent(archivedAttachmentHashes -> {
+            Set<String> referencedHashes = new HashSet<>(archivedAttachmentHashes);
+            Stream.concat(tradeManager.getAllTrades().stream().flatMap(trade -> trade.getChatMessages().stream()),
+                            Stream.<DisputeManager<?>>of(arbitrationManager, mediationManager, refundManager)
+                                    .flatMap(disputeManager -> disputeManager.getDisputesAsObservableList().stream())
+                                    .flatMap(dispute -> dispute.getChatMessages().stream()))
+                    .flatMap(chatMessage -> chatMessage.getAttachments().stream())
+                    .forEach(attachment -> referencedHashes.add(Utilities.bytesAsHexString(attachment.getHash())));
+            attachmentStore.removeUnreferenced(referencedHashes);
+        });
+    }
 }
@@ -176,15 +176,7 @@ public class Offer implements NetworkPayload, PersistablePayload {
         checkNotNull(priceFeedService, "priceFeed must not be null");
         MarketPrice marketPrice = priceFeedService.getMarketPrice(currencyCode);
         if (marketPrice != null && marketPrice.isRecentExternalPriceAvailable()) {
-            double factor;
-            double marketPriceMargin = offerPayload.getMarketPriceMarginPct();
-            if (CurrencyUtil.isCryptoCurrency(currencyCode)) {
-                factor = getDirection() == OfferDirection.SELL ?
-                        1 - marketPriceMargin : 1 + marketPriceMargin;
-            } else {
-                factor = getDirection() == OfferDirection.BUY ?
-                        1 - marketPriceMargin : 1 + marketPriceMargin;
-            }
+            double factor = getMarketPriceFactor();
             double marketPriceAsDouble = marketPrice.getPrice();
             double targetPriceAsDouble = marketPriceAsDouble * factor;
             try {
@@ -206,6 +198,20 @@ public class Offer implements NetworkPayload, PersistablePayload {
         }
     }
 
+    /**
+     * @return the factor applied to the market price to get the price of a market based offer
+     */
+    public double getMarketPriceFactor() {
+        double marketPriceMargin = offerPayload.getMarketPriceMarginPct();
+        if (CurrencyUtil.isCryptoCurrency(getCurrencyCode())) {
+            return getDirection() == OfferDirection.SELL ?
+                    1 - marketPriceMargin : 1 + marketPriceMargin;
+        } else {
+            return getDirection() == OfferDirection.BUY ?
+                    1 - marketPriceMargin : 1 + marketPriceMargin;
+        }
+    }
+
     public long getFixedPrice() {
         return offerPayload.getPrice();
     }
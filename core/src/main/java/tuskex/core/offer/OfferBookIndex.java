@@ -0,0 +1,173 @@
+/*
+ * This file is part of Tuskex.
+ *
+ * Tuskex is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Tuskex is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Tuskex. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.core.offer;
+
+import tuskex.core.monetary.Price;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.annotation.Nullable;
+
+/**
+ * Index of the offers in the offer book, maintained from the added and removed offer payloads.
+ *
+ * Offers are indexed by id, by reserve tx key image and by market (currency code and direction). Within a market,
+ * fixed price offers are sorted by price and market based offers by their factor on the market price, so both can be
+ * merged to a price sorted list without sorting.
+ */
+class OfferBookIndex {
+
+    private static final Comparator<Offer> FIXED_PRICE_COMPARATOR = Comparator.comparingLong(Offer::getFixedPrice)
+            .thenComparing(Offer::getId);
+    private static final Comparator<Offer> MARKET_PRICE_FACTOR_COMPARATOR = Comparator.comparingDouble(Offer::getMarketPriceFactor)
+            .thenComparing(Offer::getId);
+
+    private static class Market {
+        private final NavigableSet<Offer> fixedPriceOffers = new TreeSet<>(FIXED_PRICE_COMPARATOR);
+        private final NavigableSet<Offer> marketBasedOffers = new TreeSet<>(MARKET_PRICE_FACTOR_COMPARATOR);
+
+        private NavigableSet<Offer> getOffers(Offer offer) {
+            return offer.isUseMarketBasedPrice() ? marketBasedOffers : fixedPriceOffers;
+        }
+
+        private boolean isEmpty() {
+            return fixedPriceOffers.isEmpty() && marketBasedOffers.isEmpty();
+        }
+    }
+
+    private final Map<String, Offer> offersById = new HashMap<>();
+    private final Map<String, Set<String>> offerIdsByKeyImage = new HashMap<>();
+    private final Map<String, List<String>> keyImagesByOfferId = new HashMap<>(); // key images as indexed, the payload's list is mutable
+    private final Map<String, Market> markets = new HashMap<>();
+
+    /**
+     * Add the offer to the index, replacing an offer with the same id.
+     *
+     * @return the replaced offer or null
+     */
+    @Nullable
+    synchronized Offer put(Offer offer) {
+        Offer previous = remove(offer.getId());
+        offersById.put(offer.getId(), offer);
+        List<String> keyImages = getKeyImages(offer);
+        keyImagesByOfferId.put(offer.getId(), keyImages);
+        for (String keyImage : keyImages) {
+            offerIdsByKeyImage.computeIfAbsent(keyImage, k -> new HashSet<>()).add(offer.getId());
+        }
+        markets.computeIfAbsent(getMarketKey(offer.getCurrencyCode(), offer.getDirection()), k -> new Market())
+                .getOffers(offer).add(offer);
+        return previous;
+    }
+
+    /**
+     * Remove the offer with the given id from the index.
+     *
+     * @return the removed offer or null
+     */
+    @Nullable
+    synchronized Offer remove(String offerId) {
+        Offer offer = offersById.remove(offerId);
+        if (offer == null) return null;
+        for (String keyImage : keyImagesByOfferId.remove(offerId)) {
+            Set<String> offerIds = offerIdsByKeyImage.get(keyImage);
+            if (offerIds == null) continue;
+            offerIds.remove(offerId);
+            if (offerIds.isEmpty()) offerIdsByKeyImage.remove(keyImage);
+        }
+        String marketKey = getMarketKey(offer.getCurrencyCode(), offer.getDirection());
+        Market market = markets.get(marketKey);
+        if (market != null) {
+            market.getOffers(offer).remove(offer);
+            if (market.isEmpty()) markets.remove(marketKey);
+        }
+        return offer;
+    }
+
+    @Nullable
+    synchronized Offer get(String offerId) {
+        return offersById.get(offerId);
+    }
+
+    synchronized List<Offer> getAll() {
+        return new ArrayList<>(offersById.values());
+    }
+
+    synchronized int size() {
+        return offersById.size();
+    }
+
+    synchronized List<Offer> getOffersByKeyImage(String keyImage) {
+        List<Offer> offers = new ArrayList<>();
+        Set<String> offerIds = offerIdsByKeyImage.get(keyImage);
+        if (offerIds != null) offerIds.forEach(offerId -> offers.add(offersById.get(offerId)));
+        return offers;
+    }
+
+    /**
+     * Get the offers of a market sorted by price ascending. Market based offers without a price are added last.
+     */
+    List<Offer> getOffersSortedByPrice(String currencyCode, OfferDirection direction) {
+        List<Offer> fixedPriceOffers;
+        List<Offer> marketBasedOffers;
+        synchronized (this) {
+            Market market = markets.get(getMarketKey(currencyCode, direction));
+            if (market == null) return new ArrayList<>();
+            fixedPriceOffers = new ArrayList<>(market.fixedPriceOffers);
+            marketBasedOffers = new ArrayList<>(market.marketBasedOffers);
+        }
+
+        // merge by current price
+        List<Offer> sortedOffers = new ArrayList<>(fixedPriceOffers.size() + marketBasedOffers.size());
+        List<Offer> offersWithoutPrice = new ArrayList<>();
+        int fixedIndex = 0;
+        for (Offer marketBasedOffer : marketBasedOffers) {
+            Price price = marketBasedOffer.getPrice();
+            if (price == null) {
+                offersWithoutPrice.add(marketBasedOffer);
+                continue;
+            }
+            while (fixedIndex < fixedPriceOffers.size() && fixedPriceOffers.get(fixedIndex).getFixedPrice() <= price.getValue()) {
+                sortedOffers.add(fixedPriceOffers.get(fixedIndex++));
+            }
+            sortedOffers.add(marketBasedOffer);
+        }
+        sortedOffers.addAll(fixedPriceOffers.subList(fixedIndex, fixedPriceOffers.size()));
+        sortedOffers.addAll(offersWithoutPrice);
+        return sortedOffers;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private static String getMarketKey(String currencyCode, OfferDirection direction) {
+        return currencyCode.toUpperCase() + "_" + direction.name();
+    }
+
+    private static List<String> getKeyImages(Offer offer) {
+        List<String> keyImages = offer.getOfferPayload().getReserveTxKeyImages();
+        return keyImages == null ? new ArrayList<>() : new ArrayList<>(keyImages);
+    }
+}
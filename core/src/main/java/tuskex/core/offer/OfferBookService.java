@@ -39,6 +39,7 @@ import com.google.inject.name.Named;
 import tuskex.common.UserThread;
 import tuskex.common.config.Config;
 import tuskex.common.file.JsonFileManager;
+import tuskex.common.file.NdjsonFileManager;
 import tuskex.common.handlers.ErrorMessageHandler;
 import tuskex.common.handlers.ResultHandler;
 import tuskex.core.api.TskConnectionService;
@@ -54,18 +55,20 @@ import tuskex.network.p2p.P2PService;
 import tuskex.network.p2p.storage.HashMapChangedListener;
 import tuskex.network.p2p.storage.payload.ProtectedStorageEntry;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import monero.daemon.model.MoneroKeyImageSpentStatus;
 
 /**
  * Handles storage and retrieval of offers.
- * Uses an invalidation flag to only request the full offer map in case there was a change (anyone has added or removed an offer).
+ * Keeps an index of the offers in the offer book which is updated when offers are added or removed.
  */
 public class OfferBookService {
 
@@ -74,7 +77,10 @@ public class OfferBookService {
     private final List<OfferBookChangedListener> offerBookChangedListeners = new LinkedList<>();
     private final FilterManager filterManager;
     private final JsonFileManager jsonFileManager;
+    @Nullable
+    private final NdjsonFileManager ndjsonFileManager;
     private final TskConnectionService tskConnectionService;
+    private final OfferBookIndex offerBookIndex = new OfferBookIndex();
 
     // poll key images of offers
     private TskKeyImagePoller keyImagePoller;
@@ -97,12 +103,16 @@ public class OfferBookService {
                             FilterManager filterManager,
                             TskConnectionService tskConnectionService,
                             @Named(Config.STORAGE_DIR) File storageDir,
-                            @Named(Config.DUMP_STATISTICS) boolean dumpStatistics) {
+                            @Named(Config.DUMP_STATISTICS) boolean dumpStatistics,
+                            @Named(Config.DUMP_STATISTICS_INCREMENTALLY) boolean dumpStatisticsIncrementally) {
         this.p2PService = p2PService;
         this.priceFeedService = priceFeedService;
         this.filterManager = filterManager;
         this.tskConnectionService = tskConnectionService;
         jsonFileManager = new JsonFileManager(storageDir);
+        ndjsonFileManager = dumpStatistics && dumpStatisticsIncrementally ?
+                new NdjsonFileManager(new File(storageDir, "offers_statistics"), false) :
+                null;
 
         // listen for connection changes to monerod
         tskConnectionService.addConnectionListener((connection) -> {
@@ -115,18 +125,20 @@ public class OfferBookService {
         p2PService.addHashSetChangedListener(new HashMapChangedListener() {
             @Override
             public void onAdded(Collection<ProtectedStorageEntry> protectedStorageEntries) {
+                List<Offer> addedOffers = new ArrayList<>();
+                protectedStorageEntries.forEach(protectedStorageEntry -> {
+                    if (protectedStorageEntry.getProtectedStoragePayload() instanceof OfferPayload) {
+                        addedOffers.add(addToIndex((OfferPayload) protectedStorageEntry.getProtectedStoragePayload()));
+                    }
+                });
+                if (addedOffers.isEmpty()) return;
                 UserThread.execute(() -> {
-                    protectedStorageEntries.forEach(protectedStorageEntry -> {
-                        if (protectedStorageEntry.getProtectedStoragePayload() instanceof OfferPayload) {
-                            OfferPayload offerPayload = (OfferPayload) protectedStorageEntry.getProtectedStoragePayload();
-                            maybeInitializeKeyImagePoller();
-                            keyImagePoller.addKeyImages(offerPayload.getReserveTxKeyImages());
-                            Offer offer = new Offer(offerPayload);
-                            offer.setPriceFeedService(priceFeedService);
-                            setReservedFundsSpent(offer);
-                            synchronized (offerBookChangedListeners) {
-                                offerBookChangedListeners.forEach(listener -> listener.onAdded(offer));
-                            }
+                    addedOffers.forEach(offer -> {
+                        maybeInitializeKeyImagePoller();
+                        keyImagePoller.addKeyImages(offer.getOfferPayload().getReserveTxKeyImages());
+                        setReservedFundsSpent(offer);
+                        synchronized (offerBookChangedListeners) {
+                            offerBookChangedListeners.forEach(listener -> listener.onAdded(offer));
                         }
                     });
                 });
@@ -134,25 +146,50 @@ public class OfferBookService {
 
             @Override
             public void onRemoved(Collection<ProtectedStorageEntry> protectedStorageEntries) {
+                List<Offer> removedOffers = new ArrayList<>();
+                protectedStorageEntries.forEach(protectedStorageEntry -> {
+                    if (protectedStorageEntry.getProtectedStoragePayload() instanceof OfferPayload) {
+                        removedOffers.add(removeFromIndex((OfferPayload) protectedStorageEntry.getProtectedStoragePayload()));
+                    }
+                });
+                if (removedOffers.isEmpty()) return;
                 UserThread.execute(() -> {
-                    protectedStorageEntries.forEach(protectedStorageEntry -> {
-                        if (protectedStorageEntry.getProtectedStoragePayload() instanceof OfferPayload) {
-                            OfferPayload offerPayload = (OfferPayload) protectedStorageEntry.getProtectedStoragePayload();
-                            maybeInitializeKeyImagePoller();
-                            keyImagePoller.removeKeyImages(offerPayload.getReserveTxKeyImages());
-                            Offer offer = new Offer(offerPayload);
-                            offer.setPriceFeedService(priceFeedService);
-                            setReservedFundsSpent(offer);
-                            synchronized (offerBookChangedListeners) {
-                                offerBookChangedListeners.forEach(listener -> listener.onRemoved(offer));
-                            }
+                    removedOffers.forEach(offer -> {
+                        maybeInitializeKeyImagePoller();
+                        keyImagePoller.removeKeyImages(offer.getOfferPayload().getReserveTxKeyImages());
+                        setReservedFundsSpent(offer);
+                        synchronized (offerBookChangedListeners) {
+                            offerBookChangedListeners.forEach(listener -> listener.onRemoved(offer));
                         }
                     });
                 });
             }
         });
 
-        if (dumpStatistics) {
+        // index offers received before we listened
+        p2PService.getDataMap().values().stream()
+                .filter(data -> data.getProtectedStoragePayload() instanceof OfferPayload)
+                .forEach(data -> addToIndex((OfferPayload) data.getProtectedStoragePayload()));
+
+        if (ndjsonFileManager != null) {
+            p2PService.addP2PServiceListener(new BootstrapListener() {
+                @Override
+                public void onDataReceived() {
+                    addOfferBookChangedListener(new OfferBookChangedListener() {
+                        @Override
+                        public void onAdded(Offer offer) {
+                            appendOfferEvents("added", List.of(offer));
+                        }
+
+                        @Override
+                        public void onRemoved(Offer offer) {
+                            appendOfferEvents("removed", List.of(offer));
+                        }
+                    });
+                    UserThread.runAfter(() -> appendOfferEvents("active", getOffers()), 1);
+                }
+            });
+        } else if (dumpStatistics) {
             p2PService.addP2PServiceListener(new BootstrapListener() {
                 @Override
                 public void onDataReceived() {
@@ -233,24 +270,41 @@ public class OfferBookService {
     }
 
     public List<Offer> getOffers() {
-        return p2PService.getDataMap().values().stream()
-                .filter(data -> data.getProtectedStoragePayload() instanceof OfferPayload)
-                .map(data -> {
-                    OfferPayload offerPayload = (OfferPayload) data.getProtectedStoragePayload();
-                    Offer offer = new Offer(offerPayload);
-                    offer.setPriceFeedService(priceFeedService);
-                    setReservedFundsSpent(offer);
-                    return offer;
-                })
-                .collect(Collectors.toList());
+        return offerBookIndex.getAll();
+    }
+
+    public Optional<Offer> getOffer(String offerId) {
+        return Optional.ofNullable(offerBookIndex.get(offerId));
     }
 
     public List<Offer> getOffersByCurrency(String direction, String currencyCode) {
-        return getOffers().stream()
-                .filter(o -> o.getOfferPayload().getBaseCurrencyCode().equalsIgnoreCase(currencyCode) && o.getDirection().name() == direction)
+        return offerBookIndex.getOffersSortedByPrice(currencyCode, OfferDirection.valueOf(direction)).stream()
+                .filter(o -> o.getOfferPayload().getBaseCurrencyCode().equalsIgnoreCase(currencyCode))
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Get the offers of a market sorted by price ascending. Market based offers are added last if no market price is
+     * available.
+     *
+     * @param currencyCode the currency code of the market
+     * @param direction the direction of the offers
+     * @return the offers sorted by price
+     */
+    public List<Offer> getOffersSortedByPrice(String currencyCode, OfferDirection direction) {
+        return offerBookIndex.getOffersSortedByPrice(currencyCode, direction);
+    }
+
+    /**
+     * Get the offers which are funded by the given key image.
+     *
+     * @param keyImage the reserve tx key image
+     * @return the offers funded by the key image
+     */
+    public List<Offer> getOffersByKeyImage(String keyImage) {
+        return offerBookIndex.getOffersByKeyImage(keyImage);
+    }
+
     public void removeOfferAtShutDown(OfferPayload offerPayload) {
         removeOffer(offerPayload, null, null);
     }
@@ -265,8 +319,15 @@ public class OfferBookService {
         }
     }
 
+    public void removeOfferBookChangedListener(OfferBookChangedListener offerBookChangedListener) {
+        synchronized (offerBookChangedListeners) {
+            offerBookChangedListeners.remove(offerBookChangedListener);
+        }
+    }
+
     public void shutDown() {
         if (keyImagePoller != null) keyImagePoller.clearKeyImages();
+        if (ndjsonFileManager != null) ndjsonFileManager.shutDown();
     }
 
 
@@ -303,18 +364,41 @@ public class OfferBookService {
     }
 
     private void updateAffectedOffers(String keyImage) {
-        for (Offer offer : getOffers()) {
-            if (offer.getOfferPayload().getReserveTxKeyImages().contains(keyImage)) {
-                synchronized (offerBookChangedListeners) {
-                    offerBookChangedListeners.forEach(listener -> {
-                        listener.onRemoved(offer);
-                        listener.onAdded(offer);
-                    });
-                }
+        for (Offer offer : getOffersByKeyImage(keyImage)) {
+            setReservedFundsSpent(offer);
+            synchronized (offerBookChangedListeners) {
+                offerBookChangedListeners.forEach(listener -> {
+                    listener.onRemoved(offer);
+                    listener.onAdded(offer);
+                });
             }
         }
     }
 
+    // Reuses the indexed offer if the payload did not change
+    private Offer addToIndex(OfferPayload offerPayload) {
+        Offer offer = offerBookIndex.get(offerPayload.getId());
+        if (offer != null && offer.getOfferPayload().equals(offerPayload)) return offer;
+        offer = new Offer(offerPayload);
+        offer.setPriceFeedService(priceFeedService);
+        setReservedFundsSpent(offer);
+        offerBookIndex.put(offer);
+        return offer;
+    }
+
+    private Offer removeFromIndex(OfferPayload offerPayload) {
+        Offer offer = offerBookIndex.get(offerPayload.getId());
+        if (offer != null && offer.getOfferPayload().equals(offerPayload)) {
+            offerBookIndex.remove(offerPayload.getId());
+            return offer;
+        }
+
+        // the indexed offer was replaced by another payload with the same id
+        offer = new Offer(offerPayload);
+        offer.setPriceFeedService(priceFeedService);
+        return offer;
+    }
+
     private void setReservedFundsSpent(Offer offer) {
         if (keyImagePoller == null) return;
         for (String keyImage : offer.getOfferPayload().getReserveTxKeyImages()) {
@@ -325,30 +409,60 @@ public class OfferBookService {
     }
 
     private void doDumpStatistics() {
-        // We filter the case that it is a MarketBasedPrice but the price is not available
-        // That should only be possible if the price feed provider is not available
         final List<OfferForJson> offerForJsonList = getOffers().stream()
-                .filter(offer -> !offer.isUseMarketBasedPrice() || priceFeedService.getMarketPrice(offer.getCurrencyCode()) != null)
-                .map(offer -> {
-                    try {
-                        return new OfferForJson(offer.getDirection(),
-                                offer.getCurrencyCode(),
-                                offer.getMinAmount(),
-                                offer.getAmount(),
-                                offer.getPrice(),
-                                offer.getDate(),
-                                offer.getId(),
-                                offer.isUseMarketBasedPrice(),
-                                offer.getMarketPriceMarginPct(),
-                                offer.getPaymentMethod()
-                        );
-                    } catch (Throwable t) {
-                        // In case an offer was corrupted with null values we ignore it
-                        return null;
-                    }
-                })
+                .map(this::toOfferForJson)
                 .filter(Objects::nonNull)
                 .collect(Collectors.toList());
         jsonFileManager.writeToDiscThreaded(JsonUtil.objectToJson(offerForJsonList), "offers_statistics");
     }
+
+    // Appends offer events instead of rewriting all offers. "active" events list the offers at start up.
+    private void appendOfferEvents(String event, Collection<Offer> offers) {
+        long timestamp = System.currentTimeMillis();
+        List<NdjsonFileManager.Record> records = new ArrayList<>();
+        for (Offer offer : offers) {
+            OfferForJson offerForJson = toOfferForJson(offer);
+            if (offerForJson == null) continue;
+            String json = JsonUtil.objectToCompactJson(new OfferEventForJson(event, timestamp, offerForJson));
+            records.add(new NdjsonFileManager.Record(timestamp, offer.getCurrencyCode(), json));
+        }
+        ndjsonFileManager.appendThreaded(records);
+    }
+
+    @Nullable
+    private OfferForJson toOfferForJson(Offer offer) {
+        // We filter the case that it is a MarketBasedPrice but the price is not available
+        // That should only be possible if the price feed provider is not available
+        if (offer.isUseMarketBasedPrice() && priceFeedService.getMarketPrice(offer.getCurrencyCode()) == null) {
+            return null;
+        }
+        try {
+            return new OfferForJson(offer.getDirection(),
+                    offer.getCurrencyCode(),
+                    offer.getMinAmount(),
+                    offer.getAmount(),
+                    offer.getPrice(),
+                    offer.getDate(),
+                    offer.getId(),
+                    offer.isUseMarketBasedPrice(),
+                    offer.getMarketPriceMarginPct(),
+                    offer.getPaymentMethod()
+            );
+        } catch (Throwable t) {
+            // In case an offer was corrupted with null values we ignore it
+            return null;
+        }
+    }
+
+    private static class OfferEventForJson {
+        private final String event;
+        private final long timestamp;
+        private final OfferForJson offer;
+
+        private OfferEventForJson(String event, long timestamp, OfferForJson offer) {
+            this.event = event;
+            this.timestamp = timestamp;
+            this.offer = offer;
+        }
+    }
 }
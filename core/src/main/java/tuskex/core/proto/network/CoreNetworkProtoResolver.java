@@ -56,8 +56,11 @@ import tuskex.network.p2p.AckMessage;
 import tuskex.network.p2p.BundleOfEnvelopes;
 import tuskex.network.p2p.CloseConnectionMessage;
 import tuskex.network.p2p.FileTransferPart;
+import tuskex.network.p2p.FileTransferStatus;
 import tuskex.network.p2p.PrefixedSealedAndSignedMessage;
 import tuskex.network.p2p.peers.getdata.messages.GetDataResponse;
+import tuskex.network.p2p.peers.getdata.messages.GetDataSketchRequest;
+import tuskex.network.p2p.peers.getdata.messages.GetDataSketchResponse;
 import tuskex.network.p2p.peers.getdata.messages.GetUpdatedDataRequest;
 import tuskex.network.p2p.peers.getdata.messages.PreliminaryGetDataRequest;
 import tuskex.network.p2p.peers.keepalive.messages.Ping;
@@ -95,6 +98,10 @@ public class CoreNetworkProtoResolver extends CoreProtoResolver implements Netwo
                     return GetDataResponse.fromProto(proto.getGetDataResponse(), this, messageVersion);
                 case GET_UPDATED_DATA_REQUEST:
                     return GetUpdatedDataRequest.fromProto(proto.getGetUpdatedDataRequest(), messageVersion);
+                case GET_DATA_SKETCH_REQUEST:
+                    return GetDataSketchRequest.fromProto(proto.getGetDataSketchRequest(), messageVersion);
+                case GET_DATA_SKETCH_RESPONSE:
+                    return GetDataSketchResponse.fromProto(proto.getGetDataSketchResponse(), this, messageVersion);
 
                 case GET_PEERS_REQUEST:
                     return GetPeersRequest.fromProto(proto.getGetPeersRequest(), messageVersion);
@@ -181,6 +188,8 @@ public class CoreNetworkProtoResolver extends CoreProtoResolver implements Netwo
 
                 case FILE_TRANSFER_PART:
                     return FileTransferPart.fromProto(proto.getFileTransferPart(), messageVersion);
+                case FILE_TRANSFER_STATUS:
+                    return FileTransferStatus.fromProto(proto.getFileTransferStatus(), messageVersion);
 
                 default:
                     throw new ProtobufferException("Unknown proto message case (PB.NetworkEnvelope). messageCase=" +
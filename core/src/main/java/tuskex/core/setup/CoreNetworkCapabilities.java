@@ -39,7 +39,9 @@ public class CoreNetworkCapabilities {
                 Capability.REFUND_AGENT,
                 Capability.TRADE_STATISTICS_HASH_UPDATE,
                 Capability.NO_ADDRESS_PRE_FIX,
-                Capability.TRADE_STATISTICS_3
+                Capability.TRADE_STATISTICS_3,
+                Capability.GET_DATA_SKETCH,
+                Capability.FILE_TRANSFER_WINDOW
         );
 
         log.info(Capabilities.app.prettyPrint());
@@ -20,6 +20,7 @@ package tuskex.core.setup;
 import com.google.inject.Injector;
 import tuskex.common.proto.persistable.PersistedDataHost;
 import tuskex.core.offer.OpenOfferManager;
+import tuskex.core.support.dispute.AttachmentStore;
 import tuskex.core.support.dispute.arbitration.ArbitrationDisputeListService;
 import tuskex.core.support.dispute.mediation.MediationDisputeListService;
 import tuskex.core.support.dispute.refund.RefundDisputeListService;
@@ -52,6 +53,7 @@ public class CorePersistedDataHost {
         persistedDataHosts.add(injector.getInstance(AddressEntryList.class));
         persistedDataHosts.add(injector.getInstance(TskAddressEntryList.class));
         persistedDataHosts.add(injector.getInstance(EncryptedConnectionList.class));
+        persistedDataHosts.add(injector.getInstance(AttachmentStore.class));
         persistedDataHosts.add(injector.getInstance(OpenOfferManager.class));
         persistedDataHosts.add(injector.getInstance(TradeManager.class));
         persistedDataHosts.add(injector.getInstance(ClosedTradableManager.class));
@@ -18,28 +18,130 @@
 package tuskex.core.support.dispute;
 
 import com.google.protobuf.ByteString;
+import tuskex.common.crypto.Hash;
 import tuskex.common.proto.network.NetworkPayload;
-import lombok.Value;
+import tuskex.common.util.Utilities;
+import java.util.Optional;
+import javax.annotation.Nullable;
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
 
-@Value
+/**
+ * A file attached to a chat message. Attachments are identified by the SHA-256 of their bytes.
+ *
+ * Over the network the bytes are sent along with the chat message. An attachment created with its bytes hands them
+ * to the AttachmentStore, once the store confirmed the write the bytes are released and loaded from the store when
+ * they are needed. Persisted attachments only keep the hash once they are stored. Serializing an attachment does not
+ * change it.
+ */
+@Slf4j
+@Getter
+@EqualsAndHashCode
+@ToString(onlyExplicitlyIncluded = true)
 public final class Attachment implements NetworkPayload {
+    @ToString.Include
     private final String fileName;
-    private final byte[] bytes;
+    private final byte[] hash;
+    @Nullable
+    @EqualsAndHashCode.Exclude
+    @Getter(AccessLevel.NONE)
+    private volatile byte[] bytes;
 
     public Attachment(String fileName, byte[] bytes) {
+        this(fileName, Hash.getSha256Hash(bytes), bytes);
+        AttachmentStore store = AttachmentStore.getINSTANCE();
+        if (store != null && bytes.length > 0) store.putAsync(hash, bytes, this::releaseBytes);
+    }
+
+    private Attachment(String fileName, byte[] hash, @Nullable byte[] bytes) {
         this.fileName = fileName;
+        this.hash = hash;
         this.bytes = bytes;
     }
 
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // PROTO BUFFER
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // Sent with the bytes, the peer might not have the attachment
     @Override
     public protobuf.Attachment toProtoMessage() {
+        return toProtoMessage(getBytes());
+    }
+
+    /**
+     * @return the proto with the bytes, or empty if the attachment is not available, e.g. its file was deleted
+     */
+    public Optional<protobuf.Attachment> toProtoMessageIfAvailable() {
+        try {
+            return Optional.of(toProtoMessage());
+        } catch (IllegalStateException e) {
+            log.warn(e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    // Persisted as reference to the attachment store once it is stored there, until then with the bytes. An
+    // attachment without bytes in memory is a reference already.
+    public protobuf.Attachment toPersistableProtoMessage() {
+        byte[] bytes = this.bytes;
+        AttachmentStore store = AttachmentStore.getINSTANCE();
+        if (bytes != null && (store == null || !store.isStored(hash))) return toProtoMessage(bytes);
+        return protobuf.Attachment.newBuilder()
+                .setFileName(fileName)
+                .setHash(ByteString.copyFrom(hash))
+                .build();
+    }
+
+    private protobuf.Attachment toProtoMessage(byte[] bytes) {
         return protobuf.Attachment.newBuilder()
                 .setFileName(fileName)
                 .setBytes(ByteString.copyFrom(bytes))
+                .setHash(ByteString.copyFrom(hash))
                 .build();
     }
 
+    // A received attachment must contain the bytes. The hash is computed from the bytes, so a peer cannot reference
+    // an attachment in the store. Without bytes the attachment is empty.
     public static Attachment fromProto(protobuf.Attachment proto) {
         return new Attachment(proto.getFileName(), proto.getBytes().toByteArray());
     }
+
+    // Only a persisted attachment may reference the attachment store
+    public static Attachment fromPersistedProto(protobuf.Attachment proto) {
+        if (proto.getBytes().isEmpty() && !proto.getHash().isEmpty())
+            return new Attachment(proto.getFileName(), proto.getHash().toByteArray(), null);
+        return fromProto(proto);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * @return the bytes, read from the attachment store if not in memory
+     * @throws IllegalStateException if the bytes are not in memory and cannot be read from the attachment store
+     */
+    public byte[] getBytes() {
+        byte[] bytes = this.bytes;
+        if (bytes != null) return bytes;
+        AttachmentStore store = AttachmentStore.getINSTANCE();
+        bytes = store == null ? null : store.get(hash);
+        if (bytes == null) {
+            throw new IllegalStateException("Attachment " + fileName + " with hash " +
+                    Utilities.bytesAsHexString(hash) + " is not available");
+        }
+        return bytes;
+    }
+
+    // Called by the attachment store once the bytes are written
+    private void releaseBytes() {
+        AttachmentStore store = AttachmentStore.getINSTANCE();
+        if (store != null && store.isStored(hash)) bytes = null;
+    }
 }
@@ -0,0 +1,284 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.core.support.dispute;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import tuskex.common.config.Config;
+import tuskex.common.crypto.CryptoException;
+import tuskex.common.crypto.Encryption;
+import tuskex.common.crypto.Hash;
+import tuskex.common.crypto.KeyRing;
+import tuskex.common.proto.persistable.PersistedDataHost;
+import tuskex.common.util.Utilities;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Content addressed store of the chat attachments. Each attachment is stored once in a file named after the SHA-256
+ * of its bytes and encrypted with the symmetric key of the key ring, so the persisted disputes and trades only hold
+ * references to it. The same attachment in several chats is stored once.
+ *
+ * Attachments read from the store are only kept in a small cache, the bytes of all others stay on disk. Attachments
+ * are written in the background when they are created, so persisting a dispute or trade does not wait for the disk.
+ */
+@Slf4j
+@Singleton
+public class AttachmentStore implements PersistedDataHost {
+    static final String DIR_NAME = "attachments";
+    private static final long MAX_CACHED_BYTES = 8 * 1024 * 1024;
+
+    // Used by Attachment which is created in the static proto resolving
+    @Nullable
+    @Getter
+    private static volatile AttachmentStore INSTANCE;
+
+    private final File dir;
+    private final KeyRing keyRing;
+    // Names of the stored attachments and of the attachments which are being written
+    private final Set<String> storedNames = ConcurrentHashMap.newKeySet();
+    private final Set<String> pendingNames = ConcurrentHashMap.newKeySet();
+    // Names of the attachments passed to putAsync, they are referenced by an attachment created since the start and
+    // are not removed as unreferenced. Guarded by removalLock.
+    private final Set<String> pinnedNames = new HashSet<>();
+    private final Object removalLock = new Object();
+    private final ExecutorService executor = Utilities.getListeningExecutorService("AttachmentStore",
+            1,
+            1,
+            30,
+            new LinkedBlockingQueue<>());
+    private final LinkedHashMap<String, byte[]> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+
+    @Inject
+    public AttachmentStore(@Named(Config.STORAGE_DIR) File storageDir, KeyRing keyRing) {
+        this.dir = new File(storageDir, DIR_NAME);
+        this.keyRing = keyRing;
+        INSTANCE = this;
+    }
+
+    /**
+     * Wait for the pending writes and detach the store from the attachments.
+     */
+    public void shutDown() {
+        Utilities.shutdownAndAwaitTermination(executor, 10, TimeUnit.SECONDS);
+        if (INSTANCE == this) INSTANCE = null;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // PersistedDataHost
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void readPersisted(Runnable completeHandler) {
+        // Only the names are read up front, attachments are read when they are opened
+        if (!dir.exists() && !dir.mkdirs()) {
+            log.warn("Could not create attachment directory {}", dir);
+        }
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(".tmp")) {
+                    // left over from an interrupted write
+                    file.delete();
+                } else {
+                    storedNames.add(file.getName());
+                }
+            }
+        }
+        completeHandler.run();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * @param hash the SHA-256 of the bytes
+     * @return true if the attachment is stored, without accessing the disk
+     */
+    public boolean isStored(byte[] hash) {
+        return storedNames.contains(Utilities.bytesAsHexString(hash));
+    }
+
+    /**
+     * Store an attachment in the background unless it is stored or being stored already.
+     *
+     * @param hash the SHA-256 of the bytes
+     * @param bytes the bytes
+     * @param storedHandler called once the attachment is stored, also if it was stored already, so the caller can
+     *                      release the bytes
+     */
+    public void putAsync(byte[] hash, byte[] bytes, Runnable storedHandler) {
+        String name = Utilities.bytesAsHexString(hash);
+        boolean isStored;
+        synchronized (removalLock) {
+            pinnedNames.add(name);
+            isStored = storedNames.contains(name);
+        }
+        if (isStored) {
+            storedHandler.run();
+            return;
+        }
+        if (!keyRing.isUnlocked() || !pendingNames.add(name)) return;
+        try {
+            executor.execute(() -> {
+                try {
+                    if (put(hash, bytes)) storedHandler.run();
+                } finally {
+                    pendingNames.remove(name);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pendingNames.remove(name);
+            log.warn("Could not store attachment {} as the store is shut down", name);
+        }
+    }
+
+    /**
+     * Store an attachment unless it is stored already.
+     *
+     * @param hash the SHA-256 of the bytes
+     * @param bytes the bytes
+     * @return true if the attachment is stored
+     */
+    public synchronized boolean put(byte[] hash, byte[] bytes) {
+        File file = getFile(hash);
+        if (storedNames.contains(file.getName())) return true;
+        if (!keyRing.isUnlocked()) return false;
+        if (!Arrays.equals(hash, Hash.getSha256Hash(bytes))) {
+            log.error("Attachment does not match its hash {}", Utilities.bytesAsHexString(hash));
+            return false;
+        }
+        File tempFile = new File(dir, file.getName() + ".tmp");
+        try {
+            if (!dir.exists() && !dir.mkdirs()) throw new IOException("Could not create directory " + dir);
+            Files.write(tempFile.toPath(), Encryption.encryptPayloadWithHmac(bytes, keyRing.getSymmetricKey()));
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            storedNames.add(file.getName());
+            return true;
+        } catch (IOException | CryptoException e) {
+            log.error("Could not store attachment {}: {}", file.getName(), e.toString());
+            tempFile.delete();
+            return false;
+        }
+    }
+
+    /**
+     * @param hash the SHA-256 of the bytes
+     * @return the bytes or null if the attachment is not stored or cannot be read
+     */
+    @Nullable
+    public synchronized byte[] get(byte[] hash) {
+        String name = Utilities.bytesAsHexString(hash);
+        byte[] bytes = cache.get(name);
+        if (bytes != null) return bytes;
+
+        if (!storedNames.contains(name) || !keyRing.isUnlocked()) return null;
+        File file = getFile(hash);
+        try {
+            bytes = Encryption.decryptPayloadWithHmac(Files.readAllBytes(file.toPath()), keyRing.getSymmetricKey());
+        } catch (IOException | CryptoException e) {
+            log.error("Could not read attachment {}: {}", name, e.toString());
+            return null;
+        }
+        if (!Arrays.equals(hash, Hash.getSha256Hash(bytes))) {
+            log.error("Stored attachment {} does not match its hash", name);
+            return null;
+        }
+        cache(name, bytes);
+        return bytes;
+    }
+
+    /**
+     * Delete the stored attachments which are not referenced anymore, e.g. after the chat messages of a dispute or
+     * trade were removed with its sensitive data. Attachments stored after the call and attachments referenced again
+     * by a new attachment before they are deleted are kept.
+     *
+     * @param referencedHashes the hex encoded SHA-256 of all attachments of the persisted disputes and trades
+     */
+    public void removeUnreferenced(Set<String> referencedHashes) {
+        Set<String> unreferenced = new HashSet<>(storedNames);
+        unreferenced.removeAll(referencedHashes);
+        if (unreferenced.isEmpty()) return;
+        try {
+            executor.execute(() -> removeAll(unreferenced));
+        } catch (RejectedExecutionException e) {
+            log.warn("Could not delete unreferenced attachments as the store is shut down");
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private synchronized void removeAll(Set<String> names) {
+        int numDeleted = 0;
+        for (String name : names) {
+            // a new attachment with the same hash might have been deduplicated against the stored one since the
+            // unreferenced names were collected, it is pinned under the same lock before it checks the stored names
+            synchronized (removalLock) {
+                if (pinnedNames.contains(name)) continue;
+                if (!new File(dir, name).delete()) {
+                    log.warn("Could not delete attachment {}", name);
+                    continue;
+                }
+                storedNames.remove(name);
+            }
+            byte[] cached = cache.remove(name);
+            if (cached != null) cachedBytes -= cached.length;
+            numDeleted++;
+        }
+        log.info("Deleted {} unreferenced attachments", numDeleted);
+    }
+
+    private File getFile(byte[] hash) {
+        return new File(dir, Utilities.bytesAsHexString(hash));
+    }
+
+    private void cache(String name, byte[] bytes) {
+        if (bytes.length > MAX_CACHED_BYTES) return;
+        cache.put(name, bytes);
+        cachedBytes += bytes.length;
+        Iterator<Map.Entry<String, byte[]>> iterator = cache.entrySet().iterator();
+        while (cachedBytes > MAX_CACHED_BYTES && iterator.hasNext()) {
+            cachedBytes -= iterator.next().getValue().length;
+            iterator.remove();
+        }
+    }
+}
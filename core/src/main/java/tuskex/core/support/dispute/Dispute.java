@@ -63,6 +63,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -235,8 +236,18 @@ public final class Dispute implements NetworkPayload, PersistablePayload {
     // PROTO BUFFER
     ///////////////////////////////////////////////////////////////////////////////////////////
 
+    // Chat messages are sent with their attachments, e.g. in the DisputeOpenedMessage
     @Override
     public protobuf.Dispute toProtoMessage() {
+        return toProtoMessage(msg -> msg.toProtoNetworkEnvelope().getChatMessage());
+    }
+
+    // Attachments of the chat messages are persisted as references to the attachment store
+    public protobuf.Dispute toPersistableProtoMessage() {
+        return toProtoMessage(ChatMessage::toPersistableProtoChatMessage);
+    }
+
+    private protobuf.Dispute toProtoMessage(Function<ChatMessage, protobuf.ChatMessage> chatMessageToProto) {
         // Needed to avoid ConcurrentModificationException
         List<ChatMessage> clonedChatMessages = new ArrayList<>(chatMessages);
         protobuf.Dispute.Builder builder = protobuf.Dispute.newBuilder()
@@ -253,7 +264,7 @@ public final class Dispute implements NetworkPayload, PersistablePayload {
                 .setAgentPubKeyRing(agentPubKeyRing.toProtoMessage())
                 .setIsSupportTicket(isSupportTicket)
                 .addAllChatMessage(clonedChatMessages.stream()
-                        .map(msg -> msg.toProtoNetworkEnvelope().getChatMessage())
+                        .map(chatMessageToProto)
                         .collect(Collectors.toList()))
                 .setIsClosed(this.isClosed())
                 .setOpeningDate(openingDate)
@@ -278,6 +289,17 @@ public final class Dispute implements NetworkPayload, PersistablePayload {
     }
 
     public static Dispute fromProto(protobuf.Dispute proto, CoreProtoResolver coreProtoResolver) {
+        return fromProto(proto, coreProtoResolver, ChatMessage::fromPayloadProto);
+    }
+
+    // Attachments of the chat messages of persisted disputes can reference the attachment store
+    public static Dispute fromPersistedProto(protobuf.Dispute proto, CoreProtoResolver coreProtoResolver) {
+        return fromProto(proto, coreProtoResolver, ChatMessage::fromPersistedProto);
+    }
+
+    private static Dispute fromProto(protobuf.Dispute proto,
+                                     CoreProtoResolver coreProtoResolver,
+                                     Function<protobuf.ChatMessage, ChatMessage> chatMessageFromProto) {
         Dispute dispute = new Dispute(proto.getOpeningDate(),
                 proto.getTradeId(),
                 proto.getTraderId(),
@@ -304,7 +326,7 @@ public final class Dispute implements NetworkPayload, PersistablePayload {
                 null : ExtraDataMapValidator.getValidatedExtraDataMap(proto.getExtraDataMap()));
 
         dispute.chatMessages.addAll(proto.getChatMessageList().stream()
-                .map(ChatMessage::fromPayloadProto)
+                .map(chatMessageFromProto)
                 .collect(Collectors.toList()));
 
         if (proto.hasDisputeResult())
@@ -0,0 +1,138 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.core.support.dispute;
+
+import com.google.common.collect.ImmutableList;
+import tuskex.core.support.messages.ChatMessage;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of the disputes by trade id and dispute id and of their chat messages by uid.
+ *
+ * The index follows the changes of the dispute list and of the chat messages of each dispute in it, so it stays
+ * consistent however they are changed. Lookups do not lock and the lists returned are immutable.
+ */
+class DisputeIndex {
+    private final Map<String, List<Dispute>> disputesByTradeId = new ConcurrentHashMap<>();
+    private final Map<String, Dispute> disputesById = new ConcurrentHashMap<>();
+    private final Map<String, List<Dispute>> disputesByChatMessageUid = new ConcurrentHashMap<>();
+
+    // disputes are mutable and compare by value, so their listeners are kept by identity, guarded by this
+    private final Map<Dispute, ListChangeListener<ChatMessage>> chatMessageListeners = new IdentityHashMap<>();
+
+    DisputeIndex(ObservableList<Dispute> disputes) {
+        disputes.addListener((ListChangeListener<Dispute>) change -> {
+            while (change.next()) {
+                if (change.wasRemoved()) change.getRemoved().forEach(this::remove);
+                if (change.wasAdded()) change.getAddedSubList().forEach(this::add);
+            }
+        });
+        synchronized (disputes) {
+            disputes.forEach(this::add);
+        }
+    }
+
+    /**
+     * @return the disputes of the trade in the order they were added
+     */
+    List<Dispute> getDisputes(String tradeId) {
+        return disputesByTradeId.getOrDefault(tradeId, List.of());
+    }
+
+    Optional<Dispute> getDispute(String tradeId, int traderId) {
+        return getDisputes(tradeId).stream()
+                .filter(dispute -> dispute.getTraderId() == traderId)
+                .findFirst();
+    }
+
+    Optional<Dispute> getDisputeById(String disputeId) {
+        return Optional.ofNullable(disputesById.get(disputeId));
+    }
+
+    boolean hasChatMessage(Dispute dispute, String uid) {
+        return disputesByChatMessageUid.getOrDefault(uid, List.of()).stream()
+                .anyMatch(indexed -> indexed == dispute);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private synchronized void add(Dispute dispute) {
+        if (chatMessageListeners.containsKey(dispute)) return;
+        put(disputesByTradeId, dispute.getTradeId(), dispute);
+        disputesById.put(dispute.getId(), dispute);
+
+        ListChangeListener<ChatMessage> listener = change -> {
+            synchronized (this) {
+                while (change.next()) {
+                    if (change.wasRemoved()) {
+                        change.getRemoved().forEach(chatMessage -> remove(disputesByChatMessageUid, chatMessage.getUid(), dispute));
+                    }
+                    if (change.wasAdded()) {
+                        change.getAddedSubList().forEach(chatMessage -> put(disputesByChatMessageUid, chatMessage.getUid(), dispute));
+                    }
+                }
+            }
+        };
+        ObservableList<ChatMessage> chatMessages = dispute.getChatMessages();
+        chatMessages.addListener(listener);
+        chatMessageListeners.put(dispute, listener);
+        synchronized (chatMessages) {
+            chatMessages.forEach(chatMessage -> put(disputesByChatMessageUid, chatMessage.getUid(), dispute));
+        }
+    }
+
+    private synchronized void remove(Dispute dispute) {
+        ListChangeListener<ChatMessage> listener = chatMessageListeners.remove(dispute);
+        if (listener == null) return;
+        remove(disputesByTradeId, dispute.getTradeId(), dispute);
+        disputesById.computeIfPresent(dispute.getId(), (id, indexed) -> indexed == dispute ? null : indexed);
+
+        ObservableList<ChatMessage> chatMessages = dispute.getChatMessages();
+        chatMessages.removeListener(listener);
+        synchronized (chatMessages) {
+            chatMessages.forEach(chatMessage -> remove(disputesByChatMessageUid, chatMessage.getUid(), dispute));
+        }
+    }
+
+    private static void put(Map<String, List<Dispute>> map, String key, Dispute dispute) {
+        map.compute(key, (k, disputes) -> {
+            if (disputes == null) return List.of(dispute);
+            if (disputes.stream().anyMatch(indexed -> indexed == dispute)) return disputes;
+            return ImmutableList.<Dispute>builder().addAll(disputes).add(dispute).build();
+        });
+    }
+
+    private static void remove(Map<String, List<Dispute>> map, String key, Dispute dispute) {
+        map.computeIfPresent(key, (k, disputes) -> {
+            List<Dispute> remaining = disputes.stream()
+                    .filter(indexed -> indexed != dispute)
+                    .collect(ImmutableList.toImmutableList());
+            return remaining.isEmpty() ? null : remaining;
+        });
+    }
+}
@@ -32,6 +32,7 @@ import org.fxmisc.easybind.EasyBind;
 import javax.annotation.Nullable;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
@@ -46,6 +47,7 @@ public abstract class DisputeListService<T extends DisputeList<Dispute>> impleme
     private final IntegerProperty numOpenDisputes = new SimpleIntegerProperty();
     @Getter
     private final Set<String> disputedTradeIds = new HashSet<>();
+    private final DisputeIndex disputeIndex;
 
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -55,6 +57,7 @@ public abstract class DisputeListService<T extends DisputeList<Dispute>> impleme
     public DisputeListService(PersistenceManager<T> persistenceManager) {
         this.persistenceManager = persistenceManager;
         disputeList = getConcreteDisputeList();
+        disputeIndex = new DisputeIndex(disputeList.getObservableList());
 
         this.persistenceManager.initialize(disputeList, getFileName(), PersistenceManager.Source.PRIVATE);
     }
@@ -133,6 +136,22 @@ public abstract class DisputeListService<T extends DisputeList<Dispute>> impleme
         return disputeList.getObservableList();
     }
 
+    List<Dispute> findDisputes(String tradeId) {
+        return disputeIndex.getDisputes(tradeId);
+    }
+
+    Optional<Dispute> findDispute(String tradeId, int traderId) {
+        return disputeIndex.getDispute(tradeId, traderId);
+    }
+
+    Optional<Dispute> findDisputeById(String disputeId) {
+        return disputeIndex.getDisputeById(disputeId);
+    }
+
+    boolean hasChatMessage(Dispute dispute, String uid) {
+        return disputeIndex.hasChatMessage(dispute, uid);
+    }
+
 
     ///////////////////////////////////////////////////////////////////////////////////////////
     // Private
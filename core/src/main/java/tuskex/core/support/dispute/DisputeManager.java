@@ -182,8 +182,7 @@ public abstract class DisputeManager<T extends DisputeList<Dispute>> extends Sup
 
     @Override
     public List<ChatMessage> getAllChatMessages(String tradeId) {
-        return getDisputeList().stream()
-                .filter(dispute -> dispute.getTradeId().equals(tradeId))
+        return disputeListService.findDisputes(tradeId).stream()
                 .flatMap(dispute -> dispute.getChatMessages().stream())
                 .collect(Collectors.toList());
     }
@@ -196,7 +195,7 @@ public abstract class DisputeManager<T extends DisputeList<Dispute>> extends Sup
     @Override
     public void addAndPersistChatMessage(ChatMessage message) {
         findDispute(message).ifPresent(dispute -> {
-            if (dispute.getChatMessages().stream().noneMatch(m -> m.getUid().equals(message.getUid()))) {
+            if (!disputeListService.hasChatMessage(dispute, message.getUid())) {
                 dispute.addAndPersistChatMessage(message);
                 requestPersistence();
             } else {
@@ -295,14 +294,7 @@ public abstract class DisputeManager<T extends DisputeList<Dispute>> extends Sup
     }
 
     public Optional<Dispute> findOwnDispute(String tradeId) {
-        synchronized (getDisputeList()) {
-            T disputeList = getDisputeList();
-            if (disputeList == null) {
-                log.warn("disputes is null");
-                return Optional.empty();
-            }
-            return disputeList.stream().filter(e -> e.getTradeId().equals(tradeId)).findAny();
-        }
+        return findDispute(tradeId);
     }
 
     public void maybeClearSensitiveData() {
@@ -952,44 +944,19 @@ public abstract class DisputeManager<T extends DisputeList<Dispute>> extends Sup
     }
 
     protected Optional<Dispute> findDispute(String tradeId, int traderId) {
-        T disputeList = getDisputeList();
-        if (disputeList == null) {
-            log.warn("disputes is null");
-            return Optional.empty();
-        }
-        return disputeList.stream()
-                .filter(e -> e.getTradeId().equals(tradeId) && e.getTraderId() == traderId)
-                .findAny();
+        return disputeListService.findDispute(tradeId, traderId);
     }
 
     public Optional<Dispute> findDispute(String tradeId) {
-        T disputeList = getDisputeList();
-        if (disputeList == null) {
-            log.warn("disputes is null");
-            return Optional.empty();
-        }
-        return disputeList.stream()
-                .filter(e -> e.getTradeId().equals(tradeId))
-                .findAny();
+        return disputeListService.findDisputes(tradeId).stream().findFirst();
     }
 
     public List<Dispute> findDisputes(String tradeId) {
-        T disputeList = getDisputeList();
-        if (disputeList == null) return new ArrayList<Dispute>();
-        return disputeList.stream()
-                .filter(e -> e.getTradeId().equals(tradeId))
-                .collect(Collectors.toList());
+        return new ArrayList<>(disputeListService.findDisputes(tradeId));
     }
 
     public Optional<Dispute> findDisputeById(String disputeId) {
-        T disputeList = getDisputeList();
-        if (disputeList == null) {
-            log.warn("disputes is null");
-            return Optional.empty();
-        }
-        return disputeList.stream()
-                .filter(e -> e.getId().equals(disputeId))
-                .findAny();
+        return disputeListService.findDisputeById(disputeId);
     }
 
     public Optional<Trade> findTrade(Dispute dispute) {
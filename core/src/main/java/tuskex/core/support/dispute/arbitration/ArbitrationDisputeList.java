@@ -18,7 +18,6 @@
 package tuskex.core.support.dispute.arbitration;
 
 import com.google.protobuf.Message;
-import tuskex.common.proto.ProtoUtil;
 import tuskex.core.proto.CoreProtoResolver;
 import tuskex.core.support.SupportType;
 import tuskex.core.support.dispute.Dispute;
@@ -60,14 +59,14 @@ public final class ArbitrationDisputeList extends DisputeList<Dispute> {
         synchronized (this.list) {
             forEach(dispute -> checkArgument(dispute.getSupportType().equals(SupportType.ARBITRATION), "Support type has to be ARBITRATION"));
             return protobuf.PersistableEnvelope.newBuilder().setArbitrationDisputeList(protobuf.ArbitrationDisputeList.newBuilder()
-                    .addAllDispute(ProtoUtil.collectionToProto(getList(), protobuf.Dispute.class))).build();
+                    .addAllDispute(getList().stream().map(Dispute::toPersistableProtoMessage).collect(Collectors.toList()))).build();
         }
     }
 
     public static ArbitrationDisputeList fromProto(protobuf.ArbitrationDisputeList proto,
                                                    CoreProtoResolver coreProtoResolver) {
         List<Dispute> list = proto.getDisputeList().stream()
-                .map(disputeProto -> Dispute.fromProto(disputeProto, coreProtoResolver))
+                .map(disputeProto -> Dispute.fromPersistedProto(disputeProto, coreProtoResolver))
                 .filter(e -> e.getSupportType().equals(SupportType.ARBITRATION))
                 .collect(Collectors.toList());
 
@@ -20,6 +20,7 @@ package tuskex.core.support.dispute.mediation;
 import tuskex.network.p2p.AckMessage;
 import tuskex.network.p2p.AckMessageSourceType;
 import tuskex.network.p2p.FileTransferPart;
+import tuskex.network.p2p.FileTransferStatus;
 import tuskex.network.p2p.NodeAddress;
 import tuskex.network.p2p.network.NetworkNode;
 
@@ -27,12 +28,19 @@ import tuskex.common.UserThread;
 import tuskex.common.config.Config;
 import tuskex.common.util.Utilities;
 
+import com.google.protobuf.ByteString;
+
 import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
 import lombok.extern.slf4j.Slf4j;
@@ -42,6 +50,8 @@ import javax.annotation.Nullable;
 @Slf4j
 public class FileTransferReceiver extends FileTransferSession {
     protected final String zipFilePath;
+    @Nullable
+    private WindowedDownload windowedDownload;
 
     public FileTransferReceiver(NetworkNode networkNode,
                                 NodeAddress peerNodeAddress,
@@ -55,6 +65,10 @@ public class FileTransferReceiver extends FileTransferSession {
 
     public void processFilePartReceived(FileTransferPart ftp) {
         checkpointLastActivity();
+        if (ftp.isWindowed()) {
+            processWindowedPart(ftp);
+            return;
+        }
         // check that the supplied sequence number is in line with what we are expecting
         if (currentBlockSeqNum < 0) {
             // we have not yet started receiving a file, validate this ftp packet as the initiation request
@@ -102,14 +116,110 @@ public class FileTransferReceiver extends FileTransferSession {
         }
     }
 
+    @Override
+    public void resetSession() {
+        super.resetSession();
+        // the state of a windowed download is kept, so the sender can resume it after reconnecting
+        if (windowedDownload != null) {
+            windowedDownload.closeFile();
+        }
+    }
+
+    private void initWindowedReceiveSession(FileTransferPart ftp) {
+        networkNode.addMessageListener(this);
+        if (windowedDownload != null && windowedDownload.contentHash.equals(ftp.contentHash) &&
+                windowedDownload.fileLength == ftp.seqNumOrFileLength) {
+            log.info("Received a resume file transfer request, tradeId={}, traderId={}, received {} / {}",
+                    fullTradeId, traderId, windowedDownload.receivedBytes, windowedDownload.fileLength);
+        } else {
+            if (windowedDownload != null) {
+                windowedDownload.closeFile();
+            }
+            windowedDownload = new WindowedDownload(ftp.contentHash, ftp.seqNumOrFileLength);
+            try {
+                Files.deleteIfExists(Paths.get(zipFilePath));   // a partial file of a previous upload
+            } catch (IOException e) {
+                log.error(e.toString());
+            }
+            log.info("Received a windowed start file transfer request, tradeId={}, traderId={}, size={}", fullTradeId, traderId, ftp.seqNumOrFileLength);
+            log.info("New file will be written to {}", zipFilePath);
+        }
+        expectedFileLength = windowedDownload.fileLength;
+        fileOffsetBytes = windowedDownload.receivedBytes;
+        initSessionTimer();
+        FileTransferStatus status = new FileTransferStatus(networkNode.getNodeAddress(), fullTradeId, traderId,
+                UUID.randomUUID().toString(), ftp.uid, windowedDownload.receivedBytes);
+        log.info("Send FileTransferStatus to peer {}. received={}, requestUid={}", peerNodeAddress, status.receivedBytes, status.requestUid);
+        sendMessage(status, networkNode, peerNodeAddress);
+    }
+
+    private void processWindowedPart(FileTransferPart ftp) {
+        if (ftp.isInitialRequest()) {
+            initWindowedReceiveSession(ftp);
+            return;
+        }
+        if (windowedDownload == null || !windowedDownload.contentHash.equals(ftp.contentHash)) {
+            log.warn("Received FileTransferPart of an unknown file, seq {} UID={}", ftp.seqNumOrFileLength, ftp.uid);
+            return;
+        }
+        WindowedDownload download = windowedDownload;
+        int size = ftp.messageData.size();
+        if (ftp.offset < 0 || ftp.offset + size > download.fileLength) {
+            log.error("FileTransferPart at offset {} length {} exceeds the file length {}", ftp.offset, size, download.fileLength);
+            return;
+        }
+        try {
+            // parts may arrive out of order or be re-sent; parts we already have are only ACKed again
+            if (ftp.offset >= download.receivedBytes && !download.partsBeyondReceivedBytes.containsKey(ftp.offset)) {
+                download.write(zipFilePath, ftp.offset, ftp.messageData);
+                download.partsBeyondReceivedBytes.put(ftp.offset, size);
+                Integer partSize;
+                while ((partSize = download.partsBeyondReceivedBytes.remove(download.receivedBytes)) != null) {
+                    download.receivedBytes += partSize;
+                }
+                fileOffsetBytes = download.receivedBytes;
+                log.info("Sequence number {} for {}, received data {} / {}",
+                        ftp.seqNumOrFileLength, Utilities.getShortId(ftp.tradeId), fileOffsetBytes, expectedFileLength);
+            }
+            if (download.receivedBytes < download.fileLength) {
+                ackReceivedPart(ftp.uid, networkNode, peerNodeAddress);
+                return;
+            }
+            download.closeFile();
+            windowedDownload = null;
+            if (!download.contentHash.equals(ByteString.copyFrom(getSha256Hash(zipFilePath)))) {
+                log.error("Received file {} does not match its content hash, we discard it", zipFilePath);
+                Files.deleteIfExists(Paths.get(zipFilePath));
+                sendAckMessage(ftp.uid, false, "File does not match its content hash", networkNode, peerNodeAddress);
+                resetSession();
+                return;
+            }
+            log.info("Success!  We have received and verified all {} bytes", download.fileLength);
+            ackReceivedPart(ftp.uid, networkNode, peerNodeAddress);
+            ftpCallback.ifPresent(c -> c.onFtpComplete(this));
+            resetSession();
+        } catch (IOException e) {
+            log.error(e.toString());
+            e.printStackTrace();
+        }
+    }
+
     private void ackReceivedPart(String uid, NetworkNode networkNode, NodeAddress peerNodeAddress) {
+        sendAckMessage(uid, true, null, networkNode, peerNodeAddress);
+    }
+
+    private void sendAckMessage(String uid,
+                                boolean result,
+                                @Nullable String errorMessage,
+                                NetworkNode networkNode,
+                                NodeAddress peerNodeAddress) {
         AckMessage ackMessage = new AckMessage(peerNodeAddress,
                 AckMessageSourceType.LOG_TRANSFER,
                 FileTransferPart.class.getSimpleName(),
                 uid,
                 Utilities.getShortId(fullTradeId),
-                true,           // result
-                null);      // errorMessage
+                result,
+                errorMessage);
         log.info("Send AckMessage for {} to peer {}. id={}, uid={}",
                 ackMessage.getSourceMsgClassName(), peerNodeAddress, ackMessage.getSourceId(), ackMessage.getSourceUid());
         sendMessage(ackMessage, networkNode, peerNodeAddress);
@@ -123,4 +233,39 @@ public class FileTransferReceiver extends FileTransferSession {
         }
         return directory;
     }
+
+    private static class WindowedDownload {
+        private final ByteString contentHash;
+        private final long fileLength;
+        // bytes received contiguously from the start of the file
+        private long receivedBytes;
+        // sizes of the parts received beyond receivedBytes, by offset
+        private final Map<Long, Integer> partsBeyondReceivedBytes = new HashMap<>();
+        @Nullable
+        private RandomAccessFile file;
+
+        private WindowedDownload(ByteString contentHash, long fileLength) {
+            this.contentHash = contentHash;
+            this.fileLength = fileLength;
+        }
+
+        private void write(String zipFilePath, long offset, ByteString data) throws IOException {
+            if (file == null) {
+                file = new RandomAccessFile(zipFilePath, "rw");
+            }
+            file.seek(offset);
+            file.write(data.toByteArray());
+        }
+
+        private void closeFile() {
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (IOException e) {
+                    log.error(e.toString());
+                }
+                file = null;
+            }
+        }
+    }
 }
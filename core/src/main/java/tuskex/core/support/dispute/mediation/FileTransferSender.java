@@ -18,10 +18,13 @@
 package tuskex.core.support.dispute.mediation;
 
 import tuskex.network.p2p.FileTransferPart;
+import tuskex.network.p2p.FileTransferStatus;
 import tuskex.network.p2p.NodeAddress;
 import tuskex.network.p2p.network.NetworkNode;
 
+import tuskex.common.Timer;
 import tuskex.common.UserThread;
+import tuskex.common.app.Capability;
 import tuskex.common.config.Config;
 import tuskex.common.util.Utilities;
 
@@ -39,23 +42,42 @@ import java.nio.file.StandardCopyOption;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.annotation.Nullable;
 
 import static tuskex.common.file.FileUtil.doesFileContainKeyword;
 
+/**
+ * Uploads a zip file to the peer in FileTransferParts.
+ *
+ * If the peer supports it, the parts are sent in a window: up to windowSize parts are in flight, each part is ACKed
+ * by its uid and parts which are not ACKed in time are re-sent. The initial request carries the SHA-256 of the file,
+ * which the peer verifies after receiving the last part, and the peer responds with the number of bytes it already
+ * has of that file, so an interrupted upload continues where it stopped. Peers which ACK the initial request instead
+ * do not support windowed transfers and get the file with the stop-and-wait protocol, one part per ACK.
+ */
 @Slf4j
 public class FileTransferSender extends FileTransferSession {
+    static final int DEFAULT_WINDOW_SIZE = 8;
+    private static final long PART_ACK_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(20);
+
     protected final String zipFilePath;
     private final boolean isTest;
+    @Setter
+    private int windowSize = DEFAULT_WINDOW_SIZE;
+    @Nullable
+    private WindowedUpload windowedUpload;
 
     public FileTransferSender(NetworkNode networkNode,
                               NodeAddress peerNodeAddress,
@@ -113,6 +135,12 @@ public class FileTransferSender extends FileTransferSession {
         RandomAccessFile file = new RandomAccessFile(zipFilePath, "r");
         expectedFileLength = file.length();
         file.close();
+        closeWindowedUpload();
+        if (peerMaySupportWindowedTransfer()) {
+            windowedUpload = new WindowedUpload(zipFilePath, ByteString.copyFrom(getSha256Hash(zipFilePath)));
+            sendWindowedRequest();
+            return;
+        }
         // an empty block is sent as request to initiate file transfer, peer must ACK for transfer to continue
         dataAwaitingAck = Optional.of(new FileTransferPart(networkNode.getNodeAddress(), fullTradeId, traderId, UUID.randomUUID().toString(), expectedFileLength, ByteString.EMPTY));
         uploadData();
@@ -143,7 +171,11 @@ public class FileTransferSender extends FileTransferSession {
         if (transferIsInProgress()) {
             log.info("Retry send of current block");
             initSessionTimer();
-            uploadData();
+            if (windowedUpload != null) {
+                sendWindowedRequest();  // the peer tells us where to resume
+            } else {
+                uploadData();
+            }
         } else {
             UserThread.runAfter(() -> ftpCallback.ifPresent((f) -> f.onFtpTimeout("Could not re-send", this)), 1);
         }
@@ -160,6 +192,14 @@ public class FileTransferSender extends FileTransferSession {
     }
 
     public boolean processAckForFilePart(String ackUid) {
+        if (windowedUpload != null) {
+            if (!isAwaitingAck(ackUid)) {
+                return processWindowedAck(ackUid);
+            }
+            // only peers without support for windowed transfers ACK the request, they get the file with stop-and-wait
+            log.info("Peer {} ACKed the windowed file transfer request, we continue with stop-and-wait", peerNodeAddress);
+            closeWindowedUpload();
+        }
         if (dataAwaitingAck.isEmpty()) {
             log.warn("We received an ACK we were not expecting. {}", ackUid);
             return false;
@@ -189,10 +229,223 @@ public class FileTransferSender extends FileTransferSession {
         return true;
     }
 
+    public boolean processStatus(FileTransferStatus status) {
+        if (windowedUpload == null || !isAwaitingAck(status.requestUid)) {
+            log.warn("We received a FileTransferStatus we were not expecting. {}", status.requestUid);
+            return false;
+        }
+        if (status.receivedBytes < 0 || status.receivedBytes >= expectedFileLength || status.receivedBytes % FILE_BLOCK_SIZE != 0) {
+            log.warn("Peer reported {} received bytes which is not a part boundary, we send the whole file", status.receivedBytes);
+            fileOffsetBytes = 0;
+        } else {
+            fileOffsetBytes = status.receivedBytes;
+        }
+        if (fileOffsetBytes > 0) {
+            log.info("Resuming file transfer at {} / {} bytes", fileOffsetBytes, expectedFileLength);
+        }
+        dataAwaitingAck = Optional.empty();
+        currentBlockSeqNum = fileOffsetBytes / FILE_BLOCK_SIZE;
+        windowedUpload.nextOffset = fileOffsetBytes;
+        if (windowedUpload.resendTimer == null) {
+            windowedUpload.resendTimer = UserThread.runPeriodically(this::resendOverdueParts,
+                    PART_ACK_TIMEOUT_MILLIS / 4, TimeUnit.MILLISECONDS);
+        }
+        checkpointLastActivity();
+        updateProgress();
+        continueWindowedUpload();
+        return true;
+    }
+
+    public void processNackForFilePart(String nackUid) {
+        if (windowedUpload == null || !windowedUpload.partsAwaitingAck.containsKey(nackUid)) {
+            return;
+        }
+        // the peer discarded the file because it did not match the content hash, it restarts from 0 on retrySend
+        log.error("Peer could not verify the uploaded file {}", zipFilePath);
+        suspendWindowedUpload();
+        ftpCallback.ifPresent((f) -> f.onFtpTimeout("File verification failed", this));
+    }
+
+    @Override
+    public void resetSession() {
+        super.resetSession();
+        closeWindowedUpload();
+    }
+
+    @Override
+    protected void onSendFailed() {
+        if (windowedUpload == null) {
+            super.onSendFailed();
+            return;
+        }
+        // we keep the acknowledged offset of a windowed upload, retrySend continues from there
+        UserThread.execute(() -> {
+            if (windowedUpload != null && windowedUpload.isActive) {
+                suspendWindowedUpload();
+                ftpCallback.ifPresent((f) -> f.onFtpTimeout("Peer offline", this));
+            }
+        });
+    }
+
     public void updateProgress() {
         double progressPct = expectedFileLength > 0 ?
                 ((double) fileOffsetBytes / expectedFileLength) : 0.0;
         ftpCallback.ifPresent(c -> c.onFtpProgress(progressPct));
         log.info("ftp progress: {}", String.format("%.0f%%", progressPct * 100));
     }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Windowed transfer
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private boolean peerMaySupportWindowedTransfer() {
+        // if we are not connected yet we try, a peer without support ACKs the request like a stop-and-wait request
+        return networkNode.findPeersCapabilities(peerNodeAddress)
+                .map(capabilities -> capabilities.containsAll(Capability.FILE_TRANSFER_WINDOW))
+                .orElse(true);
+    }
+
+    private boolean isAwaitingAck(String uid) {
+        return dataAwaitingAck.isPresent() && dataAwaitingAck.get().uid.equals(uid);
+    }
+
+    private void sendWindowedRequest() {
+        suspendWindowedUpload();
+        windowedUpload.isActive = true;
+        // the peer responds with a FileTransferStatus, or ACKs the request if it does not support windowed transfers
+        dataAwaitingAck = Optional.of(new FileTransferPart(networkNode.getNodeAddress(), fullTradeId, traderId,
+                UUID.randomUUID().toString(), expectedFileLength, ByteString.EMPTY, 0, windowedUpload.contentHash));
+        uploadData();
+    }
+
+    private boolean processWindowedAck(String ackUid) {
+        FileTransferPart ftp = windowedUpload.partsAwaitingAck.remove(ackUid);
+        if (ftp == null) {
+            log.warn("We received an ACK we were not expecting. {}", ackUid);
+            return false;
+        }
+        windowedUpload.sendTimes.remove(ackUid);
+        windowedUpload.ackedParts.put(ftp.offset, ftp.messageData.size());
+        // fileOffsetBytes only advances over contiguously ACKed parts, so the transfer can resume from there
+        Integer partSize;
+        while ((partSize = windowedUpload.ackedParts.remove(fileOffsetBytes)) != null) {
+            fileOffsetBytes += partSize;
+            currentBlockSeqNum++;
+        }
+        checkpointLastActivity();
+        updateProgress();
+        if (fileOffsetBytes >= expectedFileLength) {
+            log.info("Success!  All {} bytes were ACKed.  Removing zip file {}", fileOffsetBytes, zipFilePath);
+            closeWindowedUpload();
+            try {
+                Files.delete(Paths.get(zipFilePath));
+            } catch (IOException e) {
+                log.error(e.toString());
+            }
+            ftpCallback.ifPresent(c -> c.onFtpComplete(this));
+            UserThread.runAfter(this::resetSession, 1);
+        } else {
+            continueWindowedUpload();
+        }
+        return true;
+    }
+
+    private void continueWindowedUpload() {
+        try {
+            while (windowedUpload != null && windowedUpload.isActive &&
+                    windowedUpload.partsAwaitingAck.size() < windowSize &&
+                    windowedUpload.nextOffset < expectedFileLength) {
+                long offset = windowedUpload.nextOffset;
+                byte[] buff = windowedUpload.read(offset, (int) Math.min(FILE_BLOCK_SIZE, expectedFileLength - offset));
+                FileTransferPart ftp = new FileTransferPart(networkNode.getNodeAddress(), fullTradeId, traderId,
+                        UUID.randomUUID().toString(), offset / FILE_BLOCK_SIZE, ByteString.copyFrom(buff), offset, windowedUpload.contentHash);
+                windowedUpload.nextOffset += buff.length;
+                windowedUpload.partsAwaitingAck.put(ftp.uid, ftp);
+                sendPart(ftp);
+            }
+        } catch (IOException e) {
+            log.error(e.toString());
+            e.printStackTrace();
+        }
+    }
+
+    private void sendPart(FileTransferPart ftp) {
+        windowedUpload.sendTimes.put(ftp.uid, System.currentTimeMillis());
+        log.info("Send FileTransferPart seq {} offset {} length {} to peer {}, UID={}",
+                ftp.seqNumOrFileLength, ftp.offset, ftp.messageData.size(), peerNodeAddress, ftp.uid);
+        sendMessage(ftp, networkNode, peerNodeAddress);
+    }
+
+    private void resendOverdueParts() {
+        if (windowedUpload == null || !windowedUpload.isActive ||
+                System.currentTimeMillis() - lastActivityTime > FTP_SESSION_TIMEOUT_MILLIS) {
+            return; // the session timer reports the timeout, retrySend continues the transfer
+        }
+        long now = System.currentTimeMillis();
+        new ArrayList<>(windowedUpload.partsAwaitingAck.values()).stream()
+                .filter(ftp -> now - windowedUpload.sendTimes.get(ftp.uid) > PART_ACK_TIMEOUT_MILLIS)
+                .forEach(ftp -> {
+                    log.info("Re-send FileTransferPart seq {} which was not ACKed in time", ftp.seqNumOrFileLength);
+                    sendPart(ftp);
+                });
+    }
+
+    private void suspendWindowedUpload() {
+        windowedUpload.isActive = false;
+        windowedUpload.partsAwaitingAck.clear();
+        windowedUpload.sendTimes.clear();
+        windowedUpload.ackedParts.clear();
+        dataAwaitingAck = Optional.empty();
+    }
+
+    private void closeWindowedUpload() {
+        if (windowedUpload != null) {
+            windowedUpload.close();
+            windowedUpload = null;
+        }
+    }
+
+    private static class WindowedUpload {
+        private final String zipFilePath;
+        private final ByteString contentHash;
+        // parts which were sent but not yet ACKed, by uid
+        private final Map<String, FileTransferPart> partsAwaitingAck = new LinkedHashMap<>();
+        private final Map<String, Long> sendTimes = new HashMap<>();
+        // sizes of the ACKed parts beyond fileOffsetBytes, by offset
+        private final Map<Long, Integer> ackedParts = new HashMap<>();
+        private long nextOffset;
+        private boolean isActive;
+        @Nullable
+        private RandomAccessFile file;
+        @Nullable
+        private Timer resendTimer;
+
+        private WindowedUpload(String zipFilePath, ByteString contentHash) {
+            this.zipFilePath = zipFilePath;
+            this.contentHash = contentHash;
+        }
+
+        private byte[] read(long offset, int length) throws IOException {
+            if (file == null) {
+                file = new RandomAccessFile(zipFilePath, "r");
+            }
+            byte[] buff = new byte[length];
+            file.seek(offset);
+            file.readFully(buff);
+            return buff;
+        }
+
+        private void close() {
+            if (resendTimer != null) {
+                resendTimer.stop();
+            }
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (IOException e) {
+                    log.error(e.toString());
+                }
+            }
+        }
+    }
 }
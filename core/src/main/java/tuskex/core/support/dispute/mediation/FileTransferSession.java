@@ -20,6 +20,7 @@ package tuskex.core.support.dispute.mediation;
 import tuskex.network.p2p.AckMessage;
 import tuskex.network.p2p.AckMessageSourceType;
 import tuskex.network.p2p.FileTransferPart;
+import tuskex.network.p2p.FileTransferStatus;
 import tuskex.network.p2p.NodeAddress;
 import tuskex.network.p2p.network.Connection;
 import tuskex.network.p2p.network.MessageListener;
@@ -34,8 +35,15 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
 import java.text.SimpleDateFormat;
 
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
 import java.util.Date;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
@@ -106,11 +114,17 @@ public abstract class FileTransferSession implements MessageListener {
     @Override
     public void onMessage(NetworkEnvelope networkEnvelope, Connection connection) {
         if (networkEnvelope instanceof FileTransferPart) {
-            // mediator receiving log file data
+            // mediator receiving log file data, initial requests are routed by the ArbitrationManager
             FileTransferPart ftp = (FileTransferPart) networkEnvelope;
-            if (this instanceof FileTransferReceiver) {
+            if (this instanceof FileTransferReceiver && isSessionMessage(ftp.tradeId, ftp.traderId) && !ftp.isInitialRequest()) {
                 ((FileTransferReceiver) this).processFilePartReceived(ftp);
             }
+        } else if (networkEnvelope instanceof FileTransferStatus) {
+            // trader receiving the response to a windowed file transfer request
+            FileTransferStatus status = (FileTransferStatus) networkEnvelope;
+            if (this instanceof FileTransferSender && isSessionMessage(status.tradeId, status.traderId)) {
+                ((FileTransferSender) this).processStatus(status);
+            }
         } else if (networkEnvelope instanceof AckMessage) {
             AckMessage ackMessage = (AckMessage) networkEnvelope;
             if (ackMessage.getSourceType() == AckMessageSourceType.LOG_TRANSFER) {
@@ -123,11 +137,18 @@ public abstract class FileTransferSession implements MessageListener {
                 } else {
                     log.warn("Received AckMessage with error state for {} with id {} and errorMessage={}",
                             ackMessage.getSourceMsgClassName(), ackMessage.getSourceId(), ackMessage.getErrorMessage());
+                    if (this instanceof FileTransferSender) {
+                        ((FileTransferSender) this).processNackForFilePart(ackMessage.getSourceUid());
+                    }
                 }
             }
         }
     }
 
+    private boolean isSessionMessage(String tradeId, int traderId) {
+        return fullTradeId.equals(tradeId) && this.traderId == traderId;
+    }
+
     protected void checkpointLastActivity() {
         lastActivityTime = System.currentTimeMillis();
     }
@@ -165,10 +186,28 @@ public abstract class FileTransferSession implements MessageListener {
                             " failed. That is expected if the peer is offline.\n\t" +
                             ".\n\tException=" + throwable.getMessage();
                     log.warn(errorSend);
-                    ftpCallback.ifPresent((f) -> f.onFtpTimeout("Peer offline", FileTransferSession.this));
-                    resetSession();
+                    onSendFailed();
                 }
             }, MoreExecutors.directExecutor());
         }
     }
+
+    protected void onSendFailed() {
+        ftpCallback.ifPresent((f) -> f.onFtpTimeout("Peer offline", this));
+        resetSession();
+    }
+
+    protected static byte[] getSha256Hash(String filePath) throws IOException {
+        try (InputStream inputStream = new FileInputStream(filePath)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buff = new byte[64 * 1024];
+            int nBytesRead;
+            while ((nBytesRead = inputStream.read(buff)) != -1) {
+                digest.update(buff, 0, nBytesRead);
+            }
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 }
@@ -18,7 +18,6 @@
 package tuskex.core.support.dispute.mediation;
 
 import com.google.protobuf.Message;
-import tuskex.common.proto.ProtoUtil;
 import tuskex.core.proto.CoreProtoResolver;
 import tuskex.core.support.SupportType;
 import tuskex.core.support.dispute.Dispute;
@@ -56,13 +55,13 @@ public final class MediationDisputeList extends DisputeList<Dispute> {
     @Override
     public Message toProtoMessage() {
         return protobuf.PersistableEnvelope.newBuilder().setMediationDisputeList(protobuf.MediationDisputeList.newBuilder()
-                .addAllDispute(ProtoUtil.collectionToProto(getList(), protobuf.Dispute.class))).build();
+                .addAllDispute(getList().stream().map(Dispute::toPersistableProtoMessage).collect(Collectors.toList()))).build();
     }
 
     public static MediationDisputeList fromProto(protobuf.MediationDisputeList proto,
                                                  CoreProtoResolver coreProtoResolver) {
         List<Dispute> list = proto.getDisputeList().stream()
-                .map(disputeProto -> Dispute.fromProto(disputeProto, coreProtoResolver))
+                .map(disputeProto -> Dispute.fromPersistedProto(disputeProto, coreProtoResolver))
                 .filter(e -> e.getSupportType().equals(SupportType.MEDIATION))
                 .collect(Collectors.toList());
         return new MediationDisputeList(list);
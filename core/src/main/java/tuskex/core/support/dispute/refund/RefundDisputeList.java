@@ -18,7 +18,6 @@
 package tuskex.core.support.dispute.refund;
 
 import com.google.protobuf.Message;
-import tuskex.common.proto.ProtoUtil;
 import tuskex.core.proto.CoreProtoResolver;
 import tuskex.core.support.SupportType;
 import tuskex.core.support.dispute.Dispute;
@@ -60,13 +59,13 @@ public final class RefundDisputeList extends DisputeList<Dispute> {
         forEach(dispute -> checkArgument(dispute.getSupportType().equals(SupportType.REFUND), "Support type has to be REFUND"));
 
         return protobuf.PersistableEnvelope.newBuilder().setRefundDisputeList(protobuf.RefundDisputeList.newBuilder()
-                .addAllDispute(ProtoUtil.collectionToProto(getList(), protobuf.Dispute.class))).build();
+                .addAllDispute(getList().stream().map(Dispute::toPersistableProtoMessage).collect(Collectors.toList()))).build();
     }
 
     public static RefundDisputeList fromProto(protobuf.RefundDisputeList proto,
                                               CoreProtoResolver coreProtoResolver) {
         List<Dispute> list = proto.getDisputeList().stream()
-                .map(disputeProto -> Dispute.fromProto(disputeProto, coreProtoResolver))
+                .map(disputeProto -> Dispute.fromPersistedProto(disputeProto, coreProtoResolver))
                 .filter(e -> e.getSupportType().equals(SupportType.REFUND))
                 .collect(Collectors.toList());
         return new RefundDisputeList(list);
@@ -22,6 +22,7 @@ import com.google.inject.Singleton;
 import tuskex.core.locale.CurrencyUtil;
 import tuskex.core.locale.Res;
 import tuskex.core.monetary.CryptoMoney;
+import tuskex.core.monetary.Price;
 import tuskex.core.monetary.TraditionalMoney;
 import tuskex.core.monetary.Volume;
 import tuskex.core.offer.OpenOffer;
@@ -65,6 +66,10 @@ public class ClosedTradableFormatter {
         return tradable.getOptionalAmount().map(TuskexUtils::formatTsk).orElse("");
     }
 
+    public String getAmountAsString(ClosedTradeSummary summary) {
+        return TuskexUtils.formatTsk(BigInteger.valueOf(summary.getAmount()));
+    }
+
     public String getTotalAmountWithVolumeAsString(BigInteger totalTradeAmount, Volume volume) {
         return Res.get(I18N_KEY_TOTAL_AMOUNT,
                 TuskexUtils.formatTsk(totalTradeAmount, true),
@@ -75,6 +80,10 @@ public class ClosedTradableFormatter {
         return TuskexUtils.formatTsk(getTotalTxFee(tradable));
     }
 
+    public String getTotalTxFeeAsString(ClosedTradeSummary summary) {
+        return TuskexUtils.formatTsk(BigInteger.valueOf(summary.getTotalTxFee()));
+    }
+
     public String getTotalTxFeeAsString(BigInteger totalTradeAmount, BigInteger totalTxFee) {
         double percentage = TuskexUtils.divide(totalTxFee, totalTradeAmount);
         return Res.get(I18N_KEY_TOTAL_TX_FEE,
@@ -98,11 +107,23 @@ public class ClosedTradableFormatter {
         return TuskexUtils.formatTsk(tradable.getOffer().getMaxSellerSecurityDeposit());
     }
 
+    public String getBuyerSecurityDepositAsString(ClosedTradeSummary summary) {
+        return TuskexUtils.formatTsk(BigInteger.valueOf(summary.getBuyerSecurityDepositBeforeMiningFee()));
+    }
+
+    public String getSellerSecurityDepositAsString(ClosedTradeSummary summary) {
+        return TuskexUtils.formatTsk(BigInteger.valueOf(summary.getSellerSecurityDepositBeforeMiningFee()));
+    }
+
     public String getTradeFeeAsString(Tradable tradable, boolean appendCode) {
         BigInteger tradeFee = closedTradableManager.getTskTradeFee(tradable);
         return TuskexUtils.formatTsk(tradeFee, appendCode);
     }
 
+    public String getTradeFeeAsString(ClosedTradeSummary summary, boolean appendCode) {
+        return TuskexUtils.formatTsk(summary.getTradeFee(), appendCode);
+    }
+
     public String getTotalTradeFeeAsString(BigInteger totalTradeAmount, BigInteger totalTradeFee) {
         double percentage = TuskexUtils.divide(totalTradeFee, totalTradeAmount);
         return Res.get(I18N_KEY_TOTAL_TRADE_FEE_BTC,
@@ -118,20 +139,48 @@ public class ClosedTradableFormatter {
         }
     }
 
+    public String getPriceDeviationAsString(ClosedTradeSummary summary) {
+        if (summary.isUseMarketBasedPrice()) {
+            return formatPercentagePrice(summary.getMarketPriceMarginPct());
+        } else {
+            return Res.get("shared.na");
+        }
+    }
+
     public String getVolumeAsString(Tradable tradable, boolean appendCode) {
         return tradable.getOptionalVolume().map(volume -> formatVolume(volume, appendCode)).orElse("");
     }
 
+    public String getVolumeAsString(ClosedTradeSummary summary, boolean appendCode) {
+        Volume volume = summary.getTradeVolume();
+        return volume == null ? "" : formatVolume(volume, appendCode);
+    }
+
     public String getVolumeCurrencyAsString(Tradable tradable) {
         return tradable.getOptionalVolume().map(Volume::getCurrencyCode).orElse("");
     }
 
+    public String getVolumeCurrencyAsString(ClosedTradeSummary summary) {
+        Volume volume = summary.getTradeVolume();
+        return volume == null ? "" : volume.getCurrencyCode();
+    }
+
     public String getPriceAsString(Tradable tradable) {
         return tradable.getOptionalPrice().map(FormattingUtils::formatPrice).orElse("");
     }
 
+    public String getPriceAsString(ClosedTradeSummary summary) {
+        Price price = summary.getTradePrice();
+        return price == null ? "" : FormattingUtils.formatPrice(price);
+    }
+
     public Map<String, String> getTotalVolumeByCurrencyAsString(List<Tradable> tradableList) {
-        return getTotalVolumeByCurrency(tradableList).entrySet().stream()
+        return getTotalVolumeByCurrencyAsString(tradableList, List.of());
+    }
+
+    public Map<String, String> getTotalVolumeByCurrencyAsString(List<Tradable> tradableList,
+                                                                List<ClosedTradeSummary> archivedTradeSummaries) {
+        return getTotalVolumeByCurrency(tradableList, archivedTradeSummaries).entrySet().stream()
                 .collect(Collectors.toMap(Map.Entry::getKey,
                         entry -> {
                             String currencyCode = entry.getKey();
@@ -153,20 +202,9 @@ public class ClosedTradableFormatter {
 
         if (isTuskexV1Trade(tradable)) {
             Trade trade = castToTrade(tradable);
-            if (trade.isCompleted() || trade.isPayoutPublished()) {
-                return Res.get("portfolio.closed.completed");
-            } else if (trade.getDisputeState() == DISPUTE_CLOSED) {
-                return Res.get("portfolio.closed.ticketClosed");
-            } else if (trade.getDisputeState() == MEDIATION_CLOSED) {
-                return Res.get("portfolio.closed.mediationTicketClosed");
-            } else if (trade.getDisputeState() == REFUND_REQUEST_CLOSED) {
-                return Res.get("portfolio.closed.ticketClosed");
-            } else {
-                log.error("That must not happen. We got a pending state but we are in"
-                                + " the closed trades list. state={}",
-                        trade.getState().name());
-                return Res.get("shared.na");
-            }
+            return getTradeStateAsString(trade.isCompleted() || trade.isPayoutPublished(),
+                    trade.getDisputeState(),
+                    trade.getState());
         } else if (isOpenOffer(tradable)) {
             OpenOffer.State state = ((OpenOffer) tradable).getState();
             log.trace("OpenOffer state={}", state);
@@ -186,4 +224,27 @@ public class ClosedTradableFormatter {
         }
         return Res.get("shared.na");
     }
+
+    public String getStateAsString(ClosedTradeSummary summary) {
+        return getTradeStateAsString(summary.isCompleted() || summary.isPayoutPublished(),
+                summary.getDisputeState(),
+                summary.getState());
+    }
+
+    private String getTradeStateAsString(boolean isCompleted, Trade.DisputeState disputeState, Trade.State state) {
+        if (isCompleted) {
+            return Res.get("portfolio.closed.completed");
+        } else if (disputeState == DISPUTE_CLOSED) {
+            return Res.get("portfolio.closed.ticketClosed");
+        } else if (disputeState == MEDIATION_CLOSED) {
+            return Res.get("portfolio.closed.mediationTicketClosed");
+        } else if (disputeState == REFUND_REQUEST_CLOSED) {
+            return Res.get("portfolio.closed.ticketClosed");
+        } else {
+            log.error("That must not happen. We got a pending state but we are in"
+                            + " the closed trades list. state={}",
+                    state.name());
+            return Res.get("shared.na");
+        }
+    }
 }
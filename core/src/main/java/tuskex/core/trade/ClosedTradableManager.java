@@ -19,6 +19,8 @@ package tuskex.core.trade;
 
 import com.google.common.collect.ImmutableList;
 import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import tuskex.common.config.Config;
 import tuskex.common.crypto.KeyRing;
 import tuskex.common.persistence.PersistenceManager;
 import tuskex.common.proto.persistable.PersistedDataHost;
@@ -29,14 +31,20 @@ import tuskex.core.trade.statistics.TradeStatisticsManager;
 import tuskex.core.user.Preferences;
 import tuskex.network.p2p.NodeAddress;
 import javafx.collections.ObservableList;
+import javax.annotation.Nullable;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.File;
 import java.math.BigInteger;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -49,9 +57,16 @@ import static tuskex.core.trade.ClosedTradableUtil.isOpenOffer;
  * Manages closed trades or offers.
  * BsqSwap trades are once confirmed moved in the closed trades domain as well.
  * We do not manage the persistence of BsqSwap trades here but in BsqSwapTradeManager.
+ *
+ * Closed trades whose payout is unlocked for a while are moved to the ClosedTradeArchive, so they are not loaded at
+ * start up anymore. Lists of closed trades show the summaries of the archived trades, an archived trade is only read
+ * from disk when it is requested by id.
  */
 @Slf4j
 public class ClosedTradableManager implements PersistedDataHost {
+    private static final long ARCHIVE_AFTER_DAYS = 30;
+    private static final int MAX_HYDRATED_TRADES = 20;
+
     private final KeyRing keyRing;
     private final PriceFeedService priceFeedService;
     private final Preferences preferences;
@@ -60,6 +75,15 @@ public class ClosedTradableManager implements PersistedDataHost {
     private final CleanupMailboxMessagesService cleanupMailboxMessagesService;
 
     private final TradableList<Tradable> closedTradables = new TradableList<>();
+    private final ClosedTradeArchive closedTradeArchive;
+
+    // recently read archived trades, so repeated lookups return the same instance
+    private final Map<String, Trade> hydratedTrades = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Trade> eldest) {
+            return size() > MAX_HYDRATED_TRADES;
+        }
+    };
 
     @Inject
     public ClosedTradableManager(KeyRing keyRing,
@@ -67,13 +91,15 @@ public class ClosedTradableManager implements PersistedDataHost {
                                  Preferences preferences,
                                  TradeStatisticsManager tradeStatisticsManager,
                                  PersistenceManager<TradableList<Tradable>> persistenceManager,
-                                 CleanupMailboxMessagesService cleanupMailboxMessagesService) {
+                                 CleanupMailboxMessagesService cleanupMailboxMessagesService,
+                                 @Named(Config.STORAGE_DIR) File storageDir) {
         this.keyRing = keyRing;
         this.priceFeedService = priceFeedService;
         this.preferences = preferences;
         this.tradeStatisticsManager = tradeStatisticsManager;
         this.cleanupMailboxMessagesService = cleanupMailboxMessagesService;
         this.persistenceManager = persistenceManager;
+        this.closedTradeArchive = new ClosedTradeArchive(new File(storageDir, ClosedTradeArchive.FILE_NAME), keyRing);
 
         this.persistenceManager.initialize(closedTradables, "ClosedTrades", PersistenceManager.Source.PRIVATE);
     }
@@ -81,7 +107,12 @@ public class ClosedTradableManager implements PersistedDataHost {
     @Override
     public void readPersisted(Runnable completeHandler) {
         persistenceManager.readPersisted(persisted -> {
-                    closedTradables.setAll(persisted.getList());
+                    // trades are only removed after they were archived, so the archived trade is kept if both exist
+                    List<Tradable> tradables = persisted.getList().stream()
+                            .filter(tradable -> !(tradable instanceof Trade && closedTradeArchive.contains(tradable.getId())))
+                            .collect(Collectors.toList());
+                    closedTradables.setAll(tradables);
+                    if (tradables.size() < persisted.size()) requestPersistence();
                     closedTradables.stream()
                             .filter(tradable -> tradable.getOffer() != null)
                             .forEach(tradable -> tradable.getOffer().setPriceFeedService(priceFeedService));
@@ -152,8 +183,102 @@ public class ClosedTradableManager implements PersistedDataHost {
 
     public Optional<Tradable> getTradeById(String id) {
         synchronized (closedTradables) {
-            return closedTradables.stream().filter(e -> e instanceof Trade && e.getId().equals(id)).findFirst();
+            Optional<Tradable> tradable = closedTradables.stream().filter(e -> e instanceof Trade && e.getId().equals(id)).findFirst();
+            if (tradable.isPresent()) return tradable;
+        }
+        return getArchivedTrade(id).map(Tradable.class::cast);
+    }
+
+    public boolean isArchived(String tradeId) {
+        return closedTradeArchive.contains(tradeId);
+    }
+
+    public Optional<Trade> getArchivedTrade(String tradeId) {
+        if (!closedTradeArchive.contains(tradeId)) return Optional.empty();
+        synchronized (hydratedTrades) {
+            Trade trade = hydratedTrades.get(tradeId);
+            if (trade == null) {
+                trade = readArchivedTrade(tradeId);
+                if (trade != null) hydratedTrades.put(tradeId, trade);
+            }
+            return Optional.ofNullable(trade);
+        }
+    }
+
+    /**
+     * @return the summaries of the archived trades in the order they were archived, summaries which could not be
+     * upgraded to the fields of the lists yet are left out
+     */
+    public List<ClosedTradeSummary> getArchivedTradeSummaries() {
+        return closedTradeArchive.getSummaries().stream()
+                .filter(ClosedTradeSummary::hasListFields)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Move the closed trades whose payout is unlocked for a while to the archive. Must be called after the persisted
+     * trades were initialized, so the trade wallets and process data of completed trades are cleared already.
+     */
+    public void maybeArchiveTrades() {
+        maybeUpgradeArchivedTradeSummaries();
+        Instant archiveDate = Instant.now().minusSeconds(TimeUnit.DAYS.toSeconds(ARCHIVE_AFTER_DAYS));
+        Instant safeDate = getSafeDateForSensitiveDataClearing();
+        List<Trade> trades = getClosedTrades().stream()
+                .filter(trade -> trade.getDate().toInstant().isBefore(archiveDate))
+                .filter(trade -> trade.isPayoutUnlocked() && !trade.walletExists())
+                .collect(Collectors.toList());
+        if (trades.isEmpty()) return;
+
+        long ts = System.currentTimeMillis();
+        int numArchived = 0;
+        for (Trade trade : trades) {
+            try {
+                boolean clearSensitiveData = trade.getDate().toInstant().isBefore(safeDate);
+                if (clearSensitiveData) trade.maybeClearSensitiveData();
+                closedTradeArchive.add(trade, clearSensitiveData);
+            } catch (Exception e) {
+                log.warn("Could not archive {} {}: {}", trade.getClass().getSimpleName(), trade.getId(), e.getMessage());
+                continue;
+            }
+            synchronized (closedTradables) {
+                closedTradables.remove(trade);
+            }
+            numArchived++;
+        }
+        if (numArchived > 0) requestPersistence();
+        log.info("Archiving {} closed trades took {} ms", numArchived, System.currentTimeMillis() - ts);
+    }
+
+    // Summaries written before version 3 lack the fields of the lists, so their trades are read once to rewrite them.
+    private void maybeUpgradeArchivedTradeSummaries() {
+        List<ClosedTradeSummary> summaries = closedTradeArchive.getSummaries().stream()
+                .filter(summary -> !summary.hasListFields())
+                .collect(Collectors.toList());
+        if (summaries.isEmpty()) return;
+        long ts = System.currentTimeMillis();
+        for (ClosedTradeSummary summary : summaries) {
+            Trade trade = readArchivedTrade(summary.getId());
+            if (trade == null) continue;
+            try {
+                closedTradeArchive.add(trade, summary.isSensitiveDataCleared());
+            } catch (Exception e) {
+                log.warn("Could not upgrade summary of archived trade {}: {}", trade.getId(), e.getMessage());
+            }
+        }
+        log.info("Upgrading {} summaries of archived trades took {} ms", summaries.size(), System.currentTimeMillis() - ts);
+    }
+
+    /**
+     * @return the hex encoded hashes of the chat attachments of the archived trades or empty if they are not known
+     * for all archived trades
+     */
+    public Optional<Set<String>> getArchivedAttachmentHashes() {
+        Set<String> hashes = new HashSet<>();
+        for (ClosedTradeSummary summary : closedTradeArchive.getSummaries()) {
+            if (summary.getAttachmentHashes() == null) return Optional.empty();
+            hashes.addAll(summary.getAttachmentHashes());
         }
+        return Optional.of(hashes);
     }
 
     public void maybeClearSensitiveData() {
@@ -166,6 +291,22 @@ public class ClosedTradableManager implements PersistedDataHost {
                 .forEach(Trade::maybeClearSensitiveData);
             requestPersistence();
         }
+        maybeClearSensitiveDataOfArchivedTrades();
+    }
+
+    private void maybeClearSensitiveDataOfArchivedTrades() {
+        Instant safeDate = getSafeDateForSensitiveDataClearing();
+        closedTradeArchive.getSummaries().stream()
+                .filter(summary -> !summary.isSensitiveDataCleared())
+                .filter(summary -> Instant.ofEpochMilli(summary.getDate()).isBefore(safeDate))
+                .forEach(summary -> getArchivedTrade(summary.getId()).ifPresent(trade -> {
+                    try {
+                        trade.maybeClearSensitiveData();
+                        closedTradeArchive.add(trade, true);
+                    } catch (Exception e) {
+                        log.warn("Could not clear sensitive data of archived trade {}: {}", trade.getId(), e.getMessage());
+                    }
+                }));
     }
 
     public boolean canTradeHaveSensitiveDataCleared(String tradeId) {
@@ -201,6 +342,23 @@ public class ClosedTradableManager implements PersistedDataHost {
                 .map(Trade::getTradePeerNodeAddress)
                 .filter(Objects::nonNull)
                 .filter(address -> address.equals(addressInTrade))
+                .count() + getNumArchivedTrades(addressInTrade);
+    }
+
+    public int getNumPastTrades(ClosedTradeSummary summary) {
+        if (summary.getTradePeerAddress() == null) return 0;
+        NodeAddress addressInTrade = new NodeAddress(summary.getTradePeerAddress());
+        return (int) getTradeModelStream()
+                .map(Trade::getTradePeerNodeAddress)
+                .filter(Objects::nonNull)
+                .filter(address -> address.equals(addressInTrade))
+                .count() + getNumArchivedTrades(addressInTrade);
+    }
+
+    public int getNumArchivedTrades(@Nullable NodeAddress tradePeerNodeAddress) {
+        if (tradePeerNodeAddress == null) return 0;
+        return (int) closedTradeArchive.getSummaries().stream()
+                .filter(summary -> summary.isTradePeer(tradePeerNodeAddress))
                 .count();
     }
 
@@ -210,6 +368,12 @@ public class ClosedTradableManager implements PersistedDataHost {
                 .sum());
     }
 
+    public BigInteger getTotalTradeFee(List<Tradable> tradableList, List<ClosedTradeSummary> archivedTradeSummaries) {
+        return getTotalTradeFee(tradableList).add(BigInteger.valueOf(archivedTradeSummaries.stream()
+                .mapToLong(summary -> Math.max(0, summary.getTradeFee().longValueExact()))
+                .sum()));
+    }
+
     private BigInteger getTradeFee(Tradable tradable) {
         return getTskTradeFee(tradable);
     }
@@ -234,5 +398,30 @@ public class ClosedTradableManager implements PersistedDataHost {
                 requestPersistence();
             }
         }
+        synchronized (hydratedTrades) {
+            hydratedTrades.remove(trade.getId());
+        }
+        try {
+            closedTradeArchive.remove(trade.getId());
+        } catch (Exception e) {
+            log.warn("Could not remove {} {} from archive: {}", trade.getClass().getSimpleName(), trade.getId(), e.getMessage());
+        }
+    }
+
+    @Nullable
+    private Trade readArchivedTrade(String tradeId) {
+        try {
+            protobuf.Tradable proto = closedTradeArchive.getTradable(tradeId);
+            if (proto == null) return null;
+            protobuf.PersistableEnvelope envelope = protobuf.PersistableEnvelope.newBuilder()
+                    .setTradableList(protobuf.TradableList.newBuilder().addTradable(proto))
+                    .build();
+            Tradable tradable = ((TradableList<?>) persistenceManager.getPersistenceProtoResolver().fromProto(envelope)).getList().get(0);
+            if (tradable.getOffer() != null) tradable.getOffer().setPriceFeedService(priceFeedService);
+            return (Trade) tradable;
+        } catch (Exception e) {
+            log.error("Could not read archived trade {}", tradeId, e);
+            return null;
+        }
     }
 }
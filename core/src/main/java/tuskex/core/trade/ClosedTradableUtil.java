@@ -23,6 +23,7 @@ import java.math.BigInteger;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 public class ClosedTradableUtil {
     public static BigInteger getTotalAmount(List<Tradable> tradableList) {
@@ -58,6 +59,28 @@ public class ClosedTradableUtil {
         return map;
     }
 
+    public static BigInteger getTotalAmount(List<Tradable> tradableList, List<ClosedTradeSummary> archivedTradeSummaries) {
+        return getTotalAmount(tradableList).add(BigInteger.valueOf(archivedTradeSummaries.stream()
+                .mapToLong(ClosedTradeSummary::getAmount)
+                .sum()));
+    }
+
+    public static BigInteger getTotalTxFee(List<Tradable> tradableList, List<ClosedTradeSummary> archivedTradeSummaries) {
+        return getTotalTxFee(tradableList).add(BigInteger.valueOf(archivedTradeSummaries.stream()
+                .mapToLong(summary -> Math.max(0, summary.getTotalTxFee()))
+                .sum()));
+    }
+
+    public static Map<String, Long> getTotalVolumeByCurrency(List<Tradable> tradableList, List<ClosedTradeSummary> archivedTradeSummaries) {
+        Map<String, Long> map = getTotalVolumeByCurrency(tradableList);
+        archivedTradeSummaries.stream()
+                .filter(ClosedTradeSummary::isCompleted)
+                .map(ClosedTradeSummary::getTradeVolume)
+                .filter(Objects::nonNull)
+                .forEach(volume -> map.merge(volume.getCurrencyCode(), volume.getValue(), Long::sum));
+        return map;
+    }
+
     public static BigInteger getTotalTxFee(Tradable tradable) {
         return tradable.getTotalTxFee();
     }
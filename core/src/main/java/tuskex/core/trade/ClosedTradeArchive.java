@@ -0,0 +1,335 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.core.trade;
+
+import com.google.common.collect.ImmutableList;
+import tuskex.common.crypto.CryptoException;
+import tuskex.common.crypto.Encryption;
+import tuskex.common.crypto.KeyRing;
+import tuskex.common.file.FileUtil;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only file of closed trades which are not kept on the heap. Only the summaries of the trades are held in
+ * memory, a full trade is read from disk when it is requested.
+ *
+ * Each record holds the summary and the Tradable proto of a trade, both encrypted with the symmetric key of the key
+ * ring like the other private data:
+ *
+ * <pre>
+ * header: magic (int)
+ * record: summary length (int), trade length (int), summary, trade
+ * </pre>
+ *
+ * A later record of a trade replaces the earlier one and a record without trade removes the trade. The file is
+ * compacted on opening if most of its records were replaced.
+ */
+@Slf4j
+class ClosedTradeArchive {
+    static final String FILE_NAME = "ClosedTradesArchive";
+
+    private static final int MAGIC = 0x54434131; // TCA1
+    private static final int HEADER_SIZE = Integer.BYTES;
+    private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int MIN_REPLACED_RECORDS_BEFORE_COMPACTION = 100;
+
+    @Value
+    private static class Entry {
+        ClosedTradeSummary summary;
+        long position;
+        int summaryLength;
+        int tradeLength;
+
+        long getTradePosition() {
+            return position + RECORD_HEADER_SIZE + summaryLength;
+        }
+
+        int getRecordLength() {
+            return RECORD_HEADER_SIZE + summaryLength + tradeLength;
+        }
+    }
+
+    private final File file;
+    private final KeyRing keyRing;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private boolean isOpen;
+    private long size;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    ClosedTradeArchive(File file, KeyRing keyRing) {
+        this.file = file;
+        this.keyRing = keyRing;
+    }
+
+    synchronized boolean contains(String tradeId) {
+        return maybeOpen() && entries.containsKey(tradeId);
+    }
+
+    synchronized int size() {
+        return maybeOpen() ? entries.size() : 0;
+    }
+
+    /**
+     * @return the summaries in the order the trades were archived
+     */
+    synchronized List<ClosedTradeSummary> getSummaries() {
+        if (!maybeOpen()) return ImmutableList.of();
+        ImmutableList.Builder<ClosedTradeSummary> summaries = ImmutableList.builderWithExpectedSize(entries.size());
+        entries.values().forEach(entry -> summaries.add(entry.getSummary()));
+        return summaries.build();
+    }
+
+    /**
+     * Read an archived trade from disk.
+     *
+     * @param tradeId the id of the trade
+     * @return the Tradable proto of the trade or null if the trade is not archived
+     */
+    @Nullable
+    synchronized protobuf.Tradable getTradable(String tradeId) throws IOException {
+        if (!maybeOpen()) return null;
+        Entry entry = entries.get(tradeId);
+        if (entry == null) return null;
+        byte[] bytes = new byte[entry.getTradeLength()];
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            randomAccessFile.seek(entry.getTradePosition());
+            randomAccessFile.readFully(bytes);
+        }
+        return protobuf.Tradable.parseFrom(decrypt(bytes));
+    }
+
+    /**
+     * Archive a trade or replace the archived trade with the same id. The record is synced to disk before returning.
+     */
+    synchronized void add(Trade trade, boolean sensitiveDataCleared) throws IOException {
+        ClosedTradeSummary summary = ClosedTradeSummary.from(trade, sensitiveDataCleared, keyRing);
+        append(summary, encrypt(trade.toProtoMessage().toByteArray()));
+    }
+
+    /**
+     * Remove a trade from the archive.
+     *
+     * @return true if the trade was archived
+     */
+    synchronized boolean remove(String tradeId) throws IOException {
+        if (!maybeOpen()) return false;
+        Entry entry = entries.get(tradeId);
+        if (entry == null) return false;
+        append(entry.getSummary(), new byte[0]);
+        return true;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // The summaries can only be decrypted once the account is open, so the file is read on first use.
+    private boolean maybeOpen() {
+        if (isOpen) return true;
+        if (!keyRing.isUnlocked()) {
+            log.warn("Account is not open yet, cannot read {}", FILE_NAME);
+            return false;
+        }
+        try {
+            read();
+        } catch (IOException e) {
+            log.error("Reading {} failed", FILE_NAME, e);
+            backupCorruptedFile();
+            entries.clear();
+            size = 0;
+        }
+        isOpen = true;
+        if (entries.size() > 0) log.info("{} archived closed trades", entries.size());
+        return true;
+    }
+
+    private void read() throws IOException {
+        if (!file.exists()) return;
+        long ts = System.currentTimeMillis();
+        long length = file.length();
+        long position = HEADER_SIZE;
+        int numRecords = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (length < HEADER_SIZE || in.readInt() != MAGIC) throw new IOException("Invalid header");
+            while (position + RECORD_HEADER_SIZE <= length) {
+                int summaryLength = in.readInt();
+                int tradeLength = in.readInt();
+                if (summaryLength <= 0 || tradeLength < 0 ||
+                        position + RECORD_HEADER_SIZE + summaryLength + tradeLength > length) break;
+                byte[] summaryBytes = new byte[summaryLength];
+                in.readFully(summaryBytes);
+                in.skipNBytes(tradeLength);
+                ClosedTradeSummary summary;
+                try {
+                    summary = decodeSummary(summaryBytes);
+                } catch (IOException e) {
+                    log.error("Invalid record in {} at position {}, ignoring the records after it", FILE_NAME, position, e);
+                    backupCorruptedFile();
+                    break;
+                }
+                Entry entry = new Entry(summary, position, summaryLength, tradeLength);
+                if (tradeLength == 0) {
+                    entries.remove(summary.getId());
+                } else {
+                    entries.put(summary.getId(), entry);
+                }
+                position += entry.getRecordLength();
+                numRecords++;
+            }
+        }
+
+        // drop incomplete record of interrupted write
+        if (position < length) {
+            log.warn("Truncating {} from {} to {} bytes", FILE_NAME, length, position);
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+                randomAccessFile.setLength(position);
+            }
+        }
+        size = position;
+        log.info("Reading {} records of {} completed in {} ms", numRecords, FILE_NAME, System.currentTimeMillis() - ts);
+
+        int numReplacedRecords = numRecords - entries.size();
+        if (numReplacedRecords >= MIN_REPLACED_RECORDS_BEFORE_COMPACTION && numReplacedRecords > entries.size()) {
+            compact();
+        }
+    }
+
+    private void append(ClosedTradeSummary summary, byte[] encryptedTrade) throws IOException {
+        if (!maybeOpen()) throw new IOException("Account is not open, cannot write " + FILE_NAME);
+        byte[] encryptedSummary = encodeSummary(summary);
+        boolean isNew = size == 0;
+        long position = isNew ? HEADER_SIZE : size;
+        try (FileOutputStream fileOutputStream = new FileOutputStream(file, !isNew);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOutputStream))) {
+            if (isNew) out.writeInt(MAGIC);
+            out.writeInt(encryptedSummary.length);
+            out.writeInt(encryptedTrade.length);
+            out.write(encryptedSummary);
+            out.write(encryptedTrade);
+            out.flush();
+            fileOutputStream.getFD().sync();
+        } catch (IOException e) {
+            // new records are appended after the last valid record
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+                randomAccessFile.setLength(isNew ? 0 : position);
+            } catch (IOException e2) {
+                log.error("Cannot truncate {}", FILE_NAME, e2);
+            }
+            throw e;
+        }
+        Entry entry = new Entry(summary, position, encryptedSummary.length, encryptedTrade.length);
+        if (encryptedTrade.length == 0) {
+            entries.remove(summary.getId());
+        } else {
+            entries.put(summary.getId(), entry);
+        }
+        size = position + entry.getRecordLength();
+    }
+
+    // Rewrites the file with the current records only. The encrypted records are copied as they are.
+    private void compact() throws IOException {
+        long ts = System.currentTimeMillis();
+        File tempFile = new File(file.getParentFile(), "temp_" + FILE_NAME);
+        Map<String, Entry> compactedEntries = new LinkedHashMap<>();
+        long position = HEADER_SIZE;
+        try (RandomAccessFile in = new RandomAccessFile(file, "r");
+             FileOutputStream fileOutputStream = new FileOutputStream(tempFile);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOutputStream))) {
+            out.writeInt(MAGIC);
+            for (Entry entry : entries.values()) {
+                byte[] record = new byte[entry.getRecordLength()];
+                in.seek(entry.getPosition());
+                in.readFully(record);
+                out.write(record);
+                compactedEntries.put(entry.getSummary().getId(),
+                        new Entry(entry.getSummary(), position, entry.getSummaryLength(), entry.getTradeLength()));
+                position += record.length;
+            }
+            out.flush();
+            fileOutputStream.getFD().sync();
+        }
+        FileUtil.renameFile(tempFile, file);
+        entries.clear();
+        entries.putAll(compactedEntries);
+        size = position;
+        log.info("Compacting {} completed in {} ms", FILE_NAME, System.currentTimeMillis() - ts);
+    }
+
+    private void backupCorruptedFile() {
+        try {
+            File backupDir = new File(file.getParentFile(), "backup_of_corrupted_data");
+            if (!backupDir.exists() && !backupDir.mkdir()) log.warn("make dir failed");
+            FileUtil.copyFile(file, new File(backupDir, FILE_NAME));
+        } catch (IOException e) {
+            log.error("Cannot back up {}", FILE_NAME, e);
+        }
+    }
+
+    private byte[] encodeSummary(ClosedTradeSummary summary) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            summary.write(out);
+        }
+        return encrypt(bytes.toByteArray());
+    }
+
+    private ClosedTradeSummary decodeSummary(byte[] encryptedSummary) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(decrypt(encryptedSummary)))) {
+            return ClosedTradeSummary.read(in);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid closed trade summary", e);
+        }
+    }
+
+    private byte[] encrypt(byte[] bytes) throws IOException {
+        try {
+            return Encryption.encryptPayloadWithHmac(bytes, keyRing.getSymmetricKey());
+        } catch (CryptoException e) {
+            throw new IOException("Cannot encrypt record of " + FILE_NAME, e);
+        }
+    }
+
+    private byte[] decrypt(byte[] bytes) throws IOException {
+        try {
+            return Encryption.decryptPayloadWithHmac(bytes, keyRing.getSymmetricKey());
+        } catch (CryptoException e) {
+            throw new IOException("Cannot decrypt record of " + FILE_NAME, e);
+        }
+    }
+}
@@ -0,0 +1,377 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.core.trade;
+
+import com.google.common.collect.ImmutableSet;
+import tuskex.common.crypto.KeyRing;
+import tuskex.common.util.Utilities;
+import tuskex.core.locale.CurrencyUtil;
+import tuskex.core.monetary.CryptoMoney;
+import tuskex.core.monetary.Price;
+import tuskex.core.monetary.TraditionalMoney;
+import tuskex.core.monetary.Volume;
+import tuskex.core.offer.Offer;
+import tuskex.core.offer.OfferDirection;
+import tuskex.network.p2p.NodeAddress;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.Set;
+import javax.annotation.Nullable;
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Summary of an archived closed trade which is kept in memory while the full trade stays on disk. It holds the fields
+ * which the closed trades list and the API's trade list show, the full trade is only read to show its details.
+ */
+@Value
+@Builder(access = AccessLevel.PRIVATE)
+public class ClosedTradeSummary {
+    static final int VERSION = 3;
+
+    // the version the summary was written with, summaries before version 3 only have the fields up to attachmentHashes
+    int version;
+    String id;
+    long date;
+    long amount;
+    long price;
+    String currencyCode;
+    String role;
+    Trade.State state;
+    @Nullable
+    String tradePeerAddress;
+    boolean sensitiveDataCleared;
+    // Hex encoded hashes of the chat attachments of the archived trade, so unreferenced attachments can be removed
+    // without reading the trades. Null if not known, as the summary was written by version 1 and the trade has its
+    // chat messages.
+    @Nullable
+    Set<String> attachmentHashes;
+
+    // version 3
+    OfferDirection offerDirection;
+    boolean myOffer;
+    boolean arbitrator;
+    boolean useMarketBasedPrice;
+    double marketPriceMarginPct;
+    long offerPrice;
+    long offerAmount;
+    long offerMinAmount;
+    long offerDate;
+    String paymentMethodId;
+    String baseCurrencyCode;
+    String counterCurrencyCode;
+    long volume;
+    long makerFee;
+    long takerFee;
+    long totalTxFee;
+    long buyerSecurityDepositBeforeMiningFee;
+    long sellerSecurityDepositBeforeMiningFee;
+    // -1 if not known, like in the API's TradeInfo
+    long buyerSecurityDeposit;
+    long sellerSecurityDeposit;
+    long buyerDepositTxFee;
+    long sellerDepositTxFee;
+    long buyerPayoutTxFee;
+    long sellerPayoutTxFee;
+    long buyerPayoutAmount;
+    long sellerPayoutAmount;
+    @Nullable
+    String makerDepositTxId;
+    @Nullable
+    String takerDepositTxId;
+    @Nullable
+    String payoutTxId;
+    @Nullable
+    String arbitratorAddress;
+    Trade.PayoutState payoutState;
+    Trade.DisputeState disputeState;
+    Trade.TradePeriodState periodState;
+    boolean depositsPublished;
+    boolean depositsConfirmed;
+    boolean depositsUnlocked;
+    boolean payoutConfirmed;
+    boolean payoutUnlocked;
+    boolean completed;
+
+    static ClosedTradeSummary from(Trade trade, boolean sensitiveDataCleared, KeyRing keyRing) {
+        Offer offer = trade.getOffer();
+        Price price = trade.getPrice();
+        Volume volume = trade.getVolume();
+        NodeAddress tradePeerNodeAddress = trade.getTradePeerNodeAddress();
+        NodeAddress arbitratorNodeAddress = trade.getArbitratorNodeAddress();
+        ImmutableSet<String> attachmentHashes = trade.getChatMessages().stream()
+                .flatMap(chatMessage -> chatMessage.getAttachments().stream())
+                .map(attachment -> Utilities.bytesAsHexString(attachment.getHash()))
+                .collect(ImmutableSet.toImmutableSet());
+        return ClosedTradeSummary.builder()
+                .version(VERSION)
+                .id(trade.getId())
+                .date(trade.getDate().getTime())
+                .amount(trade.getAmount().longValueExact())
+                .price(price == null ? 0 : price.getValue())
+                .currencyCode(offer.getCurrencyCode())
+                .role(trade.getRole())
+                .state(trade.getState())
+                .tradePeerAddress(tradePeerNodeAddress == null ? null : tradePeerNodeAddress.getFullAddress())
+                .sensitiveDataCleared(sensitiveDataCleared)
+                .attachmentHashes(attachmentHashes)
+                .offerDirection(offer.getDirection())
+                .myOffer(offer.isMyOffer(keyRing))
+                .arbitrator(trade.isArbitrator())
+                .useMarketBasedPrice(offer.isUseMarketBasedPrice())
+                .marketPriceMarginPct(offer.getMarketPriceMarginPct())
+                .offerPrice(offer.getOfferPayload().getPrice())
+                .offerAmount(offer.getAmount().longValueExact())
+                .offerMinAmount(offer.getMinAmount().longValueExact())
+                .offerDate(offer.getDate().getTime())
+                .paymentMethodId(offer.getPaymentMethodId())
+                .baseCurrencyCode(offer.getBaseCurrencyCode())
+                .counterCurrencyCode(offer.getCounterCurrencyCode())
+                .volume(volume == null ? 0 : volume.getValue())
+                .makerFee(toLong(trade.getMakerFee()))
+                .takerFee(toLong(trade.getTakerFee()))
+                .totalTxFee(toLong(trade.getTotalTxFee()))
+                .buyerSecurityDepositBeforeMiningFee(toLong(trade.getBuyerSecurityDepositBeforeMiningFee()))
+                .sellerSecurityDepositBeforeMiningFee(toLong(trade.getSellerSecurityDepositBeforeMiningFee()))
+                .buyerSecurityDeposit(toLong(trade.getBuyer().getSecurityDeposit()))
+                .sellerSecurityDeposit(toLong(trade.getSeller().getSecurityDeposit()))
+                .buyerDepositTxFee(toLong(trade.getBuyer().getDepositTxFee()))
+                .sellerDepositTxFee(toLong(trade.getSeller().getDepositTxFee()))
+                .buyerPayoutTxFee(toLong(trade.getBuyer().getPayoutTxFee()))
+                .sellerPayoutTxFee(toLong(trade.getSeller().getPayoutTxFee()))
+                .buyerPayoutAmount(toLong(trade.getBuyer().getPayoutAmount()))
+                .sellerPayoutAmount(toLong(trade.getSeller().getPayoutAmount()))
+                .makerDepositTxId(trade.getMaker().getDepositTxHash())
+                .takerDepositTxId(trade.getTaker().getDepositTxHash())
+                .payoutTxId(trade.getPayoutTxId())
+                .arbitratorAddress(arbitratorNodeAddress == null ? null : arbitratorNodeAddress.getFullAddress())
+                .payoutState(trade.getPayoutState())
+                .disputeState(trade.getDisputeState())
+                .periodState(trade.getPeriodState())
+                .depositsPublished(trade.isDepositsPublished())
+                .depositsConfirmed(trade.isDepositsConfirmed())
+                .depositsUnlocked(trade.isDepositsUnlocked())
+                .payoutConfirmed(trade.isPayoutConfirmed())
+                .payoutUnlocked(trade.isPayoutUnlocked())
+                .completed(trade.isCompleted())
+                .build();
+    }
+
+    private static long toLong(@Nullable BigInteger value) {
+        return value == null ? -1 : value.longValueExact();
+    }
+
+    /**
+     * @return false if the summary was written before version 3 and only has the fields to identify the trade
+     */
+    public boolean hasListFields() {
+        return version >= 3;
+    }
+
+    public String getShortId() {
+        return Utilities.getShortId(id);
+    }
+
+    public Date getTradeDate() {
+        return new Date(date);
+    }
+
+    @Nullable
+    public Price getTradePrice() {
+        return price == 0 ? null : Price.valueOf(currencyCode, price);
+    }
+
+    @Nullable
+    public Volume getTradeVolume() {
+        if (volume == 0) return null;
+        return new Volume(CurrencyUtil.isTraditionalCurrency(currencyCode) ?
+                TraditionalMoney.valueOf(currencyCode, volume) :
+                CryptoMoney.valueOf(currencyCode, volume));
+    }
+
+    /**
+     * @return the direction of the trade from the perspective of the user
+     */
+    public OfferDirection getDirection() {
+        if (myOffer || arbitrator) return offerDirection;
+        return offerDirection == OfferDirection.BUY ? OfferDirection.SELL : OfferDirection.BUY;
+    }
+
+    public BigInteger getTradeFee() {
+        return BigInteger.valueOf(myOffer ? makerFee : takerFee);
+    }
+
+    public boolean isPaymentSent() {
+        return state.getPhase().ordinal() >= Trade.Phase.PAYMENT_SENT.ordinal();
+    }
+
+    public boolean isPaymentReceived() {
+        return state.getPhase().ordinal() >= Trade.Phase.PAYMENT_RECEIVED.ordinal();
+    }
+
+    public boolean isPayoutPublished() {
+        return payoutState.ordinal() >= Trade.PayoutState.PAYOUT_PUBLISHED.ordinal();
+    }
+
+    boolean isTradePeer(NodeAddress nodeAddress) {
+        return tradePeerAddress != null && tradePeerAddress.equals(nodeAddress.getFullAddress());
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(VERSION);
+        out.writeUTF(id);
+        out.writeLong(date);
+        out.writeLong(amount);
+        out.writeLong(price);
+        out.writeUTF(currencyCode);
+        out.writeUTF(role);
+        out.writeUTF(state.name());
+        writeNullableUTF(out, tradePeerAddress);
+        out.writeBoolean(sensitiveDataCleared);
+        Set<String> hashes = attachmentHashes == null ? Set.of() : attachmentHashes;
+        out.writeInt(hashes.size());
+        for (String hash : hashes) {
+            out.writeUTF(hash);
+        }
+
+        out.writeUTF(offerDirection.name());
+        out.writeBoolean(myOffer);
+        out.writeBoolean(arbitrator);
+        out.writeBoolean(useMarketBasedPrice);
+        out.writeDouble(marketPriceMarginPct);
+        out.writeLong(offerPrice);
+        out.writeLong(offerAmount);
+        out.writeLong(offerMinAmount);
+        out.writeLong(offerDate);
+        out.writeUTF(paymentMethodId);
+        out.writeUTF(baseCurrencyCode);
+        out.writeUTF(counterCurrencyCode);
+        out.writeLong(volume);
+        out.writeLong(makerFee);
+        out.writeLong(takerFee);
+        out.writeLong(totalTxFee);
+        out.writeLong(buyerSecurityDepositBeforeMiningFee);
+        out.writeLong(sellerSecurityDepositBeforeMiningFee);
+        out.writeLong(buyerSecurityDeposit);
+        out.writeLong(sellerSecurityDeposit);
+        out.writeLong(buyerDepositTxFee);
+        out.writeLong(sellerDepositTxFee);
+        out.writeLong(buyerPayoutTxFee);
+        out.writeLong(sellerPayoutTxFee);
+        out.writeLong(buyerPayoutAmount);
+        out.writeLong(sellerPayoutAmount);
+        writeNullableUTF(out, makerDepositTxId);
+        writeNullableUTF(out, takerDepositTxId);
+        writeNullableUTF(out, payoutTxId);
+        writeNullableUTF(out, arbitratorAddress);
+        out.writeUTF(payoutState.name());
+        out.writeUTF(disputeState.name());
+        out.writeUTF(periodState.name());
+        out.writeBoolean(depositsPublished);
+        out.writeBoolean(depositsConfirmed);
+        out.writeBoolean(depositsUnlocked);
+        out.writeBoolean(payoutConfirmed);
+        out.writeBoolean(payoutUnlocked);
+        out.writeBoolean(completed);
+    }
+
+    static ClosedTradeSummary read(DataInputStream in) throws IOException {
+        int version = in.readInt();
+        if (version < 1 || version > VERSION) throw new IOException("Unknown version of closed trade summary: " + version);
+        ClosedTradeSummaryBuilder builder = ClosedTradeSummary.builder()
+                .version(version)
+                .id(in.readUTF())
+                .date(in.readLong())
+                .amount(in.readLong())
+                .price(in.readLong())
+                .currencyCode(in.readUTF())
+                .role(in.readUTF())
+                .state(Trade.State.valueOf(in.readUTF()))
+                .tradePeerAddress(readNullableUTF(in));
+        boolean sensitiveDataCleared = in.readBoolean();
+        builder.sensitiveDataCleared(sensitiveDataCleared);
+        // the chat messages are removed with the sensitive data
+        Set<String> attachmentHashes = sensitiveDataCleared ? ImmutableSet.of() : null;
+        if (version >= 2) {
+            int numHashes = in.readInt();
+            ImmutableSet.Builder<String> hashes = ImmutableSet.builder();
+            for (int i = 0; i < numHashes; i++) {
+                hashes.add(in.readUTF());
+            }
+            attachmentHashes = hashes.build();
+        }
+        builder.attachmentHashes(attachmentHashes);
+        if (version < 3) return builder.build();
+
+        return builder.offerDirection(OfferDirection.valueOf(in.readUTF()))
+                .myOffer(in.readBoolean())
+                .arbitrator(in.readBoolean())
+                .useMarketBasedPrice(in.readBoolean())
+                .marketPriceMarginPct(in.readDouble())
+                .offerPrice(in.readLong())
+                .offerAmount(in.readLong())
+                .offerMinAmount(in.readLong())
+                .offerDate(in.readLong())
+                .paymentMethodId(in.readUTF())
+                .baseCurrencyCode(in.readUTF())
+                .counterCurrencyCode(in.readUTF())
+                .volume(in.readLong())
+                .makerFee(in.readLong())
+                .takerFee(in.readLong())
+                .totalTxFee(in.readLong())
+                .buyerSecurityDepositBeforeMiningFee(in.readLong())
+                .sellerSecurityDepositBeforeMiningFee(in.readLong())
+                .buyerSecurityDeposit(in.readLong())
+                .sellerSecurityDeposit(in.readLong())
+                .buyerDepositTxFee(in.readLong())
+                .sellerDepositTxFee(in.readLong())
+                .buyerPayoutTxFee(in.readLong())
+                .sellerPayoutTxFee(in.readLong())
+                .buyerPayoutAmount(in.readLong())
+                .sellerPayoutAmount(in.readLong())
+                .makerDepositTxId(readNullableUTF(in))
+                .takerDepositTxId(readNullableUTF(in))
+                .payoutTxId(readNullableUTF(in))
+                .arbitratorAddress(readNullableUTF(in))
+                .payoutState(Trade.PayoutState.valueOf(in.readUTF()))
+                .disputeState(Trade.DisputeState.valueOf(in.readUTF()))
+                .periodState(Trade.TradePeriodState.valueOf(in.readUTF()))
+                .depositsPublished(in.readBoolean())
+                .depositsConfirmed(in.readBoolean())
+                .depositsUnlocked(in.readBoolean())
+                .payoutConfirmed(in.readBoolean())
+                .payoutUnlocked(in.readBoolean())
+                .completed(in.readBoolean())
+                .build();
+    }
+
+    private static void writeNullableUTF(DataOutputStream out, @Nullable String value) throws IOException {
+        out.writeUTF(value == null ? "" : value);
+    }
+
+    @Nullable
+    private static String readNullableUTF(DataInputStream in) throws IOException {
+        String value = in.readUTF();
+        return value.isEmpty() ? null : value;
+    }
+}
@@ -69,6 +69,7 @@ import tuskex.core.trade.protocol.TradeProtocol;
 import tuskex.core.trade.statistics.TradeStatistics3;
 import tuskex.core.util.VolumeUtil;
 import tuskex.core.tsk.model.TskAddressEntry;
+import tuskex.core.tsk.wallet.TskWalletPollScheduler;
 import tuskex.core.tsk.wallet.TskWalletService;
 import tuskex.network.p2p.AckMessage;
 import tuskex.network.p2p.NodeAddress;
@@ -94,7 +95,6 @@ import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import monero.common.MoneroError;
 import monero.common.MoneroRpcConnection;
-import monero.common.TaskLooper;
 import monero.daemon.MoneroDaemon;
 import monero.daemon.model.MoneroKeyImage;
 import monero.daemon.model.MoneroTx;
@@ -139,6 +139,7 @@ public abstract class Trade implements Tradable, Model {
 
     private static final String MONERO_TRADE_WALLET_PREFIX = "tsk_trade_";
     private static final long SHUTDOWN_TIMEOUT_MS = 60000;
+    private static final long SHUTDOWN_THREADS_TIMEOUT_MS = 30000; // leaves time to close the wallet
     private static final long SYNC_EVERY_NUM_BLOCKS = 360; // ~1/2 day
     private static final long DELETE_AFTER_NUM_BLOCKS = 2; // if deposit requested but not published
     private static final long DELETE_AFTER_MS = TradeProtocol.TRADE_STEP_TIMEOUT_SECONDS;
@@ -424,13 +425,16 @@ public abstract class Trade implements Tradable, Model {
     transient private Subscription tradePhaseSubscription;
     transient private Subscription payoutStateSubscription;
     transient private Subscription disputeStateSubscription;
-    transient private TaskLooper pollLooper;
+    transient private TskWalletPollScheduler.PolledWallet polledWallet;
     transient private Long pollPeriodMs;
     transient private Long pollNormalStartTimeMs;
 
     public static final long DEFER_PUBLISH_MS = 25000; // 25 seconds
     private static final long IDLE_SYNC_PERIOD_MS = 1680000; // 28 minutes (monero's default connection timeout is 30 minutes on a local connection, so beyond this the wallets will disconnect)
     private static final long MAX_REPROCESS_DELAY_SECONDS = 7200; // max delay to reprocess messages (once per 2 hours)
+    private static final int POLL_PRIORITY_URGENT = 0; // deposits or payout pending
+    private static final int POLL_PRIORITY_ACTIVE = 1; // payment in progress
+    private static final int POLL_PRIORITY_IDLE = 2; // idling or waiting for payout to confirm
 
     //  Mutable
     @Getter
@@ -1435,8 +1439,8 @@ public abstract class Trade implements Tradable, Model {
                 isInitialized = false;
                 isShutDown = true;
                 List<Runnable> shutDownThreads = new ArrayList<>();
-                shutDownThreads.add(() -> ThreadUtils.shutDown(getId()));
-                shutDownThreads.add(() -> ThreadUtils.shutDown(getConnectionChangedThreadId()));
+                shutDownThreads.add(() -> ThreadUtils.shutDown(getId(), SHUTDOWN_THREADS_TIMEOUT_MS));
+                shutDownThreads.add(() -> ThreadUtils.shutDown(getConnectionChangedThreadId(), SHUTDOWN_THREADS_TIMEOUT_MS));
                 ThreadUtils.awaitTasks(shutDownThreads);
             }
 
@@ -2368,26 +2372,59 @@ public abstract class Trade implements Tradable, Model {
             if (isShutDownStarted || isPollInProgress()) return;
             updatePollPeriod();
             log.info("Starting to poll wallet for {} {}", getClass().getSimpleName(), getId());
-            pollLooper = new TaskLooper(() -> pollWallet());
-            pollLooper.start(pollPeriodMs);
+            polledWallet = new TskWalletPollScheduler.PolledWallet() {
+                @Override
+                public long getPollPeriodMs() {
+                    Long pollPeriodMsCopy = pollPeriodMs; // copy to avoid race condition
+                    return pollPeriodMsCopy == null ? tskConnectionService.getRefreshPeriodMs() : pollPeriodMsCopy;
+                }
+
+                @Override
+                public int getPollPriority() {
+                    return Trade.this.getPollPriority();
+                }
+
+                @Override
+                public String getPollDaemonUri() {
+                    MoneroRpcConnection connection = tskConnectionService.getConnection();
+                    return connection == null ? null : connection.getUri();
+                }
+
+                @Override
+                public void poll() {
+                    pollWallet();
+                }
+            };
+            tskWalletService.getTradeWalletPollScheduler().schedule(getId(), polledWallet);
         }
     }
 
     private void stopPolling() {
         synchronized (walletLock) {
             if (isPollInProgress()) {
-                pollLooper.stop();
-                pollLooper = null;
+                tskWalletService.getTradeWalletPollScheduler().unschedule(getId(), polledWallet);
+                polledWallet = null;
             }
         }
     }
     
     private boolean isPollInProgress() {
         synchronized (walletLock) {
-            return pollLooper != null;
+            return polledWallet != null;
         }
     }
 
+    // trades waiting for deposits or payout are polled first when the scheduler is busy
+    private int getPollPriority() {
+        if (isPayoutPublished() || Long.valueOf(IDLE_SYNC_PERIOD_MS).equals(pollPeriodMs)) return POLL_PRIORITY_IDLE;
+        if (!isDepositsUnlocked() || isPayoutExpected()) return POLL_PRIORITY_URGENT;
+        return POLL_PRIORITY_ACTIVE;
+    }
+
+    private boolean isPayoutExpected() {
+        return isPaymentReceived() || hasPaymentReceivedMessage() || hasDisputeClosedMessage() || disputeState.ordinal() >= DisputeState.ARBITRATOR_SENT_DISPUTE_CLOSED_MSG.ordinal();
+    }
+
     private void pollWallet() {
         if (pollInProgress) return;
         doPollWallet();
@@ -2454,7 +2491,7 @@ public abstract class Trade implements Tradable, Model {
                 if (isDepositsUnlocked()) {
 
                     // determine if payout tx expected
-                    boolean isPayoutExpected = isPaymentReceived() || hasPaymentReceivedMessage() || hasDisputeClosedMessage() || disputeState.ordinal() >= DisputeState.ARBITRATOR_SENT_DISPUTE_CLOSED_MSG.ordinal();
+                    boolean isPayoutExpected = isPayoutExpected();
 
                     // sync wallet if payout expected or payout is published
                     if (isPayoutExpected || isPayoutPublished()) syncWalletIfBehind();
@@ -2670,7 +2707,7 @@ public abstract class Trade implements Tradable, Model {
                 .setDisputeState(Trade.DisputeState.toProtoMessage(disputeState))
                 .setPeriodState(Trade.TradePeriodState.toProtoMessage(periodState))
                 .addAllChatMessage(getChatMessages().stream()
-                        .map(msg -> msg.toProtoNetworkEnvelope().getChatMessage())
+                        .map(ChatMessage::toPersistableProtoChatMessage)
                         .collect(Collectors.toList()))
                 .setLockTime(lockTime)
                 .setStartTime(startTime)
@@ -2713,7 +2750,7 @@ public abstract class Trade implements Tradable, Model {
         trade.setCompleted(proto.getIsCompleted());
 
         trade.chatMessages.addAll(proto.getChatMessageList().stream()
-                .map(ChatMessage::fromPayloadProto)
+                .map(ChatMessage::fromPersistedProto)
                 .collect(Collectors.toList()));
 
         return trade;
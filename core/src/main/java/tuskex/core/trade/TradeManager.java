@@ -36,7 +36,6 @@ package tuskex.core.trade;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
-import com.google.common.collect.ImmutableList;
 import com.google.inject.Inject;
 import tuskex.common.ClockWatcher;
 import tuskex.common.ThreadUtils;
@@ -170,6 +169,7 @@ public class TradeManager implements PersistedDataHost, DecryptedDirectMessageLi
     private final Map<String, TradeProtocol> tradeProtocolByTradeId = new HashMap<>();
     private final PersistenceManager<TradableList<Trade>> persistenceManager;
     private final TradableList<Trade> tradableList = new TradableList<>();
+    private final TradeRegistry tradeRegistry;
     @Getter
     private final BooleanProperty persistedTradesInitialized = new SimpleBooleanProperty();
     @Getter
@@ -254,6 +254,11 @@ public class TradeManager implements PersistedDataHost, DecryptedDirectMessageLi
 
         this.persistenceManager.initialize(tradableList, "PendingTrades", PersistenceManager.Source.PRIVATE);
 
+        // index the trades of all states for lookups on each trade message
+        tradeRegistry = new TradeRegistry(tradableList.getObservableList(),
+                closedTradableManager.getObservableList(),
+                failedTradesManager.getObservableList());
+
         p2PService.addDecryptedDirectMessageListener(this);
 
         failedTradesManager.setUnFailTradeCallback(this::unFailTrade);
@@ -431,8 +436,8 @@ public class TradeManager implements PersistedDataHost, DecryptedDirectMessageLi
         // initialize off main thread
         new Thread(() -> {
 
-            // get all trades
-            List<Trade> trades = getAllTrades();
+            // get all trades, copied as skipped trades are removed
+            List<Trade> trades = new ArrayList<>(getAllTrades());
 
             // initialize trades in parallel
             int threadPoolSize = 10;
@@ -515,6 +520,9 @@ public class TradeManager implements PersistedDataHost, DecryptedDirectMessageLi
             String referralId = referralIdService.getOptionalReferralId().orElse(null);
             boolean isTorNetworkNode = p2PService.getNetworkNode() instanceof TorNetworkNode;
             tradeStatisticsManager.maybeRepublishTradeStatistics(nonFailedTrades, referralId, isTorNetworkNode);
+
+            // move closed trades which are done for a while out of memory
+            closedTradableManager.maybeArchiveTrades();
         }).start();
 
         // allow execution to start
@@ -1238,8 +1246,9 @@ public class TradeManager implements PersistedDataHost, DecryptedDirectMessageLi
 
     public boolean wasOfferAlreadyUsedInTrade(String offerId) {
         return getOpenTrade(offerId).isPresent() ||
-                failedTradesManager.getTradeById(offerId).isPresent() ||
-                closedTradableManager.getTradableById(offerId).isPresent();
+                getFailedTrade(offerId).isPresent() ||
+                closedTradableManager.getTradableById(offerId).isPresent() ||
+                closedTradableManager.isArchived(offerId);
     }
 
     public boolean isBuyer(Offer offer) {
@@ -1252,13 +1261,12 @@ public class TradeManager implements PersistedDataHost, DecryptedDirectMessageLi
 
     // TODO (woodser): make Optional<Trade> versus Trade return types consistent
     public Trade getTrade(String tradeId) {
-        return getOpenTrade(tradeId).orElseGet(() -> getClosedTrade(tradeId).orElseGet(() -> getFailedTrade(tradeId).orElseGet(() -> null)));
+        Trade trade = tradeRegistry.getTrade(tradeId);
+        return trade != null ? trade : closedTradableManager.getArchivedTrade(tradeId).orElse(null);
     }
 
     public Optional<Trade> getOpenTrade(String tradeId) {
-        synchronized (tradableList) {
-            return tradableList.stream().filter(e -> e.getId().equals(tradeId)).findFirst();
-        }
+        return tradeRegistry.getTrade(TradeRegistry.State.OPEN, tradeId);
     }
 
     public boolean hasOpenTrade(Trade trade) {
@@ -1268,40 +1276,29 @@ public class TradeManager implements PersistedDataHost, DecryptedDirectMessageLi
     }
 
     public Optional<Trade> getOpenTradeByUid(String tradeUid) {
-        synchronized (tradableList) {
-            return tradableList.stream().filter(e -> e.getUid().equals(tradeUid)).findFirst();
-        }
+        return tradeRegistry.getOpenTradeByUid(tradeUid);
     }
 
+    // immutable snapshot, so callers can iterate without copying
     public List<Trade> getAllTrades() {
-        synchronized (tradableList) {
-            List<Trade> trades = new ArrayList<Trade>();
-            trades.addAll(tradableList.getList());
-            trades.addAll(closedTradableManager.getClosedTrades());
-            trades.addAll(failedTradesManager.getObservableList());
-            return trades;
-        }
+        return tradeRegistry.getAllTrades();
     }
 
     public List<Trade> getOpenTrades() {
-        synchronized (tradableList) {
-            return ImmutableList.copyOf(getObservableList().stream()
-                    .filter(e -> e instanceof Trade)
-                    .map(e -> e)
-                    .collect(Collectors.toList()));
-        }
+        return tradeRegistry.getTrades(TradeRegistry.State.OPEN);
     }
 
     public List<Trade> getClosedTrades() {
-        return closedTradableManager.getClosedTrades();
+        return tradeRegistry.getTrades(TradeRegistry.State.CLOSED);
     }
 
     public Optional<Trade> getClosedTrade(String tradeId) {
-        return closedTradableManager.getClosedTrades().stream().filter(e -> e.getId().equals(tradeId)).findFirst();
+        return tradeRegistry.getTrade(TradeRegistry.State.CLOSED, tradeId)
+                .or(() -> closedTradableManager.getArchivedTrade(tradeId));
     }
 
     public Optional<Trade> getFailedTrade(String tradeId) {
-        return failedTradesManager.getTradeById(tradeId);
+        return tradeRegistry.getTrade(TradeRegistry.State.FAILED, tradeId);
     }
 
     private void addTrade(Trade trade) {
@@ -29,6 +29,7 @@ import tuskex.core.trade.statistics.ReferralIdService;
 
 import static com.google.inject.name.Names.named;
 import static tuskex.common.config.Config.DUMP_STATISTICS;
+import static tuskex.common.config.Config.DUMP_STATISTICS_INCREMENTALLY;
 
 public class TradeModule extends AppModule {
 
@@ -48,5 +49,6 @@ public class TradeModule extends AppModule {
         bind(ReferralIdService.class).in(Singleton.class);
 
         bindConstant().annotatedWith(named(DUMP_STATISTICS)).to(config.dumpStatistics);
+        bindConstant().annotatedWith(named(DUMP_STATISTICS_INCREMENTALLY)).to(config.dumpStatisticsIncrementally);
     }
 }
@@ -0,0 +1,157 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.core.trade;
+
+import com.google.common.collect.ImmutableList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+/**
+ * Index of the open, closed and failed trades by id and of the open trades by uid. The id of a trade is the id of
+ * its offer, so the index by id is also the index by offer id.
+ *
+ * The index follows the changes of the lists which hold the trades, so it stays consistent however the trades are
+ * moved between them. Lookups do not lock, and the lists returned are immutable snapshots which are only rebuilt
+ * after changes.
+ */
+class TradeRegistry {
+
+    enum State {
+        OPEN,
+        CLOSED,
+        FAILED
+    }
+
+    private final Map<State, Map<String, Trade>> tradesById = new EnumMap<>(State.class);
+    private final Map<String, Trade> openTradesByUid = new ConcurrentHashMap<>();
+
+    // insertion ordered trades per state to build the snapshots, guarded by this
+    private final Map<State, LinkedHashMap<String, Trade>> orderedTrades = new EnumMap<>(State.class);
+    private volatile Map<State, List<Trade>> snapshots = new EnumMap<>(State.class);
+    private volatile List<Trade> allTradesSnapshot;
+
+    TradeRegistry(ObservableList<Trade> openTrades,
+                  ObservableList<? extends Tradable> closedTradables,
+                  ObservableList<Trade> failedTrades) {
+        for (State state : State.values()) {
+            tradesById.put(state, new ConcurrentHashMap<>());
+            orderedTrades.put(state, new LinkedHashMap<>());
+        }
+        track(State.OPEN, openTrades);
+        track(State.CLOSED, closedTradables);
+        track(State.FAILED, failedTrades);
+    }
+
+    Optional<Trade> getTrade(State state, String tradeId) {
+        return Optional.ofNullable(tradesById.get(state).get(tradeId));
+    }
+
+    /**
+     * @return the open, closed or failed trade with the id, in this order, or null
+     */
+    Trade getTrade(String tradeId) {
+        for (State state : State.values()) {
+            Trade trade = tradesById.get(state).get(tradeId);
+            if (trade != null) return trade;
+        }
+        return null;
+    }
+
+    Optional<Trade> getOpenTradeByUid(String tradeUid) {
+        return Optional.ofNullable(openTradesByUid.get(tradeUid));
+    }
+
+    List<Trade> getTrades(State state) {
+        List<Trade> snapshot = snapshots.get(state);
+        if (snapshot != null) return snapshot;
+        synchronized (this) {
+            snapshot = snapshots.get(state);
+            if (snapshot == null) {
+                snapshot = ImmutableList.copyOf(orderedTrades.get(state).values());
+                Map<State, List<Trade>> snapshots = new EnumMap<>(this.snapshots);
+                snapshots.put(state, snapshot);
+                this.snapshots = snapshots;
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * @return the open, closed and failed trades, in this order
+     */
+    List<Trade> getAllTrades() {
+        List<Trade> snapshot = allTradesSnapshot;
+        if (snapshot != null) return snapshot;
+        synchronized (this) {
+            if (allTradesSnapshot == null) {
+                ImmutableList.Builder<Trade> builder = ImmutableList.builder();
+                for (State state : State.values()) builder.addAll(orderedTrades.get(state).values());
+                allTradesSnapshot = builder.build();
+            }
+            return allTradesSnapshot;
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void track(State state, ObservableList<? extends Tradable> tradables) {
+        tradables.addListener((ListChangeListener<Tradable>) change -> {
+            while (change.next()) {
+                if (change.wasRemoved()) change.getRemoved().forEach(tradable -> remove(state, tradable));
+                if (change.wasAdded()) change.getAddedSubList().forEach(tradable -> add(state, tradable));
+            }
+        });
+        synchronized (tradables) {
+            tradables.forEach(tradable -> add(state, tradable));
+        }
+    }
+
+    private synchronized void add(State state, Tradable tradable) {
+        if (!(tradable instanceof Trade)) return;
+        Trade trade = (Trade) tradable;
+        tradesById.get(state).put(trade.getId(), trade);
+        if (state == State.OPEN) openTradesByUid.put(trade.getUid(), trade);
+        orderedTrades.get(state).put(trade.getId(), trade);
+        onChanged(state);
+    }
+
+    private synchronized void remove(State state, Tradable tradable) {
+        if (!(tradable instanceof Trade)) return;
+        Trade trade = (Trade) tradable;
+        tradesById.get(state).remove(trade.getId(), trade);
+        if (state == State.OPEN) openTradesByUid.remove(trade.getUid(), trade);
+        orderedTrades.get(state).remove(trade.getId(), trade);
+        onChanged(state);
+    }
+
+    private void onChanged(State state) {
+        Map<State, List<Trade>> snapshots = new EnumMap<>(this.snapshots);
+        snapshots.remove(state);
+        this.snapshots = snapshots;
+        allTradesSnapshot = null;
+    }
+}
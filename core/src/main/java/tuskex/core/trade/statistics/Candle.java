@@ -0,0 +1,46 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.core.trade.statistics;
+
+import tuskex.core.locale.CurrencyUtil;
+import lombok.Value;
+
+import java.math.BigInteger;
+
+/**
+ * Aggregate of the trade statistics of a currency in a time interval.
+ */
+@Value
+public class Candle {
+    String currencyCode;
+    CandleInterval interval;
+    long start; // ms since epoch
+    long open;
+    long close;
+    long high;
+    long low;
+    long average;
+    long median;
+    BigInteger accumulatedAmount;
+    BigInteger accumulatedVolume;
+    long numTrades;
+
+    public boolean isBullish() {
+        return CurrencyUtil.isCryptoCurrency(currencyCode) ? close < open : close > open;
+    }
+}
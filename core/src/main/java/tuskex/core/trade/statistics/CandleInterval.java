@@ -0,0 +1,70 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.core.trade.statistics;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Time interval of the candles of trade statistics. Intervals start at the local time of the zone, weeks on Monday.
+ */
+public enum CandleInterval {
+    YEAR,
+    MONTH,
+    WEEK,
+    DAY,
+    HOUR,
+    MINUTE_10;
+
+    /**
+     * Get the start of the interval which contains the date.
+     *
+     * @param date the date in ms since epoch
+     * @param zoneId the zone of the local time
+     * @return the start of the interval in ms since epoch
+     */
+    public long getStart(long date, ZoneId zoneId) {
+        LocalDateTime localDate = LocalDateTime.ofInstant(Instant.ofEpochMilli(date), zoneId);
+        LocalDateTime start;
+        switch (this) {
+            case YEAR:
+                start = localDate.withDayOfYear(1).truncatedTo(ChronoUnit.DAYS);
+                break;
+            case MONTH:
+                start = localDate.withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS);
+                break;
+            case WEEK:
+                start = localDate.minusDays(localDate.getDayOfWeek().getValue() - 1).truncatedTo(ChronoUnit.DAYS);
+                break;
+            case DAY:
+                start = localDate.truncatedTo(ChronoUnit.DAYS);
+                break;
+            case HOUR:
+                start = localDate.truncatedTo(ChronoUnit.HOURS);
+                break;
+            case MINUTE_10:
+                start = localDate.withMinute(localDate.getMinute() - localDate.getMinute() % 10).truncatedTo(ChronoUnit.MINUTES);
+                break;
+            default:
+                throw new IllegalStateException("Unhandled candle interval " + this);
+        }
+        return start.atZone(zoneId).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.core.trade.statistics;
+
+import tuskex.common.util.MathUtils;
+import tuskex.core.locale.CurrencyUtil;
+import tuskex.core.monetary.CryptoMoney;
+import tuskex.core.monetary.TraditionalMoney;
+import java.math.BigInteger;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Candles of trade statistics per currency and interval. The trade statistics of a currency are kept in primitive
+ * arrays and the candles of an interval are only built when they are requested the first time. After that they are
+ * updated with each added trade statistics, so queries need not aggregate the trade statistics again.
+ */
+class TradeStatisticsCandles {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static class Bucket {
+        private long openDate = Long.MAX_VALUE;
+        private long open;
+        private long closeDate = Long.MIN_VALUE;
+        private long close;
+        private long high = Long.MIN_VALUE;
+        private long low = Long.MAX_VALUE;
+        private BigInteger accumulatedAmount = BigInteger.ZERO;
+        private BigInteger accumulatedVolume = BigInteger.ZERO;
+        // unsorted, the median is computed when the candle is requested
+        private long[] prices = new long[1];
+        private int numTrades;
+
+        private void add(long date, long price, long amount, long volume) {
+            if (date < openDate) {
+                openDate = date;
+                open = price;
+            }
+            if (date >= closeDate) {
+                closeDate = date;
+                close = price;
+            }
+            high = Math.max(high, price);
+            low = Math.min(low, price);
+            accumulatedAmount = accumulatedAmount.add(BigInteger.valueOf(amount));
+            accumulatedVolume = accumulatedVolume.add(BigInteger.valueOf(volume));
+            if (numTrades == prices.length) prices = Arrays.copyOf(prices, prices.length * 2);
+            prices[numTrades++] = price;
+        }
+
+        private Candle toCandle(String currencyCode, CandleInterval interval, long start) {
+            long average;
+            if (CurrencyUtil.isCryptoCurrency(currencyCode)) {
+                double accumulatedAmountAsDouble = MathUtils.scaleUpByPowerOf10(accumulatedAmount.doubleValue(), 4 + CryptoMoney.SMALLEST_UNIT_EXPONENT);
+                average = MathUtils.roundDoubleToLong(accumulatedAmountAsDouble / accumulatedVolume.doubleValue());
+            } else {
+                double accumulatedVolumeAsDouble = MathUtils.scaleUpByPowerOf10(accumulatedVolume.doubleValue(), 4 + TraditionalMoney.SMALLEST_UNIT_EXPONENT);
+                average = MathUtils.roundDoubleToLong(accumulatedVolumeAsDouble / accumulatedAmount.doubleValue());
+            }
+            return new Candle(currencyCode, interval, start, open, close, high, low, average, getMedian(),
+                    accumulatedAmount, accumulatedVolume, numTrades);
+        }
+
+        // same as MathUtils.getMedian for the sorted prices
+        private long getMedian() {
+            if (numTrades == 0) return 0;
+            long[] sortedPrices = Arrays.copyOf(prices, numTrades);
+            Arrays.sort(sortedPrices);
+            int middle = numTrades / 2;
+            if (numTrades % 2 == 1) return sortedPrices[middle];
+            return MathUtils.roundDoubleToLong((sortedPrices[middle - 1] + sortedPrices[middle]) / 2.0);
+        }
+    }
+
+    // trade statistics of a currency in the order they were added and the candles built so far
+    private static class CurrencyCandles {
+        private long[] dates = new long[INITIAL_CAPACITY];
+        private long[] prices = new long[INITIAL_CAPACITY];
+        private long[] amounts = new long[INITIAL_CAPACITY];
+        private long[] volumes = new long[INITIAL_CAPACITY];
+        private int size;
+        private final Map<CandleInterval, NavigableMap<Long, Bucket>> bucketsByInterval = new EnumMap<>(CandleInterval.class);
+
+        private void add(long date, long price, long amount, long volume, ZoneId zoneId) {
+            if (size == dates.length) {
+                int capacity = size * 2;
+                dates = Arrays.copyOf(dates, capacity);
+                prices = Arrays.copyOf(prices, capacity);
+                amounts = Arrays.copyOf(amounts, capacity);
+                volumes = Arrays.copyOf(volumes, capacity);
+            }
+            dates[size] = date;
+            prices[size] = price;
+            amounts[size] = amount;
+            volumes[size] = volume;
+            size++;
+            bucketsByInterval.forEach((interval, buckets) -> addToBuckets(buckets, interval, date, price, amount, volume, zoneId));
+        }
+
+        private NavigableMap<Long, Bucket> getBuckets(CandleInterval interval, ZoneId zoneId) {
+            return bucketsByInterval.computeIfAbsent(interval, i -> {
+                NavigableMap<Long, Bucket> buckets = new TreeMap<>();
+                for (int j = 0; j < size; j++) {
+                    addToBuckets(buckets, interval, dates[j], prices[j], amounts[j], volumes[j], zoneId);
+                }
+                return buckets;
+            });
+        }
+
+        private static void addToBuckets(NavigableMap<Long, Bucket> buckets,
+                                         CandleInterval interval,
+                                         long date,
+                                         long price,
+                                         long amount,
+                                         long volume,
+                                         ZoneId zoneId) {
+            buckets.computeIfAbsent(interval.getStart(date, zoneId), start -> new Bucket())
+                    .add(date, price, amount, volume);
+        }
+    }
+
+    private final ZoneId zoneId;
+    private final Map<String, CurrencyCandles> candlesByCurrency = new HashMap<>();
+
+    TradeStatisticsCandles(ZoneId zoneId) {
+        this.zoneId = zoneId;
+    }
+
+    synchronized void add(TradeStatistics3 tradeStatistics) {
+        candlesByCurrency.computeIfAbsent(tradeStatistics.getCurrency().toUpperCase(), currencyCode -> new CurrencyCandles())
+                .add(tradeStatistics.getDateAsLong(),
+                        tradeStatistics.getTradePrice().getValue(),
+                        tradeStatistics.getTradeAmount().longValueExact(),
+                        tradeStatistics.getTradeVolume().getValue(),
+                        zoneId);
+    }
+
+    /**
+     * Get the candles of a currency which start in a time range, oldest first.
+     *
+     * @param currencyCode the currency code
+     * @param interval the interval of the candles
+     * @param fromDate the start of the range in ms since epoch, inclusive
+     * @param toDate the end of the range in ms since epoch, exclusive
+     * @return the candles, only of intervals with trades
+     */
+    synchronized List<Candle> getCandles(String currencyCode, CandleInterval interval, long fromDate, long toDate) {
+        CurrencyCandles currencyCandles = candlesByCurrency.get(currencyCode.toUpperCase());
+        if (currencyCandles == null || fromDate >= toDate) {
+            return new ArrayList<>();
+        }
+        return currencyCandles.getBuckets(interval, zoneId).subMap(fromDate, true, toDate, false).entrySet().stream()
+                .map(entry -> entry.getValue().toCandle(currencyCode.toUpperCase(), interval, entry.getKey()))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * This file is part of Tuskex.
+ *
+ * Tuskex is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Tuskex is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Tuskex. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.core.trade.statistics;
+
+import tuskex.common.util.Utilities;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+
+/**
+ * Index of trade statistics sorted by date, for all currencies and per currency, so range queries only visit the
+ * trade statistics in the range.
+ *
+ * Query results are sorted newest first. A cursor identifies the last trade statistics of a page, the next page
+ * continues with the trade statistics which are older.
+ */
+class TradeStatisticsIndex {
+
+    private static final byte[] MIN_HASH = new byte[0];
+
+    private static final class Key implements Comparable<Key> {
+        private final long date;
+        private final byte[] hash;
+
+        private Key(long date, byte[] hash) {
+            this.date = date;
+            this.hash = hash;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int result = Long.compare(date, other.date);
+            return result != 0 ? result : Arrays.compareUnsigned(hash, other.hash);
+        }
+    }
+
+    private final NavigableMap<Key, TradeStatistics3> tradeStatistics = new TreeMap<>();
+    private final Map<String, NavigableMap<Key, TradeStatistics3>> tradeStatisticsByCurrency = new HashMap<>();
+
+    synchronized void add(TradeStatistics3 tradeStatistic) {
+        Key key = new Key(tradeStatistic.getDateAsLong(), tradeStatistic.getHash());
+        tradeStatistics.put(key, tradeStatistic);
+        tradeStatisticsByCurrency.computeIfAbsent(tradeStatistic.getCurrency().toUpperCase(), c -> new TreeMap<>())
+                .put(key, tradeStatistic);
+    }
+
+    synchronized int size() {
+        return tradeStatistics.size();
+    }
+
+    /**
+     * Get trade statistics in a time range, newest first.
+     *
+     * @param currencyCode the currency code or null for all currencies
+     * @param fromDate the start of the range in ms since epoch, inclusive
+     * @param toDate the end of the range in ms since epoch, exclusive
+     * @param cursor the cursor of the last trade statistics of the previous page or null for the first page
+     * @param limit the maximum number of trade statistics to return
+     * @return the trade statistics
+     */
+    synchronized List<TradeStatistics3> getTradeStatistics(@Nullable String currencyCode,
+                                                           long fromDate,
+                                                           long toDate,
+                                                           @Nullable String cursor,
+                                                           int limit) {
+        List<TradeStatistics3> result = new ArrayList<>();
+        NavigableMap<Key, TradeStatistics3> map = currencyCode == null ? tradeStatistics : tradeStatisticsByCurrency.get(currencyCode.toUpperCase());
+        if (map == null || fromDate >= toDate) return result;
+
+        Key toKey = new Key(toDate, MIN_HASH);
+        if (cursor != null) {
+            Key cursorKey = fromCursor(cursor);
+            if (cursorKey.compareTo(toKey) < 0) toKey = cursorKey;
+        }
+        Key fromKey = new Key(fromDate, MIN_HASH);
+        if (fromKey.compareTo(toKey) >= 0) return result;
+        for (TradeStatistics3 tradeStatistic : map.subMap(fromKey, true, toKey, false).descendingMap().values()) {
+            if (result.size() >= limit) break;
+            result.add(tradeStatistic);
+        }
+        return result;
+    }
+
+    static String toCursor(TradeStatistics3 tradeStatistic) {
+        return tradeStatistic.getDateAsLong() + ":" + Utilities.bytesAsHexString(tradeStatistic.getHash());
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private static Key fromCursor(String cursor) {
+        int separatorIndex = cursor.indexOf(':');
+        if (separatorIndex < 0) throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        try {
+            return new Key(Long.parseLong(cursor.substring(0, separatorIndex)), Utilities.decodeFromHex(cursor.substring(separatorIndex + 1)));
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+}
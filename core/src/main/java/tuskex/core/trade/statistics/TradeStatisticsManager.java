@@ -17,11 +17,13 @@
 
 package tuskex.core.trade.statistics;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.google.inject.name.Named;
 import tuskex.common.config.Config;
 import tuskex.common.file.JsonFileManager;
+import tuskex.common.file.NdjsonFileManager;
 import tuskex.core.locale.CurrencyTuple;
 import tuskex.core.locale.CurrencyUtil;
 import tuskex.core.locale.Res;
@@ -33,27 +35,40 @@ import tuskex.network.p2p.storage.P2PDataStorage;
 import tuskex.network.p2p.storage.persistence.AppendOnlyDataStoreService;
 import java.io.File;
 import java.time.Instant;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableSet;
 import javax.annotation.Nullable;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 
 @Singleton
 @Slf4j
 public class TradeStatisticsManager {
+    private static final long LENIENT_DUPLICATE_WINDOW_MS = 120000;
+
     private final P2PService p2PService;
     private final PriceFeedService priceFeedService;
     private final TradeStatistics3StorageService tradeStatistics3StorageService;
     private final File storageDir;
     private final boolean dumpStatistics;
+    private final boolean dumpStatisticsIncrementally;
     private final ObservableSet<TradeStatistics3> observableTradeStatisticsSet = FXCollections.observableSet();
+    private final TradeStatisticsIndex tradeStatisticsIndex = new TradeStatisticsIndex();
+    private final TradeStatisticsCandles tradeStatisticsCandles = new TradeStatisticsCandles(ZoneId.systemDefault());
     private JsonFileManager jsonFileManager;
+    private NdjsonFileManager ndjsonFileManager;
 
     @Inject
     public TradeStatisticsManager(P2PService p2PService,
@@ -61,12 +76,14 @@ public class TradeStatisticsManager {
                                   TradeStatistics3StorageService tradeStatistics3StorageService,
                                   AppendOnlyDataStoreService appendOnlyDataStoreService,
                                   @Named(Config.STORAGE_DIR) File storageDir,
-                                  @Named(Config.DUMP_STATISTICS) boolean dumpStatistics) {
+                                  @Named(Config.DUMP_STATISTICS) boolean dumpStatistics,
+                                  @Named(Config.DUMP_STATISTICS_INCREMENTALLY) boolean dumpStatisticsIncrementally) {
         this.p2PService = p2PService;
         this.priceFeedService = priceFeedService;
         this.tradeStatistics3StorageService = tradeStatistics3StorageService;
         this.storageDir = storageDir;
         this.dumpStatistics = dumpStatistics;
+        this.dumpStatisticsIncrementally = dumpStatisticsIncrementally;
 
 
         appendOnlyDataStoreService.addService(tradeStatistics3StorageService);
@@ -76,6 +93,9 @@ public class TradeStatisticsManager {
         if (jsonFileManager != null) {
             jsonFileManager.shutDown();
         }
+        if (ndjsonFileManager != null) {
+            ndjsonFileManager.shutDown();
+        }
     }
 
     public void onAllServicesInitialized() {
@@ -85,15 +105,16 @@ public class TradeStatisticsManager {
                 if (!tradeStatistics.isValid()) {
                     return;
                 }
+                boolean added;
                 synchronized (observableTradeStatisticsSet) {
-                    observableTradeStatisticsSet.add(tradeStatistics);
+                    added = addTradeStatistics(tradeStatistics);
                     priceFeedService.applyLatestTuskexMarketPrice(observableTradeStatisticsSet);
                 }
-                maybeDumpStatistics();
+                if (added) maybeDumpStatistics(Collections.singleton(tradeStatistics));
             }
         });
 
-        Set<TradeStatistics3> set = tradeStatistics3StorageService.getMapOfAllData().values().stream()
+        Set<TradeStatistics3> set = tradeStatistics3StorageService.streamAllData()
                 .filter(e -> e instanceof TradeStatistics3)
                 .map(e -> (TradeStatistics3) e)
                 .filter(TradeStatistics3::isValid)
@@ -103,49 +124,148 @@ public class TradeStatisticsManager {
         // remove duplicates in early trades due to bug
         deduplicateEarlyTradeStatistics(set);
 
+        // the listener may already have added trade statistics which arrived before
+        List<TradeStatistics3> added = new ArrayList<>();
         synchronized (observableTradeStatisticsSet) {
-            observableTradeStatisticsSet.addAll(set);
+            for (TradeStatistics3 tradeStatistics : set) {
+                if (addTradeStatistics(tradeStatistics)) {
+                    added.add(tradeStatistics);
+                }
+            }
             priceFeedService.applyLatestTuskexMarketPrice(observableTradeStatisticsSet);
         }
-        maybeDumpStatistics();
+        maybeDumpStatistics(added);
+    }
+
+    // The index and candles are not idempotent, so only trade statistics new to the set are added to them. They are
+    // added before the set, so the listeners of the set see them in the index and candles.
+    private boolean addTradeStatistics(TradeStatistics3 tradeStatistics) {
+        if (observableTradeStatisticsSet.contains(tradeStatistics)) {
+            return false;
+        }
+        tradeStatisticsIndex.add(tradeStatistics);
+        tradeStatisticsCandles.add(tradeStatistics);
+        observableTradeStatisticsSet.add(tradeStatistics);
+        return true;
     }
 
-    private void deduplicateEarlyTradeStatistics(Set<TradeStatistics3> set) {
+    @VisibleForTesting
+    static void deduplicateEarlyTradeStatistics(Set<TradeStatistics3> set) {
 
         // collect trades before May 31, 2024
         Set<TradeStatistics3> tradesBeforeMay31_24 = set.stream()
                 .filter(e -> e.getDate().toInstant().isBefore(Instant.parse("2024-05-31T00:00:00Z")))
                 .collect(Collectors.toSet());
 
-        // collect duplicated trades
+        // collect duplicated trades. Lenient duplicates have the same currency, amount and price and are less than
+        // 2 minutes apart, so they are in the same or a neighbouring bucket of 2 minutes.
         Set<TradeStatistics3> duplicated = new HashSet<TradeStatistics3>();
-        Set<TradeStatistics3> deduplicated = new HashSet<TradeStatistics3>();
+        Map<LenientDuplicateKey, List<TradeStatistics3>> deduplicated = new HashMap<>();
         for (TradeStatistics3 tradeStatistics : tradesBeforeMay31_24) {
-            if (hasLenientDuplicate(tradeStatistics, deduplicated)) duplicated.add(tradeStatistics);
-            else deduplicated.add(tradeStatistics);
+            if (hasLenientDuplicate(tradeStatistics, deduplicated)) {
+                duplicated.add(tradeStatistics);
+            } else {
+                deduplicated.computeIfAbsent(new LenientDuplicateKey(tradeStatistics, getLenientDuplicateBucket(tradeStatistics)),
+                        key -> new ArrayList<>()).add(tradeStatistics);
+            }
         }
 
         // remove duplicated trades
         set.removeAll(duplicated);
     }
 
-    private boolean hasLenientDuplicate(TradeStatistics3 tradeStatistics, Set<TradeStatistics3> set) {
-        return set.stream().anyMatch(e -> isLenientDuplicate(tradeStatistics, e));
+    private static boolean hasLenientDuplicate(TradeStatistics3 tradeStatistics,
+                                               Map<LenientDuplicateKey, List<TradeStatistics3>> deduplicated) {
+        long bucket = getLenientDuplicateBucket(tradeStatistics);
+        for (long neighbour = bucket - 1; neighbour <= bucket + 1; neighbour++) {
+            List<TradeStatistics3> candidates = deduplicated.get(new LenientDuplicateKey(tradeStatistics, neighbour));
+            if (candidates != null && candidates.stream().anyMatch(e -> isLenientDuplicate(tradeStatistics, e))) {
+                return true;
+            }
+        }
+        return false;
     }
 
-    private boolean isLenientDuplicate(TradeStatistics3 tradeStatistics1, TradeStatistics3 tradeStatistics2) {
-        boolean isWithin2Minutes = Math.abs(tradeStatistics1.getDate().getTime() - tradeStatistics2.getDate().getTime()) < 120000;
+    private static boolean isLenientDuplicate(TradeStatistics3 tradeStatistics1, TradeStatistics3 tradeStatistics2) {
+        boolean isWithin2Minutes = Math.abs(tradeStatistics1.getDate().getTime() - tradeStatistics2.getDate().getTime()) < LENIENT_DUPLICATE_WINDOW_MS;
         return isWithin2Minutes && 
                 tradeStatistics1.getCurrency().equals(tradeStatistics2.getCurrency()) &&
                 tradeStatistics1.getAmount() == tradeStatistics2.getAmount() && 
                 tradeStatistics1.getPrice() == tradeStatistics2.getPrice();
     }
 
+    private static long getLenientDuplicateBucket(TradeStatistics3 tradeStatistics) {
+        return Math.floorDiv(tradeStatistics.getDate().getTime(), LENIENT_DUPLICATE_WINDOW_MS);
+    }
+
+    @Value
+    private static class LenientDuplicateKey {
+        String currency;
+        long amount;
+        long price;
+        long bucket;
+
+        LenientDuplicateKey(TradeStatistics3 tradeStatistics, long bucket) {
+            this.currency = tradeStatistics.getCurrency();
+            this.amount = tradeStatistics.getAmount();
+            this.price = tradeStatistics.getPrice();
+            this.bucket = bucket;
+        }
+    }
+
     public ObservableSet<TradeStatistics3> getObservableTradeStatisticsSet() {
         return observableTradeStatisticsSet;
     }
 
-    private void maybeDumpStatistics() {
+    /**
+     * Get a page of trade statistics in a time range, newest first.
+     *
+     * @param currencyCode the currency code or null for all currencies
+     * @param fromDate the start of the range in ms since epoch, inclusive
+     * @param toDate the end of the range in ms since epoch, exclusive
+     * @param cursor the next cursor of the previous page or null for the first page
+     * @param limit the maximum number of trade statistics in the page
+     * @return the page of trade statistics
+     */
+    public TradeStatisticsPage getTradeStatistics(@Nullable String currencyCode,
+                                                  long fromDate,
+                                                  long toDate,
+                                                  @Nullable String cursor,
+                                                  int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("Limit must be positive but was " + limit);
+        List<TradeStatistics3> tradeStatistics = tradeStatisticsIndex.getTradeStatistics(currencyCode, fromDate, toDate, cursor, limit == Integer.MAX_VALUE ? limit : limit + 1);
+        if (tradeStatistics.size() <= limit) return new TradeStatisticsPage(tradeStatistics, null);
+        tradeStatistics = tradeStatistics.subList(0, limit);
+        return new TradeStatisticsPage(tradeStatistics, TradeStatisticsIndex.toCursor(tradeStatistics.get(limit - 1)));
+    }
+
+    /**
+     * Get the candles of a currency which start in a time range, oldest first.
+     *
+     * @param currencyCode the currency code
+     * @param interval the interval of the candles
+     * @param fromDate the start of the range in ms since epoch, inclusive
+     * @param toDate the end of the range in ms since epoch, exclusive
+     * @return the candles, only of intervals with trades
+     */
+    public List<Candle> getCandles(String currencyCode, CandleInterval interval, long fromDate, long toDate) {
+        return tradeStatisticsCandles.getCandles(currencyCode, interval, fromDate, toDate);
+    }
+
+    @Value
+    public static class TradeStatisticsPage {
+        List<TradeStatistics3> tradeStatistics;
+        @Nullable
+        String nextCursor; // null if there are no more trade statistics
+    }
+
+    /**
+     * Dump the trade statistics if enabled. In incremental mode only the added trade statistics are appended,
+     * otherwise all trade statistics are written again.
+     *
+     * @param addedTradeStatistics the trade statistics added since the last call
+     */
+    private void maybeDumpStatistics(Collection<TradeStatistics3> addedTradeStatistics) {
         if (!dumpStatistics) {
             return;
         }
@@ -184,6 +304,19 @@ public class TradeStatisticsManager {
             jsonFileManager.writeToDiscThreaded(JsonUtil.objectToJson(activeCryptoCurrencyList), "active_crypto_currency_list");
         }
 
+        if (dumpStatisticsIncrementally) {
+            if (ndjsonFileManager == null) {
+                // segments already written are read on the first append, so records of previous runs are skipped
+                ndjsonFileManager = new NdjsonFileManager(new File(storageDir, "trade_statistics"), true);
+            }
+            List<NdjsonFileManager.Record> records = addedTradeStatistics.stream()
+                    .sorted(Comparator.comparingLong(TradeStatistics3::getDateAsLong))
+                    .map(e -> new NdjsonFileManager.Record(e.getDateAsLong(), e.getCurrency(), JsonUtil.objectToCompactJson(new TradeStatisticsForJson(e))))
+                    .collect(Collectors.toList());
+            ndjsonFileManager.appendThreaded(records);
+            return;
+        }
+
         List<TradeStatisticsForJson> list = observableTradeStatisticsSet.stream()
                 .map(TradeStatisticsForJson::new)
                 .sorted((o1, o2) -> (Long.compare(o2.tradeDate, o1.tradeDate)))
@@ -197,7 +330,6 @@ public class TradeStatisticsManager {
                                               @Nullable String referralId,
                                               boolean isTorNetworkNode) {
         long ts = System.currentTimeMillis();
-        Set<P2PDataStorage.ByteArray> hashes = tradeStatistics3StorageService.getMapOfAllData().keySet();
         trades.forEach(trade -> {
             if (!trade.shouldPublishTradeStatistics()) {
                 log.debug("Trade: {} should not publish trade statistics", trade.getShortId());
@@ -211,7 +343,7 @@ public class TradeStatisticsManager {
                 log.warn("Error getting trade statistic for {} {}: {}", trade.getClass().getName(), trade.getId(), e.getMessage());
                 return;
             }
-            boolean hasTradeStatistics3 = hashes.contains(new P2PDataStorage.ByteArray(tradeStatistics3.getHash()));
+            boolean hasTradeStatistics3 = tradeStatistics3StorageService.anyMapContainsKey(new P2PDataStorage.ByteArray(tradeStatistics3.getHash()));
             if (hasTradeStatistics3) {
                 log.debug("Trade: {}. We have already a tradeStatistics matching the hash of tradeStatistics3.",
                         trade.getShortId());
@@ -228,6 +360,6 @@ public class TradeStatisticsManager {
             p2PService.addPersistableNetworkPayload(tradeStatistics3, true);
         });
         log.info("maybeRepublishTradeStatistics took {} ms. Number of tradeStatistics: {}. Number of own trades: {}",
-                System.currentTimeMillis() - ts, hashes.size(), trades.size());
+                System.currentTimeMillis() - ts, tradeStatisticsIndex.size(), trades.size());
     }
 }
@@ -0,0 +1,174 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.core.tsk.wallet;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import monero.daemon.model.MoneroTx;
+
+/**
+ * Bounded cache of txs fetched from the daemon.
+ *
+ * Txs expire after a time which depends on their confirmations: txs with at least NUM_BLOCKS_UNLOCK confirmations
+ * hardly change and are kept longer than unconfirmed or recently confirmed txs. The least recently used txs are
+ * evicted if the cache is full.
+ *
+ * Only the txs which are missing are fetched, in batches. Concurrent lookups of the same tx share a single fetch,
+ * and no lock is held while fetching from the daemon.
+ */
+class TskDaemonTxCache {
+    private static final int MAX_BATCH_SIZE = 100;
+
+    private static class Entry {
+        private final MoneroTx tx;
+        private final long expiryTime;
+
+        private Entry(MoneroTx tx, long expiryTime) {
+            this.tx = tx;
+            this.expiryTime = expiryTime;
+        }
+    }
+
+    private final Function<List<String>, List<MoneroTx>> fetcher;
+    private final long unlockedTtlMs;
+    private final LongSupplier ttlMs;
+    private final Map<String, Entry> cache;
+    private final Map<String, CompletableFuture<MoneroTx>> fetchesInFlight = new HashMap<>();
+
+    /**
+     * @param maxSize the maximum number of cached txs
+     * @param unlockedTtlMs the time to live of txs with at least NUM_BLOCKS_UNLOCK confirmations
+     * @param ttlMs supplies the time to live of other txs
+     * @param fetcher fetches the txs with the given hashes from the daemon, txs which are not found are omitted
+     */
+    TskDaemonTxCache(int maxSize, long unlockedTtlMs, LongSupplier ttlMs, Function<List<String>, List<MoneroTx>> fetcher) {
+        this.fetcher = fetcher;
+        this.unlockedTtlMs = unlockedTtlMs;
+        this.ttlMs = ttlMs;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get txs from the cache and fetch the txs which are not cached or expired.
+     *
+     * @param txHashes the hashes of the txs
+     * @return the txs in the order of the hashes, null for txs which are not found
+     */
+    List<MoneroTx> getTxs(List<String> txHashes) {
+        return getTxs(txHashes, true);
+    }
+
+    /**
+     * Fetch txs and update the cache. Fetches of the same txs which are in flight are joined.
+     *
+     * @param txHashes the hashes of the txs
+     * @return the txs in the order of the hashes, null for txs which are not found
+     */
+    List<MoneroTx> fetchTxs(List<String> txHashes) {
+        return getTxs(txHashes, false);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private List<MoneroTx> getTxs(List<String> txHashes, boolean useCache) {
+        Map<String, MoneroTx> cachedTxs = new HashMap<>();
+        Map<String, CompletableFuture<MoneroTx>> joinedFetches = new HashMap<>();
+        Map<String, CompletableFuture<MoneroTx>> ownFetches = new LinkedHashMap<>();
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            for (String txHash : txHashes) {
+                if (cachedTxs.containsKey(txHash) || joinedFetches.containsKey(txHash) || ownFetches.containsKey(txHash)) continue;
+                Entry entry = useCache ? cache.get(txHash) : null;
+                if (entry != null && entry.expiryTime > now) {
+                    cachedTxs.put(txHash, entry.tx);
+                } else if (fetchesInFlight.containsKey(txHash)) {
+                    joinedFetches.put(txHash, fetchesInFlight.get(txHash));
+                } else {
+                    CompletableFuture<MoneroTx> future = new CompletableFuture<>();
+                    fetchesInFlight.put(txHash, future);
+                    ownFetches.put(txHash, future);
+                }
+            }
+        }
+
+        fetch(new ArrayList<>(ownFetches.keySet()), ownFetches);
+
+        List<MoneroTx> txs = new ArrayList<>(txHashes.size());
+        for (String txHash : txHashes) {
+            if (cachedTxs.containsKey(txHash)) txs.add(cachedTxs.get(txHash));
+            else if (ownFetches.containsKey(txHash)) txs.add(join(ownFetches.get(txHash)));
+            else txs.add(join(joinedFetches.get(txHash)));
+        }
+        return txs;
+    }
+
+    // Every future is completed, also if a fetch fails, so lookups which joined it do not wait forever
+    private void fetch(List<String> txHashes, Map<String, CompletableFuture<MoneroTx>> futures) {
+        for (int from = 0; from < txHashes.size(); from += MAX_BATCH_SIZE) {
+            List<String> batch = txHashes.subList(from, Math.min(from + MAX_BATCH_SIZE, txHashes.size()));
+            Map<String, MoneroTx> txsByHash = new HashMap<>();
+            try {
+                for (MoneroTx tx : fetcher.apply(batch)) txsByHash.put(tx.getHash(), tx);
+            } catch (RuntimeException e) {
+                List<String> failed = txHashes.subList(from, txHashes.size());
+                synchronized (this) {
+                    failed.forEach(fetchesInFlight::remove);
+                }
+                failed.forEach(txHash -> futures.get(txHash).completeExceptionally(e));
+                throw e;
+            }
+            synchronized (this) {
+                long now = System.currentTimeMillis();
+                for (MoneroTx tx : txsByHash.values()) cache.put(tx.getHash(), new Entry(tx, now + getTtlMs(tx)));
+                batch.forEach(fetchesInFlight::remove);
+            }
+            batch.forEach(txHash -> futures.get(txHash).complete(txsByHash.get(txHash)));
+        }
+    }
+
+    private long getTtlMs(MoneroTx tx) {
+        boolean isUnlocked = Boolean.TRUE.equals(tx.isConfirmed()) &&
+                tx.getNumConfirmations() != null &&
+                tx.getNumConfirmations() >= TskWalletService.NUM_BLOCKS_UNLOCK;
+        return isUnlocked ? unlockedTtlMs : ttlMs.getAsLong();
+    }
+
+    private static MoneroTx join(CompletableFuture<MoneroTx> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+}
@@ -21,6 +21,7 @@ import lombok.extern.slf4j.Slf4j;
 import monero.common.MoneroError;
 import monero.common.TaskLooper;
 import monero.daemon.MoneroDaemon;
+import monero.daemon.model.MoneroBlockHeader;
 import monero.daemon.model.MoneroKeyImageSpentStatus;
 
 import java.util.ArrayList;
@@ -28,6 +29,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -35,19 +37,32 @@ import java.util.Set;
 /**
  * Poll for changes to the spent status of key images.
  *
+ * On each poll, the chain and the tx pool are checked first, so the spent statuses are only fetched if they could
+ * have changed.
+ *
  * TODO: move to monero-java?
  */
 @Slf4j
 public class TskKeyImagePoller {
 
-    private MoneroDaemon daemon;
+    private static final int MAX_BATCH_SIZE = 500;
+    private static final long FULL_CHECK_PERIOD_MS = 10 * 60 * 1000;
+
+    private volatile MoneroDaemon daemon;
     private long refreshPeriodMs;
-    private List<String> keyImages = new ArrayList<String>();
+    private Set<String> keyImages = new LinkedHashSet<String>();
     private Set<TskKeyImageListener> listeners = new HashSet<TskKeyImageListener>();
     private TaskLooper looper;
     private Map<String, MoneroKeyImageSpentStatus> lastStatuses = new HashMap<String, MoneroKeyImageSpentStatus>();
     private boolean isPolling = false;
 
+    // chain and pool state of the last poll, only accessed by poll()
+    private Long lastHeight;
+    private String lastTopHash;
+    private Set<String> lastTxPoolHashes;
+    private long lastFullCheckTime;
+    private volatile boolean isFullCheckRequested = true;
+
     /**
      * Construct the listener.
      *
@@ -99,6 +114,7 @@ public class TskKeyImagePoller {
      */
     public void setDaemon(MoneroDaemon daemon) {
         this.daemon = daemon;
+        isFullCheckRequested = true;
     }
 
     /**
@@ -176,7 +192,7 @@ public class TskKeyImagePoller {
      */
     public void addKeyImages(Collection<String> keyImages) {
         synchronized (this.keyImages) {
-            for (String keyImage : keyImages) if (!this.keyImages.contains(keyImage)) this.keyImages.add(keyImage);
+            this.keyImages.addAll(keyImages);
             refreshPolling();
         }
     }
@@ -210,7 +226,7 @@ public class TskKeyImagePoller {
             containedKeyImages.retainAll(this.keyImages);
             this.keyImages.removeAll(containedKeyImages);
             synchronized (lastStatuses) {
-                for (String lastKeyImage : new HashSet<>(lastStatuses.keySet())) lastStatuses.remove(lastKeyImage);
+                lastStatuses.keySet().removeAll(containedKeyImages);
             }
             refreshPolling();
         }
@@ -248,34 +264,77 @@ public class TskKeyImagePoller {
         }
     }
 
+    /**
+     * Fetch the spent statuses of the key images which could have changed and announce changes.
+     *
+     * Key images are only fetched if they have not been fetched yet or if the chain or the tx pool changed. Spent
+     * statuses which are confirmed are only fetched again if the chain was reorganized and periodically as a fallback
+     * to detect reorganizations which span several blocks between polls.
+     */
     public void poll() {
+        MoneroDaemon daemon = this.daemon;
         if (daemon == null) {
             log.warn("Cannot poll key images because daemon is null");
             return;
         }
 
-        // get copy of key images to fetch
-        List<String> keyImages = new ArrayList<String>(getKeyImages());
+        // fetch chain and pool state
+        MoneroBlockHeader lastHeader;
+        Set<String> txPoolHashes;
+        try {
+            lastHeader = daemon.getLastBlockHeader();
+            txPoolHashes = new HashSet<String>(daemon.getTxPoolHashes());
+        } catch (Exception e) {
+            log.warn("Error polling chain and pool state for key images: " + e.getMessage());
+            return;
+        }
 
-        // fetch spent statuses
-        List<MoneroKeyImageSpentStatus> spentStatuses = null;
+        // get key images which could have changed
+        long now = System.currentTimeMillis();
+        boolean isFullCheck = isFullCheckRequested || now - lastFullCheckTime >= FULL_CHECK_PERIOD_MS || isReorg(lastHeader);
+        boolean isChainOrPoolChanged = isFullCheck || !lastHeader.getHash().equals(lastTopHash) || !txPoolHashes.equals(lastTxPoolHashes);
+        List<String> keyImages = new ArrayList<String>();
+        synchronized (this.keyImages) {
+            synchronized (lastStatuses) {
+                for (String keyImage : this.keyImages) {
+                    MoneroKeyImageSpentStatus lastStatus = lastStatuses.get(keyImage);
+                    if (lastStatus == null || isFullCheck || (isChainOrPoolChanged && lastStatus != MoneroKeyImageSpentStatus.CONFIRMED)) {
+                        keyImages.add(keyImage);
+                    }
+                }
+            }
+        }
+
+        // fetch spent statuses in batches
+        List<MoneroKeyImageSpentStatus> spentStatuses = new ArrayList<MoneroKeyImageSpentStatus>();
         try {
-            if (keyImages.isEmpty()) spentStatuses = new ArrayList<MoneroKeyImageSpentStatus>();
-            else {
-                spentStatuses = daemon.getKeyImageSpentStatuses(keyImages); // TODO monero-java: if order of getKeyImageSpentStatuses is guaranteed, then it should take list parameter
+            for (int from = 0; from < keyImages.size(); from += MAX_BATCH_SIZE) {
+                spentStatuses.addAll(daemon.getKeyImageSpentStatuses(keyImages.subList(from, Math.min(from + MAX_BATCH_SIZE, keyImages.size())))); // TODO monero-java: if order of getKeyImageSpentStatuses is guaranteed, then it should take list parameter
             }
         } catch (Exception e) {
             log.warn("Error polling spent status of key images: " + e.getMessage());
             return;
         }
 
-        // collect changed statuses
+        // remember state which the spent statuses are based on
+        lastTopHash = lastHeader.getHash();
+        lastHeight = lastHeader.getHeight();
+        lastTxPoolHashes = txPoolHashes;
+        if (isFullCheck) {
+            isFullCheckRequested = false;
+            lastFullCheckTime = now;
+        }
+
+        // collect changed statuses, skipping key images which were removed while polling
         Map<String, MoneroKeyImageSpentStatus> changedStatuses = new HashMap<String, MoneroKeyImageSpentStatus>();
-        synchronized (lastStatuses) {
-            for (int i = 0; i < spentStatuses.size(); i++) {
-                if (spentStatuses.get(i) != lastStatuses.get(keyImages.get(i))) {
-                    lastStatuses.put(keyImages.get(i), spentStatuses.get(i));
-                    changedStatuses.put(keyImages.get(i), spentStatuses.get(i));
+        synchronized (this.keyImages) {
+            synchronized (lastStatuses) {
+                for (int i = 0; i < spentStatuses.size(); i++) {
+                    if (!this.keyImages.contains(keyImages.get(i))) continue;
+                    if (spentStatuses.get(i) != lastStatuses.get(keyImages.get(i))) {
+                        lastStatuses.put(keyImages.get(i), spentStatuses.get(i));
+                        changedStatuses.put(keyImages.get(i), spentStatuses.get(i));
+                    }
                 }
             }
         }
@@ -288,6 +347,14 @@ public class TskKeyImagePoller {
         }
     }
 
+    private boolean isReorg(MoneroBlockHeader lastHeader) {
+        if (lastHeight == null) return false;
+        long height = lastHeader.getHeight();
+        if (height < lastHeight) return true;
+        if (height == lastHeight) return !lastHeader.getHash().equals(lastTopHash);
+        return height == lastHeight + 1 && !lastTopHash.equals(lastHeader.getPrevHash());
+    }
+
     private void refreshPolling() {
         synchronized (keyImages) {
             setIsPolling(keyImages.size() > 0 && listeners.size() > 0);
@@ -0,0 +1,300 @@
+/*
+ * This file is part of Tuskex.
+ *
+ * Tuskex is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Tuskex is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Tuskex. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.core.tsk.wallet;
+
+import tuskex.common.metrics.Histogram;
+import tuskex.common.metrics.Metrics;
+import tuskex.common.util.Utilities;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import javax.annotation.Nullable;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Polls many wallets from a shared, bounded thread pool instead of one looper thread per wallet.
+ *
+ * Wallets which are due are dispatched in batches on each tick, most urgent first. Requests to dispatch between two
+ * dispatches, e.g. by scheduling many wallets at once, are served by one dispatch. The number of concurrent polls per
+ * daemon is capped, so remaining due wallets wait in the queue instead of blocking on the daemon lock. A wallet id is
+ * never polled concurrently, also not if it was rescheduled while its poll was in progress. Queue depth and poll
+ * latency are logged periodically and exposed with getters.
+ */
+@Slf4j
+public class TskWalletPollScheduler {
+
+    private static final long TICK_PERIOD_MS = 1000;
+    private static final long LOG_STATS_PERIOD_MS = 300000; // 5 minutes
+    private static final int POOL_SIZE = 10;
+    private static final long POOL_KEEP_ALIVE_SEC = 60;
+    private static final double LATENCY_SMOOTHING_FACTOR = 0.2;
+    private static final Histogram POLL_DURATION = Metrics.histogram("tuskex_wallet_poll_seconds", "Duration of wallet polls");
+    private static final Histogram POLL_QUEUE_DELAY = Metrics.histogram("tuskex_wallet_poll_queue_delay_seconds",
+            "Time wallets waited in the poll queue after their poll was due");
+
+    /**
+     * A wallet polled by the scheduler. Only poll() may block, the other methods are called while dispatching.
+     */
+    public interface PolledWallet {
+
+        /**
+         * @return the period between polls in milliseconds
+         */
+        long getPollPeriodMs();
+
+        /**
+         * @return the poll priority, lower values are polled first if polls are queued
+         */
+        int getPollPriority();
+
+        /**
+         * @return the uri of the daemon the wallet is connected to, used to limit concurrent polls per daemon
+         */
+        @Nullable
+        String getPollDaemonUri();
+
+        void poll();
+    }
+
+    private static class Entry {
+        private final PolledWallet wallet;
+        private long nextPollTimeMs;
+        private boolean inProgress;
+
+        private Entry(PolledWallet wallet, long nextPollTimeMs) {
+            this.wallet = wallet;
+            this.nextPollTimeMs = nextPollTimeMs;
+        }
+    }
+
+    private final IntSupplier maxConcurrentPollsPerDaemon;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<String, Integer> numPollsInProgressByDaemon = new HashMap<>();
+    private final Set<String> idsInProgress = new HashSet<>(); // also covers replaced and unscheduled wallets
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "TskWalletPollScheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService pollPool = Utilities.getListeningExecutorService("TskWalletPoll",
+            POOL_SIZE, POOL_SIZE, POOL_KEEP_ALIVE_SEC, new LinkedBlockingQueue<>());
+    private boolean isShutDown;
+    private boolean isDispatchRequested;
+
+    // stats
+    private int queueDepth;
+    private int numPollsInProgress;
+    private long numPolls;
+    private double avgPollDurationMs;
+    private double avgQueueDelayMs;
+    private long maxPollDurationMs;
+
+    /**
+     * @param maxConcurrentPollsPerDaemon supplies the maximum number of wallets polled concurrently per daemon
+     */
+    public TskWalletPollScheduler(IntSupplier maxConcurrentPollsPerDaemon) {
+        this.maxConcurrentPollsPerDaemon = maxConcurrentPollsPerDaemon;
+        timer.scheduleWithFixedDelay(this::tryDispatch, TICK_PERIOD_MS, TICK_PERIOD_MS, TimeUnit.MILLISECONDS);
+        timer.scheduleWithFixedDelay(this::logStats, LOG_STATS_PERIOD_MS, LOG_STATS_PERIOD_MS, TimeUnit.MILLISECONDS);
+        Metrics.gauge("tuskex_wallet_poll_scheduled", "Wallets scheduled for polling", this::getNumScheduled);
+        Metrics.gauge("tuskex_wallet_poll_queue_depth", "Due wallets waiting to be polled", this::getQueueDepth);
+        Metrics.gauge("tuskex_wallet_poll_in_progress", "Wallet polls in progress", this::getNumPollsInProgress);
+    }
+
+    /**
+     * Start polling the given wallet. The first poll is due immediately. Replaces a wallet scheduled with the same id.
+     *
+     * @param id the id of the wallet
+     * @param wallet the wallet to poll
+     */
+    public void schedule(String id, PolledWallet wallet) {
+        synchronized (this) {
+            if (isShutDown) return;
+            Entry existing = entries.get(id);
+            if (existing != null && existing.wallet == wallet) {
+                existing.nextPollTimeMs = System.currentTimeMillis();
+            } else {
+                entries.put(id, new Entry(wallet, System.currentTimeMillis()));
+            }
+        }
+        requestDispatch();
+    }
+
+    /**
+     * Stop polling the given wallet. A poll in progress is not interrupted.
+     *
+     * @param id the id of the wallet
+     * @param wallet the wallet to stop polling, ignored if another wallet was scheduled with the same id since
+     */
+    public synchronized void unschedule(String id, PolledWallet wallet) {
+        Entry entry = entries.get(id);
+        if (entry != null && entry.wallet == wallet) entries.remove(id);
+    }
+
+    public synchronized int getNumScheduled() {
+        return entries.size();
+    }
+
+    /**
+     * @return the number of wallets which are due but wait for a free slot
+     */
+    public synchronized int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public synchronized int getNumPollsInProgress() {
+        return numPollsInProgress;
+    }
+
+    public synchronized long getAvgPollDurationMs() {
+        return Math.round(avgPollDurationMs);
+    }
+
+    public synchronized long getMaxPollDurationMs() {
+        return maxPollDurationMs;
+    }
+
+    /**
+     * @return the smoothed time wallets wait between being due and being polled
+     */
+    public synchronized long getAvgQueueDelayMs() {
+        return Math.round(avgQueueDelayMs);
+    }
+
+    public void shutDown() {
+        synchronized (this) {
+            isShutDown = true;
+            entries.clear();
+        }
+        timer.shutdownNow();
+        pollPool.shutdownNow();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // Dispatches due wallets on the timer thread, requests until the dispatch starts are served by the same dispatch
+    private synchronized void requestDispatch() {
+        if (isShutDown || isDispatchRequested) return;
+        isDispatchRequested = true;
+        timer.execute(this::tryDispatch);
+    }
+
+    private void tryDispatch() {
+        try {
+            dispatch();
+        } catch (Exception e) {
+            log.warn("Error dispatching wallet polls: {}", e.getMessage(), e);
+        }
+    }
+
+    private synchronized void dispatch() {
+        isDispatchRequested = false;
+        if (isShutDown) return;
+
+        // collect due wallets, most urgent first
+        long now = System.currentTimeMillis();
+        List<Map.Entry<String, Entry>> dueEntries = new ArrayList<>();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (entry.getValue().inProgress || idsInProgress.contains(entry.getKey())) continue;
+            if (entry.getValue().nextPollTimeMs <= now) dueEntries.add(entry);
+        }
+        dueEntries.sort(Comparator.<Map.Entry<String, Entry>>comparingInt(entry -> entry.getValue().wallet.getPollPriority())
+                .thenComparingLong(entry -> entry.getValue().nextPollTimeMs));
+
+        // dispatch batch up to the limit per daemon
+        int maxPerDaemon = Math.max(1, maxConcurrentPollsPerDaemon.getAsInt());
+        int numQueued = 0;
+        List<Runnable> polls = new ArrayList<>();
+        for (Map.Entry<String, Entry> dueEntry : dueEntries) {
+            String daemonUri = String.valueOf(dueEntry.getValue().wallet.getPollDaemonUri());
+            int numInProgress = numPollsInProgressByDaemon.getOrDefault(daemonUri, 0);
+            if (numInProgress >= maxPerDaemon) {
+                numQueued++;
+                continue;
+            }
+            numPollsInProgressByDaemon.put(daemonUri, numInProgress + 1);
+            numPollsInProgress++;
+            Entry entry = dueEntry.getValue();
+            entry.inProgress = true;
+            idsInProgress.add(dueEntry.getKey());
+            long queueDelayMs = now - entry.nextPollTimeMs;
+            polls.add(() -> poll(dueEntry.getKey(), entry, daemonUri, queueDelayMs));
+        }
+        queueDepth = numQueued;
+        polls.forEach(pollPool::execute);
+    }
+
+    private void poll(String id, Entry entry, String daemonUri, long queueDelayMs) {
+        long startTime = System.currentTimeMillis();
+        try {
+            entry.wallet.poll();
+        } catch (Exception e) {
+            log.warn("Error polling wallet {}: {}", id, e.getMessage());
+        } finally {
+            boolean isDispatchNeeded;
+            synchronized (this) {
+                long durationMs = System.currentTimeMillis() - startTime;
+                entry.inProgress = false;
+                idsInProgress.remove(id);
+                entry.nextPollTimeMs = startTime + entry.wallet.getPollPeriodMs();
+                numPollsInProgressByDaemon.merge(daemonUri, -1, Integer::sum);
+                if (numPollsInProgressByDaemon.get(daemonUri) <= 0) numPollsInProgressByDaemon.remove(daemonUri);
+                numPollsInProgress--;
+                updateStats(durationMs, queueDelayMs);
+                Entry current = entries.get(id);
+                isDispatchNeeded = queueDepth > 0 || (current != null && current != entry);
+            }
+
+            // dispatch queued wallets and a wallet rescheduled during its poll without waiting for the next tick
+            if (isDispatchNeeded) requestDispatch();
+        }
+    }
+
+    private void updateStats(long durationMs, long queueDelayMs) {
+        POLL_DURATION.observeMillis(durationMs);
+        POLL_QUEUE_DELAY.observeMillis(queueDelayMs);
+        if (numPolls++ == 0) {
+            avgPollDurationMs = durationMs;
+            avgQueueDelayMs = queueDelayMs;
+        } else {
+            avgPollDurationMs += LATENCY_SMOOTHING_FACTOR * (durationMs - avgPollDurationMs);
+            avgQueueDelayMs += LATENCY_SMOOTHING_FACTOR * (queueDelayMs - avgQueueDelayMs);
+        }
+        maxPollDurationMs = Math.max(maxPollDurationMs, durationMs);
+    }
+
+    private synchronized void logStats() {
+        if (entries.isEmpty()) return;
+        log.info("Wallet poll stats: scheduled={}, inProgress={}, queueDepth={}, avgPollDurationMs={}, maxPollDurationMs={}, avgQueueDelayMs={}, numPolls={}",
+                entries.size(), numPollsInProgress, queueDepth, getAvgPollDurationMs(), maxPollDurationMs, getAvgQueueDelayMs(), numPolls);
+        maxPollDurationMs = 0;
+    }
+}
@@ -54,10 +54,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
@@ -121,6 +121,8 @@ public class TskWalletService {
     public static final int MONERO_LOG_LEVEL = -1; // monero library log level, -1 to disable
     private static final MoneroNetworkType MONERO_NETWORK_TYPE = getMoneroNetworkType();
     private static final MoneroWalletRpcManager MONERO_WALLET_RPC_MANAGER = new MoneroWalletRpcManager();
+    private static final int MAX_CACHED_DAEMON_TXS = 1000;
+    private static final long UNLOCKED_DAEMON_TX_TTL_MS = 10 * 60 * 1000;
     private static final String MONERO_WALLET_RPC_USERNAME = "tuskex_user";
     private static final String MONERO_WALLET_RPC_DEFAULT_PASSWORD = "password"; // only used if account password is null
     private static final String MONERO_WALLET_NAME = "tuskex_TSK";
@@ -131,8 +133,11 @@ public class TskWalletService {
     private static final boolean PRINT_RPC_STACK_TRACE = false;
     private static final String THREAD_ID = TskWalletService.class.getSimpleName();
     private static final long SHUTDOWN_TIMEOUT_MS = 60000;
+    private static final long SHUTDOWN_THREADS_TIMEOUT_MS = 30000; // leaves time to close the main wallet
     private static final long NUM_BLOCKS_BEHIND_TOLERANCE = 5;
     private static final long LOG_POLL_ERROR_AFTER_MS = 180000; // log poll error if unsuccessful after this time
+    private static final int MAX_CONCURRENT_TRADE_WALLET_POLLS_LOCAL = 5; // max trade wallets polled concurrently per local daemon
+    private static final int MAX_CONCURRENT_TRADE_WALLET_POLLS_REMOTE = 2; // max trade wallets polled concurrently per remote daemon
     private static Long lastPollSuccessTimestamp;
 
     private final User user;
@@ -156,7 +161,7 @@ public class TskWalletService {
     private MoneroWallet wallet;
     public static final Object WALLET_LOCK = new Object();
     private boolean wasWalletSynced = false;
-    private final Map<String, Optional<MoneroTx>> txCache = new HashMap<String, Optional<MoneroTx>>();
+    private final TskDaemonTxCache daemonTxCache;
     private boolean isClosingWallet = false;
     private boolean isShutDownStarted = false;
     private ExecutorService syncWalletThreadPool = Executors.newFixedThreadPool(10); // TODO: adjust based on connection type
@@ -164,6 +169,9 @@ public class TskWalletService {
     private TaskLooper syncWithProgressLooper = null;
     CountDownLatch syncWithProgressLatch;
 
+    // shared scheduler to poll trade wallets
+    private final TskWalletPollScheduler tradeWalletPollScheduler;
+
     // wallet polling and cache
     private TaskLooper pollLooper;
     private boolean pollInProgress;
@@ -198,6 +206,11 @@ public class TskWalletService {
         this.rpcBindPort = rpcBindPort;
         this.useNativeTskWallet = useNativeTskWallet;
         this.tskWalletFile = new File(walletDir, MONERO_WALLET_NAME);
+        this.tradeWalletPollScheduler = new TskWalletPollScheduler(() -> tskConnectionService.isConnectionLocalHost() ?
+                MAX_CONCURRENT_TRADE_WALLET_POLLS_LOCAL :
+                MAX_CONCURRENT_TRADE_WALLET_POLLS_REMOTE);
+        this.daemonTxCache = new TskDaemonTxCache(MAX_CACHED_DAEMON_TXS, UNLOCKED_DAEMON_TX_TTL_MS,
+                tskConnectionService::getRefreshPeriodMs, this::fetchDaemonTxs);
         TuskexUtils.tskWalletService = this;
 
         // set monero logging
@@ -317,6 +330,10 @@ public class TskWalletService {
         return tskConnectionService;
     }
 
+    public TskWalletPollScheduler getTradeWalletPollScheduler() {
+        return tradeWalletPollScheduler;
+    }
+
     public boolean isProxyApplied() {
         return isProxyApplied(wasWalletSynced);
     }
@@ -843,48 +860,34 @@ public class TskWalletService {
     }
 
     public List<MoneroTx> getDaemonTxs(List<String> txHashes) {
-        synchronized (txCache) {
-
-            // fetch txs
-            if (getDaemon() == null) tskConnectionService.verifyConnection(); // will throw
-            List<MoneroTx> txs = getDaemon().getTxs(txHashes, true);
-
-            // store to cache
-            for (MoneroTx tx : txs) txCache.put(tx.getHash(), Optional.of(tx));
-
-            // schedule txs to be removed from cache
-            UserThread.runAfter(() -> {
-                synchronized (txCache) {
-                    for (MoneroTx tx : txs) txCache.remove(tx.getHash());
-                }
-            }, tskConnectionService.getRefreshPeriodMs() / 1000);
-            return txs;
-        }
+        return daemonTxCache.fetchTxs(txHashes).stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 
     public MoneroTx getDaemonTxWithCache(String txHash) {
         List<MoneroTx> cachedTxs = getDaemonTxsWithCache(Arrays.asList(txHash));
-        return cachedTxs.isEmpty() ? null : cachedTxs.get(0);
+        return cachedTxs == null || cachedTxs.isEmpty() ? null : cachedTxs.get(0);
     }
 
     public List<MoneroTx> getDaemonTxsWithCache(List<String> txHashes) {
-        synchronized (txCache) {
-            try {
-                // get cached txs
-                List<MoneroTx> cachedTxs = new ArrayList<MoneroTx>();
-                List<String> uncachedTxHashes = new ArrayList<String>();
-                for (int i = 0; i < txHashes.size(); i++) {
-                    if (txCache.containsKey(txHashes.get(i))) cachedTxs.add(txCache.get(txHashes.get(i)).orElse(null));
-                    else uncachedTxHashes.add(txHashes.get(i));
-                }
+        try {
+            return daemonTxCache.getTxs(txHashes).stream()
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+        } catch (Exception e) {
+            if (!isShutDownStarted) throw e;
+            return null;
+        }
+    }
 
-                // return txs from cache if available, otherwise fetch
-                return uncachedTxHashes.isEmpty() ? cachedTxs : getDaemonTxs(txHashes);
-            } catch (Exception e) {
-                if (!isShutDownStarted) throw e;
-                return null;
-            }
+    private List<MoneroTx> fetchDaemonTxs(List<String> txHashes) {
+        MoneroDaemonRpc daemon = getDaemon();
+        if (daemon == null) {
+            tskConnectionService.verifyConnection(); // will throw
+            daemon = getDaemon();
         }
+        return daemon.getTxs(txHashes, true);
     }
 
     public void onShutDownStarted() {
@@ -909,9 +912,10 @@ public class TskWalletService {
             }
 
             // shut down threads
+            tradeWalletPollScheduler.shutDown();
             synchronized (this) {
                 List<Runnable> shutDownThreads = new ArrayList<>();
-                shutDownThreads.add(() -> ThreadUtils.shutDown(THREAD_ID));
+                shutDownThreads.add(() -> ThreadUtils.shutDown(THREAD_ID, SHUTDOWN_THREADS_TIMEOUT_MS));
                 ThreadUtils.awaitTasks(shutDownThreads);
             }
 
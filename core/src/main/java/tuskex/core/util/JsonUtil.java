@@ -27,9 +27,18 @@ import tuskex.core.trade.Contract;
 
 public class JsonUtil {
     public static String objectToJson(Object object) {
+        return objectToJson(object, true);
+    }
+
+    // Single line json, e.g. for newline-delimited json files
+    public static String objectToCompactJson(Object object) {
+        return objectToJson(object, false);
+    }
+
+    private static String objectToJson(Object object, boolean prettyPrinting) {
         GsonBuilder gsonBuilder = new GsonBuilder()
-                .setExclusionStrategies(new AnnotationExclusionStrategy())
-                .setPrettyPrinting();
+                .setExclusionStrategies(new AnnotationExclusionStrategy());
+        if (prettyPrinting) gsonBuilder.setPrettyPrinting();
         if (object instanceof Contract || object instanceof OfferPayload) {
             gsonBuilder.registerTypeAdapter(OfferPayload.class,
                     new OfferPayload.JsonSerializer());
@@ -0,0 +1,118 @@
+/*
+ * This file is part of Tuskex.
+ *
+ * Tuskex is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Tuskex is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Tuskex. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.core.offer;
+
+import tuskex.core.provider.price.MarketPrice;
+import tuskex.core.provider.price.PriceFeedService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class OfferBookIndexTest {
+    private final OfferBookIndex index = new OfferBookIndex();
+    private final PriceFeedService priceFeedService = mock(PriceFeedService.class);
+
+    private Offer offer(String id, OfferDirection direction, long price, boolean useMarketBasedPrice, double margin, String... keyImages) {
+        OfferPayload payload = mock(OfferPayload.class);
+        when(payload.getId()).thenReturn(id);
+        when(payload.getDirection()).thenReturn(direction);
+        when(payload.getBaseCurrencyCode()).thenReturn("TSK");
+        when(payload.getCounterCurrencyCode()).thenReturn("USD");
+        when(payload.getPrice()).thenReturn(price);
+        when(payload.isUseMarketBasedPrice()).thenReturn(useMarketBasedPrice);
+        when(payload.getMarketPriceMarginPct()).thenReturn(margin);
+        when(payload.getReserveTxKeyImages()).thenReturn(List.of(keyImages));
+        Offer offer = new Offer(payload);
+        offer.setPriceFeedService(priceFeedService);
+        return offer;
+    }
+
+    private static List<String> ids(List<Offer> offers) {
+        return offers.stream().map(Offer::getId).collect(Collectors.toList());
+    }
+
+    @BeforeEach
+    public void setUp() {
+        when(priceFeedService.getMarketPrice("USD")).thenReturn(new MarketPrice("USD", 100, System.currentTimeMillis() / 1000, true));
+    }
+
+    @Test
+    public void testOffersSortedByPrice() {
+        index.put(offer("fixed-99", OfferDirection.SELL, 9900000000L, false, 0));
+        index.put(offer("fixed-102", OfferDirection.SELL, 10200000000L, false, 0));
+        index.put(offer("market-101", OfferDirection.SELL, 0, true, 0.01));
+        index.put(offer("market-100", OfferDirection.SELL, 0, true, 0));
+        index.put(offer("buy", OfferDirection.BUY, 9000000000L, false, 0));
+
+        assertEquals(List.of("fixed-99", "market-100", "market-101", "fixed-102"),
+                ids(index.getOffersSortedByPrice("usd", OfferDirection.SELL)));
+        assertEquals(List.of("buy"), ids(index.getOffersSortedByPrice("USD", OfferDirection.BUY)));
+        assertTrue(index.getOffersSortedByPrice("EUR", OfferDirection.SELL).isEmpty());
+    }
+
+    @Test
+    public void testMarketBasedOffersLastWithoutMarketPrice() {
+        when(priceFeedService.getMarketPrice("USD")).thenReturn(null);
+        index.put(offer("market", OfferDirection.SELL, 0, true, 0));
+        index.put(offer("fixed", OfferDirection.SELL, 10000000000L, false, 0));
+
+        assertEquals(List.of("fixed", "market"), ids(index.getOffersSortedByPrice("USD", OfferDirection.SELL)));
+    }
+
+    @Test
+    public void testReplaceAndRemove() {
+        Offer first = offer("1", OfferDirection.BUY, 10000000000L, false, 0, "keyImage1");
+        Offer second = offer("1", OfferDirection.SELL, 10000000000L, false, 0, "keyImage2");
+        index.put(first);
+
+        assertSame(first, index.put(second));
+        assertEquals(1, index.size());
+        assertSame(second, index.get("1"));
+        assertTrue(index.getOffersByKeyImage("keyImage1").isEmpty());
+        assertEquals(List.of(second), index.getOffersByKeyImage("keyImage2"));
+        assertTrue(index.getOffersSortedByPrice("USD", OfferDirection.BUY).isEmpty());
+
+        assertSame(second, index.remove("1"));
+        assertNull(index.get("1"));
+        assertEquals(0, index.size());
+        assertTrue(index.getOffersByKeyImage("keyImage2").isEmpty());
+        assertTrue(index.getOffersSortedByPrice("USD", OfferDirection.SELL).isEmpty());
+    }
+
+    @Test
+    public void testOffersByKeyImage() {
+        Offer offer1 = offer("1", OfferDirection.BUY, 10000000000L, false, 0, "shared", "keyImage1");
+        Offer offer2 = offer("2", OfferDirection.BUY, 10000000000L, false, 0, "shared");
+        index.put(offer1);
+        index.put(offer2);
+
+        assertEquals(2, index.getOffersByKeyImage("shared").size());
+        assertEquals(List.of(offer1), index.getOffersByKeyImage("keyImage1"));
+        index.remove("2");
+        assertEquals(List.of(offer1), index.getOffersByKeyImage("shared"));
+    }
+}
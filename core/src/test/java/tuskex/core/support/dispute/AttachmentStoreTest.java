@@ -0,0 +1,202 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.core.support.dispute;
+
+import com.google.protobuf.ByteString;
+import tuskex.common.crypto.Encryption;
+import tuskex.common.crypto.Hash;
+import tuskex.common.crypto.KeyRing;
+import tuskex.common.util.Utilities;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AttachmentStoreTest {
+
+    @TempDir
+    File dir;
+
+    private final KeyRing keyRing = mock(KeyRing.class);
+    private final byte[] bytes = "attachment".getBytes(StandardCharsets.UTF_8);
+    private File attachmentDir;
+    private AttachmentStore store;
+
+    @BeforeEach
+    public void setUp() {
+        when(keyRing.isUnlocked()).thenReturn(true);
+        when(keyRing.getSymmetricKey()).thenReturn(Encryption.generateSecretKey(256));
+        store = createStore();
+        attachmentDir = new File(dir, AttachmentStore.DIR_NAME);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        store.shutDown();
+    }
+
+    private AttachmentStore createStore() {
+        AttachmentStore store = new AttachmentStore(dir, keyRing);
+        store.readPersisted(() -> {
+        });
+        return store;
+    }
+
+    // waits for the writes of the store and reads the stored attachments again
+    private void reopenStore() {
+        store.shutDown();
+        store = createStore();
+    }
+
+    @Test
+    public void testPersistedAsReference() {
+        Attachment attachment = new Attachment("file.txt", bytes);
+        new Attachment("copy.txt", bytes.clone());
+
+        // the attachments are written in the background when they are created
+        reopenStore();
+        protobuf.Attachment proto = attachment.toPersistableProtoMessage();
+
+        assertTrue(proto.getBytes().isEmpty());
+        assertArrayEquals(Hash.getSha256Hash(bytes), proto.getHash().toByteArray());
+        assertEquals(1, Objects.requireNonNull(attachmentDir.list()).length);
+        Attachment persisted = Attachment.fromPersistedProto(proto);
+        assertEquals(attachment, persisted);
+        assertArrayEquals(bytes, persisted.getBytes());
+        assertArrayEquals(bytes, attachment.getBytes());
+        assertArrayEquals(bytes, attachment.toProtoMessage().getBytes().toByteArray());
+    }
+
+    @Test
+    public void testSerializationDoesNotReleaseBytes() {
+        store.shutDown();
+        Attachment attachment = new Attachment("file.txt", bytes);
+        byte[] hash = Hash.getSha256Hash(bytes);
+        store = createStore();
+        assertTrue(store.put(hash, bytes));
+
+        // the bytes are only released by the store once it wrote them
+        assertTrue(attachment.toPersistableProtoMessage().getBytes().isEmpty());
+        new File(attachmentDir, Utilities.bytesAsHexString(hash)).delete();
+        reopenStore();
+
+        assertArrayEquals(bytes, attachment.getBytes());
+        assertArrayEquals(bytes, attachment.toPersistableProtoMessage().getBytes().toByteArray());
+    }
+
+    @Test
+    public void testMissingAttachmentIsNotAvailable() {
+        protobuf.Attachment proto = protobuf.Attachment.newBuilder()
+                .setFileName("file.txt")
+                .setHash(ByteString.copyFrom(Hash.getSha256Hash(bytes)))
+                .build();
+
+        Attachment attachment = Attachment.fromPersistedProto(proto);
+
+        assertThrows(IllegalStateException.class, attachment::getBytes);
+        assertTrue(attachment.toProtoMessageIfAvailable().isEmpty());
+        assertEquals(proto, attachment.toPersistableProtoMessage());
+    }
+
+    @Test
+    public void testLockedKeyRingPersistsBytes() {
+        when(keyRing.isUnlocked()).thenReturn(false);
+
+        Attachment attachment = new Attachment("file.txt", bytes);
+        reopenStore();
+        protobuf.Attachment proto = attachment.toPersistableProtoMessage();
+
+        assertArrayEquals(bytes, proto.getBytes().toByteArray());
+        assertEquals(0, Objects.requireNonNull(attachmentDir.list()).length);
+    }
+
+    @Test
+    public void testReceivedHashIsNotTrusted() {
+        byte[] otherHash = Hash.getSha256Hash(new byte[]{1});
+        Attachment attachment = Attachment.fromProto(protobuf.Attachment.newBuilder()
+                .setFileName("file.txt")
+                .setBytes(ByteString.copyFrom(bytes))
+                .setHash(ByteString.copyFrom(otherHash))
+                .build());
+
+        assertArrayEquals(Hash.getSha256Hash(bytes), attachment.getHash());
+        assertFalse(store.put(otherHash, bytes));
+        assertNull(store.get(otherHash));
+    }
+
+    @Test
+    public void testReceivedReferenceIsNotResolved() {
+        byte[] hash = Hash.getSha256Hash(bytes);
+        assertTrue(store.put(hash, bytes));
+        protobuf.Attachment proto = protobuf.Attachment.newBuilder()
+                .setFileName("file.txt")
+                .setHash(ByteString.copyFrom(hash))
+                .build();
+
+        Attachment received = Attachment.fromProto(proto);
+
+        assertFalse(Arrays.equals(hash, received.getHash()));
+        assertEquals(0, received.getBytes().length);
+        assertArrayEquals(bytes, Attachment.fromPersistedProto(proto).getBytes());
+    }
+
+    @Test
+    public void testUnreferencedAttachmentsAreRemoved() {
+        byte[] otherBytes = "other attachment".getBytes(StandardCharsets.UTF_8);
+        byte[] hash = Hash.getSha256Hash(bytes);
+        byte[] otherHash = Hash.getSha256Hash(otherBytes);
+        store.put(hash, bytes);
+        store.put(otherHash, otherBytes);
+
+        store.removeUnreferenced(Set.of(Utilities.bytesAsHexString(hash)));
+        reopenStore();
+
+        assertTrue(store.isStored(hash));
+        assertFalse(store.isStored(otherHash));
+        assertEquals(1, Objects.requireNonNull(attachmentDir.list()).length);
+    }
+
+    @Test
+    public void testDeduplicatedAttachmentIsNotRemoved() {
+        byte[] hash = Hash.getSha256Hash(bytes);
+        store.put(hash, bytes);
+
+        // the new attachment is deduplicated against the stored one, which is not referenced by the persisted data
+        Attachment attachment = new Attachment("file.txt", bytes.clone());
+        store.removeUnreferenced(Set.of());
+        reopenStore();
+
+        assertTrue(store.isStored(hash));
+        assertArrayEquals(bytes, attachment.getBytes());
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.core.support.dispute;
+
+import tuskex.core.support.messages.ChatMessage;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DisputeIndexTest {
+    private final ObservableList<Dispute> disputes = FXCollections.observableArrayList();
+
+    private static Dispute dispute(String tradeId, int traderId, ChatMessage... chatMessages) {
+        Dispute dispute = mock(Dispute.class);
+        when(dispute.getTradeId()).thenReturn(tradeId);
+        when(dispute.getTraderId()).thenReturn(traderId);
+        when(dispute.getId()).thenReturn(tradeId + "_" + traderId);
+        ObservableList<ChatMessage> messages = FXCollections.observableArrayList(chatMessages);
+        when(dispute.getChatMessages()).thenReturn(messages);
+        return dispute;
+    }
+
+    private static ChatMessage chatMessage(String uid) {
+        ChatMessage chatMessage = mock(ChatMessage.class);
+        when(chatMessage.getUid()).thenReturn(uid);
+        return chatMessage;
+    }
+
+    @Test
+    public void testIndexFollowsDisputeList() {
+        Dispute buyerDispute = dispute("trade1", 1, chatMessage("a"));
+        Dispute sellerDispute = dispute("trade1", 2);
+        Dispute otherDispute = dispute("trade2", 1);
+        disputes.add(buyerDispute);
+        DisputeIndex index = new DisputeIndex(disputes);
+        disputes.addAll(sellerDispute, otherDispute);
+
+        assertEquals(List.of(buyerDispute, sellerDispute), index.getDisputes("trade1"));
+        assertSame(sellerDispute, index.getDispute("trade1", 2).get());
+        assertSame(otherDispute, index.getDisputeById("trade2_1").get());
+        assertEquals(Optional.empty(), index.getDispute("trade2", 2));
+        assertTrue(index.hasChatMessage(buyerDispute, "a"));
+        assertFalse(index.hasChatMessage(sellerDispute, "a"));
+
+        disputes.remove(buyerDispute);
+
+        assertEquals(List.of(sellerDispute), index.getDisputes("trade1"));
+        assertEquals(Optional.empty(), index.getDisputeById("trade1_1"));
+        assertFalse(index.hasChatMessage(buyerDispute, "a"));
+
+        disputes.setAll(otherDispute);
+
+        assertEquals(List.of(), index.getDisputes("trade1"));
+        assertSame(otherDispute, index.getDispute("trade2", 1).get());
+    }
+
+    @Test
+    public void testIndexFollowsChatMessages() {
+        Dispute dispute = dispute("trade1", 1);
+        DisputeIndex index = new DisputeIndex(disputes);
+        disputes.add(dispute);
+
+        dispute.getChatMessages().addAll(chatMessage("a"), chatMessage("b"));
+        assertTrue(index.hasChatMessage(dispute, "a"));
+        assertTrue(index.hasChatMessage(dispute, "b"));
+
+        // removes all but the first message like Dispute.removeAllChatMessages
+        dispute.getChatMessages().removeIf(chatMessage -> !chatMessage.getUid().equals("a"));
+        assertTrue(index.hasChatMessage(dispute, "a"));
+        assertFalse(index.hasChatMessage(dispute, "b"));
+
+        // changes of removed disputes are not indexed anymore
+        disputes.remove(dispute);
+        dispute.getChatMessages().add(chatMessage("c"));
+        assertFalse(index.hasChatMessage(dispute, "c"));
+    }
+}
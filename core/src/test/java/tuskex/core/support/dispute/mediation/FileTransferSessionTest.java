@@ -17,23 +17,37 @@
 
 package tuskex.core.support.dispute.mediation;
 
+import tuskex.network.p2p.AckMessage;
 import tuskex.network.p2p.FileTransferPart;
+import tuskex.network.p2p.FileTransferStatus;
 import tuskex.network.p2p.NodeAddress;
 import tuskex.network.p2p.network.NetworkNode;
 
 import tuskex.common.config.Config;
+import tuskex.common.proto.network.NetworkEnvelope;
+
+import com.google.protobuf.ByteString;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
 
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -42,6 +56,7 @@ public class FileTransferSessionTest implements FileTransferSession.FtpCallback
     double notedProgressPct = -1.0;
     int progressInvocations = 0;
     boolean ftpCompleteStatus = false;
+    int ftpCompleteInvocations = 0;
     String testTradeId = "foo";
     int testTraderId = 123;
     String testClientId = "bar";
@@ -194,6 +209,131 @@ public class FileTransferSessionTest implements FileTransferSession.FtpCallback
         }
     }
 
+    @Test
+    public void testWindowedSendOutOfOrder() throws IOException {
+        List<NetworkEnvelope> sentMessages = captureSentMessages();
+        int testVerifyDataSize = 10 + FileTransferSession.FILE_BLOCK_SIZE * 3;
+        FileTransferSender sender = initializeSession(testVerifyDataSize);
+        sender.setWindowSize(2);
+        byte[] fileData = Files.readAllBytes(Paths.get(sender.zipFilePath));
+        FileTransferReceiver receiver = new FileTransferReceiver(networkNode, counterpartyNodeAddress, testTradeId, testTraderId, testClientId, this);
+
+        sender.initSend();
+        FileTransferPart request = (FileTransferPart) sentMessages.remove(0);
+        assertTrue(request.isWindowed());
+        assertTrue(request.isInitialRequest());
+        receiver.processFilePartReceived(request);
+        FileTransferStatus status = (FileTransferStatus) sentMessages.remove(0);
+        assertEquals(0, status.receivedBytes);
+        sender.onMessage(status, null);
+
+        while (!sentMessages.isEmpty()) {
+            assertTrue(sentMessages.size() <= 2);
+            // parts are delivered in reverse order, ACKs in the order they are sent
+            List<NetworkEnvelope> parts = new ArrayList<>(sentMessages);
+            sentMessages.clear();
+            Collections.reverse(parts);
+            parts.forEach(part -> receiver.onMessage(part, null));
+            List<NetworkEnvelope> acks = new ArrayList<>(sentMessages);
+            sentMessages.clear();
+            acks.forEach(ack -> sender.onMessage(ack, null));
+        }
+
+        assertEquals(2, ftpCompleteInvocations);
+        assertEquals(1.0, notedProgressPct, 0.0);
+        assertEquals(4, sender.currentBlockSeqNum);
+        assertFalse(new File(sender.zipFilePath).exists());
+        assertArrayEquals(fileData, Files.readAllBytes(Paths.get(receiver.zipFilePath)));
+        new File(receiver.zipFilePath).deleteOnExit();
+    }
+
+    @Test
+    public void testWindowedSendResumesAfterInterruption() throws IOException {
+        List<NetworkEnvelope> sentMessages = captureSentMessages();
+        int testVerifyDataSize = FileTransferSession.FILE_BLOCK_SIZE * 3;
+        FileTransferSender sender = initializeSession(testVerifyDataSize);
+        sender.setWindowSize(2);
+        FileTransferReceiver receiver = new FileTransferReceiver(networkNode, counterpartyNodeAddress, testTradeId, testTraderId, testClientId, this);
+
+        sender.initSend();
+        receiver.processFilePartReceived((FileTransferPart) sentMessages.remove(0));
+        sender.onMessage(sentMessages.remove(0), null);
+        // only the first part arrives, then the connection is lost
+        FileTransferPart firstPart = (FileTransferPart) sentMessages.remove(0);
+        sentMessages.clear();
+        receiver.onMessage(firstPart, null);
+        sentMessages.clear();
+        receiver.resetSession();
+
+        sender.retrySend();
+        FileTransferPart request = (FileTransferPart) sentMessages.remove(0);
+        receiver.processFilePartReceived(request);
+        FileTransferStatus status = (FileTransferStatus) sentMessages.remove(0);
+        assertEquals(request.uid, status.requestUid);
+        assertEquals(FileTransferSession.FILE_BLOCK_SIZE, status.receivedBytes);
+        sender.onMessage(status, null);
+        assertEquals(FileTransferSession.FILE_BLOCK_SIZE, ((FileTransferPart) sentMessages.get(0)).offset);
+
+        while (!sentMessages.isEmpty()) {
+            NetworkEnvelope message = sentMessages.remove(0);
+            if (message instanceof AckMessage) {
+                sender.onMessage(message, null);
+            } else {
+                receiver.onMessage(message, null);
+            }
+        }
+        assertEquals(2, ftpCompleteInvocations);
+        assertEquals(testVerifyDataSize, new File(receiver.zipFilePath).length());
+        new File(receiver.zipFilePath).deleteOnExit();
+    }
+
+    @Test
+    public void testWindowedReceiveRejectsCorruptedFile() throws IOException {
+        List<NetworkEnvelope> sentMessages = captureSentMessages();
+        FileTransferSender sender = initializeSession(13);
+        FileTransferReceiver receiver = new FileTransferReceiver(networkNode, counterpartyNodeAddress, testTradeId, testTraderId, testClientId, this);
+
+        sender.initSend();
+        receiver.processFilePartReceived((FileTransferPart) sentMessages.remove(0));
+        sender.onMessage(sentMessages.remove(0), null);
+        FileTransferPart part = (FileTransferPart) sentMessages.remove(0);
+        byte[] corruptedData = part.messageData.toByteArray();
+        corruptedData[0]++;
+        receiver.onMessage(new FileTransferPart(part.getSenderNodeAddress(), part.tradeId, part.traderId, part.uid,
+                part.seqNumOrFileLength, ByteString.copyFrom(corruptedData), part.offset, part.contentHash), null);
+
+        AckMessage ackMessage = (AckMessage) sentMessages.remove(0);
+        assertFalse(ackMessage.isSuccess());
+        sender.onMessage(ackMessage, null);
+        assertEquals(0, ftpCompleteInvocations);
+        assertFalse(new File(receiver.zipFilePath).exists());
+        assertTrue(new File(sender.zipFilePath).exists());
+        new File(sender.zipFilePath).deleteOnExit();
+    }
+
+    @Test
+    public void testWindowedRequestAckedByLegacyPeer() throws IOException {
+        FileTransferSender session = initializeSession(13);
+        session.initSend();
+        assertTrue(session.dataAwaitingAck.get().isWindowed());
+        // a peer without support for windowed transfers ACKs the request, we continue with stop-and-wait
+        simulateAckFromPeerAndVerify(session, 0, 0, 2);
+        session.sendNextBlock();
+        assertFalse(session.dataAwaitingAck.get().isWindowed());
+        simulateAckFromPeerAndVerify(session, 13, 1, 3);
+        session.sendNextBlock();
+        assertTrue(ftpCompleteStatus);
+    }
+
+    private List<NetworkEnvelope> captureSentMessages() {
+        List<NetworkEnvelope> sentMessages = new ArrayList<>();
+        when(networkNode.sendMessage(any(NodeAddress.class), any(NetworkEnvelope.class))).thenAnswer(invocation -> {
+            sentMessages.add(invocation.getArgument(1));
+            return null;
+        });
+        return sentMessages;
+    }
+
     private FileTransferSender initializeSession(int testSize) {
         try {
             FileTransferSender session = new FileTransferSender(networkNode, counterpartyNodeAddress, testTradeId, testTraderId, testClientId, true, this);
@@ -233,6 +373,7 @@ public class FileTransferSessionTest implements FileTransferSession.FtpCallback
     @Override
     public void onFtpComplete(FileTransferSession session) {
         ftpCompleteStatus = true;
+        ftpCompleteInvocations++;
     }
 
     @Override
@@ -0,0 +1,185 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.core.trade;
+
+import tuskex.common.crypto.Encryption;
+import tuskex.common.crypto.KeyRing;
+import tuskex.common.util.Utilities;
+import tuskex.core.offer.Offer;
+import tuskex.core.offer.OfferDirection;
+import tuskex.core.offer.OfferPayload;
+import tuskex.core.support.dispute.Attachment;
+import tuskex.core.support.messages.ChatMessage;
+import tuskex.core.trade.protocol.TradePeer;
+import javafx.collections.FXCollections;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ClosedTradeArchiveTest {
+
+    @TempDir
+    File dir;
+
+    private final KeyRing keyRing = mock(KeyRing.class);
+    private File file;
+
+    private static Trade trade(String id, long triggerPrice) {
+        Offer offer = mock(Offer.class);
+        when(offer.getCurrencyCode()).thenReturn("USD");
+        when(offer.getDirection()).thenReturn(OfferDirection.SELL);
+        when(offer.getOfferPayload()).thenReturn(mock(OfferPayload.class));
+        when(offer.getAmount()).thenReturn(BigInteger.TEN);
+        when(offer.getMinAmount()).thenReturn(BigInteger.ONE);
+        when(offer.getDate()).thenReturn(new Date(500));
+        when(offer.getPaymentMethodId()).thenReturn("SEPA");
+        when(offer.getBaseCurrencyCode()).thenReturn("TSK");
+        when(offer.getCounterCurrencyCode()).thenReturn("USD");
+        TradePeer buyer = mock(TradePeer.class);
+        when(buyer.getSecurityDeposit()).thenReturn(BigInteger.TWO);
+        Trade trade = mock(Trade.class);
+        when(trade.getBuyer()).thenReturn(buyer);
+        when(trade.getSeller()).thenReturn(mock(TradePeer.class));
+        when(trade.getMaker()).thenReturn(mock(TradePeer.class));
+        when(trade.getTaker()).thenReturn(mock(TradePeer.class));
+        when(trade.getTakerFee()).thenReturn(BigInteger.ONE);
+        when(trade.getPayoutTxId()).thenReturn("payoutTxId");
+        when(trade.getPayoutState()).thenReturn(Trade.PayoutState.PAYOUT_UNLOCKED);
+        when(trade.getDisputeState()).thenReturn(Trade.DisputeState.NO_DISPUTE);
+        when(trade.getPeriodState()).thenReturn(Trade.TradePeriodState.TRADE_PERIOD_OVER);
+        when(trade.isCompleted()).thenReturn(true);
+        when(trade.getId()).thenReturn(id);
+        when(trade.getDate()).thenReturn(new Date(1000));
+        when(trade.getAmount()).thenReturn(BigInteger.TEN);
+        when(trade.getOffer()).thenReturn(offer);
+        when(trade.getRole()).thenReturn("Buyer");
+        when(trade.getState()).thenReturn(Trade.State.SELLER_SAW_ARRIVED_PAYMENT_RECEIVED_MSG);
+        when(trade.getChatMessages()).thenReturn(FXCollections.observableArrayList());
+        // any tradable proto will do as the archive does not decode it
+        when(trade.toProtoMessage()).thenReturn(protobuf.Tradable.newBuilder()
+                .setOpenOffer(protobuf.OpenOffer.newBuilder().setTriggerPrice(triggerPrice))
+                .build());
+        return trade;
+    }
+
+    private static List<String> ids(ClosedTradeArchive archive) {
+        return archive.getSummaries().stream().map(ClosedTradeSummary::getId).collect(Collectors.toList());
+    }
+
+    @BeforeEach
+    public void setUp() {
+        when(keyRing.isUnlocked()).thenReturn(true);
+        when(keyRing.getSymmetricKey()).thenReturn(Encryption.generateSecretKey(256));
+        file = new File(dir, ClosedTradeArchive.FILE_NAME);
+    }
+
+    @Test
+    public void testTradesAreReadFromDisk() throws IOException {
+        ClosedTradeArchive archive = new ClosedTradeArchive(file, keyRing);
+        archive.add(trade("1", 1), false);
+        archive.add(trade("2", 2), false);
+        archive.add(trade("1", 3), true);
+        archive.add(trade("3", 4), false);
+        assertTrue(archive.remove("3"));
+
+        ClosedTradeArchive reopened = new ClosedTradeArchive(file, keyRing);
+        assertEquals(List.of("1", "2"), ids(reopened));
+        assertTrue(reopened.getSummaries().get(0).isSensitiveDataCleared());
+        assertEquals(3, reopened.getTradable("1").getOpenOffer().getTriggerPrice());
+        assertEquals(2, reopened.getTradable("2").getOpenOffer().getTriggerPrice());
+        assertFalse(reopened.contains("3"));
+        assertNull(reopened.getTradable("3"));
+        assertFalse(reopened.remove("3"));
+    }
+
+    @Test
+    public void testAttachmentHashesAreReadFromDisk() throws IOException {
+        Attachment attachment = new Attachment("file.txt", new byte[]{1, 2, 3});
+        ChatMessage chatMessage = mock(ChatMessage.class);
+        when(chatMessage.getAttachments()).thenReturn(new ArrayList<>(List.of(attachment)));
+        Trade trade = trade("1", 1);
+        when(trade.getChatMessages()).thenReturn(FXCollections.observableArrayList(chatMessage));
+        new ClosedTradeArchive(file, keyRing).add(trade, false);
+
+        ClosedTradeSummary summary = new ClosedTradeArchive(file, keyRing).getSummaries().get(0);
+        assertEquals(Set.of(Utilities.bytesAsHexString(attachment.getHash())), summary.getAttachmentHashes());
+    }
+
+    @Test
+    public void testListFieldsAreReadFromDisk() throws IOException {
+        new ClosedTradeArchive(file, keyRing).add(trade("1", 1), false);
+
+        ClosedTradeSummary summary = new ClosedTradeArchive(file, keyRing).getSummaries().get(0);
+        assertTrue(summary.hasListFields());
+        assertEquals(OfferDirection.BUY, summary.getDirection()); // taker of a sell offer
+        assertEquals(BigInteger.ONE, summary.getTradeFee());
+        assertEquals(2, summary.getBuyerSecurityDeposit());
+        assertEquals(-1, summary.getSellerSecurityDeposit());
+        assertEquals("SEPA", summary.getPaymentMethodId());
+        assertEquals("payoutTxId", summary.getPayoutTxId());
+        assertNull(summary.getMakerDepositTxId());
+        assertEquals(Trade.PayoutState.PAYOUT_UNLOCKED, summary.getPayoutState());
+        assertTrue(summary.isPayoutPublished());
+        assertTrue(summary.isCompleted());
+    }
+
+    @Test
+    public void testIncompleteRecordIsDropped() throws IOException {
+        ClosedTradeArchive archive = new ClosedTradeArchive(file, keyRing);
+        archive.add(trade("1", 1), false);
+        long length = file.length();
+        try (FileOutputStream fileOutputStream = new FileOutputStream(file, true)) {
+            fileOutputStream.write(new byte[]{0, 0, 0, 100, 0, 0, 0, 100, 1, 2, 3});
+        }
+
+        ClosedTradeArchive reopened = new ClosedTradeArchive(file, keyRing);
+        assertEquals(List.of("1"), ids(reopened));
+        assertEquals(length, file.length());
+        reopened.add(trade("2", 2), false);
+        assertEquals(List.of("1", "2"), ids(new ClosedTradeArchive(file, keyRing)));
+    }
+
+    @Test
+    public void testLockedAccountIsNotRead() throws IOException {
+        new ClosedTradeArchive(file, keyRing).add(trade("1", 1), false);
+        when(keyRing.isUnlocked()).thenReturn(false);
+
+        ClosedTradeArchive archive = new ClosedTradeArchive(file, keyRing);
+        assertFalse(archive.contains("1"));
+
+        when(keyRing.isUnlocked()).thenReturn(true);
+        assertTrue(archive.contains("1"));
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.core.trade;
+
+import tuskex.common.ClockWatcher;
+import tuskex.common.crypto.KeyRing;
+import tuskex.common.persistence.PersistenceManager;
+import tuskex.core.api.CoreAccountService;
+import tuskex.core.api.CoreNotificationService;
+import tuskex.core.offer.OfferBookService;
+import tuskex.core.offer.OfferUtil;
+import tuskex.core.offer.OpenOfferManager;
+import tuskex.core.provider.price.PriceFeedService;
+import tuskex.core.support.dispute.arbitration.arbitrator.ArbitratorManager;
+import tuskex.core.support.dispute.mediation.mediator.MediatorManager;
+import tuskex.core.trade.failed.FailedTradesManager;
+import tuskex.core.trade.protocol.ProcessModelServiceProvider;
+import tuskex.core.trade.statistics.ReferralIdService;
+import tuskex.core.trade.statistics.TradeStatisticsManager;
+import tuskex.core.tsk.wallet.TskWalletService;
+import tuskex.core.user.User;
+import tuskex.network.p2p.P2PService;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TradeManagerTest {
+    private final ObservableList<Tradable> closedTradables = FXCollections.observableArrayList();
+    private final ClosedTradableManager closedTradableManager = mock(ClosedTradableManager.class);
+    private final FailedTradesManager failedTradesManager = mock(FailedTradesManager.class);
+    private final TradeStatisticsManager tradeStatisticsManager = mock(TradeStatisticsManager.class);
+    private final P2PService p2PService = mock(P2PService.class);
+
+    @SuppressWarnings("unchecked")
+    private TradeManager tradeManager() {
+        when(closedTradableManager.getObservableList()).thenReturn(closedTradables);
+        when(closedTradableManager.getClosedTrades()).thenReturn(List.of());
+        when(failedTradesManager.getObservableList()).thenReturn(FXCollections.observableArrayList());
+        when(p2PService.isBootstrapped()).thenReturn(true);
+        return new TradeManager(mock(User.class),
+                mock(KeyRing.class),
+                mock(CoreAccountService.class),
+                mock(TskWalletService.class),
+                mock(CoreNotificationService.class),
+                mock(OfferBookService.class),
+                mock(OpenOfferManager.class),
+                closedTradableManager,
+                failedTradesManager,
+                p2PService,
+                mock(PriceFeedService.class),
+                tradeStatisticsManager,
+                mock(OfferUtil.class),
+                mock(TradeUtil.class),
+                mock(ArbitratorManager.class),
+                mock(MediatorManager.class),
+                mock(ProcessModelServiceProvider.class),
+                mock(ClockWatcher.class),
+                mock(PersistenceManager.class),
+                mock(ReferralIdService.class));
+    }
+
+    private static Trade trade(String id, String uid) {
+        Trade trade = mock(Trade.class);
+        when(trade.getId()).thenReturn(id);
+        when(trade.getUid()).thenReturn(uid);
+        return trade;
+    }
+
+    @Test
+    public void testPersistedTradesInitialized() {
+        TradeManager tradeManager = tradeManager();
+        // trades with duplicate uid are skipped, which must not change the trades of the registry
+        closedTradables.addAll(trade("1", "uid"), trade("2", "uid"));
+
+        tradeManager.onAllServicesInitialized();
+
+        verify(closedTradableManager, timeout(5000)).maybeArchiveTrades();
+        assertTrue(tradeManager.getPersistedTradesInitialized().get());
+        verify(tradeStatisticsManager).maybeRepublishTradeStatistics(any(Set.class), any(), anyBoolean());
+        assertEquals(2, tradeManager.getAllTrades().size());
+    }
+}
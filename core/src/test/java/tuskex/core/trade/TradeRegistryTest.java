@@ -0,0 +1,88 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.core.trade;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TradeRegistryTest {
+    private final ObservableList<Trade> openTrades = FXCollections.observableArrayList();
+    private final ObservableList<Tradable> closedTradables = FXCollections.observableArrayList();
+    private final ObservableList<Trade> failedTrades = FXCollections.observableArrayList();
+
+    private static Trade trade(String id) {
+        Trade trade = mock(Trade.class);
+        when(trade.getId()).thenReturn(id);
+        when(trade.getUid()).thenReturn("uid-" + id);
+        return trade;
+    }
+
+    @Test
+    public void testIndexFollowsLists() {
+        Trade trade1 = trade("1");
+        Trade trade2 = trade("2");
+        openTrades.add(trade1);
+        TradeRegistry registry = new TradeRegistry(openTrades, closedTradables, failedTrades);
+        openTrades.add(trade2);
+
+        assertSame(trade1, registry.getTrade(TradeRegistry.State.OPEN, "1").get());
+        assertSame(trade2, registry.getOpenTradeByUid("uid-2").get());
+        assertEquals(List.of(trade1, trade2), registry.getAllTrades());
+
+        // trade is moved to closed trades
+        closedTradables.add(trade1);
+        openTrades.remove(trade1);
+
+        assertEquals(Optional.empty(), registry.getTrade(TradeRegistry.State.OPEN, "1"));
+        assertEquals(Optional.empty(), registry.getOpenTradeByUid("uid-1"));
+        assertSame(trade1, registry.getTrade(TradeRegistry.State.CLOSED, "1").get());
+        assertSame(trade1, registry.getTrade("1"));
+        assertEquals(List.of(trade2, trade1), registry.getAllTrades());
+
+        // trade is moved to failed trades
+        failedTrades.add(trade2);
+        openTrades.setAll();
+
+        assertSame(trade2, registry.getTrade(TradeRegistry.State.FAILED, "2").get());
+        assertEquals(List.of(), registry.getTrades(TradeRegistry.State.OPEN));
+        assertEquals(List.of(trade1), registry.getTrades(TradeRegistry.State.CLOSED));
+        assertNull(registry.getTrade("3"));
+    }
+
+    @Test
+    public void testSnapshotIsNotChanged() {
+        TradeRegistry registry = new TradeRegistry(openTrades, closedTradables, failedTrades);
+        openTrades.add(trade("1"));
+        List<Trade> snapshot = registry.getAllTrades();
+
+        openTrades.add(trade("2"));
+
+        assertEquals(1, snapshot.size());
+        assertEquals(2, registry.getAllTrades().size());
+    }
+}
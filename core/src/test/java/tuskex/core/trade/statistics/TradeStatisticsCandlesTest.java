@@ -0,0 +1,105 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.core.trade.statistics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TradeStatisticsCandlesTest {
+    private static final long HOUR_10 = Instant.parse("2024-07-03T10:00:00Z").toEpochMilli();
+    private static final long HOUR_11 = Instant.parse("2024-07-03T11:00:00Z").toEpochMilli();
+    private static final long MINUTE = 60000;
+
+    private final TradeStatisticsCandles candles = new TradeStatisticsCandles(ZoneOffset.UTC);
+
+    private static TradeStatistics3 tradeStatistics(String currency, long price, long amount, long date) {
+        return new TradeStatistics3(currency, price, amount, "SEPA", date, null, null, null);
+    }
+
+    @BeforeEach
+    public void setUp() {
+        candles.add(tradeStatistics("USD", 300000, 1, HOUR_10 + 5 * MINUTE));
+        candles.add(tradeStatistics("USD", 200000, 2, HOUR_10 + MINUTE));
+        candles.add(tradeStatistics("USD", 400000, 3, HOUR_10 + 55 * MINUTE));
+        candles.add(tradeStatistics("USD", 500000, 4, HOUR_11 + 30 * MINUTE));
+        candles.add(tradeStatistics("EUR", 100000, 5, HOUR_10));
+    }
+
+    @Test
+    public void testHourCandles() {
+        List<Candle> hourCandles = candles.getCandles("usd", CandleInterval.HOUR, 0, Long.MAX_VALUE);
+
+        assertEquals(2, hourCandles.size());
+        Candle candle = hourCandles.get(0);
+        assertEquals(HOUR_10, candle.getStart());
+        assertEquals(200000, candle.getOpen());
+        assertEquals(400000, candle.getClose());
+        assertEquals(400000, candle.getHigh());
+        assertEquals(200000, candle.getLow());
+        assertEquals(300000, candle.getMedian());
+        assertEquals(BigInteger.valueOf(6), candle.getAccumulatedAmount());
+        assertEquals(3, candle.getNumTrades());
+        assertTrue(candle.isBullish());
+        assertEquals(HOUR_11, hourCandles.get(1).getStart());
+        assertEquals(1, hourCandles.get(1).getNumTrades());
+    }
+
+    @Test
+    public void testRangeAndIntervals() {
+        assertEquals(List.of(HOUR_11), candles.getCandles("USD", CandleInterval.HOUR, HOUR_10 + 1, Long.MAX_VALUE).stream()
+                .map(Candle::getStart).toList());
+        assertEquals(3, candles.getCandles("USD", CandleInterval.MINUTE_10, 0, Long.MAX_VALUE).size());
+        assertEquals(1, candles.getCandles("USD", CandleInterval.DAY, 0, Long.MAX_VALUE).size());
+        assertEquals(4, candles.getCandles("USD", CandleInterval.WEEK, 0, Long.MAX_VALUE).get(0).getNumTrades());
+        assertEquals(Instant.parse("2024-07-01T00:00:00Z").toEpochMilli(),
+                candles.getCandles("USD", CandleInterval.WEEK, 0, Long.MAX_VALUE).get(0).getStart());
+        assertEquals(Instant.parse("2024-01-01T00:00:00Z").toEpochMilli(),
+                candles.getCandles("EUR", CandleInterval.YEAR, 0, Long.MAX_VALUE).get(0).getStart());
+        assertTrue(candles.getCandles("XMR", CandleInterval.DAY, 0, Long.MAX_VALUE).isEmpty());
+    }
+
+    @Test
+    public void testTradesAddedAfterCandlesWereBuilt() {
+        assertEquals(3, candles.getCandles("USD", CandleInterval.HOUR, HOUR_10, HOUR_11).get(0).getNumTrades());
+
+        candles.add(tradeStatistics("USD", 100000, 5, HOUR_10 + 30 * MINUTE));
+
+        Candle hourCandle = candles.getCandles("USD", CandleInterval.HOUR, HOUR_10, HOUR_11).get(0);
+        assertEquals(4, hourCandle.getNumTrades());
+        assertEquals(100000, hourCandle.getLow());
+        assertEquals(250000, hourCandle.getMedian());
+        assertEquals(5, candles.getCandles("USD", CandleInterval.DAY, 0, Long.MAX_VALUE).get(0).getNumTrades());
+    }
+
+    @Test
+    public void testAccumulatedAmountDoesNotOverflow() {
+        candles.add(tradeStatistics("GBP", 100000, Long.MAX_VALUE, HOUR_10));
+        candles.add(tradeStatistics("GBP", 100000, Long.MAX_VALUE, HOUR_10 + MINUTE));
+
+        assertEquals(BigInteger.valueOf(Long.MAX_VALUE).multiply(BigInteger.TWO),
+                candles.getCandles("GBP", CandleInterval.HOUR, 0, Long.MAX_VALUE).get(0).getAccumulatedAmount());
+    }
+}
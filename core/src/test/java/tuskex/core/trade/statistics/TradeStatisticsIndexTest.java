@@ -0,0 +1,75 @@
+/*
+ * This file is part of Tuskex.
+ *
+ * Tuskex is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Tuskex is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Tuskex. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.core.trade.statistics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TradeStatisticsIndexTest {
+    private final TradeStatisticsIndex index = new TradeStatisticsIndex();
+
+    private static TradeStatistics3 tradeStatistics(String currency, long date, long amount) {
+        return new TradeStatistics3(currency, 100, amount, "SEPA", date, null, null, null);
+    }
+
+    private static List<Long> dates(List<TradeStatistics3> tradeStatistics) {
+        return tradeStatistics.stream().map(TradeStatistics3::getDateAsLong).collect(Collectors.toList());
+    }
+
+    @BeforeEach
+    public void setUp() {
+        for (long date = 1000; date <= 10000; date += 1000) {
+            index.add(tradeStatistics("USD", date, 1));
+            index.add(tradeStatistics("EUR", date + 500, 1));
+        }
+    }
+
+    @Test
+    public void testRangeNewestFirst() {
+        assertEquals(List.of(5000L, 4000L, 3000L), dates(index.getTradeStatistics("usd", 3000, 6000, null, Integer.MAX_VALUE)));
+        assertEquals(List.of(5500L, 5000L, 4500L), dates(index.getTradeStatistics(null, 4500, 6000, null, Integer.MAX_VALUE)));
+        assertTrue(index.getTradeStatistics("XMR", 0, Long.MAX_VALUE, null, Integer.MAX_VALUE).isEmpty());
+        assertTrue(index.getTradeStatistics("USD", 6000, 3000, null, Integer.MAX_VALUE).isEmpty());
+    }
+
+    @Test
+    public void testPagesWithCursor() {
+        index.add(tradeStatistics("USD", 5000, 2)); // same date, different hash
+
+        List<TradeStatistics3> page1 = index.getTradeStatistics("USD", 3000, 6000, null, 2);
+        List<TradeStatistics3> page2 = index.getTradeStatistics("USD", 3000, 6000, TradeStatisticsIndex.toCursor(page1.get(1)), 2);
+        List<TradeStatistics3> page3 = index.getTradeStatistics("USD", 3000, 6000, TradeStatisticsIndex.toCursor(page2.get(1)), 2);
+
+        assertEquals(List.of(5000L, 5000L), dates(page1));
+        assertEquals(List.of(4000L, 3000L), dates(page2));
+        assertTrue(page3.isEmpty());
+        assertEquals(21, index.size());
+    }
+
+    @Test
+    public void testInvalidCursor() {
+        assertThrows(IllegalArgumentException.class, () -> index.getTradeStatistics("USD", 0, Long.MAX_VALUE, "invalid", 10));
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.core.trade.statistics;
+
+import tuskex.core.provider.price.PriceFeedService;
+import tuskex.network.p2p.P2PService;
+import tuskex.network.p2p.storage.P2PDataStorage;
+import tuskex.network.p2p.storage.persistence.AppendOnlyDataStoreListener;
+import tuskex.network.p2p.storage.persistence.AppendOnlyDataStoreService;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TradeStatisticsManagerTest {
+    private static final long EARLY_DATE = Instant.parse("2024-05-01T00:00:00Z").toEpochMilli();
+    private static final long LATE_DATE = Instant.parse("2024-06-01T00:00:00Z").toEpochMilli();
+
+    private static TradeStatistics3 tradeStatistics(String currency, long price, long amount, long date) {
+        return new TradeStatistics3(currency, price, amount, "SEPA", date, null, null, null);
+    }
+
+    @Test
+    public void testDeduplicateEarlyTradeStatistics() {
+        Set<TradeStatistics3> set = new HashSet<>();
+        TradeStatistics3 original = tradeStatistics("USD", 100, 1, EARLY_DATE);
+        set.add(original);
+        set.add(tradeStatistics("USD", 100, 1, EARLY_DATE + 119999)); // duplicate
+        set.add(tradeStatistics("USD", 100, 1, EARLY_DATE + 240000)); // too late
+        set.add(tradeStatistics("EUR", 100, 1, EARLY_DATE + 1000)); // other currency
+        set.add(tradeStatistics("USD", 101, 1, EARLY_DATE + 1000)); // other price
+        set.add(tradeStatistics("USD", 100, 2, EARLY_DATE + 1000)); // other amount
+        set.add(tradeStatistics("XMR", 100, 1, EARLY_DATE + 599000));
+        set.add(tradeStatistics("XMR", 100, 1, EARLY_DATE + 601000)); // duplicate in neighbouring bucket
+        set.add(tradeStatistics("USD", 100, 1, LATE_DATE));
+        set.add(tradeStatistics("USD", 100, 1, LATE_DATE + 1000)); // not deduplicated after May 31, 2024
+
+        TradeStatisticsManager.deduplicateEarlyTradeStatistics(set);
+
+        assertEquals(8, set.size());
+        assertEquals(1, set.stream().filter(e -> e.getCurrency().equals("USD") && e.getPrice() == 100 &&
+                e.getAmount() == 1 && e.getDateAsLong() < EARLY_DATE + 120000).count());
+        assertEquals(1, set.stream().filter(e -> e.getCurrency().equals("XMR")).count());
+        assertTrue(set.stream().anyMatch(e -> e.getDateAsLong() == EARLY_DATE + 240000));
+    }
+
+    @Test
+    public void testTradeStatisticsReceivedBeforeInitialLoadAreCountedOnce() {
+        P2PService p2PService = mock(P2PService.class);
+        P2PDataStorage p2PDataStorage = mock(P2PDataStorage.class);
+        TradeStatistics3StorageService storageService = mock(TradeStatistics3StorageService.class);
+        when(p2PService.getP2PDataStorage()).thenReturn(p2PDataStorage);
+        TradeStatisticsManager manager = new TradeStatisticsManager(p2PService, mock(PriceFeedService.class),
+                storageService, mock(AppendOnlyDataStoreService.class), new File("."), false, false);
+        TradeStatistics3 received = tradeStatistics("USD", 100, 1, LATE_DATE);
+        TradeStatistics3 stored = tradeStatistics("USD", 200, 2, LATE_DATE + 1000);
+        ArgumentCaptor<AppendOnlyDataStoreListener> listener = ArgumentCaptor.forClass(AppendOnlyDataStoreListener.class);
+        when(storageService.streamAllData()).thenAnswer(invocation -> {
+            // the trade statistics arrive from the network before the stored ones are loaded
+            verify(p2PDataStorage).addAppendOnlyDataStoreListener(listener.capture());
+            listener.getValue().onAdded(received);
+            return Stream.of(received, stored);
+        });
+
+        manager.onAllServicesInitialized();
+
+        assertEquals(2, manager.getObservableTradeStatisticsSet().size());
+        List<Candle> candles = manager.getCandles("USD", CandleInterval.DAY, 0, Long.MAX_VALUE);
+        assertEquals(1, candles.size());
+        assertEquals(2, candles.get(0).getNumTrades());
+        assertEquals(2, manager.getTradeStatistics("USD", 0, Long.MAX_VALUE, null, 10).getTradeStatistics().size());
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.core.tsk.wallet;
+
+import monero.daemon.model.MoneroTx;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TskDaemonTxCacheTest {
+    private final List<List<String>> fetches = Collections.synchronizedList(new ArrayList<>());
+
+    private List<MoneroTx> fetch(List<String> txHashes) {
+        fetches.add(new ArrayList<>(txHashes));
+        return txHashes.stream()
+                .filter(txHash -> !txHash.equals("missing"))
+                .map(txHash -> new MoneroTx().setHash(txHash).setIsConfirmed(false))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testOnlyMissingTxsAreFetched() {
+        TskDaemonTxCache cache = new TskDaemonTxCache(10, 60000, () -> 60000, this::fetch);
+
+        assertEquals("a", cache.getTxs(List.of("a")).get(0).getHash());
+        List<MoneroTx> txs = cache.getTxs(List.of("b", "a", "missing"));
+
+        assertEquals("b", txs.get(0).getHash());
+        assertEquals("a", txs.get(1).getHash());
+        assertNull(txs.get(2));
+        assertEquals(List.of(List.of("a"), List.of("b", "missing")), fetches);
+
+        cache.fetchTxs(List.of("a"));
+        assertEquals(List.of("a"), fetches.get(2));
+    }
+
+    @Test
+    public void testExpiryAndEviction() {
+        TskDaemonTxCache expiringCache = new TskDaemonTxCache(10, 60000, () -> 0, this::fetch);
+        expiringCache.getTxs(List.of("a"));
+        expiringCache.getTxs(List.of("a"));
+        assertEquals(2, fetches.size());
+
+        fetches.clear();
+        TskDaemonTxCache smallCache = new TskDaemonTxCache(2, 60000, () -> 60000, this::fetch);
+        smallCache.getTxs(List.of("a", "b"));
+        smallCache.getTxs(List.of("a")); // b is least recently used
+        smallCache.getTxs(List.of("c"));
+        smallCache.getTxs(List.of("a", "b"));
+        assertEquals(List.of(List.of("a", "b"), List.of("c"), List.of("b")), fetches);
+    }
+
+    @Test
+    public void testConcurrentLookupsShareFetch() throws Exception {
+        CountDownLatch fetchStarted = new CountDownLatch(1);
+        CountDownLatch releaseFetch = new CountDownLatch(1);
+        TskDaemonTxCache cache = new TskDaemonTxCache(10, 60000, () -> 60000, txHashes -> {
+            fetchStarted.countDown();
+            try {
+                assertTrue(releaseFetch.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return fetch(txHashes);
+        });
+
+        CompletableFuture<List<MoneroTx>> first = CompletableFuture.supplyAsync(() -> cache.getTxs(List.of("a")));
+        assertTrue(fetchStarted.await(5, TimeUnit.SECONDS));
+        CompletableFuture<List<MoneroTx>> second = CompletableFuture.supplyAsync(() -> cache.fetchTxs(List.of("a")));
+        Thread.sleep(100);
+        releaseFetch.countDown();
+
+        assertEquals("a", first.get(5, TimeUnit.SECONDS).get(0).getHash());
+        assertEquals("a", second.get(5, TimeUnit.SECONDS).get(0).getHash());
+        assertEquals(1, fetches.size());
+    }
+
+    @Test
+    public void testFailedFetchIsNotCached() {
+        TskDaemonTxCache cache = new TskDaemonTxCache(10, 60000, () -> 60000, txHashes -> {
+            if (fetches.isEmpty()) {
+                fetches.add(txHashes);
+                throw new IllegalStateException("No connection");
+            }
+            return fetch(txHashes);
+        });
+
+        assertThrows(IllegalStateException.class, () -> cache.getTxs(List.of("a")));
+        assertEquals("a", cache.getTxs(List.of("a")).get(0).getHash());
+    }
+}
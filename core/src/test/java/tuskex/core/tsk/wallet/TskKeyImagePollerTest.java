@@ -0,0 +1,106 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.core.tsk.wallet;
+
+import monero.daemon.MoneroDaemon;
+import monero.daemon.model.MoneroBlockHeader;
+import monero.daemon.model.MoneroKeyImageSpentStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TskKeyImagePollerTest {
+    private final MoneroDaemon daemon = mock(MoneroDaemon.class);
+    private final List<List<String>> fetches = new ArrayList<>();
+    // run while the spent statuses are fetched
+    private Runnable onFetch = () -> {};
+    private TskKeyImagePoller poller;
+
+    private void setChainState(long height, String hash, String prevHash, List<String> txPoolHashes) {
+        when(daemon.getLastBlockHeader()).thenReturn(new MoneroBlockHeader().setHeight(height).setHash(hash).setPrevHash(prevHash));
+        when(daemon.getTxPoolHashes()).thenReturn(txPoolHashes);
+    }
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        setChainState(100, "hash100", "hash99", List.of());
+        when(daemon.getKeyImageSpentStatuses(anyList())).thenAnswer(invocation -> {
+            List<String> keyImages = new ArrayList<>((List<String>) invocation.getArgument(0));
+            fetches.add(keyImages);
+            onFetch.run();
+            return keyImages.stream()
+                    .map(keyImage -> keyImage.startsWith("spent") ? MoneroKeyImageSpentStatus.CONFIRMED : MoneroKeyImageSpentStatus.NOT_SPENT)
+                    .collect(Collectors.toList());
+        });
+        // no listener is added, so the poller does not start polling itself
+        poller = new TskKeyImagePoller();
+        poller.setDaemon(daemon);
+        poller.addKeyImages("spent1", "unspent1");
+    }
+
+    @Test
+    public void testOnlyPossiblyChangedKeyImagesAreFetched() {
+        poller.poll();
+        assertEquals(List.of(List.of("spent1", "unspent1")), fetches);
+        assertTrue(poller.isSpent("spent1"));
+
+        // nothing changed
+        poller.poll();
+        assertEquals(1, fetches.size());
+
+        // new key image
+        poller.addKeyImage("unspent2");
+        poller.poll();
+        assertEquals(List.of("unspent2"), fetches.get(1));
+
+        // pool changed, confirmed key images cannot change
+        setChainState(100, "hash100", "hash99", List.of("tx1"));
+        poller.poll();
+        assertEquals(List.of("unspent1", "unspent2"), fetches.get(2));
+
+        // new block
+        setChainState(101, "hash101", "hash100", List.of());
+        poller.poll();
+        assertEquals(List.of("unspent1", "unspent2"), fetches.get(3));
+
+        // reorg
+        setChainState(101, "hash101b", "hash100", List.of());
+        poller.poll();
+        assertEquals(List.of("spent1", "unspent1", "unspent2"), fetches.get(4));
+    }
+
+    @Test
+    public void testKeyImageRemovedWhilePollingIsNotAdded() {
+        onFetch = () -> poller.removeKeyImage("spent1");
+        poller.poll();
+
+        assertNull(poller.getLastSpentStatus("spent1"));
+        assertEquals(MoneroKeyImageSpentStatus.NOT_SPENT, poller.getLastSpentStatus("unspent1"));
+    }
+}
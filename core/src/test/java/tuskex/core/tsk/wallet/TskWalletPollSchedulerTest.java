@@ -0,0 +1,142 @@
+/*
+ * This file is part of Tuskex.
+ *
+ * Tuskex is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Tuskex is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Tuskex. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.core.tsk.wallet;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TskWalletPollSchedulerTest {
+    private static final long TIMEOUT_MS = 5000;
+
+    private TskWalletPollScheduler scheduler;
+    private final List<String> polled = new CopyOnWriteArrayList<>();
+    private final List<Boolean> polledOnDaemonThread = new CopyOnWriteArrayList<>();
+
+    private TskWalletPollScheduler.PolledWallet wallet(String id, int priority, CountDownLatch release) {
+        return new TskWalletPollScheduler.PolledWallet() {
+            @Override
+            public long getPollPeriodMs() {
+                return TimeUnit.HOURS.toMillis(1);
+            }
+
+            @Override
+            public int getPollPriority() {
+                return priority;
+            }
+
+            @Override
+            public String getPollDaemonUri() {
+                return "http://127.0.0.1:18081";
+            }
+
+            @Override
+            public void poll() {
+                polled.add(id);
+                polledOnDaemonThread.add(Thread.currentThread().isDaemon());
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertTrue(condition.getAsBoolean());
+    }
+
+    @BeforeEach
+    public void setUp() {
+        scheduler = new TskWalletPollScheduler(() -> 1);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        scheduler.shutDown();
+    }
+
+    @Test
+    public void testQueuedWalletsPolledByPriority() throws InterruptedException {
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(0);
+        scheduler.schedule("first", wallet("first", 1, releaseFirst));
+        waitFor(() -> scheduler.getNumPollsInProgress() == 1);
+
+        scheduler.schedule("idle", wallet("idle", 2, released));
+        scheduler.schedule("urgent", wallet("urgent", 0, released));
+        waitFor(() -> scheduler.getQueueDepth() == 2);
+        assertEquals(List.of("first"), polled);
+
+        releaseFirst.countDown();
+        waitFor(() -> polled.size() == 3);
+        assertEquals(List.of("first", "urgent", "idle"), polled);
+        waitFor(() -> scheduler.getNumPollsInProgress() == 0);
+    }
+
+    @Test
+    public void testUnscheduledWalletNotPolled() throws InterruptedException {
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(0);
+        scheduler.schedule("first", wallet("first", 0, releaseFirst));
+        waitFor(() -> scheduler.getNumPollsInProgress() == 1);
+
+        TskWalletPollScheduler.PolledWallet second = wallet("second", 0, released);
+        scheduler.schedule("second", second);
+        scheduler.unschedule("second", second);
+        releaseFirst.countDown();
+        waitFor(() -> scheduler.getNumPollsInProgress() == 0);
+
+        assertEquals(List.of("first"), polled);
+        assertEquals(1, scheduler.getNumScheduled());
+    }
+
+    @Test
+    public void testRescheduledWalletNotPolledConcurrently() throws InterruptedException {
+        scheduler.shutDown();
+        scheduler = new TskWalletPollScheduler(() -> 10);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(0);
+        TskWalletPollScheduler.PolledWallet first = wallet("trade", 0, releaseFirst);
+        scheduler.schedule("trade", first);
+        waitFor(() -> scheduler.getNumPollsInProgress() == 1);
+
+        // like a trade changing its poll period while its wallet is polled
+        scheduler.unschedule("trade", first);
+        scheduler.schedule("trade", wallet("trade", 0, released));
+        Thread.sleep(500);
+        assertEquals(List.of("trade"), polled);
+
+        releaseFirst.countDown();
+        waitFor(() -> polled.size() == 2);
+        waitFor(() -> scheduler.getNumPollsInProgress() == 0);
+        assertEquals(List.of(true, true), polledOnDaemonThread);
+    }
+}
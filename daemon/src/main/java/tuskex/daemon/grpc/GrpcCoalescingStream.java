@@ -0,0 +1,128 @@
+/*
+ * This file is part of Tuskex.
+ *
+ * Tuskex is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Tuskex is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Tuskex. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.daemon.grpc;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sends updates of a server streaming call with backpressure.
+ *
+ * Changes are collected by the subclass and sent as one update when the client is ready to receive and the minimum
+ * interval since the last update passed. A slow client therefore receives fewer, larger updates instead of the
+ * server buffering every change for it.
+ */
+@Slf4j
+abstract class GrpcCoalescingStream<T> {
+
+    private static final int POOL_SIZE = 4;
+    private static final ScheduledExecutorService EXECUTOR = Executors.newScheduledThreadPool(POOL_SIZE, runnable -> {
+        Thread thread = new Thread(runnable, "GrpcCoalescingStream");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ServerCallStreamObserver<T> responseObserver;
+    private final GrpcExceptionHandler exceptionHandler;
+    private final long minUpdateIntervalMs;
+    private boolean isUpdateScheduled;
+    private boolean isUpdateRequested;
+    private boolean isClosed;
+    private long lastUpdateTimeMs;
+
+    /**
+     * Must be created while handling the call, before returning to the gRPC runtime.
+     */
+    GrpcCoalescingStream(StreamObserver<T> responseObserver, GrpcExceptionHandler exceptionHandler, long minUpdateIntervalMs) {
+        this.responseObserver = (ServerCallStreamObserver<T>) responseObserver;
+        this.exceptionHandler = exceptionHandler;
+        this.minUpdateIntervalMs = minUpdateIntervalMs;
+        this.responseObserver.setOnReadyHandler(this::requestUpdate);
+        this.responseObserver.setOnCancelHandler(this::close);
+    }
+
+    /**
+     * Request sending an update with the pending changes. Can be called from any thread.
+     */
+    void requestUpdate() {
+        long delayMs;
+        synchronized (this) {
+            if (isClosed) return;
+            if (isUpdateScheduled) {
+                isUpdateRequested = true;
+                return;
+            }
+            isUpdateScheduled = true;
+            isUpdateRequested = false;
+            delayMs = Math.max(0, lastUpdateTimeMs + minUpdateIntervalMs - System.currentTimeMillis());
+        }
+        EXECUTOR.schedule(this::sendUpdate, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    void close() {
+        synchronized (this) {
+            if (isClosed) return;
+            isClosed = true;
+        }
+        onClose();
+    }
+
+    /**
+     * @return the update with the changes since the last update or null if nothing changed
+     */
+    protected abstract T getUpdate() throws Exception;
+
+    protected abstract void onClose();
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void sendUpdate() {
+        try {
+            // changes stay pending until the on ready handler requests the next update
+            if (!isClosed() && responseObserver.isReady()) {
+                T update = getUpdate();
+                synchronized (this) {
+                    lastUpdateTimeMs = System.currentTimeMillis();
+                }
+                if (update != null && !isClosed()) responseObserver.onNext(update);
+            }
+        } catch (Throwable t) {
+            close();
+            exceptionHandler.handleException(log, t, responseObserver);
+            return;
+        }
+
+        boolean requestAgain;
+        synchronized (this) {
+            isUpdateScheduled = false;
+            requestAgain = isUpdateRequested;
+        }
+        if (requestAgain) requestUpdate();
+    }
+
+    private synchronized boolean isClosed() {
+        return isClosed;
+    }
+}
@@ -2,17 +2,28 @@ package tuskex.daemon.grpc;
 
 import com.google.inject.Inject;
 import tuskex.core.api.CoreApi;
+import tuskex.core.trade.statistics.Candle;
+import tuskex.core.trade.statistics.CandleInterval;
 import tuskex.core.trade.statistics.TradeStatistics3;
+import tuskex.core.trade.statistics.TradeStatisticsManager.TradeStatisticsPage;
 import tuskex.daemon.grpc.interceptor.CallRateMeteringInterceptor;
 import tuskex.daemon.grpc.interceptor.GrpcCallRateMeter;
 import static tuskex.daemon.grpc.interceptor.GrpcServiceRateMeteringConfig.getCustomRateMeteringInterceptor;
 import static tuskex.proto.grpc.GetTradeStatisticsGrpc.GetTradeStatisticsImplBase;
+import static tuskex.proto.grpc.GetTradeStatisticsGrpc.getGetCandlesMethod;
 import static tuskex.proto.grpc.GetTradeStatisticsGrpc.getGetTradeStatisticsMethod;
+import static tuskex.proto.grpc.GetTradeStatisticsGrpc.getStreamTradeStatisticsMethod;
+import tuskex.proto.grpc.CandleInfo;
+import tuskex.proto.grpc.GetCandlesReply;
+import tuskex.proto.grpc.GetCandlesRequest;
 import tuskex.proto.grpc.GetTradeStatisticsReply;
 import tuskex.proto.grpc.GetTradeStatisticsRequest;
 import io.grpc.ServerInterceptor;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
+import java.math.BigInteger;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Optional;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import java.util.stream.Collectors;
@@ -21,6 +32,9 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 class GrpcGetTradeStatisticsService extends GetTradeStatisticsImplBase {
 
+    private static final int STREAM_PAGE_SIZE = 1000;
+    private static final BigInteger MAX_UINT64 = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+
     private final CoreApi coreApi;
     private final GrpcExceptionHandler exceptionHandler;
 
@@ -34,18 +48,124 @@ class GrpcGetTradeStatisticsService extends GetTradeStatisticsImplBase {
     public void getTradeStatistics(GetTradeStatisticsRequest req,
                                    StreamObserver<GetTradeStatisticsReply> responseObserver) {
         try {
-            var tradeStatistics = coreApi.getTradeStatistics().stream()
-                    .map(TradeStatistics3::toProtoTradeStatistics3)
-                    .collect(Collectors.toList());
+            int limit = req.getLimit() == 0 ? Integer.MAX_VALUE : req.getLimit();
+            responseObserver.onNext(getTradeStatisticsReply(req, req.getCursor(), limit));
+            responseObserver.onCompleted();
+        } catch (Throwable cause) {
+            exceptionHandler.handleException(log, cause, responseObserver);
+        }
+    }
 
-            var reply = GetTradeStatisticsReply.newBuilder().addAllTradeStatistics(tradeStatistics).build();
-            responseObserver.onNext(reply);
+    @Override
+    public void streamTradeStatistics(GetTradeStatisticsRequest req,
+                                      StreamObserver<GetTradeStatisticsReply> responseObserver) {
+        // pages are read when the client is ready to receive, so a slow client does not make us buffer all pages
+        TradeStatisticsPageStream pageStream = new TradeStatisticsPageStream(req,
+                (ServerCallStreamObserver<GetTradeStatisticsReply>) responseObserver);
+        ((ServerCallStreamObserver<GetTradeStatisticsReply>) responseObserver).setOnCancelHandler(pageStream::cancel);
+        ((ServerCallStreamObserver<GetTradeStatisticsReply>) responseObserver).setOnReadyHandler(pageStream::sendPages);
+    }
+
+    @Override
+    public void getCandles(GetCandlesRequest req,
+                           StreamObserver<GetCandlesReply> responseObserver) {
+        try {
+            if (req.getCurrencyCode().isEmpty()) throw new IllegalArgumentException("currency code is required");
+            if (req.getInterval() == GetCandlesRequest.Interval.UNRECOGNIZED) throw new IllegalArgumentException("invalid interval");
+            List<Candle> candles = coreApi.getCandles(req.getCurrencyCode(),
+                    CandleInterval.valueOf(req.getInterval().name()),
+                    req.getFromDate(),
+                    req.getToDate() == 0 ? Long.MAX_VALUE : req.getToDate());
+            responseObserver.onNext(GetCandlesReply.newBuilder()
+                    .addAllCandles(candles.stream()
+                            .map(GrpcGetTradeStatisticsService::toCandleInfo)
+                            .collect(Collectors.toList()))
+                    .build());
             responseObserver.onCompleted();
         } catch (Throwable cause) {
             exceptionHandler.handleException(log, cause, responseObserver);
         }
     }
 
+    private static CandleInfo toCandleInfo(Candle candle) {
+        return CandleInfo.newBuilder()
+                .setStart(candle.getStart())
+                .setOpen(candle.getOpen())
+                .setClose(candle.getClose())
+                .setHigh(candle.getHigh())
+                .setLow(candle.getLow())
+                .setAverage(candle.getAverage())
+                .setMedian(candle.getMedian())
+                .setAmount(toUint64(candle.getAccumulatedAmount()))
+                .setVolume(toUint64(candle.getAccumulatedVolume()))
+                .setNumTrades(candle.getNumTrades())
+                .build();
+    }
+
+    // saturates at the maximum uint64 instead of wrapping
+    private static long toUint64(BigInteger value) {
+        return value.min(MAX_UINT64).longValue();
+    }
+
+    private GetTradeStatisticsReply getTradeStatisticsReply(GetTradeStatisticsRequest req, String cursor, int limit) {
+        TradeStatisticsPage page = coreApi.getTradeStatistics(
+                req.getCurrencyCode().isEmpty() ? null : req.getCurrencyCode(),
+                req.getFromDate(),
+                req.getToDate() == 0 ? Long.MAX_VALUE : req.getToDate(),
+                cursor.isEmpty() ? null : cursor,
+                limit);
+        return GetTradeStatisticsReply.newBuilder()
+                .addAllTradeStatistics(page.getTradeStatistics().stream()
+                        .map(TradeStatistics3::toProtoTradeStatistics3)
+                        .collect(Collectors.toList()))
+                .setNextCursor(page.getNextCursor() == null ? "" : page.getNextCursor())
+                .build();
+    }
+
+    /**
+     * Sends the pages of a trade statistics stream while the client is ready to receive. The gRPC runtime calls
+     * sendPages again when the client can receive more.
+     */
+    private class TradeStatisticsPageStream {
+        private final GetTradeStatisticsRequest req;
+        private final ServerCallStreamObserver<GetTradeStatisticsReply> responseObserver;
+        private int remaining;
+        private String cursor;
+        private volatile boolean isDone;
+
+        TradeStatisticsPageStream(GetTradeStatisticsRequest req,
+                                  ServerCallStreamObserver<GetTradeStatisticsReply> responseObserver) {
+            this.req = req;
+            this.responseObserver = responseObserver;
+            this.remaining = req.getLimit() == 0 ? Integer.MAX_VALUE : req.getLimit();
+            this.cursor = req.getCursor();
+        }
+
+        synchronized void sendPages() {
+            try {
+                while (!isDone && responseObserver.isReady()) {
+                    GetTradeStatisticsReply reply = getTradeStatisticsReply(req, cursor, Math.min(remaining, STREAM_PAGE_SIZE));
+                    if (isDone) return;
+                    responseObserver.onNext(reply);
+                    remaining -= reply.getTradeStatisticsCount();
+                    cursor = reply.getNextCursor();
+                    if (remaining <= 0 || cursor.isEmpty()) {
+                        isDone = true;
+                        responseObserver.onCompleted();
+                    }
+                }
+            } catch (Throwable cause) {
+                if (isDone) return;
+                isDone = true;
+                exceptionHandler.handleException(log, cause, responseObserver);
+            }
+        }
+
+        void cancel() {
+            isDone = true;
+        }
+    }
+
     final ServerInterceptor[] interceptors() {
         Optional<ServerInterceptor> rateMeteringInterceptor = rateMeteringInterceptor();
         return rateMeteringInterceptor.map(serverInterceptor ->
@@ -57,6 +177,8 @@ class GrpcGetTradeStatisticsService extends GetTradeStatisticsImplBase {
                 .or(() -> Optional.of(CallRateMeteringInterceptor.valueOf(
                         new HashMap<>() {{
                             put(getGetTradeStatisticsMethod().getFullMethodName(), new GrpcCallRateMeter(1, SECONDS));
+                            put(getStreamTradeStatisticsMethod().getFullMethodName(), new GrpcCallRateMeter(1, SECONDS));
+                            put(getGetCandlesMethod().getFullMethodName(), new GrpcCallRateMeter(1, SECONDS));
                         }}
                 )));
     }
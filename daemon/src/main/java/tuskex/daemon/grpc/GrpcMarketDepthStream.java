@@ -0,0 +1,109 @@
+/*
+ * This file is part of Tuskex.
+ *
+ * Tuskex is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Tuskex is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Tuskex. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.daemon.grpc;
+
+import tuskex.core.api.CoreApi;
+import tuskex.core.offer.Offer;
+import tuskex.core.offer.OfferBookService.OfferBookChangedListener;
+import tuskex.proto.grpc.MarketDepthReply;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * Streams the market depth of a currency to a client. The depth is recomputed when offers of the currency change or
+ * market prices are updated, at most once per update interval, and only sent if it changed.
+ */
+class GrpcMarketDepthStream extends GrpcCoalescingStream<MarketDepthReply> implements OfferBookChangedListener {
+
+    private static final long MIN_UPDATE_INTERVAL_MS = 1000;
+
+    private final CoreApi coreApi;
+    private final String currencyCode;
+    private final Runnable priceUpdateListener = this::onChanged;
+    private boolean isChanged;
+    private boolean isInitialUpdateSent;
+    private MarketDepthReply lastUpdate;
+
+    /**
+     * @param initialUpdate the market depth sent first
+     */
+    GrpcMarketDepthStream(CoreApi coreApi,
+                          String currencyCode,
+                          MarketDepthReply initialUpdate,
+                          StreamObserver<MarketDepthReply> responseObserver,
+                          GrpcExceptionHandler exceptionHandler) {
+        super(responseObserver, exceptionHandler, MIN_UPDATE_INTERVAL_MS);
+        this.coreApi = coreApi;
+        this.currencyCode = currencyCode;
+        this.lastUpdate = initialUpdate;
+    }
+
+    void start() {
+        coreApi.addOfferBookChangedListener(this);
+        coreApi.addPriceUpdateListener(priceUpdateListener);
+        requestUpdate();
+    }
+
+    @Override
+    public void onAdded(Offer offer) {
+        if (offer.getCurrencyCode().equalsIgnoreCase(currencyCode)) onChanged();
+    }
+
+    @Override
+    public void onRemoved(Offer offer) {
+        if (offer.getCurrencyCode().equalsIgnoreCase(currencyCode)) onChanged();
+    }
+
+    @Override
+    protected MarketDepthReply getUpdate() {
+        synchronized (this) {
+            if (!isInitialUpdateSent) {
+                isInitialUpdateSent = true;
+                if (isChanged) requestUpdate(); // send changes after the initial update
+                return lastUpdate;
+            }
+            if (!isChanged) return null;
+            isChanged = false;
+        }
+        MarketDepthReply update = MarketDepthReply.newBuilder()
+                .setMarketDepth(coreApi.getMarketDepthWithLastPrices(currencyCode).toProtoMessage())
+                .build();
+        synchronized (this) {
+            if (update.equals(lastUpdate)) return null;
+            lastUpdate = update;
+        }
+        return update;
+    }
+
+    @Override
+    protected void onClose() {
+        coreApi.removeOfferBookChangedListener(this);
+        coreApi.removePriceUpdateListener(priceUpdateListener);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void onChanged() {
+        synchronized (this) {
+            isChanged = true;
+        }
+        requestUpdate();
+    }
+}
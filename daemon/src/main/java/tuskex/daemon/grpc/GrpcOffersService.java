@@ -43,8 +43,12 @@ import static tuskex.proto.grpc.OffersGrpc.getGetMyOffersMethod;
 import static tuskex.proto.grpc.OffersGrpc.getGetOfferMethod;
 import static tuskex.proto.grpc.OffersGrpc.getGetOffersMethod;
 import static tuskex.proto.grpc.OffersGrpc.getPostOfferMethod;
+import static tuskex.proto.grpc.OffersGrpc.getSubscribeOffersMethod;
+import tuskex.proto.grpc.OffersUpdate;
 import tuskex.proto.grpc.PostOfferReply;
 import tuskex.proto.grpc.PostOfferRequest;
+import tuskex.proto.grpc.SubscribeOffersRequest;
+import io.grpc.Context;
 import io.grpc.ServerInterceptor;
 import io.grpc.stub.StreamObserver;
 import java.util.ArrayList;
@@ -190,6 +194,20 @@ class GrpcOffersService extends OffersImplBase {
         }
     }
 
+    @Override
+    public void subscribeOffers(SubscribeOffersRequest req,
+                                StreamObserver<OffersUpdate> responseObserver) {
+        Context ctx = Context.current().fork(); // context is independent for long-lived request
+        ctx.run(() -> {
+            try {
+                new GrpcOffersStream(coreApi, req.getDirection(), req.getCurrencyCode(), responseObserver, exceptionHandler).start();
+                // No onCompleted, as the response observer should be kept open
+            } catch (Throwable cause) {
+                exceptionHandler.handleException(log, cause, responseObserver);
+            }
+        });
+    }
+
     final ServerInterceptor[] interceptors() {
         Optional<ServerInterceptor> rateMeteringInterceptor = rateMeteringInterceptor();
         return rateMeteringInterceptor.map(serverInterceptor ->
@@ -206,6 +224,7 @@ class GrpcOffersService extends OffersImplBase {
                             put(getGetMyOffersMethod().getFullMethodName(), new GrpcCallRateMeter(Config.baseCurrencyNetwork().isTestnet() ? 20 : 3, Config.baseCurrencyNetwork().isTestnet() ? SECONDS : MINUTES));
                             put(getPostOfferMethod().getFullMethodName(), new GrpcCallRateMeter(Config.baseCurrencyNetwork().isTestnet() ? 20 : 3, Config.baseCurrencyNetwork().isTestnet() ? SECONDS : MINUTES));
                             put(getCancelOfferMethod().getFullMethodName(), new GrpcCallRateMeter(Config.baseCurrencyNetwork().isTestnet() ? 10 : 3, Config.baseCurrencyNetwork().isTestnet() ? SECONDS : MINUTES));
+                            put(getSubscribeOffersMethod().getFullMethodName(), new GrpcCallRateMeter(Config.baseCurrencyNetwork().isTestnet() ? 10 : 3, Config.baseCurrencyNetwork().isTestnet() ? SECONDS : MINUTES));
                         }}
                 )));
     }
@@ -0,0 +1,153 @@
+/*
+ * This file is part of Tuskex.
+ *
+ * Tuskex is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Tuskex is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Tuskex. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.daemon.grpc;
+
+import com.google.common.annotations.VisibleForTesting;
+import tuskex.core.api.CoreApi;
+import tuskex.core.api.model.OfferInfo;
+import tuskex.core.offer.Offer;
+import tuskex.core.offer.OfferBookService.OfferBookChangedListener;
+import tuskex.proto.grpc.OffersUpdate;
+import io.grpc.stub.StreamObserver;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Streams the offers of a market to a client, starting with a snapshot followed by the added, updated and removed
+ * offers. Changes of the same offer between two updates are coalesced to its latest state.
+ */
+class GrpcOffersStream extends GrpcCoalescingStream<OffersUpdate> implements OfferBookChangedListener {
+
+    private static final long MIN_UPDATE_INTERVAL_MS = 250;
+
+    private final CoreApi coreApi;
+    private final String direction;
+    private final String currencyCode;
+    private final Function<Offer, tuskex.proto.grpc.OfferInfo> toOfferInfo;
+    private final Map<String, Offer> changedOffers = new LinkedHashMap<>(); // latest offer by id, null if removed
+    private final Set<String> sentOfferIds = new HashSet<>();
+    private boolean isSnapshotSent;
+
+    GrpcOffersStream(CoreApi coreApi,
+                     String direction,
+                     String currencyCode,
+                     StreamObserver<OffersUpdate> responseObserver,
+                     GrpcExceptionHandler exceptionHandler) {
+        this(coreApi, direction, currencyCode, responseObserver, exceptionHandler,
+                offer -> OfferInfo.toOfferInfo(offer).toProtoMessage());
+    }
+
+    @VisibleForTesting
+    GrpcOffersStream(CoreApi coreApi,
+                     String direction,
+                     String currencyCode,
+                     StreamObserver<OffersUpdate> responseObserver,
+                     GrpcExceptionHandler exceptionHandler,
+                     Function<Offer, tuskex.proto.grpc.OfferInfo> toOfferInfo) {
+        super(responseObserver, exceptionHandler, MIN_UPDATE_INTERVAL_MS);
+        this.coreApi = coreApi;
+        this.direction = direction;
+        this.currencyCode = currencyCode;
+        this.toOfferInfo = toOfferInfo;
+    }
+
+    void start() {
+        coreApi.addOfferBookChangedListener(this);
+        requestUpdate();
+    }
+
+    @Override
+    public void onAdded(Offer offer) {
+        onChanged(offer, true);
+    }
+
+    @Override
+    public void onRemoved(Offer offer) {
+        onChanged(offer, false);
+    }
+
+    @Override
+    protected OffersUpdate getUpdate() {
+        if (!isSnapshotSent()) return getSnapshot();
+
+        Map<String, Offer> changes;
+        synchronized (this) {
+            if (changedOffers.isEmpty()) return null;
+            changes = new LinkedHashMap<>(changedOffers);
+            changedOffers.clear();
+        }
+
+        OffersUpdate.Builder update = OffersUpdate.newBuilder();
+        for (Map.Entry<String, Offer> change : changes.entrySet()) {
+            String offerId = change.getKey();
+            Offer offer = change.getValue();
+            if (offer != null && coreApi.isOfferListed(offer, direction, currencyCode)) {
+                if (sentOfferIds.add(offerId)) update.addAddedOffers(toOfferInfo.apply(offer));
+                else update.addUpdatedOffers(toOfferInfo.apply(offer));
+            } else if (sentOfferIds.remove(offerId)) {
+                update.addRemovedOfferIds(offerId);
+            }
+        }
+        if (update.getAddedOffersCount() == 0 && update.getUpdatedOffersCount() == 0 && update.getRemovedOfferIdsCount() == 0) return null;
+        return update.build();
+    }
+
+    @Override
+    protected void onClose() {
+        coreApi.removeOfferBookChangedListener(this);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void onChanged(Offer offer, boolean isAdded) {
+        if (!currencyCode.isEmpty() && !offer.getCurrencyCode().equalsIgnoreCase(currencyCode)) return;
+        synchronized (this) {
+            changedOffers.put(offer.getId(), isAdded ? offer : null);
+        }
+        requestUpdate();
+    }
+
+    private OffersUpdate getSnapshot() {
+
+        // changes until now are included in the snapshot
+        synchronized (this) {
+            changedOffers.clear();
+        }
+        List<Offer> offers = coreApi.getOffers(direction, currencyCode);
+        OffersUpdate.Builder snapshot = OffersUpdate.newBuilder().setIsSnapshot(true);
+        for (Offer offer : offers) {
+            sentOfferIds.add(offer.getId());
+            snapshot.addAddedOffers(toOfferInfo.apply(offer));
+        }
+        synchronized (this) {
+            isSnapshotSent = true;
+        }
+        return snapshot.build();
+    }
+
+    private synchronized boolean isSnapshotSent() {
+        return isSnapshotSent;
+    }
+}
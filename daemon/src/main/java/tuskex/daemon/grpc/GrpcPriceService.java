@@ -50,7 +50,9 @@ import tuskex.proto.grpc.MarketPricesReply;
 import tuskex.proto.grpc.MarketPricesRequest;
 import static tuskex.proto.grpc.PriceGrpc.PriceImplBase;
 import static tuskex.proto.grpc.PriceGrpc.getGetMarketPriceMethod;
+import static tuskex.proto.grpc.PriceGrpc.getSubscribeMarketDepthMethod;
 import tuskex.proto.grpc.PriceGrpc.PriceImplBase;
+import io.grpc.Context;
 import io.grpc.ServerInterceptor;
 import io.grpc.stub.StreamObserver;
 import java.util.HashMap;
@@ -59,6 +61,7 @@ import java.util.Optional;
 
 import static tuskex.daemon.grpc.interceptor.GrpcServiceRateMeteringConfig.getCustomRateMeteringInterceptor;
 import static tuskex.proto.grpc.PriceGrpc.getGetMarketPriceMethod;
+import static java.util.concurrent.TimeUnit.MINUTES;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import lombok.extern.slf4j.Slf4j;
 
@@ -108,6 +111,21 @@ class GrpcPriceService extends PriceImplBase {
         }
     }
 
+    @Override
+    public void subscribeMarketDepth(MarketDepthRequest req,
+                                     StreamObserver<MarketDepthReply> responseObserver) {
+        Context ctx = Context.current().fork(); // context is independent for long-lived request
+        ctx.run(() -> {
+            try {
+                MarketDepthReply initialUpdate = mapMarketDepthReply(coreApi.getMarketDepth(req.getCurrencyCode()));
+                new GrpcMarketDepthStream(coreApi, req.getCurrencyCode(), initialUpdate, responseObserver, exceptionHandler).start();
+                // No onCompleted, as the response observer should be kept open
+            } catch (Throwable cause) {
+                exceptionHandler.handleException(log, cause, responseObserver);
+            }
+        });
+    }
+
     private MarketPricesReply mapMarketPricesReply(List<MarketPriceInfo> marketPrices) {
         MarketPricesReply.Builder builder = MarketPricesReply.newBuilder();
         marketPrices.stream()
@@ -131,6 +149,7 @@ class GrpcPriceService extends PriceImplBase {
                 .or(() -> Optional.of(CallRateMeteringInterceptor.valueOf(
                         new HashMap<>() {{
                             put(getGetMarketPriceMethod().getFullMethodName(), new GrpcCallRateMeter(Config.baseCurrencyNetwork().isTestnet() ? 20 : 1, SECONDS));
+                            put(getSubscribeMarketDepthMethod().getFullMethodName(), new GrpcCallRateMeter(Config.baseCurrencyNetwork().isTestnet() ? 10 : 3, Config.baseCurrencyNetwork().isTestnet() ? SECONDS : MINUTES));
                         }}
                 )));
     }
@@ -21,6 +21,7 @@ import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import tuskex.common.config.Config;
 import tuskex.core.api.CoreContext;
+import tuskex.daemon.grpc.interceptor.CallMetricsInterceptor;
 import tuskex.daemon.grpc.interceptor.PasswordAuthInterceptor;
 import io.grpc.Server;
 import io.grpc.ServerBuilder;
@@ -71,6 +72,7 @@ public class GrpcServer {
                 .addService(interceptForward(moneroConnectionsService, moneroConnectionsService.interceptors()))
                 .addService(interceptForward(moneroNodeService, moneroNodeService.interceptors()))
                 .intercept(passwordAuthInterceptor)
+                .intercept(new CallMetricsInterceptor())
                 .build();
         coreContext.setApiUser(true);
     }
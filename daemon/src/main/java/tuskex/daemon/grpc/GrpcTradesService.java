@@ -119,6 +119,10 @@ class GrpcTradesService extends TradesImplBase {
             List<TradeInfo> trades = coreApi.getTrades()
                     .stream().map(TradeInfo::toTradeInfo)
                     .collect(Collectors.toList());
+            // archived trades are listed from their summaries, GetTrade reads a single archived trade from disk
+            coreApi.getArchivedTradeSummaries().stream()
+                    .map(TradeInfo::toTradeInfo)
+                    .forEach(trades::add);
             var reply = GetTradesReply.newBuilder()
                     .addAllTrades(trades.stream()
                             .map(TradeInfo::toProtoMessage)
@@ -0,0 +1,51 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.daemon.grpc.interceptor;
+
+import tuskex.common.metrics.Metrics;
+import io.grpc.ForwardingServerCall.SimpleForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+
+/**
+ * Records the latency of rpc server calls per method and counts the calls per status code.
+ * For streaming calls the latency is the lifetime of the stream.
+ */
+public class CallMetricsInterceptor implements ServerInterceptor {
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> serverCall,
+                                                                 Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> serverCallHandler) {
+        String methodName = serverCall.getMethodDescriptor().getFullMethodName();
+        long startTime = System.nanoTime();
+        return serverCallHandler.startCall(new SimpleForwardingServerCall<>(serverCall) {
+            @Override
+            public void close(Status status, Metadata trailers) {
+                Metrics.histogram("tuskex_grpc_call_seconds", "Latency of rpc calls", "method", methodName)
+                        .observe((System.nanoTime() - startTime) / 1e9);
+                Metrics.counter("tuskex_grpc_calls_total", "Completed rpc calls by status code", "code", status.getCode().name())
+                        .inc();
+                super.close(status, trailers);
+            }
+        }, headers);
+    }
+}
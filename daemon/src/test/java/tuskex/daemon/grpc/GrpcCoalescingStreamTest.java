@@ -0,0 +1,127 @@
+/*
+ * This file is part of Tuskex.
+ *
+ * Tuskex is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Tuskex is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Tuskex. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.daemon.grpc;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class GrpcCoalescingStreamTest {
+    private static final long MIN_UPDATE_INTERVAL_MS = 500;
+
+    @SuppressWarnings("unchecked")
+    private final ServerCallStreamObserver<Integer> responseObserver = mock(ServerCallStreamObserver.class);
+    private final List<Integer> updates = new CopyOnWriteArrayList<>();
+    private CountingStream stream;
+    private Runnable onReadyHandler;
+    private Runnable onCancelHandler;
+
+    // Sends the number of changes since the last update
+    private static class CountingStream extends GrpcCoalescingStream<Integer> {
+        private final AtomicInteger numChanges = new AtomicInteger();
+        private final AtomicInteger numCloses = new AtomicInteger();
+
+        CountingStream(ServerCallStreamObserver<Integer> responseObserver) {
+            super(responseObserver, mock(GrpcExceptionHandler.class), MIN_UPDATE_INTERVAL_MS);
+        }
+
+        void change() {
+            numChanges.incrementAndGet();
+            requestUpdate();
+        }
+
+        @Override
+        protected Integer getUpdate() {
+            int update = numChanges.getAndSet(0);
+            return update == 0 ? null : update;
+        }
+
+        @Override
+        protected void onClose() {
+            numCloses.incrementAndGet();
+        }
+    }
+
+    @BeforeEach
+    public void setUp() {
+        doAnswer(invocation -> updates.add(invocation.getArgument(0))).when(responseObserver).onNext(any());
+        stream = new CountingStream(responseObserver);
+
+        ArgumentCaptor<Runnable> onReadyCaptor = ArgumentCaptor.forClass(Runnable.class);
+        ArgumentCaptor<Runnable> onCancelCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(responseObserver).setOnReadyHandler(onReadyCaptor.capture());
+        verify(responseObserver).setOnCancelHandler(onCancelCaptor.capture());
+        onReadyHandler = onReadyCaptor.getValue();
+        onCancelHandler = onCancelCaptor.getValue();
+    }
+
+    @Test
+    public void testBurstOfChangesIsCoalesced() {
+        when(responseObserver.isReady()).thenReturn(true);
+
+        for (int i = 0; i < 1000; i++) stream.change();
+
+        verify(responseObserver, timeout(5000).atLeastOnce()).onNext(any());
+        verify(responseObserver, after(3 * MIN_UPDATE_INTERVAL_MS).atLeastOnce()).onNext(any());
+        assertEquals(1000, updates.stream().mapToInt(Integer::intValue).sum());
+        // the first change is sent at once, the others after the minimum update interval
+        assertTrue(updates.size() <= 3, "Expected at most 3 updates but got " + updates);
+    }
+
+    @Test
+    public void testChangesArePendingUntilClientIsReady() {
+        when(responseObserver.isReady()).thenReturn(false);
+
+        stream.change();
+        stream.change();
+        verify(responseObserver, after(MIN_UPDATE_INTERVAL_MS).never()).onNext(any());
+
+        when(responseObserver.isReady()).thenReturn(true);
+        onReadyHandler.run();
+        verify(responseObserver, timeout(5000)).onNext(2);
+    }
+
+    @Test
+    public void testCancelClosesStreamOnce() {
+        when(responseObserver.isReady()).thenReturn(true);
+
+        onCancelHandler.run();
+        onCancelHandler.run();
+        stream.change();
+
+        assertEquals(1, stream.numCloses.get());
+        verify(responseObserver, after(MIN_UPDATE_INTERVAL_MS).never()).onNext(any());
+        verify(responseObserver, never()).onCompleted();
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * This file is part of Tuskex.
+ *
+ * Tuskex is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Tuskex is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Tuskex. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.daemon.grpc;
+
+import tuskex.core.api.CoreApi;
+import tuskex.core.trade.statistics.TradeStatisticsManager.TradeStatisticsPage;
+import tuskex.proto.grpc.GetTradeStatisticsReply;
+import tuskex.proto.grpc.GetTradeStatisticsRequest;
+import io.grpc.stub.ServerCallStreamObserver;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class GrpcGetTradeStatisticsServiceTest {
+    private final CoreApi coreApi = mock(CoreApi.class);
+    @SuppressWarnings("unchecked")
+    private final ServerCallStreamObserver<GetTradeStatisticsReply> responseObserver = mock(ServerCallStreamObserver.class);
+    private Runnable onReadyHandler;
+    private Runnable onCancelHandler;
+
+    @BeforeEach
+    public void setUp() {
+        when(coreApi.getTradeStatistics(isNull(), anyLong(), anyLong(), isNull(), anyInt()))
+                .thenReturn(new TradeStatisticsPage(List.of(), "1"));
+        when(coreApi.getTradeStatistics(isNull(), anyLong(), anyLong(), eq("1"), anyInt()))
+                .thenReturn(new TradeStatisticsPage(List.of(), "2"));
+        when(coreApi.getTradeStatistics(isNull(), anyLong(), anyLong(), eq("2"), anyInt()))
+                .thenReturn(new TradeStatisticsPage(List.of(), null));
+
+        new GrpcGetTradeStatisticsService(coreApi, mock(GrpcExceptionHandler.class))
+                .streamTradeStatistics(GetTradeStatisticsRequest.getDefaultInstance(), responseObserver);
+
+        ArgumentCaptor<Runnable> onReadyCaptor = ArgumentCaptor.forClass(Runnable.class);
+        ArgumentCaptor<Runnable> onCancelCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(responseObserver).setOnReadyHandler(onReadyCaptor.capture());
+        verify(responseObserver).setOnCancelHandler(onCancelCaptor.capture());
+        onReadyHandler = onReadyCaptor.getValue();
+        onCancelHandler = onCancelCaptor.getValue();
+    }
+
+    @Test
+    public void testPagesAreSentWhileClientIsReady() {
+        // nothing is read before the client is ready
+        verify(responseObserver, never()).onNext(any());
+
+        when(responseObserver.isReady()).thenReturn(true, true, false);
+        onReadyHandler.run();
+        verify(responseObserver, times(2)).onNext(any());
+        verify(responseObserver, never()).onCompleted();
+
+        when(responseObserver.isReady()).thenReturn(true);
+        onReadyHandler.run();
+        verify(responseObserver, times(3)).onNext(any());
+        verify(responseObserver).onCompleted();
+
+        // a late on ready notification does not send anything
+        onReadyHandler.run();
+        verify(responseObserver, times(3)).onNext(any());
+    }
+
+    @Test
+    public void testNoPagesAreSentAfterCancel() {
+        when(responseObserver.isReady()).thenReturn(true, false);
+        onReadyHandler.run();
+        verify(responseObserver, times(1)).onNext(any());
+
+        onCancelHandler.run();
+        when(responseObserver.isReady()).thenReturn(true);
+        onReadyHandler.run();
+        verify(responseObserver, times(1)).onNext(any());
+        verify(responseObserver, never()).onCompleted();
+    }
+}
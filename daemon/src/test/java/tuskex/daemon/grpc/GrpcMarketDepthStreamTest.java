@@ -0,0 +1,122 @@
+/*
+ * This file is part of Tuskex.
+ *
+ * Tuskex is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Tuskex is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Tuskex. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.daemon.grpc;
+
+import tuskex.core.api.CoreApi;
+import tuskex.core.api.model.MarketDepthInfo;
+import tuskex.core.offer.Offer;
+import tuskex.proto.grpc.MarketDepthReply;
+import io.grpc.stub.ServerCallStreamObserver;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class GrpcMarketDepthStreamTest {
+    private final CoreApi coreApi = mock(CoreApi.class);
+    @SuppressWarnings("unchecked")
+    private final ServerCallStreamObserver<MarketDepthReply> responseObserver = mock(ServerCallStreamObserver.class);
+    private final List<MarketDepthReply> updates = new CopyOnWriteArrayList<>();
+    private GrpcMarketDepthStream stream;
+    private Runnable priceUpdateListener;
+
+    private static MarketDepthReply reply(MarketDepthInfo marketDepth) {
+        return MarketDepthReply.newBuilder().setMarketDepth(marketDepth.toProtoMessage()).build();
+    }
+
+    private static MarketDepthInfo marketDepth(double buyPrice) {
+        return new MarketDepthInfo("USD", new Double[]{buyPrice}, new Double[]{1d}, new Double[0], new Double[0]);
+    }
+
+    private static Offer offer(String currencyCode) {
+        Offer offer = mock(Offer.class);
+        when(offer.getCurrencyCode()).thenReturn(currencyCode);
+        return offer;
+    }
+
+    @BeforeEach
+    public void setUp() {
+        when(responseObserver.isReady()).thenReturn(true);
+        doAnswer(invocation -> updates.add(invocation.getArgument(0))).when(responseObserver).onNext(any());
+        when(coreApi.getMarketDepthWithLastPrices("USD")).thenReturn(marketDepth(2));
+
+        stream = new GrpcMarketDepthStream(coreApi, "USD", reply(marketDepth(1)), responseObserver,
+                mock(GrpcExceptionHandler.class));
+        stream.start();
+
+        ArgumentCaptor<Runnable> priceUpdateListenerCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(coreApi).addOfferBookChangedListener(stream);
+        verify(coreApi).addPriceUpdateListener(priceUpdateListenerCaptor.capture());
+        priceUpdateListener = priceUpdateListenerCaptor.getValue();
+    }
+
+    @Test
+    public void testInitialUpdateIsSentBeforeChanges() {
+        // a change before the initial update is sent after it
+        stream.onAdded(offer("USD"));
+
+        verify(responseObserver, timeout(5000).times(2)).onNext(any());
+        assertEquals(reply(marketDepth(1)), updates.get(0));
+        assertEquals(reply(marketDepth(2)), updates.get(1));
+    }
+
+    @Test
+    public void testBurstOfChangesIsCoalesced() {
+        verify(responseObserver, timeout(5000)).onNext(any());
+
+        for (int i = 0; i < 100; i++) {
+            stream.onAdded(offer("USD"));
+            priceUpdateListener.run();
+        }
+        verify(responseObserver, timeout(5000).times(2)).onNext(any());
+        verify(responseObserver, after(1500).times(2)).onNext(any());
+        verify(coreApi, times(1)).getMarketDepthWithLastPrices("USD");
+
+        // an unchanged market depth is not sent again, offers of other currencies are ignored
+        priceUpdateListener.run();
+        stream.onRemoved(offer("EUR"));
+        verify(responseObserver, after(1500).times(2)).onNext(any());
+        verify(coreApi, times(2)).getMarketDepthWithLastPrices("USD");
+    }
+
+    @Test
+    public void testCancelRemovesListeners() {
+        ArgumentCaptor<Runnable> onCancelCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(responseObserver).setOnCancelHandler(onCancelCaptor.capture());
+
+        onCancelCaptor.getValue().run();
+        priceUpdateListener.run();
+
+        verify(coreApi).removeOfferBookChangedListener(stream);
+        verify(coreApi).removePriceUpdateListener(priceUpdateListener);
+        verify(coreApi, after(1500).never()).getMarketDepthWithLastPrices("USD");
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * This file is part of Tuskex.
+ *
+ * Tuskex is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Tuskex is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Tuskex. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.daemon.grpc;
+
+import tuskex.core.api.CoreApi;
+import tuskex.core.offer.Offer;
+import tuskex.proto.grpc.OfferInfo;
+import tuskex.proto.grpc.OffersUpdate;
+import io.grpc.stub.ServerCallStreamObserver;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class GrpcOffersStreamTest {
+    private final CoreApi coreApi = mock(CoreApi.class);
+    @SuppressWarnings("unchecked")
+    private final ServerCallStreamObserver<OffersUpdate> responseObserver = mock(ServerCallStreamObserver.class);
+    private final List<OffersUpdate> updates = new CopyOnWriteArrayList<>();
+    private final Offer offer1 = offer("1", "USD");
+    private final Offer offer2 = offer("2", "USD");
+    private final Offer offer3 = offer("3", "USD");
+    private GrpcOffersStream stream;
+
+    private static Offer offer(String id, String currencyCode) {
+        Offer offer = mock(Offer.class);
+        when(offer.getId()).thenReturn(id);
+        when(offer.getCurrencyCode()).thenReturn(currencyCode);
+        return offer;
+    }
+
+    private static List<String> ids(List<OfferInfo> offers) {
+        return offers.stream().map(OfferInfo::getId).collect(Collectors.toList());
+    }
+
+    @BeforeEach
+    public void setUp() {
+        when(responseObserver.isReady()).thenReturn(true);
+        doAnswer(invocation -> updates.add(invocation.getArgument(0))).when(responseObserver).onNext(any());
+        when(coreApi.getOffers("BUY", "USD")).thenReturn(List.of(offer1, offer2));
+        when(coreApi.isOfferListed(any(), anyString(), anyString())).thenReturn(true);
+
+        stream = new GrpcOffersStream(coreApi, "BUY", "USD", responseObserver, mock(GrpcExceptionHandler.class),
+                offer -> OfferInfo.newBuilder().setId(offer.getId()).build());
+        stream.start();
+        verify(coreApi).addOfferBookChangedListener(stream);
+    }
+
+    @Test
+    public void testSnapshotIsSentBeforeChanges() {
+        verify(responseObserver, timeout(5000)).onNext(any());
+
+        OffersUpdate snapshot = updates.get(0);
+        assertTrue(snapshot.getIsSnapshot());
+        assertEquals(List.of("1", "2"), ids(snapshot.getAddedOffersList()));
+
+        stream.onAdded(offer3);
+        stream.onAdded(offer1);
+        stream.onRemoved(offer2);
+        verify(responseObserver, timeout(5000).times(2)).onNext(any());
+
+        OffersUpdate update = updates.get(1);
+        assertFalse(update.getIsSnapshot());
+        assertEquals(List.of("3"), ids(update.getAddedOffersList()));
+        assertEquals(List.of("1"), ids(update.getUpdatedOffersList()));
+        assertEquals(List.of("2"), update.getRemovedOfferIdsList());
+    }
+
+    @Test
+    public void testBurstOfChangesIsCoalesced() {
+        verify(responseObserver, timeout(5000)).onNext(any());
+
+        // an offer added and removed between two updates is never sent
+        stream.onAdded(offer3);
+        stream.onRemoved(offer3);
+        // offers of other currencies are ignored
+        stream.onAdded(offer("4", "EUR"));
+        for (int i = 0; i < 100; i++) stream.onAdded(offer1);
+        verify(responseObserver, timeout(5000).times(2)).onNext(any());
+        verify(responseObserver, after(1000).times(2)).onNext(any());
+
+        OffersUpdate update = updates.get(1);
+        assertEquals(List.of(), ids(update.getAddedOffersList()));
+        assertEquals(List.of("1"), ids(update.getUpdatedOffersList()));
+        assertEquals(List.of(), update.getRemovedOfferIdsList());
+    }
+
+    @Test
+    public void testCancelRemovesListener() {
+        ArgumentCaptor<Runnable> onCancelCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(responseObserver).setOnCancelHandler(onCancelCaptor.capture());
+
+        onCancelCaptor.getValue().run();
+
+        verify(coreApi).removeOfferBookChangedListener(stream);
+    }
+}
@@ -179,7 +179,7 @@ public class MarketView extends ActivatableView<TabPane, Void> {
         // all items of both traders in case the referral ID was only set by one trader.
         // If both traders had set it the tradeStatistics is only delivered once.
         // If both traders used a different referral ID then we would get 2 objects.
-        List<String> list = tradeStatistics3StorageService.getMapOfAllData().values().stream()
+        List<String> list = tradeStatistics3StorageService.streamAllData()
                 .filter(e -> e instanceof TradeStatistics3)
                 .map(e -> (TradeStatistics3) e)
                 .filter(tradeStatistics3 -> tradeStatistics3.getExtraDataMap() != null)
@@ -22,7 +22,10 @@ import tuskex.common.util.MathUtils;
 import tuskex.core.locale.CurrencyUtil;
 import tuskex.core.monetary.CryptoMoney;
 import tuskex.core.monetary.TraditionalMoney;
+import tuskex.core.trade.statistics.Candle;
+import tuskex.core.trade.statistics.CandleInterval;
 import tuskex.core.trade.statistics.TradeStatistics3;
+import tuskex.core.trade.statistics.TradeStatisticsManager;
 import tuskex.desktop.main.market.trades.charts.CandleData;
 import tuskex.desktop.util.DisplayUtils;
 import javafx.scene.chart.XYChart;
@@ -55,30 +58,15 @@ public class ChartCalculations {
     // Async
     ///////////////////////////////////////////////////////////////////////////////////////////
 
-    static CompletableFuture<Map<TradesChartsViewModel.TickUnit, Map<Long, Long>>> getUsdAveragePriceMapsPerTickUnit(Set<TradeStatistics3> tradeStatisticsSet) {
+    static CompletableFuture<Map<TradesChartsViewModel.TickUnit, Map<Long, Long>>> getUsdAveragePriceMapsPerTickUnit(TradeStatisticsManager tradeStatisticsManager) {
         return CompletableFuture.supplyAsync(() -> {
+            // The candles are kept up to date by the TradeStatisticsManager, so we need not aggregate all USD trades
             Map<TradesChartsViewModel.TickUnit, Map<Long, Long>> usdAveragePriceMapsPerTickUnit = new HashMap<>();
-            Map<TradesChartsViewModel.TickUnit, Map<Long, List<TradeStatistics3>>> dateMapsPerTickUnit = new HashMap<>();
             for (TradesChartsViewModel.TickUnit tick : TradesChartsViewModel.TickUnit.values()) {
-                dateMapsPerTickUnit.put(tick, new HashMap<>());
-            }
-
-            tradeStatisticsSet.stream()
-                    .filter(e -> e.getCurrency().equals("USD"))
-                    .forEach(tradeStatistics -> {
-                        for (TradesChartsViewModel.TickUnit tick : TradesChartsViewModel.TickUnit.values()) {
-                            long time = roundToTick(tradeStatistics.getLocalDateTime(), tick).getTime();
-                            Map<Long, List<TradeStatistics3>> map = dateMapsPerTickUnit.get(tick);
-                            map.putIfAbsent(time, new ArrayList<>());
-                            map.get(time).add(tradeStatistics);
-                        }
-                    });
-
-            dateMapsPerTickUnit.forEach((tick, map) -> {
-                HashMap<Long, Long> priceMap = new HashMap<>();
-                map.forEach((date, tradeStatisticsList) -> priceMap.put(date, getAveragePrice(tradeStatisticsList)));
+                Map<Long, Long> priceMap = tradeStatisticsManager.getCandles("USD", toCandleInterval(tick), Long.MIN_VALUE, Long.MAX_VALUE).stream()
+                        .collect(Collectors.toMap(Candle::getStart, Candle::getAverage));
                 usdAveragePriceMapsPerTickUnit.put(tick, priceMap);
-            });
+            }
             return usdAveragePriceMapsPerTickUnit;
         });
     }
@@ -93,30 +81,53 @@ public class ChartCalculations {
         });
     }
 
-    static CompletableFuture<UpdateChartResult> getUpdateChartResult(List<TradeStatistics3> tradeStatisticsByCurrency,
+    static CompletableFuture<UpdateChartResult> getUpdateChartResult(TradeStatisticsManager tradeStatisticsManager,
+                                                                     List<TradeStatistics3> tradeStatisticsByCurrency,
                                                                      TradesChartsViewModel.TickUnit tickUnit,
                                                                      Map<TradesChartsViewModel.TickUnit, Map<Long, Long>> usdAveragePriceMapsPerTickUnit,
-                                                                     String currencyCode) {
+                                                                     String currencyCode,
+                                                                     boolean showAllTradeCurrencies) {
         return CompletableFuture.supplyAsync(() -> {
-            // Generate date range and create sets for all ticks
-            Map<Long, Pair<Date, Set<TradeStatistics3>>> itemsPerInterval = getItemsPerInterval(tradeStatisticsByCurrency, tickUnit);
-
             Map<Long, Long> usdAveragePriceMap = usdAveragePriceMapsPerTickUnit.get(tickUnit);
             AtomicLong averageUsdPrice = new AtomicLong(0);
 
-            // create CandleData for defined time interval
-            List<CandleData> candleDataList = itemsPerInterval.entrySet().stream()
-                    .filter(entry -> entry.getKey() >= 0 && !entry.getValue().getValue().isEmpty())
-                    .map(entry -> {
-                        long tickStartDate = entry.getValue().getKey().getTime();
-                        // If we don't have a price we take the previous one
-                        if (usdAveragePriceMap.containsKey(tickStartDate)) {
-                            averageUsdPrice.set(usdAveragePriceMap.get(tickStartDate));
-                        }
-                        return getCandleData(entry.getKey(), entry.getValue().getValue(), averageUsdPrice.get(), tickUnit, currencyCode, itemsPerInterval);
-                    })
-                    .sorted(Comparator.comparingLong(o -> o.tick))
-                    .collect(Collectors.toList());
+            Map<Long, Pair<Date, Set<TradeStatistics3>>> itemsPerInterval;
+            List<CandleData> candleDataList;
+            if (showAllTradeCurrencies) {
+                // The candles are per currency, so we aggregate the trades of all currencies here
+                itemsPerInterval = getItemsPerInterval(tradeStatisticsByCurrency, tickUnit);
+
+                // create CandleData for defined time interval
+                candleDataList = itemsPerInterval.entrySet().stream()
+                        .filter(entry -> entry.getKey() >= 0 && !entry.getValue().getValue().isEmpty())
+                        .map(entry -> {
+                            long tickStartDate = entry.getValue().getKey().getTime();
+                            // If we don't have a price we take the previous one
+                            if (usdAveragePriceMap.containsKey(tickStartDate)) {
+                                averageUsdPrice.set(usdAveragePriceMap.get(tickStartDate));
+                            }
+                            return getCandleData(entry.getKey(), entry.getValue().getValue(), averageUsdPrice.get(), tickUnit, currencyCode, itemsPerInterval);
+                        })
+                        .sorted(Comparator.comparingLong(o -> o.tick))
+                        .collect(Collectors.toList());
+            } else {
+                // The candles of the selected currency are kept up to date by the TradeStatisticsManager
+                itemsPerInterval = getTickDates(tickUnit);
+                Map<Long, Long> ticksByStartDate = itemsPerInterval.entrySet().stream()
+                        .filter(entry -> entry.getKey() > 0 && entry.getKey() <= MAX_TICKS)
+                        .collect(Collectors.toMap(entry -> entry.getValue().getKey().getTime(), Map.Entry::getKey));
+                long fromDate = getTimeFromTickIndex(1, itemsPerInterval);
+                candleDataList = tradeStatisticsManager.getCandles(currencyCode, toCandleInterval(tickUnit), fromDate, Long.MAX_VALUE).stream()
+                        .filter(candle -> ticksByStartDate.containsKey(candle.getStart()))
+                        .map(candle -> {
+                            // If we don't have a price we take the previous one
+                            if (usdAveragePriceMap.containsKey(candle.getStart())) {
+                                averageUsdPrice.set(usdAveragePriceMap.get(candle.getStart()));
+                            }
+                            return getCandleData(ticksByStartDate.get(candle.getStart()), candle, averageUsdPrice.get(), tickUnit, itemsPerInterval);
+                        })
+                        .collect(Collectors.toList());
+            }
 
             List<XYChart.Data<Number, Number>> priceItems = candleDataList.stream()
                     .map(e -> new XYChart.Data<Number, Number>(e.tick, e.open, e))
@@ -160,16 +171,7 @@ public class ChartCalculations {
 
     static Map<Long, Pair<Date, Set<TradeStatistics3>>> getItemsPerInterval(List<TradeStatistics3> tradeStatisticsByCurrency,
                                                                             TradesChartsViewModel.TickUnit tickUnit) {
-        // Generate date range and create sets for all ticks
-        Map<Long, Pair<Date, Set<TradeStatistics3>>> itemsPerInterval = new HashMap<>();
-        Date time = new Date();
-        for (long i = MAX_TICKS + 1; i >= 0; --i) {
-            Pair<Date, Set<TradeStatistics3>> pair = new Pair<>((Date) time.clone(), new HashSet<>());
-            itemsPerInterval.put(i, pair);
-            // We adjust the time for the next iteration
-            time.setTime(time.getTime() - 1);
-            time = roundToTick(time, tickUnit);
-        }
+        Map<Long, Pair<Date, Set<TradeStatistics3>>> itemsPerInterval = getTickDates(tickUnit);
 
         // Get all entries for the defined time interval
         tradeStatisticsByCurrency.forEach(tradeStatistics -> {
@@ -184,6 +186,20 @@ public class ChartCalculations {
         return itemsPerInterval;
     }
 
+    private static Map<Long, Pair<Date, Set<TradeStatistics3>>> getTickDates(TradesChartsViewModel.TickUnit tickUnit) {
+        // Generate date range and create sets for all ticks
+        Map<Long, Pair<Date, Set<TradeStatistics3>>> itemsPerInterval = new HashMap<>();
+        Date time = new Date();
+        for (long i = MAX_TICKS + 1; i >= 0; --i) {
+            Pair<Date, Set<TradeStatistics3>> pair = new Pair<>((Date) time.clone(), new HashSet<>());
+            itemsPerInterval.put(i, pair);
+            // We adjust the time for the next iteration
+            time.setTime(time.getTime() - 1);
+            time = roundToTick(time, tickUnit);
+        }
+        return itemsPerInterval;
+    }
+
 
     static Date roundToTick(LocalDateTime localDate, TradesChartsViewModel.TickUnit tickUnit) {
         switch (tickUnit) {
@@ -206,20 +222,12 @@ public class ChartCalculations {
         }
     }
 
-    static Date roundToTick(Date time, TradesChartsViewModel.TickUnit tickUnit) {
-        return roundToTick(time.toInstant().atZone(ChartCalculations.ZONE_ID).toLocalDateTime(), tickUnit);
+    static CandleInterval toCandleInterval(TradesChartsViewModel.TickUnit tickUnit) {
+        return CandleInterval.valueOf(tickUnit.name());
     }
 
-    private static long getAveragePrice(List<TradeStatistics3> tradeStatisticsList) {
-        long accumulatedAmount = 0; // TODO: use BigInteger
-        long accumulatedVolume = 0;
-        for (TradeStatistics3 tradeStatistics : tradeStatisticsList) {
-            accumulatedAmount += tradeStatistics.getAmount();
-            accumulatedVolume += tradeStatistics.getTradeVolume().getValue();
-        }
-
-        double accumulatedVolumeAsDouble = MathUtils.scaleUpByPowerOf10((double) accumulatedVolume, 4 + TraditionalMoney.SMALLEST_UNIT_EXPONENT);
-        return MathUtils.roundDoubleToLong(accumulatedVolumeAsDouble / accumulatedAmount);
+    static Date roundToTick(Date time, TradesChartsViewModel.TickUnit tickUnit) {
+        return roundToTick(time.toInstant().atZone(ChartCalculations.ZONE_ID).toLocalDateTime(), tickUnit);
     }
 
     @VisibleForTesting
@@ -235,6 +243,8 @@ public class ChartCalculations {
         long accumulatedVolume = 0; // TODO: use BigInteger
         long accumulatedAmount = 0;
         long numTrades = set.size();
+        long openDate = Long.MAX_VALUE;
+        long closeDate = Long.MIN_VALUE;
         List<Long> tradePrices = new ArrayList<>();
         for (TradeStatistics3 item : set) {
             long tradePriceAsLong = item.getTradePrice().getValue();
@@ -242,19 +252,22 @@ public class ChartCalculations {
             low = (low != 0) ? Math.min(low, tradePriceAsLong) : tradePriceAsLong;
             high = (high != 0) ? Math.max(high, tradePriceAsLong) : tradePriceAsLong;
 
+            // open and close are taken in the same pass instead of sorting by date
+            if (item.getDateAsLong() < openDate) {
+                openDate = item.getDateAsLong();
+                open = tradePriceAsLong;
+            }
+            if (item.getDateAsLong() >= closeDate) {
+                closeDate = item.getDateAsLong();
+                close = tradePriceAsLong;
+            }
+
             accumulatedVolume += item.getTradeVolume().getValue();
             accumulatedAmount += item.getTradeAmount().longValueExact();
             tradePrices.add(tradePriceAsLong);
         }
         Collections.sort(tradePrices);
 
-        List<TradeStatistics3> list = new ArrayList<>(set);
-        list.sort(Comparator.comparingLong(TradeStatistics3::getDateAsLong));
-        if (list.size() > 0) {
-            open = list.get(0).getTradePrice().getValue();
-            close = list.get(list.size() - 1).getTradePrice().getValue();
-        }
-
         long averagePrice;
         Long[] prices = new Long[tradePrices.size()];
         tradePrices.toArray(prices);
@@ -270,6 +283,26 @@ public class ChartCalculations {
             averagePrice = MathUtils.roundDoubleToLong(accumulatedVolumeAsDouble / accumulatedAmount);
         }
 
+        return toCandleData(tick, open, close, high, low, averagePrice, medianPrice, accumulatedAmount, accumulatedVolume,
+                numTrades, isBullish, averageUsdPrice, tickUnit, itemsPerInterval);
+    }
+
+    static CandleData getCandleData(long tick,
+                                    Candle candle,
+                                    long averageUsdPrice,
+                                    TradesChartsViewModel.TickUnit tickUnit,
+                                    Map<Long, Pair<Date, Set<TradeStatistics3>>> itemsPerInterval) {
+        return toCandleData(tick, candle.getOpen(), candle.getClose(), candle.getHigh(), candle.getLow(),
+                candle.getAverage(), candle.getMedian(), candle.getAccumulatedAmount().longValue(),
+                candle.getAccumulatedVolume().longValue(), candle.getNumTrades(), candle.isBullish(), averageUsdPrice,
+                tickUnit, itemsPerInterval);
+    }
+
+    private static CandleData toCandleData(long tick, long open, long close, long high, long low, long averagePrice,
+                                           long medianPrice, long accumulatedAmount, long accumulatedVolume,
+                                           long numTrades, boolean isBullish, long averageUsdPrice,
+                                           TradesChartsViewModel.TickUnit tickUnit,
+                                           Map<Long, Pair<Date, Set<TradeStatistics3>>> itemsPerInterval) {
         Date dateFrom = new Date(getTimeFromTickIndex(tick, itemsPerInterval));
         Date dateTo = new Date(getTimeFromTickIndex(tick + 1, itemsPerInterval));
         String dateString = tickUnit.ordinal() > TradesChartsViewModel.TickUnit.DAY.ordinal() ?
@@ -200,7 +200,7 @@ class TradesChartsViewModel extends ActivatableViewModel {
 
     private void applyAsyncUsdAveragePriceMapsPerTickUnit(CompletableFuture<Boolean> completeFuture) {
         long ts = System.currentTimeMillis();
-        ChartCalculations.getUsdAveragePriceMapsPerTickUnit(tradeStatisticsManager.getObservableTradeStatisticsSet())
+        ChartCalculations.getUsdAveragePriceMapsPerTickUnit(tradeStatisticsManager)
                 .whenComplete((usdAveragePriceMapsPerTickUnit, throwable) -> {
                     if (deactivateCalled) {
                         return;
@@ -256,10 +256,12 @@ class TradesChartsViewModel extends ActivatableViewModel {
 
     private void applyAsyncChartData() {
         long ts = System.currentTimeMillis();
-        ChartCalculations.getUpdateChartResult(new ArrayList<>(tradeStatisticsByCurrency),
+        ChartCalculations.getUpdateChartResult(tradeStatisticsManager,
+                new ArrayList<>(tradeStatisticsByCurrency),
                 tickUnit,
                 usdAveragePriceMapsPerTickUnit,
-                getCurrencyCode())
+                getCurrencyCode(),
+                showAllTradeCurrenciesProperty.get())
                 .whenComplete((updateChartResult, throwable) -> {
                     if (deactivateCalled) {
                         return;
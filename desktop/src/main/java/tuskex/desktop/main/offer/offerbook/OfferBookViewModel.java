@@ -600,7 +600,7 @@ abstract class OfferBookViewModel extends ActivatableViewModel {
                             tradePeerNodeAddress.get().getFullAddress().equals(offer.getMakerNodeAddress().getFullAddress());
                 })
                 .collect(Collectors.toSet())
-                .size();
+                .size() + closedTradableManager.getNumArchivedTrades(offer.getMakerNodeAddress());
     }
 
     public boolean hasSelectionAccountSigning() {
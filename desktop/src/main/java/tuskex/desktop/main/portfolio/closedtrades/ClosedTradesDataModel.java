@@ -26,6 +26,7 @@ import tuskex.core.provider.price.PriceFeedService;
 import tuskex.core.trade.ClosedTradableFormatter;
 import tuskex.core.trade.ClosedTradableManager;
 import tuskex.core.trade.ClosedTradableUtil;
+import tuskex.core.trade.ClosedTradeSummary;
 import tuskex.core.trade.Tradable;
 import tuskex.core.trade.Trade;
 import tuskex.core.trade.TradeManager;
@@ -39,11 +40,11 @@ import javafx.collections.ObservableList;
 
 import java.math.BigInteger;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
 class ClosedTradesDataModel extends ActivatableDataModel {
-
     final ClosedTradableManager closedTradableManager;
     final ClosedTradableFormatter closedTradableFormatter;
     private final Preferences preferences;
@@ -79,6 +80,7 @@ class ClosedTradesDataModel extends ActivatableDataModel {
     @Override
     protected void deactivate() {
         closedTradableManager.getObservableList().removeListener(tradesListChangeListener);
+        list.clear();
     }
 
     ObservableList<ClosedTradesListItem> getList() {
@@ -86,11 +88,23 @@ class ClosedTradesDataModel extends ActivatableDataModel {
     }
 
     List<Tradable> getListAsTradables() {
-        return list.stream().map(ClosedTradesListItem::getTradable).collect(Collectors.toList());
+        return list.stream().map(ClosedTradesListItem::getTradable).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    List<ClosedTradeSummary> getListAsArchivedTradeSummaries() {
+        return list.stream().map(ClosedTradesListItem::getArchivedTradeSummary).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    /**
+     * Reads the trade of an archived item from disk, only done when the details of the trade are requested.
+     */
+    Optional<Tradable> getTradable(ClosedTradesListItem item) {
+        if (item.getTradable() != null) return Optional.of(item.getTradable());
+        return closedTradableManager.getArchivedTrade(item.getId()).map(Tradable.class::cast);
     }
 
     BigInteger getTotalAmount() {
-        return ClosedTradableUtil.getTotalAmount(getListAsTradables());
+        return ClosedTradableUtil.getTotalAmount(getListAsTradables(), getListAsArchivedTradeSummaries());
     }
 
     Optional<Volume> getVolumeInUserFiatCurrency(BigInteger amount) {
@@ -108,14 +122,14 @@ class ClosedTradesDataModel extends ActivatableDataModel {
     }
 
     BigInteger getTotalTxFee() {
-        return ClosedTradableUtil.getTotalTxFee(getListAsTradables());
+        return ClosedTradableUtil.getTotalTxFee(getListAsTradables(), getListAsArchivedTradeSummaries());
     }
 
     BigInteger getTotalTradeFee() {
-        return closedTradableManager.getTotalTradeFee(getListAsTradables());
+        return closedTradableManager.getTotalTradeFee(getListAsTradables(), getListAsArchivedTradeSummaries());
     }
 
-    boolean isCurrencyForTradeFeeBtc(Tradable item) {
+    boolean isCurrencyForTradeFeeBtc(ClosedTradesListItem item) {
         return item != null;
     }
 
@@ -126,8 +140,13 @@ class ClosedTradesDataModel extends ActivatableDataModel {
                         .map(tradable -> new ClosedTradesListItem(tradable, closedTradableFormatter, closedTradableManager))
                         .collect(Collectors.toList())
         );
+        list.addAll(
+                closedTradableManager.getArchivedTradeSummaries().stream()
+                        .map(summary -> new ClosedTradesListItem(summary, closedTradableFormatter, closedTradableManager))
+                        .collect(Collectors.toList())
+        );
         // We sort by date, the earliest first
-        list.sort((o1, o2) -> o2.getTradable().getDate().compareTo(o1.getTradable().getDate()));
+        list.sort((o1, o2) -> o2.getDate().compareTo(o1.getDate()));
     }
 
     public void onMoveTradeToPendingTrades(Trade trade) {
@@ -19,11 +19,13 @@ package tuskex.desktop.main.portfolio.closedtrades;
 
 import tuskex.core.locale.CurrencyUtil;
 import tuskex.core.monetary.Price;
+import tuskex.core.monetary.Volume;
 import tuskex.core.offer.Offer;
 import tuskex.core.offer.OfferDirection;
 import tuskex.core.trade.ArbitratorTrade;
 import tuskex.core.trade.ClosedTradableFormatter;
 import tuskex.core.trade.ClosedTradableManager;
+import tuskex.core.trade.ClosedTradeSummary;
 import tuskex.core.trade.Tradable;
 import tuskex.core.trade.Trade;
 import tuskex.desktop.util.DisplayUtils;
@@ -32,12 +34,18 @@ import tuskex.desktop.util.filtering.FilteringUtils;
 import lombok.Getter;
 import org.apache.commons.lang3.StringUtils;
 
+import javax.annotation.Nullable;
 import java.math.BigInteger;
 import java.util.Date;
 
 public class ClosedTradesListItem implements FilterableListItem {
+    // either the tradable or the summary of an archived trade is set, archived trades are read from disk on demand
+    @Nullable
     @Getter
     private final Tradable tradable;
+    @Nullable
+    @Getter
+    private final ClosedTradeSummary archivedTradeSummary;
     private final ClosedTradableFormatter closedTradableFormatter;
     private final ClosedTradableManager closedTradableManager;
 
@@ -47,59 +55,128 @@ public class ClosedTradesListItem implements FilterableListItem {
             ClosedTradableManager closedTradableManager) {
 
         this.tradable = tradable;
+        this.archivedTradeSummary = null;
         this.closedTradableFormatter = closedTradableFormatter;
         this.closedTradableManager = closedTradableManager;
     }
 
+    public ClosedTradesListItem(
+            ClosedTradeSummary archivedTradeSummary,
+            ClosedTradableFormatter closedTradableFormatter,
+            ClosedTradableManager closedTradableManager) {
+
+        this.tradable = null;
+        this.archivedTradeSummary = archivedTradeSummary;
+        this.closedTradableFormatter = closedTradableFormatter;
+        this.closedTradableManager = closedTradableManager;
+    }
+
+    public String getId() {
+        return archivedTradeSummary != null ? archivedTradeSummary.getId() : tradable.getId();
+    }
+
     public String getTradeId() {
-        return tradable.getShortId();
+        return archivedTradeSummary != null ? archivedTradeSummary.getShortId() : tradable.getShortId();
     }
 
     public BigInteger getAmount() {
+        if (archivedTradeSummary != null) return BigInteger.valueOf(archivedTradeSummary.getAmount());
         return tradable.getOptionalAmount().orElse(null);
     }
 
     public String getAmountAsString() {
-        return closedTradableFormatter.getAmountAsString(tradable);
+        return archivedTradeSummary != null ?
+                closedTradableFormatter.getAmountAsString(archivedTradeSummary) :
+                closedTradableFormatter.getAmountAsString(tradable);
     }
 
     public Price getPrice() {
+        if (archivedTradeSummary != null) return archivedTradeSummary.getTradePrice();
         return tradable.getOptionalPrice().orElse(null);
     }
 
     public String getPriceAsString() {
-        return closedTradableFormatter.getPriceAsString(tradable);
+        return archivedTradeSummary != null ?
+                closedTradableFormatter.getPriceAsString(archivedTradeSummary) :
+                closedTradableFormatter.getPriceAsString(tradable);
+    }
+
+    public double getPriceDeviation() {
+        if (archivedTradeSummary != null) {
+            return archivedTradeSummary.isUseMarketBasedPrice() ? archivedTradeSummary.getMarketPriceMarginPct() : 1;
+        }
+        Offer offer = tradable.getOffer();
+        return offer.isUseMarketBasedPrice() ? offer.getMarketPriceMarginPct() : 1;
     }
 
     public String getPriceDeviationAsString() {
-        return closedTradableFormatter.getPriceDeviationAsString(tradable);
+        return archivedTradeSummary != null ?
+                closedTradableFormatter.getPriceDeviationAsString(archivedTradeSummary) :
+                closedTradableFormatter.getPriceDeviationAsString(tradable);
+    }
+
+    @Nullable
+    public Volume getVolume() {
+        if (archivedTradeSummary != null) return archivedTradeSummary.getTradeVolume();
+        return tradable instanceof Trade ? ((Trade) tradable).getVolume() : null;
     }
 
     public String getVolumeAsString(boolean appendCode) {
-        return closedTradableFormatter.getVolumeAsString(tradable, appendCode);
+        return archivedTradeSummary != null ?
+                closedTradableFormatter.getVolumeAsString(archivedTradeSummary, appendCode) :
+                closedTradableFormatter.getVolumeAsString(tradable, appendCode);
     }
 
     public String getVolumeCurrencyAsString() {
-        return closedTradableFormatter.getVolumeCurrencyAsString(tradable);
+        return archivedTradeSummary != null ?
+                closedTradableFormatter.getVolumeCurrencyAsString(archivedTradeSummary) :
+                closedTradableFormatter.getVolumeCurrencyAsString(tradable);
     }
 
     public String getTxFeeAsString() {
-        return closedTradableFormatter.getTotalTxFeeAsString(tradable);
+        return archivedTradeSummary != null ?
+                closedTradableFormatter.getTotalTxFeeAsString(archivedTradeSummary) :
+                closedTradableFormatter.getTotalTxFeeAsString(tradable);
     }
 
     public String getTradeFeeAsString(boolean appendCode) {
-        return closedTradableFormatter.getTradeFeeAsString(tradable, appendCode);
+        return archivedTradeSummary != null ?
+                closedTradableFormatter.getTradeFeeAsString(archivedTradeSummary, appendCode) :
+                closedTradableFormatter.getTradeFeeAsString(tradable, appendCode);
+    }
+
+    @Nullable
+    public BigInteger getBuyerSecurityDeposit() {
+        if (archivedTradeSummary != null) return BigInteger.valueOf(archivedTradeSummary.getBuyerSecurityDepositBeforeMiningFee());
+        return tradable.getOffer() != null ? tradable.getOffer().getMaxBuyerSecurityDeposit() : null;
     }
 
     public String getBuyerSecurityDepositAsString() {
-        return closedTradableFormatter.getBuyerSecurityDepositAsString(tradable);
+        return archivedTradeSummary != null ?
+                closedTradableFormatter.getBuyerSecurityDepositAsString(archivedTradeSummary) :
+                closedTradableFormatter.getBuyerSecurityDepositAsString(tradable);
+    }
+
+    @Nullable
+    public BigInteger getSellerSecurityDeposit() {
+        if (archivedTradeSummary != null) return BigInteger.valueOf(archivedTradeSummary.getSellerSecurityDepositBeforeMiningFee());
+        return tradable.getOffer() != null ? tradable.getOffer().getMaxSellerSecurityDeposit() : null;
     }
 
     public String getSellerSecurityDepositAsString() {
-        return closedTradableFormatter.getSellerSecurityDepositAsString(tradable);
+        return archivedTradeSummary != null ?
+                closedTradableFormatter.getSellerSecurityDepositAsString(archivedTradeSummary) :
+                closedTradableFormatter.getSellerSecurityDepositAsString(tradable);
+    }
+
+    public OfferDirection getOfferDirection() {
+        return archivedTradeSummary != null ? archivedTradeSummary.getOfferDirection() : tradable.getOffer().getDirection();
     }
 
     public String getDirectionLabel() {
+        if (archivedTradeSummary != null) {
+            return DisplayUtils.getDirectionWithCode(archivedTradeSummary.getDirection(), archivedTradeSummary.getCurrencyCode());
+        }
         Offer offer = tradable.getOffer();
         OfferDirection direction = closedTradableManager.wasMyOffer(offer) || tradable instanceof ArbitratorTrade
                 ? offer.getDirection()
@@ -109,23 +186,30 @@ public class ClosedTradesListItem implements FilterableListItem {
     }
 
     public Date getDate() {
-        return tradable.getDate();
+        return archivedTradeSummary != null ? archivedTradeSummary.getTradeDate() : tradable.getDate();
     }
 
     public String getDateAsString() {
-        return DisplayUtils.formatDateTime(tradable.getDate());
+        return DisplayUtils.formatDateTime(getDate());
     }
 
     public String getMarketLabel() {
-        return CurrencyUtil.getCurrencyPair(tradable.getOffer().getCurrencyCode());
+        String currencyCode = archivedTradeSummary != null ?
+                archivedTradeSummary.getCurrencyCode() :
+                tradable.getOffer().getCurrencyCode();
+        return CurrencyUtil.getCurrencyPair(currencyCode);
     }
 
     public String getState() {
-        return closedTradableFormatter.getStateAsString(tradable);
+        return archivedTradeSummary != null ?
+                closedTradableFormatter.getStateAsString(archivedTradeSummary) :
+                closedTradableFormatter.getStateAsString(tradable);
     }
 
     public int getNumPastTrades() {
-        return closedTradableManager.getNumPastTrades(tradable);
+        return archivedTradeSummary != null ?
+                closedTradableManager.getNumPastTrades(archivedTradeSummary) :
+                closedTradableManager.getNumPastTrades(tradable);
     }
 
     @Override
@@ -169,9 +253,12 @@ public class ClosedTradesListItem implements FilterableListItem {
         if (StringUtils.containsIgnoreCase(getDirectionLabel(), filterString)) {
             return true;
         }
-        if (FilteringUtils.match(getTradable().getOffer(), filterString)) {
+        if (archivedTradeSummary != null) {
+            return FilteringUtils.match(archivedTradeSummary, filterString);
+        }
+        if (FilteringUtils.match(tradable.getOffer(), filterString)) {
             return true;
         }
-        return getTradable() instanceof Trade && FilteringUtils.match((Trade) getTradable(), filterString);
+        return tradable instanceof Trade && FilteringUtils.match((Trade) tradable, filterString);
     }
 }
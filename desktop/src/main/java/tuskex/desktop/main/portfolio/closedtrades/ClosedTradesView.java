@@ -194,13 +194,12 @@ public class ClosedTradesView extends ActivatableViewAndModel<VBox, ClosedTrades
 
         tradeIdColumn.setComparator(Comparator.comparing(ClosedTradesListItem::getTradeId));
         dateColumn.setComparator(Comparator.comparing(ClosedTradesListItem::getDate));
-        directionColumn.setComparator(Comparator.comparing(o -> o.getTradable().getOffer().getDirection()));
+        directionColumn.setComparator(Comparator.comparing(ClosedTradesListItem::getOfferDirection));
         marketColumn.setComparator(Comparator.comparing(ClosedTradesListItem::getMarketLabel));
         priceColumn.setComparator(Comparator.comparing(ClosedTradesListItem::getPrice, Comparator.nullsFirst(Comparator.naturalOrder())));
-        deviationColumn.setComparator(Comparator.comparing(o ->
-                        o.getTradable().getOffer().isUseMarketBasedPrice() ? o.getTradable().getOffer().getMarketPriceMarginPct() : 1,
+        deviationColumn.setComparator(Comparator.comparing(ClosedTradesListItem::getPriceDeviation,
                 Comparator.nullsFirst(Comparator.naturalOrder())));
-        volumeColumn.setComparator(nullsFirstComparingAsTrade(Trade::getVolume));
+        volumeColumn.setComparator(nullsFirstComparing(ClosedTradesListItem::getVolume));
         amountColumn.setComparator(Comparator.comparing(ClosedTradesListItem::getAmount, Comparator.nullsFirst(Comparator.naturalOrder())));
         avatarColumn.setComparator(Comparator.comparing(ClosedTradesListItem::getNumPastTrades, Comparator.nullsFirst(Comparator.naturalOrder())));
 
@@ -209,12 +208,8 @@ public class ClosedTradesView extends ActivatableViewAndModel<VBox, ClosedTrades
             String tradeFee = item.getTradeFeeAsString(true);
             return "BTC" + tradeFee;
         }, Comparator.nullsFirst(Comparator.naturalOrder())));
-        buyerSecurityDepositColumn.setComparator(nullsFirstComparing(o ->
-                o.getTradable().getOffer() != null ? o.getTradable().getOffer().getMaxBuyerSecurityDeposit() : null
-        ));
-        sellerSecurityDepositColumn.setComparator(nullsFirstComparing(o ->
-                o.getTradable().getOffer() != null ? o.getTradable().getOffer().getMaxSellerSecurityDeposit() : null
-        ));
+        buyerSecurityDepositColumn.setComparator(nullsFirstComparing(ClosedTradesListItem::getBuyerSecurityDeposit));
+        sellerSecurityDepositColumn.setComparator(nullsFirstComparing(ClosedTradesListItem::getSellerSecurityDeposit));
         stateColumn.setComparator(Comparator.comparing(ClosedTradesListItem::getState));
 
         dateColumn.setSortType(TableColumn.SortType.DESCENDING);
@@ -225,7 +220,7 @@ public class ClosedTradesView extends ActivatableViewAndModel<VBox, ClosedTrades
                     TableRow<ClosedTradesListItem> row = new TableRow<>();
                     ContextMenu rowMenu = new ContextMenu();
                     MenuItem duplicateItem = new MenuItem(Res.get("portfolio.context.offerLikeThis"));
-                    duplicateItem.setOnAction((ActionEvent event) -> onDuplicateOffer(row.getItem().getTradable().getOffer()));
+                    duplicateItem.setOnAction((ActionEvent event) -> onDuplicateOffer(row.getItem()));
                     rowMenu.getItems().add(duplicateItem);
                     row.contextMenuProperty().bind(
                             Bindings.when(Bindings.isNotNull(row.itemProperty()))
@@ -274,7 +269,7 @@ public class ClosedTradesView extends ActivatableViewAndModel<VBox, ClosedTrades
                 columns[ColumnNames.VOLUME.ordinal()] = item.getVolumeAsString(false);
                 columns[ColumnNames.VOLUME_CURRENCY.ordinal()] = item.getVolumeCurrencyAsString();
                 columns[ColumnNames.TX_FEE.ordinal()] = item.getTxFeeAsString();
-                if (model.dataModel.isCurrencyForTradeFeeBtc(item.getTradable())) {
+                if (model.dataModel.isCurrencyForTradeFeeBtc(item)) {
                     columns[ColumnNames.TRADE_FEE.ordinal()] = item.getTradeFeeAsString(false);
                 } else {
                     columns[ColumnNames.TRADE_FEE.ordinal()] = "";
@@ -313,13 +308,6 @@ public class ClosedTradesView extends ActivatableViewAndModel<VBox, ClosedTrades
         );
     }
 
-    private static <T extends Comparable<T>> Comparator<ClosedTradesListItem> nullsFirstComparingAsTrade(Function<Trade, T> keyExtractor) {
-        return Comparator.comparing(
-                o -> o.getTradable() instanceof Trade ? keyExtractor.apply((Trade) o.getTradable()) : null,
-                Comparator.nullsFirst(Comparator.naturalOrder())
-        );
-    }
-
     private void onWidthChange(double width) {
         buyerSecurityDepositColumn.setVisible(width > 1400);
         sellerSecurityDepositColumn.setVisible(width > 1500);
@@ -343,7 +331,7 @@ public class ClosedTradesView extends ActivatableViewAndModel<VBox, ClosedTrades
                                 if (item != null && !empty) {
                                     field = new HyperlinkWithIcon(item.getTradeId());
                                     field.setOnAction(event -> {
-                                        Tradable tradable = item.getTradable();
+                                        Tradable tradable = model.dataModel.getTradable(item).orElse(null);
                                         if (tradable instanceof Trade) {
                                             tradeDetailsWindow.show((Trade) tradable);
                                         } else if (tradable instanceof OpenOffer) {
@@ -441,13 +429,13 @@ public class ClosedTradesView extends ActivatableViewAndModel<VBox, ClosedTrades
                             public void updateItem(final ClosedTradesListItem item, boolean empty) {
                                 super.updateItem(item, empty);
 
-                                if (item != null && !empty && isMyOfferAsMaker(item.getTradable().getOffer().getOfferPayload())) {
+                                if (item != null && !empty && isMyOfferAsMaker(item)) {
                                     if (button == null) {
                                         button = FormBuilder.getRegularIconButton(MaterialDesignIcon.CONTENT_COPY);
                                         button.setTooltip(new Tooltip(Res.get("shared.duplicateOffer")));
                                         setGraphic(button);
                                     }
-                                    button.setOnAction(event -> onDuplicateOffer(item.getTradable().getOffer()));
+                                    button.setOnAction(event -> onDuplicateOffer(item));
                                 } else {
                                     setGraphic(null);
                                     if (button != null) {
@@ -723,6 +711,10 @@ public class ClosedTradesView extends ActivatableViewAndModel<VBox, ClosedTrades
         model.dataModel.onMoveTradeToPendingTrades(trade);
     }
 
+    private void onDuplicateOffer(ClosedTradesListItem item) {
+        model.dataModel.getTradable(item).ifPresent(tradable -> onDuplicateOffer(tradable.getOffer()));
+    }
+
     private void onDuplicateOffer(Offer offer) {
         try {
             OfferPayload offerPayload = offer.getOfferPayload();
@@ -736,6 +728,11 @@ public class ClosedTradesView extends ActivatableViewAndModel<VBox, ClosedTrades
         }
     }
 
+    private boolean isMyOfferAsMaker(ClosedTradesListItem item) {
+        if (item.getArchivedTradeSummary() != null) return item.getArchivedTradeSummary().isMyOffer();
+        return isMyOfferAsMaker(item.getTradable().getOffer().getOfferPayload());
+    }
+
     private boolean isMyOfferAsMaker(OfferPayload offerPayload) {
         return offerPayload.getPubKeyRing().equals(keyRing.getPubKeyRing());
     }
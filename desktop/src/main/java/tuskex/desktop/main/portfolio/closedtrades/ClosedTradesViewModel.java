@@ -50,7 +50,8 @@ public class ClosedTradesViewModel extends ActivatableWithDataModel<ClosedTrades
     }
 
     public Map<String, String> getTotalVolumeByCurrency() {
-        return closedTradableFormatter.getTotalVolumeByCurrencyAsString(dataModel.getListAsTradables());
+        return closedTradableFormatter.getTotalVolumeByCurrencyAsString(dataModel.getListAsTradables(),
+                dataModel.getListAsArchivedTradeSummaries());
     }
 
     public String getTotalTxFee(BigInteger totalTradeAmount) {
@@ -332,7 +332,7 @@ public class PendingTradesViewModel extends ActivatableWithDataModel<PendingTrad
 
                 })
                 .collect(Collectors.toSet())
-                .size();
+                .size() + closedTradableManager.getNumArchivedTrades(trade.getTradePeerNodeAddress());
     }
 
     @Nullable
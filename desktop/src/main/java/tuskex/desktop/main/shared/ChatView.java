@@ -631,6 +631,9 @@ public class ChatView extends AnchorPane {
             } catch (IOException e) {
                 e.printStackTrace();
                 System.out.println(e.getMessage());
+            } catch (IllegalStateException e) {
+                log.error(e.getMessage());
+                new Popup().error(e.getMessage()).show();
             }
         }
     }
@@ -18,6 +18,8 @@
 package tuskex.desktop.util.filtering;
 
 import tuskex.core.offer.Offer;
+import tuskex.core.payment.payload.PaymentMethod;
+import tuskex.core.trade.ClosedTradeSummary;
 import tuskex.core.trade.Trade;
 import org.apache.commons.lang3.StringUtils;
 
@@ -62,4 +64,24 @@ public class FilteringUtils {
         return isBuyerOnion || isSellerOnion ||
                 matchesBuyersPaymentAccountData || matchesSellersPaymentAccountData;
     }
+
+    // The summary of an archived trade has no contract, so the payment account data of the trade is not matched.
+    public static boolean match(ClosedTradeSummary summary, String filterString) {
+        if (StringUtils.containsIgnoreCase(summary.getId(), filterString)) {
+            return true;
+        }
+        if (StringUtils.containsIgnoreCase(PaymentMethod.getPaymentMethodOrNA(summary.getPaymentMethodId()).getDisplayString(), filterString)) {
+            return true;
+        }
+        if (summary.getMakerDepositTxId() != null && StringUtils.containsIgnoreCase(summary.getMakerDepositTxId(), filterString)) {
+            return true;
+        }
+        if (summary.getTakerDepositTxId() != null && StringUtils.containsIgnoreCase(summary.getTakerDepositTxId(), filterString)) {
+            return true;
+        }
+        if (summary.getPayoutTxId() != null && StringUtils.containsIgnoreCase(summary.getPayoutTxId(), filterString)) {
+            return true;
+        }
+        return summary.getTradePeerAddress() != null && StringUtils.containsIgnoreCase(summary.getTradePeerAddress(), filterString);
+    }
 }
@@ -34,6 +34,8 @@ public class FileTransferPart extends NetworkEnvelope implements ExtendedDataSiz
     public int traderId;
     public long seqNumOrFileLength;
     public ByteString messageData;   // if message_data is empty it is the first message, requesting file upload permission
+    public long offset;              // file offset of message_data, only used in windowed transfers
+    public ByteString contentHash;   // SHA-256 of the whole file, empty in the legacy stop-and-wait transfer
 
     public FileTransferPart(NodeAddress senderNodeAddress,
                             String tradeId,
@@ -41,13 +43,28 @@ public class FileTransferPart extends NetworkEnvelope implements ExtendedDataSiz
                             String uid,
                             long seqNumOrFileLength,
                             ByteString messageData) {
-        this(senderNodeAddress, tradeId, traderId, uid, seqNumOrFileLength, messageData, Version.getP2PMessageVersion());
+        this(senderNodeAddress, tradeId, traderId, uid, seqNumOrFileLength, messageData, 0, ByteString.EMPTY);
+    }
+
+    public FileTransferPart(NodeAddress senderNodeAddress,
+                            String tradeId,
+                            int traderId,
+                            String uid,
+                            long seqNumOrFileLength,
+                            ByteString messageData,
+                            long offset,
+                            ByteString contentHash) {
+        this(senderNodeAddress, tradeId, traderId, uid, seqNumOrFileLength, messageData, offset, contentHash, Version.getP2PMessageVersion());
     }
 
     public boolean isInitialRequest() {
         return messageData.size() == 0;
     }
 
+    public boolean isWindowed() {
+        return !contentHash.isEmpty();
+    }
+
     ///////////////////////////////////////////////////////////////////////////////////////////
     // PROTO BUFFER
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -58,6 +75,8 @@ public class FileTransferPart extends NetworkEnvelope implements ExtendedDataSiz
                              String uid,
                              long seqNumOrFileLength,
                              ByteString messageData,
+                             long offset,
+                             ByteString contentHash,
                              String messageVersion) {
         super(messageVersion);
         this.senderNodeAddress = senderNodeAddress;
@@ -66,6 +85,8 @@ public class FileTransferPart extends NetworkEnvelope implements ExtendedDataSiz
         this.uid = uid;
         this.seqNumOrFileLength = seqNumOrFileLength;
         this.messageData = messageData;
+        this.offset = offset;
+        this.contentHash = contentHash;
     }
 
     @Override
@@ -78,6 +99,8 @@ public class FileTransferPart extends NetworkEnvelope implements ExtendedDataSiz
                         .setUid(uid)
                         .setSeqNumOrFileLength(seqNumOrFileLength)
                         .setMessageData(messageData)
+                        .setOffset(offset)
+                        .setContentHash(contentHash)
                         .build())
                 .build();
     }
@@ -90,6 +113,8 @@ public class FileTransferPart extends NetworkEnvelope implements ExtendedDataSiz
                 proto.getUid(),
                 proto.getSeqNumOrFileLength(),
                 proto.getMessageData(),
+                proto.getOffset(),
+                proto.getContentHash(),
                 messageVersion);
     }
 
@@ -101,6 +126,7 @@ public class FileTransferPart extends NetworkEnvelope implements ExtendedDataSiz
                 ",\n     tradeId='" + tradeId + '\'' +
                 ",\n     traderId='" + traderId + '\'' +
                 ",\n     seqNumOrFileLength=" + seqNumOrFileLength +
+                ",\n     offset=" + offset +
                 "\n} " + super.toString();
     }
 }
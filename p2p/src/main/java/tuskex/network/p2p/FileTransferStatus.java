@@ -0,0 +1,105 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.network.p2p;
+
+import tuskex.common.app.Version;
+import tuskex.common.proto.network.NetworkEnvelope;
+
+import lombok.EqualsAndHashCode;
+import lombok.Value;
+
+/**
+ * Response of the receiver to the initial request of a windowed file transfer. It tells the sender how many bytes of
+ * the file with the requested content hash it has already received, so an interrupted upload continues from there.
+ */
+@EqualsAndHashCode(callSuper = true)
+@Value
+public class FileTransferStatus extends NetworkEnvelope implements SendersNodeAddressMessage {
+    NodeAddress senderNodeAddress;
+    public String uid;
+    public String tradeId;
+    public int traderId;
+    public String requestUid;
+    public long receivedBytes;
+
+    public FileTransferStatus(NodeAddress senderNodeAddress,
+                              String tradeId,
+                              int traderId,
+                              String uid,
+                              String requestUid,
+                              long receivedBytes) {
+        this(senderNodeAddress, tradeId, traderId, uid, requestUid, receivedBytes, Version.getP2PMessageVersion());
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // PROTO BUFFER
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private FileTransferStatus(NodeAddress senderNodeAddress,
+                               String tradeId,
+                               int traderId,
+                               String uid,
+                               String requestUid,
+                               long receivedBytes,
+                               String messageVersion) {
+        super(messageVersion);
+        this.senderNodeAddress = senderNodeAddress;
+        this.tradeId = tradeId;
+        this.traderId = traderId;
+        this.uid = uid;
+        this.requestUid = requestUid;
+        this.receivedBytes = receivedBytes;
+    }
+
+    @Override
+    public protobuf.NetworkEnvelope toProtoNetworkEnvelope() {
+        return getNetworkEnvelopeBuilder()
+                .setFileTransferStatus(protobuf.FileTransferStatus.newBuilder()
+                        .setSenderNodeAddress(senderNodeAddress.toProtoMessage())
+                        .setTradeId(tradeId)
+                        .setTraderId(traderId)
+                        .setUid(uid)
+                        .setRequestUid(requestUid)
+                        .setReceivedBytes(receivedBytes)
+                        .build())
+                .build();
+    }
+
+    public static FileTransferStatus fromProto(protobuf.FileTransferStatus proto, String messageVersion) {
+        return new FileTransferStatus(
+                NodeAddress.fromProto(proto.getSenderNodeAddress()),
+                proto.getTradeId(),
+                proto.getTraderId(),
+                proto.getUid(),
+                proto.getRequestUid(),
+                proto.getReceivedBytes(),
+                messageVersion);
+    }
+
+    @Override
+    public String toString() {
+        return "FileTransferStatus{" +
+                "\n     senderNodeAddress='" + senderNodeAddress.getAddressForDisplay() + '\'' +
+                ",\n     uid='" + uid + '\'' +
+                ",\n     tradeId='" + tradeId + '\'' +
+                ",\n     traderId='" + traderId + '\'' +
+                ",\n     requestUid='" + requestUid + '\'' +
+                ",\n     receivedBytes=" + receivedBytes +
+                "\n} " + super.toString();
+    }
+}
@@ -43,6 +43,7 @@ public class NetworkNodeProvider implements Provider<NetworkNode> {
             @Nullable BanFilter banFilter,
             @Named(Config.MAX_CONNECTIONS) int maxConnections,
             @Named(Config.USE_LOCALHOST_FOR_P2P) boolean useLocalhostForP2P,
+            @Named(Config.USE_NIO_FOR_P2P) boolean useNioForP2P,
             @Named(Config.NODE_PORT) int port,
             @Named(Config.TOR_DIR) File torDir,
             @Nullable @Named(Config.TORRC_FILE) File torrcFile,
@@ -54,7 +55,7 @@ public class NetworkNodeProvider implements Provider<NetworkNode> {
             @Named(Config.TOR_STREAM_ISOLATION) boolean streamIsolation,
             @Named(Config.TOR_CONTROL_USE_SAFE_COOKIE_AUTH) boolean useSafeCookieAuthentication) {
         if (useLocalhostForP2P) {
-            networkNode = new LocalhostNetworkNode(port, networkProtoResolver, banFilter, maxConnections);
+            networkNode = new LocalhostNetworkNode(port, networkProtoResolver, banFilter, maxConnections, useNioForP2P);
         } else {
             TorMode torMode = getTorMode(bridgeAddressProvider,
                     torDir,
@@ -39,6 +39,7 @@ import static tuskex.common.config.Config.TOR_CONTROL_USE_SAFE_COOKIE_AUTH;
 import static tuskex.common.config.Config.TOR_DIR;
 import static tuskex.common.config.Config.TOR_STREAM_ISOLATION;
 import static tuskex.common.config.Config.USE_LOCALHOST_FOR_P2P;
+import static tuskex.common.config.Config.USE_NIO_FOR_P2P;
 import tuskex.network.Socks5ProxyProvider;
 import tuskex.network.http.HttpClient;
 import tuskex.network.http.HttpClientImpl;
@@ -83,6 +84,7 @@ public class P2PModule extends AppModule {
         requestStaticInjection(Connection.class);
 
         bindConstant().annotatedWith(named(USE_LOCALHOST_FOR_P2P)).to(config.useLocalhostForP2P);
+        bindConstant().annotatedWith(named(USE_NIO_FOR_P2P)).to(config.useNioForP2P);
 
         bind(File.class).annotatedWith(named(TOR_DIR)).toInstance(config.torDir);
 
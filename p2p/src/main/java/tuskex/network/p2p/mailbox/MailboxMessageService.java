@@ -39,6 +39,8 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
 import com.google.inject.Inject;
@@ -50,6 +52,7 @@ import tuskex.common.crypto.CryptoException;
 import tuskex.common.crypto.KeyRing;
 import tuskex.common.crypto.PubKeyRing;
 import tuskex.common.crypto.SealedAndSigned;
+import tuskex.common.crypto.Sig;
 import tuskex.common.persistence.PersistenceManager;
 import tuskex.common.proto.ProtobufferException;
 import tuskex.common.proto.network.NetworkEnvelope;
@@ -79,6 +82,7 @@ import java.security.PublicKey;
 import java.time.Clock;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.Date;
@@ -90,6 +94,8 @@ import java.util.Queue;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
@@ -119,6 +125,9 @@ import org.jetbrains.annotations.NotNull;
 @Slf4j
 public class MailboxMessageService implements HashMapChangedListener, PersistedDataHost {
     private static final long REPUBLISH_DELAY_SEC = TimeUnit.MINUTES.toSeconds(2);
+    private static final int DECRYPTION_POOL_SIZE = Runtime.getRuntime().availableProcessors();
+    private static final ListeningExecutorService DECRYPTION_EXECUTOR = Utilities.getListeningExecutorService(
+            "MailboxMessageService.decrypt", DECRYPTION_POOL_SIZE, DECRYPTION_POOL_SIZE, 60, new LinkedBlockingQueue<>());
     private static final long MAX_SERIALIZED_SIZE = 50000;
 
     private final NetworkNode networkNode;
@@ -440,7 +449,7 @@ public class MailboxMessageService implements HashMapChangedListener, PersistedD
     }
 
     // We run the batch processing of all mailbox messages we have received at startup in a thread to not block the UI.
-    // For about 1000 messages decryption takes about 1 sec.
+    // Only the entries addressed to us get decrypted, using all cores.
     private void threadedBatchProcessMailboxEntries(Collection<ProtectedMailboxStorageEntry> protectedMailboxStorageEntries) {
         long ts = System.currentTimeMillis();
         SettableFuture<Set<MailboxItem>> future = SettableFuture.create();
@@ -471,11 +480,21 @@ public class MailboxMessageService implements HashMapChangedListener, PersistedD
         }, MoreExecutors.directExecutor());
     }
 
-    private Set<MailboxItem> getMailboxItems(Collection<ProtectedMailboxStorageEntry> protectedMailboxStorageEntries) {
+    private Set<MailboxItem> getMailboxItems(Collection<ProtectedMailboxStorageEntry> protectedMailboxStorageEntries)
+            throws ExecutionException, InterruptedException {
+        // The receivers storage pub key is part of the entry as only the receiver is permitted to remove it. So we
+        // only need to try to decrypt the entries which are addressed to our key, all others cannot be for us.
+        byte[] myPubKeyBytes = Sig.getPublicKeyBytes(keyRing.getSignatureKeyPair().getPublic());
         Set<MailboxItem> mailboxItems = new HashSet<>();
-        protectedMailboxStorageEntries.stream()
-                .map(this::tryDecryptProtectedMailboxStorageEntry)
-                .forEach(mailboxItems::add);
+        List<ListenableFuture<MailboxItem>> futures = new ArrayList<>();
+        protectedMailboxStorageEntries.forEach(protectedMailboxStorageEntry -> {
+            if (Arrays.equals(protectedMailboxStorageEntry.getReceiversPubKeyBytes(), myPubKeyBytes)) {
+                futures.add(DECRYPTION_EXECUTOR.submit(() -> tryDecryptProtectedMailboxStorageEntry(protectedMailboxStorageEntry)));
+            } else {
+                mailboxItems.add(new MailboxItem(protectedMailboxStorageEntry, null));
+            }
+        });
+        mailboxItems.addAll(Futures.allAsList(futures).get());
         return mailboxItems;
     }
 
@@ -76,6 +76,7 @@ import java.net.SocketTimeoutException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -138,7 +139,14 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
     private final BanFilter banFilter;
     @Getter
     private final String uid;
+    // only used for blocking sockets
+    @Nullable
     private final ExecutorService executorService;
+    // only used for non-blocking channels
+    @Nullable
+    private final NioSelectorPool nioSelectorPool;
+    @Nullable
+    private NioChannel nioChannel;
     @Getter
     private final Statistic statistic;
     @Getter
@@ -180,12 +188,28 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
                @Nullable NodeAddress peersNodeAddress,
                NetworkProtoResolver networkProtoResolver,
                @Nullable BanFilter banFilter) {
+        this(socket, messageListener, connectionListener, peersNodeAddress, networkProtoResolver, banFilter, null);
+    }
+
+    /**
+     * @param socket the socket, must be created from a SocketChannel if nioSelectorPool is set
+     * @param nioSelectorPool the pool to serve the channel of the socket, or null to use blocking IO
+     */
+    Connection(Socket socket,
+               MessageListener messageListener,
+               ConnectionListener connectionListener,
+               @Nullable NodeAddress peersNodeAddress,
+               NetworkProtoResolver networkProtoResolver,
+               @Nullable BanFilter banFilter,
+               @Nullable NioSelectorPool nioSelectorPool) {
         this.socket = socket;
         this.connectionListener = connectionListener;
         this.banFilter = banFilter;
+        this.nioSelectorPool = nioSelectorPool;
 
         this.uid = UUID.randomUUID().toString();
-        this.executorService = SingleThreadExecutorUtils.getSingleThreadExecutor("Executor service for connection with uid " + uid);
+        this.executorService = nioSelectorPool != null ? null :
+                SingleThreadExecutorUtils.getSingleThreadExecutor("Executor service for connection with uid " + uid);
 
         statistic = new Statistic();
 
@@ -199,16 +223,34 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
 
     private void init(@Nullable NodeAddress peersNodeAddress) {
         try {
-            socket.setSoTimeout(SOCKET_TIMEOUT);
-            // Need to access first the ObjectOutputStream otherwise the ObjectInputStream would block
-            // See: https://stackoverflow.com/questions/5658089/java-creating-a-new-objectinputstream-blocks/5658109#5658109
-            // When you construct an ObjectInputStream, in the constructor the class attempts to read a header that
-            // the associated ObjectOutputStream on the other end of the connection has written.
-            // It will not return until that header has been read.
-            protoOutputStream = new ProtoOutputStream(socket.getOutputStream(), statistic);
-            protoInputStream = socket.getInputStream();
-            // We create a thread for handling inputStream data
-            executorService.submit(this);
+            if (nioSelectorPool != null) {
+                nioChannel = nioSelectorPool.register(checkNotNull(socket.getChannel(), "socket has no channel"),
+                        new NioChannel.Handler() {
+                            @Override
+                            public void onFrame(byte[] frame) {
+                                nioSelectorPool.executeRead(() -> Connection.this.onFrame(frame), uid);
+                            }
+
+                            @Override
+                            public void onException(Throwable throwable) {
+                                nioSelectorPool.executeRead(() -> handleException(throwable), uid);
+                            }
+                        },
+                        MAX_PERMITTED_MESSAGE_SIZE,
+                        getSendMsgThrottleTrigger(),
+                        getSendMsgThrottleSleep());
+            } else {
+                socket.setSoTimeout(SOCKET_TIMEOUT);
+                // Need to access first the ObjectOutputStream otherwise the ObjectInputStream would block
+                // See: https://stackoverflow.com/questions/5658089/java-creating-a-new-objectinputstream-blocks/5658109#5658109
+                // When you construct an ObjectInputStream, in the constructor the class attempts to read a header that
+                // the associated ObjectOutputStream on the other end of the connection has written.
+                // It will not return until that header has been read.
+                protoOutputStream = new ProtoOutputStream(socket.getOutputStream(), statistic);
+                protoInputStream = socket.getInputStream();
+                // We create a thread for handling inputStream data
+                executorService.submit(this);
+            }
 
             if (peersNodeAddress != null) {
                 setPeersNodeAddress(peersNodeAddress);
@@ -255,22 +297,28 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
         }
         int networkEnvelopeSize = networkEnvelope.toProtoNetworkEnvelope().getSerializedSize();
         try {
-            // Throttle outbound network_messages
-            long now = System.currentTimeMillis();
-            long elapsed = now - lastSendTimeStamp;
-            if (elapsed < getSendMsgThrottleTrigger()) {
-                log.debug("We got 2 sendMessage requests in less than {} ms. We set the thread to sleep " +
-                                "for {} ms to avoid flooding our peer. lastSendTimeStamp={}, now={}, elapsed={}, networkEnvelope={}",
-                        getSendMsgThrottleTrigger(), getSendMsgThrottleSleep(), lastSendTimeStamp, now, elapsed,
-                        networkEnvelope.getClass().getSimpleName());
-
-                Thread.sleep(getSendMsgThrottleSleep());
-            }
+            // Throttle outbound network_messages. The send queue of a non-blocking channel throttles itself.
+            if (nioChannel == null) {
+                long now = System.currentTimeMillis();
+                long elapsed = now - lastSendTimeStamp;
+                if (elapsed < getSendMsgThrottleTrigger()) {
+                    log.debug("We got 2 sendMessage requests in less than {} ms. We set the thread to sleep " +
+                                    "for {} ms to avoid flooding our peer. lastSendTimeStamp={}, now={}, elapsed={}, networkEnvelope={}",
+                            getSendMsgThrottleTrigger(), getSendMsgThrottleSleep(), lastSendTimeStamp, now, elapsed,
+                            networkEnvelope.getClass().getSimpleName());
+
+                    Thread.sleep(getSendMsgThrottleSleep());
+                }
 
-            lastSendTimeStamp = now;
+                lastSendTimeStamp = now;
+            }
 
             if (!stopped) {
-                protoOutputStream.writeEnvelope(networkEnvelope);
+                if (nioChannel != null) {
+                    sendToChannel(networkEnvelope);
+                } else {
+                    protoOutputStream.writeEnvelope(networkEnvelope);
+                }
                 ThreadUtils.execute(() -> messageListeners.forEach(e -> e.onMessageSent(networkEnvelope, this)), THREAD_ID);
                 ThreadUtils.execute(() -> connectionStatistics.addSendMsgMetrics(System.currentTimeMillis() - ts, networkEnvelopeSize), THREAD_ID);
             }
@@ -280,6 +328,17 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
         }
     }
 
+    // Queues the envelope at the non-blocking channel
+    private void sendToChannel(NetworkEnvelope networkEnvelope) throws IOException {
+        protobuf.NetworkEnvelope proto = networkEnvelope.toProtoNetworkEnvelope();
+        checkNotNull(nioChannel).send(NioChannel.toFrame(proto));
+        statistic.addSentBytes(proto.getSerializedSize());
+        statistic.addSentMessage(networkEnvelope);
+        if (!(networkEnvelope instanceof KeepAliveMessage)) {
+            statistic.updateLastActivityTimestamp();
+        }
+    }
+
     public boolean testCapability(NetworkEnvelope networkEnvelope) {
         if (networkEnvelope instanceof BundleOfEnvelopes) {
             // We remove elements in the list which fail the capability test
@@ -407,7 +466,7 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
 
     private void onBundleOfEnvelopes(BundleOfEnvelopes bundleOfEnvelopes, Connection connection) {
         Map<P2PDataStorage.ByteArray, Set<NetworkEnvelope>> itemsByHash = new HashMap<>();
-        Set<NetworkEnvelope> envelopesToProcess = new HashSet<>();
+        Set<NetworkEnvelope> envelopesToProcess = new LinkedHashSet<>();
         List<NetworkEnvelope> networkEnvelopes = bundleOfEnvelopes.getEnvelopes();
         for (NetworkEnvelope networkEnvelope : networkEnvelopes) {
             // If SendersNodeAddressMessage we do some verifications and apply if successful, otherwise we return false.
@@ -437,9 +496,9 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
                 envelopesToProcess.add(networkEnvelope);
             }
         }
-        envelopesToProcess.forEach(envelope -> ThreadUtils.execute(() -> {
-                messageListeners.forEach(listener -> listener.onMessage(envelope, connection));
-        }, THREAD_ID));
+        // The envelopes are passed on together so listeners can process them as batch
+        List<NetworkEnvelope> envelopes = new ArrayList<>(envelopesToProcess);
+        ThreadUtils.execute(() -> messageListeners.forEach(listener -> listener.onMessages(envelopes, connection)), THREAD_ID);
     }
 
 
@@ -526,8 +585,12 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
     private void doShutDown(CloseConnectionReason closeConnectionReason, @Nullable Runnable shutDownCompleteHandler) {
         ThreadUtils.execute(() -> connectionListener.onDisconnect(closeConnectionReason, this), THREAD_ID);
         try {
-            protoOutputStream.onConnectionShutdown();
-            socket.close();
+            if (nioChannel != null) {
+                nioChannel.close();
+            } else {
+                protoOutputStream.onConnectionShutdown();
+                socket.close();
+            }
         } catch (SocketException e) {
             log.trace("SocketException at shutdown might be expected {}", e.getMessage());
         } catch (IOException e) {
@@ -536,14 +599,18 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
         } finally {
             capabilitiesListeners.clear();
 
-            try {
-                protoInputStream.close();
-            } catch (IOException e) {
-                log.error(e.getMessage());
-                e.printStackTrace();
+            if (protoInputStream != null) {
+                try {
+                    protoInputStream.close();
+                } catch (IOException e) {
+                    log.error(e.getMessage());
+                    e.printStackTrace();
+                }
             }
 
-            Utilities.shutdownAndAwaitTermination(executorService, SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS);
+            if (executorService != null) {
+                Utilities.shutdownAndAwaitTermination(executorService, SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS);
+            }
 
             log.debug("Connection shutdown complete {}", this);
             if (shutDownCompleteHandler != null)
@@ -750,14 +817,6 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
                         return;
                     }
 
-                    if (banFilter != null &&
-                            peersNodeAddressOptional.isPresent() &&
-                            banFilter.isPeerBanned(peersNodeAddressOptional.get())) {
-                        log.warn("We got a message from a banned peer. proto={}", Utilities.toTruncatedString(proto));
-                        reportInvalidRequest(RuleViolation.PEER_BANNED);
-                        return;
-                    }
-
                     // Throttle inbound network messages
                     long now = System.currentTimeMillis();
                     long elapsed = now - lastReadTimeStamp;
@@ -767,104 +826,142 @@ public class Connection implements HasCapabilities, Runnable, MessageListener {
                                 lastReadTimeStamp, now, elapsed);
                         Thread.sleep(20);
                     }
-
-                    NetworkEnvelope networkEnvelope = networkProtoResolver.fromProto(proto);
                     lastReadTimeStamp = now;
-                    log.debug("<< Received networkEnvelope of type: {}", networkEnvelope.getClass().getSimpleName());
-                    int size = proto.getSerializedSize();
 
-                    // We want to track the size of each object even if it is invalid data
-                    statistic.addReceivedBytes(size);
+                    if (!handleProto(proto, ts)) {
+                        return;
+                    }
+                } catch (Throwable t) {
+                    handleReadException(t);
+                }
+            }
+        } catch (Throwable t) {
+            handleException(t);
+        }
+    }
+
+    // Checks a received proto and delivers it to the message listeners. Returns false if we should stop reading.
+    private boolean handleProto(protobuf.NetworkEnvelope proto, long ts) throws ProtobufferException {
+        if (banFilter != null &&
+                peersNodeAddressOptional.isPresent() &&
+                banFilter.isPeerBanned(peersNodeAddressOptional.get())) {
+            log.warn("We got a message from a banned peer. proto={}", Utilities.toTruncatedString(proto));
+            reportInvalidRequest(RuleViolation.PEER_BANNED);
+            return false;
+        }
+
+        NetworkEnvelope networkEnvelope = networkProtoResolver.fromProto(proto);
+        log.debug("<< Received networkEnvelope of type: {}", networkEnvelope.getClass().getSimpleName());
+        int size = proto.getSerializedSize();
 
-                    // We want to track the network_messages also before the checks, so do it early...
-                    statistic.addReceivedMessage(networkEnvelope);
+        // We want to track the size of each object even if it is invalid data
+        statistic.addReceivedBytes(size);
 
-                    // First we check the size
-                    boolean exceeds;
-                    if (networkEnvelope instanceof ExtendedDataSizePermission) {
-                        exceeds = size > MAX_PERMITTED_MESSAGE_SIZE;
-                    } else {
-                        exceeds = size > PERMITTED_MESSAGE_SIZE;
-                    }
+        // We want to track the network_messages also before the checks, so do it early...
+        statistic.addReceivedMessage(networkEnvelope);
 
-                    if (networkEnvelope instanceof AddPersistableNetworkPayloadMessage &&
-                            !((AddPersistableNetworkPayloadMessage) networkEnvelope).getPersistableNetworkPayload().verifyHashSize()) {
-                        log.warn("PersistableNetworkPayload.verifyHashSize failed. hashSize={}; object={}",
-                                ((AddPersistableNetworkPayloadMessage) networkEnvelope).getPersistableNetworkPayload().getHash().length,
-                                Utilities.toTruncatedString(proto));
-                        if (reportInvalidRequest(RuleViolation.MAX_MSG_SIZE_EXCEEDED))
-                            return;
-                    }
+        // First we check the size
+        boolean exceeds;
+        if (networkEnvelope instanceof ExtendedDataSizePermission) {
+            exceeds = size > MAX_PERMITTED_MESSAGE_SIZE;
+        } else {
+            exceeds = size > PERMITTED_MESSAGE_SIZE;
+        }
 
-                    if (exceeds) {
-                        log.warn("size > MAX_MSG_SIZE. size={}; object={}", size, Utilities.toTruncatedString(proto));
+        if (networkEnvelope instanceof AddPersistableNetworkPayloadMessage &&
+                !((AddPersistableNetworkPayloadMessage) networkEnvelope).getPersistableNetworkPayload().verifyHashSize()) {
+            log.warn("PersistableNetworkPayload.verifyHashSize failed. hashSize={}; object={}",
+                    ((AddPersistableNetworkPayloadMessage) networkEnvelope).getPersistableNetworkPayload().getHash().length,
+                    Utilities.toTruncatedString(proto));
+            if (reportInvalidRequest(RuleViolation.MAX_MSG_SIZE_EXCEEDED))
+                return false;
+        }
 
-                        if (reportInvalidRequest(RuleViolation.MAX_MSG_SIZE_EXCEEDED))
-                            return;
-                    }
+        if (exceeds) {
+            log.warn("size > MAX_MSG_SIZE. size={}; object={}", size, Utilities.toTruncatedString(proto));
 
-                    if (violatesThrottleLimit() && reportInvalidRequest(RuleViolation.THROTTLE_LIMIT_EXCEEDED))
-                        return;
+            if (reportInvalidRequest(RuleViolation.MAX_MSG_SIZE_EXCEEDED))
+                return false;
+        }
 
-                    // Check P2P network ID
-                    if (!proto.getMessageVersion().equals(Version.getP2PMessageVersion())
-                            && reportInvalidRequest(RuleViolation.WRONG_NETWORK_ID)) {
-                        log.warn("RuleViolation.WRONG_NETWORK_ID. version of message={}, app version={}, " +
-                                        "proto.toTruncatedString={}", proto.getMessageVersion(),
-                                Version.getP2PMessageVersion(),
-                                Utilities.toTruncatedString(proto.toString()));
-                        return;
-                    }
+        if (violatesThrottleLimit() && reportInvalidRequest(RuleViolation.THROTTLE_LIMIT_EXCEEDED))
+            return false;
 
-                    boolean causedShutDown = maybeHandleSupportedCapabilitiesMessage(networkEnvelope);
-                    if (causedShutDown) {
-                        return;
-                    }
+        // Check P2P network ID
+        if (!proto.getMessageVersion().equals(Version.getP2PMessageVersion())
+                && reportInvalidRequest(RuleViolation.WRONG_NETWORK_ID)) {
+            log.warn("RuleViolation.WRONG_NETWORK_ID. version of message={}, app version={}, " +
+                            "proto.toTruncatedString={}", proto.getMessageVersion(),
+                    Version.getP2PMessageVersion(),
+                    Utilities.toTruncatedString(proto.toString()));
+            return false;
+        }
 
-                    if (networkEnvelope instanceof CloseConnectionMessage) {
-                        // If we get a CloseConnectionMessage we shut down
-                        log.debug("CloseConnectionMessage received. Reason={}\n\t" +
-                                "connection={}", proto.getCloseConnectionMessage().getReason(), this);
+        boolean causedShutDown = maybeHandleSupportedCapabilitiesMessage(networkEnvelope);
+        if (causedShutDown) {
+            return false;
+        }
 
-                        if (CloseConnectionReason.PEER_BANNED.name().equals(proto.getCloseConnectionMessage().getReason())) {
-                            log.warn("We got shut down because we are banned by the other peer. " +
-                                    "(InputHandler.run CloseConnectionMessage). Peer: {}", getPeersNodeAddressOptional());
-                        }
-                        shutDown(CloseConnectionReason.CLOSE_REQUESTED_BY_PEER);
-                        return;
-                    } else if (!stopped) {
-                        // We don't want to get the activity ts updated by ping/pong msg
-                        if (!(networkEnvelope instanceof KeepAliveMessage))
-                            statistic.updateLastActivityTimestamp();
-
-                        // If SendersNodeAddressMessage we do some verifications and apply if successful,
-                        // otherwise we return false.
-                        if (networkEnvelope instanceof SendersNodeAddressMessage) {
-                            boolean isValid = processSendersNodeAddressMessage((SendersNodeAddressMessage) networkEnvelope);
-                            if (!isValid) {
-                                return;
-                            }
-                        }
+        if (networkEnvelope instanceof CloseConnectionMessage) {
+            // If we get a CloseConnectionMessage we shut down
+            log.debug("CloseConnectionMessage received. Reason={}\n\t" +
+                    "connection={}", proto.getCloseConnectionMessage().getReason(), this);
 
-                        if (!(networkEnvelope instanceof SendersNodeAddressMessage) && peersNodeAddressOptional.isEmpty()) {
-                            log.info("We got a {} from a peer with yet unknown address on connection with uid={}", networkEnvelope.getClass().getSimpleName(), uid);
-                        }
+            if (CloseConnectionReason.PEER_BANNED.name().equals(proto.getCloseConnectionMessage().getReason())) {
+                log.warn("We got shut down because we are banned by the other peer. " +
+                        "(InputHandler.run CloseConnectionMessage). Peer: {}", getPeersNodeAddressOptional());
+            }
+            shutDown(CloseConnectionReason.CLOSE_REQUESTED_BY_PEER);
+            return false;
+        } else if (!stopped) {
+            // We don't want to get the activity ts updated by ping/pong msg
+            if (!(networkEnvelope instanceof KeepAliveMessage))
+                statistic.updateLastActivityTimestamp();
 
-                        ThreadUtils.execute(() -> onMessage(networkEnvelope, this), THREAD_ID);
-                        ThreadUtils.execute(() -> connectionStatistics.addReceivedMsgMetrics(System.currentTimeMillis() - ts, size), THREAD_ID);
-                    }
-                } catch (InvalidClassException e) {
-                    log.error(e.getMessage());
-                    e.printStackTrace();
-                    reportInvalidRequest(RuleViolation.INVALID_CLASS);
-                } catch (ProtobufferException | NoClassDefFoundError | InvalidProtocolBufferException e) {
-                    log.error(e.getMessage());
-                    reportInvalidRequest(RuleViolation.INVALID_DATA_TYPE);
-                } catch (Throwable t) {
-                    handleException(t);
+            // If SendersNodeAddressMessage we do some verifications and apply if successful,
+            // otherwise we return false.
+            if (networkEnvelope instanceof SendersNodeAddressMessage) {
+                boolean isValid = processSendersNodeAddressMessage((SendersNodeAddressMessage) networkEnvelope);
+                if (!isValid) {
+                    return false;
                 }
             }
+
+            if (!(networkEnvelope instanceof SendersNodeAddressMessage) && peersNodeAddressOptional.isEmpty()) {
+                log.info("We got a {} from a peer with yet unknown address on connection with uid={}", networkEnvelope.getClass().getSimpleName(), uid);
+            }
+
+            ThreadUtils.execute(() -> onMessage(networkEnvelope, this), THREAD_ID);
+            ThreadUtils.execute(() -> connectionStatistics.addReceivedMsgMetrics(System.currentTimeMillis() - ts, size), THREAD_ID);
+        }
+        return true;
+    }
+
+    // Called from the reader pool with a frame received by the non-blocking channel
+    private void onFrame(byte[] frame) {
+        if (stopped) {
+            return;
+        }
+        try {
+            long ts = System.currentTimeMillis();
+            // As we do not block a thread per connection we do not throttle by sleeping here, flooding is limited by
+            // the throttle limit rule violation.
+            handleProto(protobuf.NetworkEnvelope.parseFrom(frame), ts);
         } catch (Throwable t) {
+            handleReadException(t);
+        }
+    }
+
+    private void handleReadException(Throwable t) {
+        if (t instanceof InvalidClassException) {
+            log.error(t.getMessage());
+            t.printStackTrace();
+            reportInvalidRequest(RuleViolation.INVALID_CLASS);
+        } else if (t instanceof ProtobufferException || t instanceof NoClassDefFoundError ||
+                t instanceof InvalidProtocolBufferException) {
+            log.error(t.getMessage());
+            reportInvalidRequest(RuleViolation.INVALID_DATA_TYPE);
+        } else {
             handleException(t);
         }
     }
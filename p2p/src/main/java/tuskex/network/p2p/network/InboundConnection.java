@@ -31,4 +31,13 @@ public class InboundConnection extends Connection {
             @Nullable BanFilter banFilter) {
         super(socket, messageListener, connectionListener, null, networkProtoResolver, banFilter);
     }
+
+    InboundConnection(Socket socket,
+            MessageListener messageListener,
+            ConnectionListener connectionListener,
+            NetworkProtoResolver networkProtoResolver,
+            @Nullable BanFilter banFilter,
+            @Nullable NioSelectorPool nioSelectorPool) {
+        super(socket, messageListener, connectionListener, null, networkProtoResolver, banFilter, nioSelectorPool);
+    }
 }
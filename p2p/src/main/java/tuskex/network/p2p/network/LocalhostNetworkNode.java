@@ -41,6 +41,8 @@ public class LocalhostNetworkNode extends NetworkNode {
     private static int simulateTorDelayTorNode = 500;
     private static int simulateTorDelayHiddenService = 500;
 
+    private final boolean useNio;
+
     public static void setSimulateTorDelayTorNode(int simulateTorDelayTorNode) {
         LocalhostNetworkNode.simulateTorDelayTorNode = simulateTorDelayTorNode;
     }
@@ -57,7 +59,16 @@ public class LocalhostNetworkNode extends NetworkNode {
             NetworkProtoResolver networkProtoResolver,
             @Nullable BanFilter banFilter,
             int maxConnections) {
-        super(port, networkProtoResolver, banFilter, maxConnections);
+        this(port, networkProtoResolver, banFilter, maxConnections, false);
+    }
+
+    public LocalhostNetworkNode(int port,
+            NetworkProtoResolver networkProtoResolver,
+            @Nullable BanFilter banFilter,
+            int maxConnections,
+            boolean useNio) {
+        super(port, networkProtoResolver, banFilter, maxConnections, useNio);
+        this.useNio = useNio;
     }
 
     @Override
@@ -74,7 +85,11 @@ public class LocalhostNetworkNode extends NetworkNode {
             // simulate tor HS publishing delay
             UserThread.runAfter(() -> {
                 try {
-                    startServer(new ServerSocket(servicePort));
+                    if (useNio) {
+                        startNioServer(servicePort);
+                    } else {
+                        startServer(new ServerSocket(servicePort));
+                    }
                 } catch (IOException e) {
                     e.printStackTrace();
                     log.error("Exception at startServer: " + e.getMessage());
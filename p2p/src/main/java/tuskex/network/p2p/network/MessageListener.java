@@ -18,10 +18,16 @@
 package tuskex.network.p2p.network;
 
 import tuskex.common.proto.network.NetworkEnvelope;
+import java.util.List;
 
 public interface MessageListener {
     void onMessage(NetworkEnvelope networkEnvelope, Connection connection);
 
+    // Called with the envelopes of a BundleOfEnvelopes. Listeners can override it to process them as batch.
+    default void onMessages(List<NetworkEnvelope> networkEnvelopes, Connection connection) {
+        networkEnvelopes.forEach(networkEnvelope -> onMessage(networkEnvelope, connection));
+    }
+
     default void onMessageSent(NetworkEnvelope networkEnvelope, Connection connection) {
     }
 }
@@ -40,13 +40,18 @@ import javafx.beans.property.ReadOnlyObjectProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import lombok.Getter;
 
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
 import java.io.IOException;
 
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
@@ -69,6 +74,9 @@ import static com.google.common.base.Preconditions.checkNotNull;
 public abstract class NetworkNode implements MessageListener {
     private static final Logger log = LoggerFactory.getLogger(NetworkNode.class);
     private static final int CREATE_SOCKET_TIMEOUT = (int) TimeUnit.SECONDS.toMillis(120);
+    private static final int NIO_SELECTOR_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+    private static final int NIO_READER_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final long NIO_READ_TIMEOUT = TimeUnit.SECONDS.toMillis(240);
 
     final int servicePort;
     private final NetworkProtoResolver networkProtoResolver;
@@ -82,6 +90,11 @@ public abstract class NetworkNode implements MessageListener {
     private final ListeningExecutorService connectionExecutor;
     private final ListeningExecutorService sendMessageExecutor;
     private Server server;
+    // Set if connections use non-blocking channels
+    @Nullable
+    private final NioSelectorPool nioSelectorPool;
+    @Nullable
+    private ServerSocketChannel nioServerSocketChannel;
 
     @Getter
     private volatile boolean isShutDownStarted;
@@ -97,6 +110,19 @@ public abstract class NetworkNode implements MessageListener {
             NetworkProtoResolver networkProtoResolver,
             @Nullable BanFilter banFilter,
             int maxConnections) {
+        this(servicePort, networkProtoResolver, banFilter, maxConnections, false);
+    }
+
+    /**
+     * @param useNio if true the connections use non-blocking channels which are served by a small pool of threads
+     *               instead of a thread per connection. Requires that peers can be reached by a direct TCP connection,
+     *               see {@link #createSocketChannel}.
+     */
+    NetworkNode(int servicePort,
+            NetworkProtoResolver networkProtoResolver,
+            @Nullable BanFilter banFilter,
+            int maxConnections,
+            boolean useNio) {
         this.servicePort = servicePort;
         this.networkProtoResolver = networkProtoResolver;
         this.banFilter = banFilter;
@@ -111,6 +137,13 @@ public abstract class NetworkNode implements MessageListener {
                 maxConnections * 3,
                 30,
                 30);
+        try {
+            nioSelectorPool = useNio ?
+                    new NioSelectorPool("NetworkNode.nio", NIO_SELECTOR_THREADS, NIO_READER_THREADS, NIO_READ_TIMEOUT) :
+                    null;
+        } catch (IOException e) {
+            throw new RuntimeException("Could not create selectors", e);
+        }
     }
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -159,7 +192,9 @@ public abstract class NetworkNode implements MessageListener {
 
                     log.debug("Start create socket to peersNodeAddress {}", peersNodeAddress.getFullAddress());
 
-                    Socket socket = createSocket(peersNodeAddress);
+                    Socket socket = nioSelectorPool != null ?
+                            createSocketChannel(peersNodeAddress).socket() :
+                            createSocket(peersNodeAddress);
                     long duration = System.currentTimeMillis() - startTs;
                     log.info("Socket creation to peersNodeAddress {} took {} ms", peersNodeAddress.getFullAddress(),
                             duration);
@@ -214,7 +249,8 @@ public abstract class NetworkNode implements MessageListener {
                                 connectionListener,
                                 peersNodeAddress,
                                 networkProtoResolver,
-                                banFilter);
+                                banFilter,
+                                nioSelectorPool);
 
                         if (log.isDebugEnabled()) {
                             log.debug("\n\n%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%\n" +
@@ -370,15 +406,21 @@ public abstract class NetworkNode implements MessageListener {
                 server.shutDown();
                 server = null;
             }
+            if (nioServerSocketChannel != null) {
+                try {
+                    nioServerSocketChannel.close();
+                } catch (IOException e) {
+                    log.debug("Exception at closing server channel " + e.getMessage());
+                }
+                nioServerSocketChannel = null;
+            }
 
             Set<Connection> allConnections = getAllConnections();
             int numConnections = allConnections.size();
 
             if (numConnections == 0) {
                 log.info("Shutdown immediately because no connections are open.");
-                if (shutDownCompleteHandler != null) {
-                    shutDownCompleteHandler.run();
-                }
+                onShutDownComplete(shutDownCompleteHandler);
                 return;
             }
 
@@ -386,10 +428,8 @@ public abstract class NetworkNode implements MessageListener {
 
             AtomicInteger shutdownCompleted = new AtomicInteger();
             Timer timeoutHandler = UserThread.runAfter(() -> {
-                if (shutDownCompleteHandler != null) {
-                    log.info("Shutdown completed due timeout");
-                    shutDownCompleteHandler.run();
-                }
+                log.info("Shutdown completed due timeout");
+                onShutDownComplete(shutDownCompleteHandler);
             }, 1500, TimeUnit.MILLISECONDS);
 
             allConnections.forEach(c -> c.shutDown(CloseConnectionReason.APP_SHUT_DOWN,
@@ -401,14 +441,22 @@ public abstract class NetworkNode implements MessageListener {
                             timeoutHandler.stop();
                             connectionExecutor.shutdownNow();
                             sendMessageExecutor.shutdownNow();
-                            if (shutDownCompleteHandler != null) {
-                                shutDownCompleteHandler.run();
-                            }
+                            onShutDownComplete(shutDownCompleteHandler);
                         }
                     }));
         }
     }
 
+    private void onShutDownComplete(@Nullable Runnable shutDownCompleteHandler) {
+        // The selectors are stopped after the connections had the chance to send the CloseConnectionMessage
+        if (nioSelectorPool != null) {
+            nioSelectorPool.shutDown();
+        }
+        if (shutDownCompleteHandler != null) {
+            shutDownCompleteHandler.run();
+        }
+    }
+
     ///////////////////////////////////////////////////////////////////////////////////////////
     // SetupListener
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -428,6 +476,11 @@ public abstract class NetworkNode implements MessageListener {
         messageListeners.stream().forEach(e -> e.onMessage(networkEnvelope, connection));
     }
 
+    @Override
+    public void onMessages(List<NetworkEnvelope> networkEnvelopes, Connection connection) {
+        messageListeners.forEach(e -> e.onMessages(networkEnvelopes, connection));
+    }
+
     ///////////////////////////////////////////////////////////////////////////////////////////
     // Listeners
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -464,7 +517,33 @@ public abstract class NetworkNode implements MessageListener {
     ///////////////////////////////////////////////////////////////////////////////////////////
 
     void startServer(ServerSocket serverSocket) {
-        ConnectionListener connectionListener = new ConnectionListener() {
+        server = new Server(serverSocket,
+                NetworkNode.this,
+                getInboundConnectionListener(),
+                networkProtoResolver,
+                banFilter);
+        server.start();
+    }
+
+    void startNioServer(int port) throws IOException {
+        checkNotNull(nioSelectorPool, "NetworkNode does not use non-blocking channels");
+        ConnectionListener connectionListener = getInboundConnectionListener();
+        nioServerSocketChannel = ServerSocketChannel.open();
+        nioServerSocketChannel.bind(new InetSocketAddress(port));
+        nioSelectorPool.listen(nioServerSocketChannel, socketChannel -> {
+            log.debug("Accepted new client on localPort/port {}/{}",
+                    socketChannel.socket().getLocalPort(), socketChannel.socket().getPort());
+            new InboundConnection(socketChannel.socket(),
+                    NetworkNode.this,
+                    connectionListener,
+                    networkProtoResolver,
+                    banFilter,
+                    nioSelectorPool);
+        });
+    }
+
+    private ConnectionListener getInboundConnectionListener() {
+        return new ConnectionListener() {
             @Override
             public void onConnection(Connection connection) {
                 if (!connection.isStopped()) {
@@ -483,12 +562,6 @@ public abstract class NetworkNode implements MessageListener {
                 connectionListeners.stream().forEach(e -> e.onDisconnect(closeConnectionReason, connection));
             }
         };
-        server = new Server(serverSocket,
-                NetworkNode.this,
-                connectionListener,
-                networkProtoResolver,
-                banFilter);
-        server.start();
     }
 
     private Optional<OutboundConnection> lookupOutBoundConnection(NodeAddress peersNodeAddress) {
@@ -525,6 +598,19 @@ public abstract class NetworkNode implements MessageListener {
 
     protected abstract Socket createSocket(NodeAddress peersNodeAddress) throws IOException;
 
+    // Used instead of createSocket if the node uses non-blocking channels
+    protected SocketChannel createSocketChannel(NodeAddress peersNodeAddress) throws IOException {
+        SocketChannel socketChannel = SocketChannel.open();
+        try {
+            socketChannel.socket().connect(new InetSocketAddress(peersNodeAddress.getHostName(), peersNodeAddress.getPort()),
+                    CREATE_SOCKET_TIMEOUT);
+        } catch (IOException e) {
+            socketChannel.close();
+            throw e;
+        }
+        return socketChannel;
+    }
+
     @Nullable
     public NodeAddress getNodeAddress() {
         return nodeAddressProperty.get();
@@ -0,0 +1,245 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.network.p2p.network;
+
+import com.google.protobuf.CodedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Non-blocking socket channel of a connection. Reading and writing is done by the selector thread the channel is
+ * registered at. Received data is split into length-delimited frames which are passed to the handler.
+ *
+ * Outbound frames are queued and written when the channel is writable. Like the blocking connection we delay a frame
+ * if it follows the previous one within the throttle trigger, but the selector thread keeps serving other channels
+ * instead of sleeping.
+ */
+@Slf4j
+class NioChannel {
+
+    interface Handler {
+        // Called from the selector thread
+        void onFrame(byte[] frame);
+
+        void onException(Throwable throwable);
+    }
+
+    static final long FLUSHED = -1;
+    static final long WAITING_FOR_WRITE = 0;
+
+    private final SocketChannel socketChannel;
+    private final Handler handler;
+    private final NioSelectorPool.SelectorThread selectorThread;
+    private final FrameDecoder frameDecoder;
+    private final int sendThrottleTrigger;
+    private final int sendThrottleDelay;
+    private final Queue<ByteBuffer> sendQueue = new ConcurrentLinkedQueue<>();
+
+    // accessed only from the selector thread
+    private SelectionKey selectionKey;
+    private ByteBuffer currentFrame;
+    private long lastSendTime;
+    private long sendReadyTime;
+    private long lastReadTime = System.currentTimeMillis();
+    private volatile boolean closed;
+
+    NioChannel(SocketChannel socketChannel,
+               Handler handler,
+               NioSelectorPool.SelectorThread selectorThread,
+               int maxFrameSize,
+               int sendThrottleTrigger,
+               int sendThrottleDelay) {
+        this.socketChannel = socketChannel;
+        this.handler = handler;
+        this.selectorThread = selectorThread;
+        this.frameDecoder = new FrameDecoder(maxFrameSize);
+        this.sendThrottleTrigger = sendThrottleTrigger;
+        this.sendThrottleDelay = sendThrottleDelay;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    static ByteBuffer toFrame(protobuf.NetworkEnvelope proto) throws IOException {
+        int size = proto.getSerializedSize();
+        byte[] frame = new byte[CodedOutputStream.computeUInt32SizeNoTag(size) + size];
+        CodedOutputStream outputStream = CodedOutputStream.newInstance(frame);
+        outputStream.writeUInt32NoTag(size);
+        proto.writeTo(outputStream);
+        outputStream.checkNoSpaceLeft();
+        return ByteBuffer.wrap(frame);
+    }
+
+    void send(ByteBuffer frame) {
+        if (closed) return;
+        sendQueue.add(frame);
+        selectorThread.requestFlush(this);
+    }
+
+    void close() {
+        if (closed) return;
+        closed = true;
+        sendQueue.clear();
+        selectorThread.execute(() -> {
+            if (selectionKey != null) selectionKey.cancel();
+        });
+        try {
+            socketChannel.close();
+        } catch (IOException e) {
+            log.debug("Exception at closing channel {}", e.toString());
+        }
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Selector thread
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    void setSelectionKey(SelectionKey selectionKey) {
+        this.selectionKey = selectionKey;
+    }
+
+    void read(ByteBuffer readBuffer) {
+        try {
+            readBuffer.clear();
+            int numBytes = socketChannel.read(readBuffer);
+            if (numBytes < 0) throw new EOFException("Channel closed by peer");
+            lastReadTime = System.currentTimeMillis();
+            readBuffer.flip();
+            frameDecoder.decode(readBuffer, handler::onFrame);
+        } catch (Throwable t) {
+            fail(t);
+        }
+    }
+
+    /**
+     * Writes the queued frames as far as the channel accepts them and the throttle permits.
+     *
+     * @param now the current time in milliseconds
+     * @return {@link #FLUSHED}, {@link #WAITING_FOR_WRITE} or the time when the next frame can be sent
+     */
+    long flush(long now) {
+        if (closed) return FLUSHED;
+        if (selectionKey == null) return now + 1; // not registered yet
+        try {
+            while (true) {
+                if (currentFrame == null) {
+                    if (sendQueue.isEmpty()) {
+                        selectionKey.interestOps(SelectionKey.OP_READ);
+                        return FLUSHED;
+                    }
+                    if (sendReadyTime == 0) {
+                        sendReadyTime = now - lastSendTime < sendThrottleTrigger ? now + sendThrottleDelay : now;
+                        lastSendTime = now;
+                    }
+                    if (now < sendReadyTime) {
+                        selectionKey.interestOps(SelectionKey.OP_READ);
+                        return sendReadyTime;
+                    }
+                    sendReadyTime = 0;
+                    currentFrame = sendQueue.poll();
+                }
+                socketChannel.write(currentFrame);
+                if (currentFrame.hasRemaining()) {
+                    selectionKey.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return WAITING_FOR_WRITE;
+                }
+                currentFrame = null;
+            }
+        } catch (Throwable t) {
+            fail(t);
+            return FLUSHED;
+        }
+    }
+
+    void checkReadTimeout(long now, long readTimeout) {
+        if (!closed && now - lastReadTime > readTimeout) {
+            fail(new SocketTimeoutException("No data received for " + readTimeout + " ms"));
+        }
+    }
+
+    private void fail(Throwable throwable) {
+        if (closed) return;
+        close();
+        handler.onException(throwable);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // FrameDecoder
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // Splits a stream into the frames written by MessageLite.writeDelimitedTo: a varint length followed by the data.
+    static class FrameDecoder {
+        private final int maxFrameSize;
+
+        private int length;
+        private int shift;
+        private byte[] frame;
+        private int position;
+
+        FrameDecoder(int maxFrameSize) {
+            this.maxFrameSize = maxFrameSize;
+        }
+
+        void decode(ByteBuffer buffer, Consumer<byte[]> frameConsumer) throws StreamCorruptedException {
+            while (buffer.hasRemaining()) {
+                if (frame == null) {
+                    byte b = buffer.get();
+                    length |= (b & 0x7F) << shift;
+                    if ((b & 0x80) != 0) {
+                        shift += 7;
+                        if (shift > 28) throw new StreamCorruptedException("Malformed frame length");
+                        continue;
+                    }
+                    if (length < 0 || length > maxFrameSize)
+                        throw new StreamCorruptedException("Frame size " + length + " exceeds limit of " + maxFrameSize);
+                    frame = new byte[length];
+                    position = 0;
+                    length = 0;
+                    shift = 0;
+                } else {
+                    int numBytes = Math.min(buffer.remaining(), frame.length - position);
+                    buffer.get(frame, position, numBytes);
+                    position += numBytes;
+                }
+                // checked after the length too, so an empty frame is passed on even if it ends the buffer
+                if (position == frame.length) {
+                    byte[] completeFrame = frame;
+                    frame = null;
+                    frameConsumer.accept(completeFrame);
+                }
+            }
+        }
+    }
+}
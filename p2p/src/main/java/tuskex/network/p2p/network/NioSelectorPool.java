@@ -0,0 +1,242 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.network.p2p.network;
+
+import com.google.common.util.concurrent.ListeningExecutorService;
+import tuskex.common.KeyedSerialExecutor;
+import tuskex.common.util.Utilities;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Small pool of selector threads serving the non-blocking channels of all connections of a node, so a connection
+ * does not hold a thread while it is idle. Each selector thread reads into its own direct buffer which is reused for
+ * all its channels.
+ *
+ * Decoded frames are handled on a bounded reader pool. Frames of the same connection are handled one after another
+ * in the order they were received.
+ */
+@Slf4j
+class NioSelectorPool {
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final long READ_TIMEOUT_CHECK_INTERVAL_MS = TimeUnit.SECONDS.toMillis(10);
+
+    private final List<SelectorThread> selectorThreads = new ArrayList<>();
+    private final AtomicInteger nextSelectorThread = new AtomicInteger();
+    private final ListeningExecutorService readerPool;
+    private final KeyedSerialExecutor readerExecutor;
+    private final long readTimeout;
+    private volatile boolean shutDownStarted;
+
+    NioSelectorPool(String name, int numSelectorThreads, int numReaderThreads, long readTimeout) throws IOException {
+        this.readTimeout = readTimeout;
+        for (int i = 0; i < numSelectorThreads; i++) {
+            selectorThreads.add(new SelectorThread(name + "-selector-" + i));
+        }
+        readerPool = Utilities.getListeningExecutorService(name + "-reader", numReaderThreads, numReaderThreads, 60,
+                new LinkedBlockingQueue<>());
+        readerExecutor = new KeyedSerialExecutor(readerPool);
+        selectorThreads.forEach(Thread::start);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    NioChannel register(SocketChannel socketChannel,
+                        NioChannel.Handler handler,
+                        int maxFrameSize,
+                        int sendThrottleTrigger,
+                        int sendThrottleDelay) throws IOException {
+        socketChannel.configureBlocking(false);
+        SelectorThread selectorThread = nextSelectorThread();
+        NioChannel nioChannel = new NioChannel(socketChannel, handler, selectorThread, maxFrameSize,
+                sendThrottleTrigger, sendThrottleDelay);
+        selectorThread.execute(() -> {
+            try {
+                nioChannel.setSelectionKey(socketChannel.register(selectorThread.selector, SelectionKey.OP_READ, nioChannel));
+            } catch (IOException e) {
+                nioChannel.close();
+                handler.onException(e);
+            }
+        });
+        return nioChannel;
+    }
+
+    /**
+     * Accept connections of a server channel.
+     *
+     * @param serverSocketChannel the bound server channel
+     * @param acceptHandler called from the selector thread with each accepted channel
+     */
+    void listen(ServerSocketChannel serverSocketChannel, Consumer<SocketChannel> acceptHandler) throws IOException {
+        serverSocketChannel.configureBlocking(false);
+        SelectorThread selectorThread = nextSelectorThread();
+        selectorThread.execute(() -> {
+            try {
+                serverSocketChannel.register(selectorThread.selector, SelectionKey.OP_ACCEPT, acceptHandler);
+            } catch (IOException e) {
+                log.error("Could not register server channel", e);
+            }
+        });
+    }
+
+    // Runs the handling of a frame in the reader pool, in order with the other frames of the connection
+    void executeRead(Runnable command, String connectionUid) {
+        if (!shutDownStarted) readerExecutor.execute(command, connectionUid);
+    }
+
+    void shutDown() {
+        shutDownStarted = true;
+        selectorThreads.forEach(selectorThread -> selectorThread.selector.wakeup());
+        readerPool.shutdownNow();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private SelectorThread nextSelectorThread() {
+        return selectorThreads.get(Math.floorMod(nextSelectorThread.getAndIncrement(), selectorThreads.size()));
+    }
+
+    class SelectorThread extends Thread {
+        private final Selector selector;
+        private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final Set<NioChannel> channelsToFlush = ConcurrentHashMap.newKeySet();
+        private long lastReadTimeoutCheck = System.currentTimeMillis();
+
+        private SelectorThread(String name) throws IOException {
+            super(name);
+            setDaemon(true);
+            selector = Selector.open();
+        }
+
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        void requestFlush(NioChannel nioChannel) {
+            channelsToFlush.add(nioChannel);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (!shutDownStarted) {
+                try {
+                    runTasks();
+                    long now = System.currentTimeMillis();
+                    long nextDeadline = Math.min(flush(now), lastReadTimeoutCheck + READ_TIMEOUT_CHECK_INTERVAL_MS);
+                    selector.select(Math.max(1, nextDeadline - now));
+                    handleSelectedKeys();
+                    maybeCheckReadTimeouts();
+                } catch (Throwable t) {
+                    log.error("Unexpected exception at selector thread {}", getName(), t);
+                }
+            }
+            closeChannels();
+        }
+
+        private void runTasks() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+
+        // Returns the earliest time a throttled frame can be sent or Long.MAX_VALUE
+        private long flush(long now) {
+            long nextDeadline = Long.MAX_VALUE;
+            Iterator<NioChannel> iterator = channelsToFlush.iterator();
+            while (iterator.hasNext()) {
+                NioChannel nioChannel = iterator.next();
+                long result = nioChannel.flush(now);
+                if (result == NioChannel.FLUSHED || result == NioChannel.WAITING_FOR_WRITE) {
+                    // Channels waiting for write get added again when they are writable
+                    iterator.remove();
+                } else {
+                    nextDeadline = Math.min(nextDeadline, result);
+                }
+            }
+            return nextDeadline;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void handleSelectedKeys() throws IOException {
+            Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+            while (iterator.hasNext()) {
+                SelectionKey key = iterator.next();
+                iterator.remove();
+                if (!key.isValid()) continue;
+                if (key.isAcceptable()) {
+                    SocketChannel socketChannel = ((ServerSocketChannel) key.channel()).accept();
+                    if (socketChannel != null) ((Consumer<SocketChannel>) key.attachment()).accept(socketChannel);
+                    continue;
+                }
+                NioChannel nioChannel = (NioChannel) key.attachment();
+                if (key.isReadable()) nioChannel.read(readBuffer);
+                if (key.isValid() && key.isWritable()) channelsToFlush.add(nioChannel);
+            }
+        }
+
+        private void maybeCheckReadTimeouts() {
+            long now = System.currentTimeMillis();
+            if (now - lastReadTimeoutCheck < READ_TIMEOUT_CHECK_INTERVAL_MS) return;
+            lastReadTimeoutCheck = now;
+            selector.keys().stream()
+                    .filter(key -> key.attachment() instanceof NioChannel)
+                    .map(key -> (NioChannel) key.attachment())
+                    .forEach(nioChannel -> nioChannel.checkReadTimeout(now, readTimeout));
+        }
+
+        private void closeChannels() {
+            selector.keys().forEach(key -> {
+                try {
+                    key.channel().close();
+                } catch (IOException ignore) {
+                }
+            });
+            try {
+                selector.close();
+            } catch (IOException e) {
+                log.debug("Exception at closing selector {}", e.toString());
+            }
+        }
+    }
+}
@@ -32,4 +32,14 @@ public class OutboundConnection extends Connection {
                               @Nullable BanFilter banFilter) {
         super(socket, messageListener, connectionListener, peersNodeAddress, networkProtoResolver, banFilter);
     }
+
+    OutboundConnection(Socket socket,
+                       MessageListener messageListener,
+                       ConnectionListener connectionListener,
+                       NodeAddress peersNodeAddress,
+                       NetworkProtoResolver networkProtoResolver,
+                       @Nullable BanFilter banFilter,
+                       @Nullable NioSelectorPool nioSelectorPool) {
+        super(socket, messageListener, connectionListener, peersNodeAddress, networkProtoResolver, banFilter, nioSelectorPool);
+    }
 }
@@ -18,6 +18,7 @@
 package tuskex.network.p2p.network;
 
 import tuskex.common.UserThread;
+import tuskex.common.metrics.Metrics;
 import tuskex.common.proto.network.NetworkEnvelope;
 import tuskex.common.util.Utilities;
 import javafx.beans.property.DoubleProperty;
@@ -152,6 +153,7 @@ public class Statistic {
     }
 
     void addSentBytes(int value) {
+        Metrics.counter("tuskex_p2p_sent_bytes_total", "Bytes sent to peers").inc(value);
         UserThread.execute(() -> {
             sentBytes.set(sentBytes.get() + value);
             totalSentBytes.set(totalSentBytes.get() + value);
@@ -159,6 +161,7 @@ public class Statistic {
     }
 
     void addReceivedBytes(int value) {
+        Metrics.counter("tuskex_p2p_received_bytes_total", "Bytes received from peers").inc(value);
         UserThread.execute(() -> {
             receivedBytes.set(receivedBytes.get() + value);
             totalReceivedBytes.set(totalReceivedBytes.get() + value);
@@ -168,6 +171,7 @@ public class Statistic {
     // TODO would need msg inspection to get useful information...
     void addReceivedMessage(NetworkEnvelope networkEnvelope) {
         String messageClassName = networkEnvelope.getClass().getSimpleName();
+        Metrics.counter("tuskex_p2p_received_messages_total", "Messages received from peers", "type", messageClassName).inc();
         int counter = 1;
         if (receivedMessages.containsKey(messageClassName)) {
             counter = receivedMessages.get(messageClassName) + 1;
@@ -183,6 +187,7 @@ public class Statistic {
 
     void addSentMessage(NetworkEnvelope networkEnvelope) {
         String messageClassName = networkEnvelope.getClass().getSimpleName();
+        Metrics.counter("tuskex_p2p_sent_messages_total", "Messages sent to peers", "type", messageClassName).inc();
         int counter = 1;
         if (sentMessages.containsKey(messageClassName)) {
             counter = sentMessages.get(messageClassName) + 1;
@@ -23,11 +23,14 @@ import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
 import tuskex.common.Timer;
 import tuskex.common.UserThread;
+import tuskex.common.proto.network.NetworkEnvelope;
 import tuskex.network.p2p.network.CloseConnectionReason;
 import tuskex.network.p2p.network.Connection;
 import tuskex.network.p2p.network.NetworkNode;
 import tuskex.network.p2p.peers.getdata.messages.GetDataRequest;
 import tuskex.network.p2p.peers.getdata.messages.GetDataResponse;
+import tuskex.network.p2p.peers.getdata.messages.GetDataSketchRequest;
+import tuskex.network.p2p.peers.getdata.messages.GetDataSketchResponse;
 import tuskex.network.p2p.storage.P2PDataStorage;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
@@ -86,12 +89,26 @@ public class GetDataRequestHandler {
 
         AtomicBoolean wasPersistableNetworkPayloadsTruncated = new AtomicBoolean(false);
         AtomicBoolean wasProtectedStorageEntriesTruncated = new AtomicBoolean(false);
-        GetDataResponse getDataResponse = dataStorage.buildGetDataResponse(
-                getDataRequest,
-                MAX_ENTRIES,
-                wasPersistableNetworkPayloadsTruncated,
-                wasProtectedStorageEntriesTruncated,
-                connection.getCapabilities());
+        NetworkEnvelope response;
+        GetDataResponse getDataResponse;
+        if (getDataRequest instanceof GetDataSketchRequest) {
+            GetDataSketchResponse getDataSketchResponse = dataStorage.buildGetDataSketchResponse(
+                    (GetDataSketchRequest) getDataRequest,
+                    MAX_ENTRIES,
+                    wasPersistableNetworkPayloadsTruncated,
+                    wasProtectedStorageEntriesTruncated,
+                    connection.getCapabilities());
+            response = getDataSketchResponse;
+            getDataResponse = getDataSketchResponse.getGetDataResponse();
+        } else {
+            getDataResponse = dataStorage.buildGetDataResponse(
+                    getDataRequest,
+                    MAX_ENTRIES,
+                    wasPersistableNetworkPayloadsTruncated,
+                    wasProtectedStorageEntriesTruncated,
+                    connection.getCapabilities());
+            response = getDataResponse;
+        }
 
         if (wasPersistableNetworkPayloadsTruncated.get()) {
             log.info("The getDataResponse for peer {} got truncated.", connectionInfo);
@@ -101,10 +118,14 @@ public class GetDataRequestHandler {
             log.info("The getDataResponse for peer {} got truncated.", connectionInfo);
         }
 
-        log.info("The getDataResponse to peer with {} contains {} ProtectedStorageEntries and {} PersistableNetworkPayloads",
-                connectionInfo,
-                getDataResponse.getDataSet().size(),
-                getDataResponse.getPersistableNetworkPayloadSet().size());
+        if (getDataResponse != null) {
+            log.info("The getDataResponse to peer with {} contains {} ProtectedStorageEntries and {} PersistableNetworkPayloads",
+                    connectionInfo,
+                    getDataResponse.getDataSet().size(),
+                    getDataResponse.getPersistableNetworkPayloadSet().size());
+        } else {
+            log.info("We could not decode the sketch of peer with {}. We send a response without data.", connectionInfo);
+        }
 
         if (timeoutTimer == null) {
             timeoutTimer = UserThread.runAfter(() -> {  // setup before sending to avoid race conditions
@@ -115,14 +136,14 @@ public class GetDataRequestHandler {
                     TIMEOUT, TimeUnit.SECONDS);
         }
 
-        SettableFuture<Connection> future = networkNode.sendMessage(connection, getDataResponse);
+        SettableFuture<Connection> future = networkNode.sendMessage(connection, response);
         Futures.addCallback(future, new FutureCallback<>() {
             @Override
             public void onSuccess(Connection connection) {
                 if (!stopped) {
                     log.trace("Send DataResponse to {} succeeded. getDataResponse={}",
-                            connection.getPeersNodeAddressOptional(), getDataResponse);
-                    listener.onComplete(getDataResponse.toProtoNetworkEnvelope().getSerializedSize());
+                            connection.getPeersNodeAddressOptional(), response);
+                    listener.onComplete(response.toProtoNetworkEnvelope().getSerializedSize());
                     cleanup();
                 } else {
                     log.trace("We have stopped already. We ignore that networkNode.sendMessage.onSuccess call.");
@@ -133,7 +154,7 @@ public class GetDataRequestHandler {
             public void onFailure(@NotNull Throwable throwable) {
                 if (!stopped) {
                     String errorMessage = "Sending getDataResponse to " + connection +
-                            " failed. That is expected if the peer is offline. getDataResponse=" + getDataResponse + "." +
+                            " failed. That is expected if the peer is offline. getDataResponse=" + response + "." +
                             "Exception: " + throwable.getMessage();
                     handleFault(errorMessage, CloseConnectionReason.SEND_MSG_FAILURE, connection);
                 } else {
@@ -0,0 +1,289 @@
+/*
+ * This file is part of Tuskex.
+ *
+ * Tuskex is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Tuskex is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Tuskex. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.network.p2p.peers.getdata;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.protobuf.ByteString;
+import tuskex.common.proto.network.NetworkPayload;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import lombok.EqualsAndHashCode;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Invertible Bloom lookup table (IBLT) over payload hashes. It is used as compact sketch of the set of hashes a node
+ * knows. Subtracting the sketch of a peer from our own sketch and decoding the result gives the symmetric difference
+ * of both sets, as long as the difference is small compared to the number of cells.
+ *
+ * Each key is added to one cell in each of NUM_HASH_FUNCTIONS partitions. A cell holds the number of keys, the XOR
+ * of the keys and the XOR of the key checksums. Keys can have up to 32 bytes, so they are stored with a length prefix.
+ */
+@Slf4j
+@EqualsAndHashCode
+public final class InvertibleBloomLookupTable implements NetworkPayload {
+    static final int NUM_HASH_FUNCTIONS = 3;
+    public static final int MAX_KEY_LENGTH = 32;
+    // Protects against malicious peers sending huge tables
+    static final int MAX_NUM_CELLS = 60_000;
+    private static final int CELL_KEY_LENGTH = MAX_KEY_LENGTH + 1;
+    private static final HashFunction CHECKSUM_FUNCTION = Hashing.murmur3_128(0x5f3759df);
+    private static final HashFunction[] INDEX_FUNCTIONS = {
+            Hashing.murmur3_32_fixed(1),
+            Hashing.murmur3_32_fixed(2),
+            Hashing.murmur3_32_fixed(3)
+    };
+
+    @Value
+    public static class DecodeResult {
+        // Keys contained in the minuend but not in the subtrahend
+        List<byte[]> localOnlyKeys;
+        // Keys contained in the subtrahend but not in the minuend
+        List<byte[]> remoteOnlyKeys;
+    }
+
+    private final int[] counts;
+    private final byte[][] keySums;
+    private final long[] hashSums;
+
+    public InvertibleBloomLookupTable(int numCells) {
+        // We round up to a multiple of NUM_HASH_FUNCTIONS so all partitions have the same size
+        this(new int[roundUpNumCells(numCells)],
+                new byte[roundUpNumCells(numCells)][CELL_KEY_LENGTH],
+                new long[roundUpNumCells(numCells)]);
+    }
+
+    private InvertibleBloomLookupTable(int[] counts, byte[][] keySums, long[] hashSums) {
+        this.counts = counts;
+        this.keySums = keySums;
+        this.hashSums = hashSums;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // PROTO BUFFER
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public protobuf.InvertibleBloomLookupTable toProtoMessage() {
+        return protobuf.InvertibleBloomLookupTable.newBuilder()
+                .addAllCounts(Arrays.stream(counts).boxed().collect(Collectors.toList()))
+                .addAllKeySums(Arrays.stream(keySums).map(ByteString::copyFrom).collect(Collectors.toList()))
+                .addAllHashSums(Arrays.stream(hashSums).boxed().collect(Collectors.toList()))
+                .build();
+    }
+
+    public static InvertibleBloomLookupTable fromProto(protobuf.InvertibleBloomLookupTable proto) {
+        int numCells = proto.getCountsCount();
+        if (numCells == 0 ||
+                numCells > MAX_NUM_CELLS ||
+                numCells % NUM_HASH_FUNCTIONS != 0 ||
+                proto.getKeySumsCount() != numCells ||
+                proto.getHashSumsCount() != numCells) {
+            throw new IllegalArgumentException("Invalid InvertibleBloomLookupTable with " + numCells + " cells");
+        }
+
+        int[] counts = new int[numCells];
+        byte[][] keySums = new byte[numCells][];
+        long[] hashSums = new long[numCells];
+        for (int i = 0; i < numCells; i++) {
+            counts[i] = proto.getCounts(i);
+            keySums[i] = proto.getKeySums(i).toByteArray();
+            if (keySums[i].length != CELL_KEY_LENGTH) {
+                throw new IllegalArgumentException("Invalid key sum length " + keySums[i].length);
+            }
+            hashSums[i] = proto.getHashSums(i);
+        }
+        return new InvertibleBloomLookupTable(counts, keySums, hashSums);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public int getNumCells() {
+        return counts.length;
+    }
+
+    public void insert(byte[] key) {
+        update(key, 1);
+    }
+
+    public void delete(byte[] key) {
+        update(key, -1);
+    }
+
+    /**
+     * Returns a new table representing the difference of this table and the given one. Both need to have the same
+     * number of cells.
+     */
+    public InvertibleBloomLookupTable subtract(InvertibleBloomLookupTable other) {
+        if (other.getNumCells() != getNumCells()) {
+            throw new IllegalArgumentException("Tables with different number of cells cannot be subtracted. " +
+                    "numCells=" + getNumCells() + ", other numCells=" + other.getNumCells());
+        }
+
+        InvertibleBloomLookupTable result = copy();
+        for (int i = 0; i < counts.length; i++) {
+            result.counts[i] -= other.counts[i];
+            xor(result.keySums[i], other.keySums[i]);
+            result.hashSums[i] ^= other.hashSums[i];
+        }
+        return result;
+    }
+
+    /**
+     * Lists the keys of a table created by subtract. Returns empty if the difference was too large to be decoded.
+     * The table itself is not modified.
+     */
+    public Optional<DecodeResult> decode() {
+        InvertibleBloomLookupTable table = copy();
+        List<byte[]> localOnlyKeys = new ArrayList<>();
+        List<byte[]> remoteOnlyKeys = new ArrayList<>();
+
+        Deque<Integer> candidates = new ArrayDeque<>();
+        for (int i = 0; i < counts.length; i++) {
+            candidates.add(i);
+        }
+        // Each decoded key empties its pure cell, so a decodable table cannot contain more keys than cells. We stop
+        // there to not loop forever at manipulated tables.
+        int maxNumKeys = counts.length;
+        while (!candidates.isEmpty() && localOnlyKeys.size() + remoteOnlyKeys.size() < maxNumKeys) {
+            int index = candidates.poll();
+            Optional<byte[]> pureKey = table.getPureKey(index);
+            if (pureKey.isEmpty()) {
+                continue;
+            }
+
+            byte[] key = pureKey.get();
+            int count = table.counts[index];
+            if (count == 1) {
+                localOnlyKeys.add(key);
+            } else {
+                remoteOnlyKeys.add(key);
+            }
+            // Removing the key from all its cells might turn other cells pure
+            for (int cellIndex : getCellIndices(key, counts.length)) {
+                table.toggle(cellIndex, key, -count);
+                candidates.add(cellIndex);
+            }
+        }
+
+        if (!table.isEmpty()) {
+            log.info("Decoding of InvertibleBloomLookupTable with {} cells failed after {} keys",
+                    counts.length, localOnlyKeys.size() + remoteOnlyKeys.size());
+            return Optional.empty();
+        }
+        return Optional.of(new DecodeResult(localOnlyKeys, remoteOnlyKeys));
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void update(byte[] key, int delta) {
+        if (key.length == 0 || key.length > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Invalid key length " + key.length);
+        }
+        for (int cellIndex : getCellIndices(key, counts.length)) {
+            toggle(cellIndex, key, delta);
+        }
+    }
+
+    private void toggle(int cellIndex, byte[] key, int delta) {
+        counts[cellIndex] += delta;
+        xor(keySums[cellIndex], toCellKey(key));
+        hashSums[cellIndex] ^= checksum(key);
+    }
+
+    private Optional<byte[]> getPureKey(int cellIndex) {
+        if (counts[cellIndex] != 1 && counts[cellIndex] != -1) {
+            return Optional.empty();
+        }
+        byte[] cellKey = keySums[cellIndex];
+        int keyLength = cellKey[0];
+        if (keyLength <= 0 || keyLength > MAX_KEY_LENGTH) {
+            return Optional.empty();
+        }
+        byte[] key = Arrays.copyOfRange(cellKey, 1, 1 + keyLength);
+        return checksum(key) == hashSums[cellIndex] ? Optional.of(key) : Optional.empty();
+    }
+
+    private boolean isEmpty() {
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0 || hashSums[i] != 0) {
+                return false;
+            }
+            for (byte b : keySums[i]) {
+                if (b != 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private InvertibleBloomLookupTable copy() {
+        byte[][] keySumsCopy = new byte[keySums.length][];
+        for (int i = 0; i < keySums.length; i++) {
+            keySumsCopy[i] = keySums[i].clone();
+        }
+        return new InvertibleBloomLookupTable(counts.clone(), keySumsCopy, hashSums.clone());
+    }
+
+    // We use one partition of the cells per hash function so a key never maps twice to the same cell
+    private static int[] getCellIndices(byte[] key, int numCells) {
+        int partitionSize = numCells / NUM_HASH_FUNCTIONS;
+        int[] indices = new int[NUM_HASH_FUNCTIONS];
+        for (int i = 0; i < NUM_HASH_FUNCTIONS; i++) {
+            indices[i] = i * partitionSize + Math.floorMod(INDEX_FUNCTIONS[i].hashBytes(key).asInt(), partitionSize);
+        }
+        return indices;
+    }
+
+    private static long checksum(byte[] key) {
+        return CHECKSUM_FUNCTION.hashBytes(key).asLong();
+    }
+
+    private static byte[] toCellKey(byte[] key) {
+        byte[] cellKey = new byte[CELL_KEY_LENGTH];
+        cellKey[0] = (byte) key.length;
+        System.arraycopy(key, 0, cellKey, 1, key.length);
+        return cellKey;
+    }
+
+    private static void xor(byte[] target, byte[] source) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] ^= source[i];
+        }
+    }
+
+    private static int roundUpNumCells(int numCells) {
+        int minNumCells = Math.max(numCells, NUM_HASH_FUNCTIONS);
+        return Math.min(MAX_NUM_CELLS,
+                (minNumCells + NUM_HASH_FUNCTIONS - 1) / NUM_HASH_FUNCTIONS * NUM_HASH_FUNCTIONS);
+    }
+}
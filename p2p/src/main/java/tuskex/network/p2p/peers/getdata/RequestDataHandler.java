@@ -23,6 +23,7 @@ import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
 import tuskex.common.Timer;
 import tuskex.common.UserThread;
+import tuskex.common.app.Capability;
 import tuskex.common.proto.network.NetworkEnvelope;
 import tuskex.common.proto.network.NetworkPayload;
 import tuskex.common.util.Tuple2;
@@ -35,6 +36,7 @@ import tuskex.network.p2p.network.NetworkNode;
 import tuskex.network.p2p.peers.PeerManager;
 import tuskex.network.p2p.peers.getdata.messages.GetDataRequest;
 import tuskex.network.p2p.peers.getdata.messages.GetDataResponse;
+import tuskex.network.p2p.peers.getdata.messages.GetDataSketchResponse;
 import tuskex.network.p2p.storage.P2PDataStorage;
 import tuskex.network.p2p.storage.payload.PersistableNetworkPayload;
 import tuskex.network.p2p.storage.payload.ProtectedStorageEntry;
@@ -87,6 +89,9 @@ class RequestDataHandler implements MessageListener {
     private Timer timeoutTimer;
     private final int nonce = new Random().nextInt();
     private boolean stopped;
+    private boolean isPreliminaryDataRequest;
+    // Set if the peer could not decode our sketch. We fall back to a request with the excluded keys in that case.
+    private boolean sketchDecodeFailed;
 
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -114,10 +119,16 @@ class RequestDataHandler implements MessageListener {
 
     void requestData(NodeAddress nodeAddress, boolean isPreliminaryDataRequest) {
         peersNodeAddress = nodeAddress;
+        this.isPreliminaryDataRequest = isPreliminaryDataRequest;
         if (!stopped) {
             GetDataRequest getDataRequest;
 
-            if (isPreliminaryDataRequest)
+            boolean useSketch = peerManager.peerHasCapability(nodeAddress, Capability.GET_DATA_SKETCH) && !sketchDecodeFailed;
+            if (useSketch && isPreliminaryDataRequest)
+                getDataRequest = dataStorage.buildPreliminaryGetDataSketchRequest(nonce);
+            else if (useSketch)
+                getDataRequest = dataStorage.buildGetUpdatedDataSketchRequest(networkNode.getNodeAddress(), nonce);
+            else if (isPreliminaryDataRequest)
                 getDataRequest = dataStorage.buildPreliminaryGetDataRequest(nonce);
             else
                 getDataRequest = dataStorage.buildGetUpdatedDataRequest(networkNode.getNodeAddress(), nonce);
@@ -179,33 +190,17 @@ class RequestDataHandler implements MessageListener {
 
     @Override
     public void onMessage(NetworkEnvelope networkEnvelope, Connection connection) {
-        if (networkEnvelope instanceof GetDataResponse) {
+        if (networkEnvelope instanceof GetDataResponse || networkEnvelope instanceof GetDataSketchResponse) {
             if (connection.getPeersNodeAddressOptional().isPresent() && connection.getPeersNodeAddressOptional().get().equals(peersNodeAddress)) {
                 if (!stopped) {
                     long ts1 = System.currentTimeMillis();
-                    GetDataResponse getDataResponse = (GetDataResponse) networkEnvelope;
-                    logContents(getDataResponse);
-                    if (getDataResponse.getRequestNonce() == nonce) {
-                        stopTimeoutTimer();
-                        if (!connection.getPeersNodeAddressOptional().isPresent()) {
-                            log.error("RequestDataHandler.onMessage: connection.getPeersNodeAddressOptional() must be present " +
-                                    "at that moment");
-                            return;
-                        }
-
-                        dataStorage.processGetDataResponse(getDataResponse,
-                                connection.getPeersNodeAddressOptional().get());
-
-                        cleanup();
-                        listener.onComplete(getDataResponse.isWasTruncated());
+                    if (networkEnvelope instanceof GetDataSketchResponse) {
+                        onGetDataSketchResponse((GetDataSketchResponse) networkEnvelope, connection);
                     } else {
-                        log.warn("Nonce not matching. That can happen rarely if we get a response after a canceled " +
-                                        "handshake (timeout causes connection close but peer might have sent a msg before " +
-                                        "connection was closed).\n\t" +
-                                        "We drop that message. nonce={} / requestNonce={}",
-                                nonce, getDataResponse.getRequestNonce());
+                        onGetDataResponse((GetDataResponse) networkEnvelope, connection);
                     }
-                    log.info("Processing GetDataResponse took {} ms", System.currentTimeMillis() - ts1);
+                    log.info("Processing {} took {} ms", networkEnvelope.getClass().getSimpleName(),
+                            System.currentTimeMillis() - ts1);
                 } else {
                     log.warn("We have stopped already. We ignore that onDataRequest call.");
                 }
@@ -223,6 +218,52 @@ class RequestDataHandler implements MessageListener {
     // Private
     ///////////////////////////////////////////////////////////////////////////////////////////
 
+    private void onGetDataSketchResponse(GetDataSketchResponse getDataSketchResponse, Connection connection) {
+        if (getDataSketchResponse.getRequestNonce() != nonce) {
+            logNonceNotMatching(getDataSketchResponse.getRequestNonce());
+            return;
+        }
+
+        if (getDataSketchResponse.isSketchDecoded()) {
+            onGetDataResponse(getDataSketchResponse.getGetDataResponse(), connection);
+        } else {
+            log.info("Peer {} could not decode our sketch. We repeat the request with our known hashes.",
+                    peersNodeAddress);
+            sketchDecodeFailed = true;
+            stopTimeoutTimer();
+            networkNode.removeMessageListener(this);
+            requestData(peersNodeAddress, isPreliminaryDataRequest);
+        }
+    }
+
+    private void onGetDataResponse(GetDataResponse getDataResponse, Connection connection) {
+        logContents(getDataResponse);
+        if (getDataResponse.getRequestNonce() == nonce) {
+            stopTimeoutTimer();
+            if (!connection.getPeersNodeAddressOptional().isPresent()) {
+                log.error("RequestDataHandler.onMessage: connection.getPeersNodeAddressOptional() must be present " +
+                        "at that moment");
+                return;
+            }
+
+            dataStorage.processGetDataResponse(getDataResponse,
+                    connection.getPeersNodeAddressOptional().get());
+
+            cleanup();
+            listener.onComplete(getDataResponse.isWasTruncated());
+        } else {
+            logNonceNotMatching(getDataResponse.getRequestNonce());
+        }
+    }
+
+    private void logNonceNotMatching(int requestNonce) {
+        log.warn("Nonce not matching. That can happen rarely if we get a response after a canceled " +
+                        "handshake (timeout causes connection close but peer might have sent a msg before " +
+                        "connection was closed).\n\t" +
+                        "We drop that message. nonce={} / requestNonce={}",
+                nonce, requestNonce);
+    }
+
     private void logContents(GetDataResponse getDataResponse) {
         Set<ProtectedStorageEntry> dataSet = getDataResponse.getDataSet();
         Set<PersistableNetworkPayload> persistableNetworkPayloadSet = getDataResponse.getPersistableNetworkPayloadSet();
@@ -0,0 +1,102 @@
+/*
+ * This file is part of Tuskex.
+ *
+ * Tuskex is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Tuskex is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Tuskex. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.network.p2p.peers.getdata.messages;
+
+import com.google.protobuf.ByteString;
+import tuskex.common.app.Capabilities;
+import tuskex.network.p2p.SupportedCapabilitiesMessage;
+import tuskex.network.p2p.peers.getdata.InvertibleBloomLookupTable;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Replaces PreliminaryGetDataRequest and GetUpdatedDataRequest for peers supporting Capability.GET_DATA_SKETCH.
+ * Instead of listing all known PersistableNetworkPayload hashes we send a sketch of them, so the responder can
+ * compute the symmetric difference of both sets. The excludedKeys only contain the keys of the
+ * ProtectedStorageEntries, which is a small set compared to the PersistableNetworkPayloads.
+ *
+ * Both requests use the same protobuf message, which contains the senders node address only if the request
+ * replaces a GetUpdatedDataRequest.
+ */
+@Slf4j
+@EqualsAndHashCode(callSuper = true)
+@Getter
+@ToString
+public abstract class GetDataSketchRequest extends GetDataRequest implements SupportedCapabilitiesMessage {
+    protected final InvertibleBloomLookupTable sketch;
+    protected final Capabilities supportedCapabilities;
+
+    protected GetDataSketchRequest(String messageVersion,
+                                   int nonce,
+                                   Set<byte[]> excludedKeys,
+                                   InvertibleBloomLookupTable sketch,
+                                   @Nullable String version,
+                                   Capabilities supportedCapabilities) {
+        super(messageVersion, nonce, excludedKeys, version);
+
+        this.sketch = sketch;
+        this.supportedCapabilities = supportedCapabilities;
+    }
+
+    public abstract boolean isGetUpdatedDataRequest();
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // PROTO BUFFER
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    protected protobuf.GetDataSketchRequest.Builder getGetDataSketchRequestBuilder() {
+        protobuf.GetDataSketchRequest.Builder builder = protobuf.GetDataSketchRequest.newBuilder()
+                .setNonce(nonce)
+                .addAllExcludedKeys(excludedKeys.stream()
+                        .map(ByteString::copyFrom)
+                        .collect(Collectors.toList()))
+                .setSketch(sketch.toProtoMessage())
+                .setIsGetUpdatedDataRequest(isGetUpdatedDataRequest())
+                .addAllSupportedCapabilities(Capabilities.toIntList(supportedCapabilities));
+        Optional.ofNullable(version).ifPresent(builder::setVersion);
+        return builder;
+    }
+
+    protected protobuf.NetworkEnvelope toProtoNetworkEnvelope(protobuf.GetDataSketchRequest.Builder builder) {
+        protobuf.NetworkEnvelope proto = getNetworkEnvelopeBuilder()
+                .setGetDataSketchRequest(builder)
+                .build();
+        log.info("Sending a {} with {} kB, {} sketch cells and {} excluded key entries. Requesters version={}",
+                getClass().getSimpleName(), proto.getSerializedSize() / 1000d, sketch.getNumCells(),
+                excludedKeys.size(), version);
+        return proto;
+    }
+
+    public static GetDataSketchRequest fromProto(protobuf.GetDataSketchRequest proto, String messageVersion) {
+        log.info("Received a GetDataSketchRequest with {} kB, {} sketch cells and {} excluded key entries. " +
+                        "Requesters version={}",
+                proto.getSerializedSize() / 1000d, proto.getSketch().getCountsCount(), proto.getExcludedKeysCount(),
+                proto.getVersion());
+        return proto.getIsGetUpdatedDataRequest() ?
+                GetUpdatedDataSketchRequest.fromProto(proto, messageVersion) :
+                PreliminaryGetDataSketchRequest.fromProto(proto, messageVersion);
+    }
+}
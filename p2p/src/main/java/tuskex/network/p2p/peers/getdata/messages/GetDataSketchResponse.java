@@ -0,0 +1,108 @@
+/*
+ * This file is part of Tuskex.
+ *
+ * Tuskex is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Tuskex is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Tuskex. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.network.p2p.peers.getdata.messages;
+
+import tuskex.common.app.Capabilities;
+import tuskex.common.app.Version;
+import tuskex.common.proto.network.NetworkEnvelope;
+import tuskex.common.proto.network.NetworkProtoResolver;
+import tuskex.network.p2p.ExtendedDataSizePermission;
+import tuskex.network.p2p.InitialDataRequest;
+import tuskex.network.p2p.InitialDataResponse;
+import tuskex.network.p2p.SupportedCapabilitiesMessage;
+import lombok.EqualsAndHashCode;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import java.util.Optional;
+
+/**
+ * Response to a GetDataSketchRequest. Contains the GetDataResponse with the data missing at the requester, or no
+ * GetDataResponse if the difference was too large to decode the sketch. In that case the requester falls back to the
+ * request with the full list of excluded keys.
+ */
+@Slf4j
+@EqualsAndHashCode(callSuper = true)
+@Value
+public final class GetDataSketchResponse extends NetworkEnvelope implements SupportedCapabilitiesMessage,
+        ExtendedDataSizePermission, InitialDataResponse {
+    private final int requestNonce;
+    @Nullable
+    private final GetDataResponse getDataResponse;
+    private final Capabilities supportedCapabilities;
+
+    public GetDataSketchResponse(int requestNonce, @Nullable GetDataResponse getDataResponse) {
+        this(requestNonce,
+                getDataResponse,
+                Capabilities.app,
+                Version.getP2PMessageVersion());
+    }
+
+    public boolean isSketchDecoded() {
+        return getDataResponse != null;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // PROTO BUFFER
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private GetDataSketchResponse(int requestNonce,
+                                  @Nullable GetDataResponse getDataResponse,
+                                  Capabilities supportedCapabilities,
+                                  String messageVersion) {
+        super(messageVersion);
+
+        this.requestNonce = requestNonce;
+        this.getDataResponse = getDataResponse;
+        this.supportedCapabilities = supportedCapabilities;
+    }
+
+    @Override
+    public protobuf.NetworkEnvelope toProtoNetworkEnvelope() {
+        protobuf.GetDataSketchResponse.Builder builder = protobuf.GetDataSketchResponse.newBuilder()
+                .setRequestNonce(requestNonce)
+                .addAllSupportedCapabilities(Capabilities.toIntList(supportedCapabilities));
+        Optional.ofNullable(getDataResponse)
+                .ifPresent(e -> builder.setGetDataResponse(e.toProtoNetworkEnvelope().getGetDataResponse()));
+        return getNetworkEnvelopeBuilder()
+                .setGetDataSketchResponse(builder)
+                .build();
+    }
+
+    public static GetDataSketchResponse fromProto(protobuf.GetDataSketchResponse proto,
+                                                  NetworkProtoResolver resolver,
+                                                  String messageVersion) {
+        GetDataResponse getDataResponse = proto.hasGetDataResponse() ?
+                GetDataResponse.fromProto(proto.getGetDataResponse(), resolver, messageVersion) :
+                null;
+        log.info("Received a GetDataSketchResponse. Sketch was decoded: {}", getDataResponse != null);
+        return new GetDataSketchResponse(proto.getRequestNonce(),
+                getDataResponse,
+                Capabilities.fromIntList(proto.getSupportedCapabilitiesList()),
+                messageVersion);
+    }
+
+    @Override
+    public Class<? extends InitialDataRequest> associatedRequest() {
+        return getDataResponse != null && getDataResponse.isGetUpdatedDataResponse() ?
+                GetUpdatedDataSketchRequest.class :
+                PreliminaryGetDataSketchRequest.class;
+    }
+}
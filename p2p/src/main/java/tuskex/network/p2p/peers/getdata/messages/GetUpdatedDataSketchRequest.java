@@ -0,0 +1,90 @@
+/*
+ * This file is part of Tuskex.
+ *
+ * Tuskex is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Tuskex is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Tuskex. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.network.p2p.peers.getdata.messages;
+
+import tuskex.common.app.Capabilities;
+import tuskex.common.app.Version;
+import tuskex.common.proto.ProtoUtil;
+import tuskex.network.p2p.NodeAddress;
+import tuskex.network.p2p.SendersNodeAddressMessage;
+import tuskex.network.p2p.peers.getdata.InvertibleBloomLookupTable;
+import lombok.EqualsAndHashCode;
+import lombok.Value;
+
+import javax.annotation.Nullable;
+import java.util.Set;
+
+/**
+ * GetDataSketchRequest replacing the GetUpdatedDataRequest. Like the GetUpdatedDataRequest it is sent after our hidden
+ * service is published and contains our node address.
+ */
+@EqualsAndHashCode(callSuper = true)
+@Value
+public final class GetUpdatedDataSketchRequest extends GetDataSketchRequest implements SendersNodeAddressMessage {
+    private final NodeAddress senderNodeAddress;
+
+    public GetUpdatedDataSketchRequest(NodeAddress senderNodeAddress,
+                                       int nonce,
+                                       Set<byte[]> excludedKeys,
+                                       InvertibleBloomLookupTable sketch) {
+        this(senderNodeAddress,
+                nonce,
+                excludedKeys,
+                sketch,
+                Version.VERSION,
+                Capabilities.app,
+                Version.getP2PMessageVersion());
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // PROTO BUFFER
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private GetUpdatedDataSketchRequest(NodeAddress senderNodeAddress,
+                                        int nonce,
+                                        Set<byte[]> excludedKeys,
+                                        InvertibleBloomLookupTable sketch,
+                                        @Nullable String version,
+                                        Capabilities supportedCapabilities,
+                                        String messageVersion) {
+        super(messageVersion, nonce, excludedKeys, sketch, version, supportedCapabilities);
+        this.senderNodeAddress = senderNodeAddress;
+    }
+
+    @Override
+    public boolean isGetUpdatedDataRequest() {
+        return true;
+    }
+
+    @Override
+    public protobuf.NetworkEnvelope toProtoNetworkEnvelope() {
+        return toProtoNetworkEnvelope(getGetDataSketchRequestBuilder()
+                .setSenderNodeAddress(senderNodeAddress.toProtoMessage()));
+    }
+
+    public static GetUpdatedDataSketchRequest fromProto(protobuf.GetDataSketchRequest proto, String messageVersion) {
+        return new GetUpdatedDataSketchRequest(NodeAddress.fromProto(proto.getSenderNodeAddress()),
+                proto.getNonce(),
+                ProtoUtil.byteSetFromProtoByteStringList(proto.getExcludedKeysList()),
+                InvertibleBloomLookupTable.fromProto(proto.getSketch()),
+                ProtoUtil.stringOrNullFromProto(proto.getVersion()),
+                Capabilities.fromIntList(proto.getSupportedCapabilitiesList()),
+                messageVersion);
+    }
+}
@@ -0,0 +1,344 @@
+/*
+ * This file is part of Tuskex.
+ *
+ * Tuskex is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Tuskex is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Tuskex. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.network.p2p.storage;
+
+import tuskex.common.app.Capabilities;
+import tuskex.common.proto.network.GetDataResponsePriority;
+import tuskex.common.proto.network.NetworkPayload;
+import tuskex.network.p2p.storage.payload.DateSortedTruncatablePayload;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import javax.annotation.Nullable;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Index used for building the GetDataResponse. It is updated at add and remove operations so that we do not need to
+ * rebuild, stream and serialize the whole data store at each GetDataRequest.
+ *
+ * Items are kept in buckets by their GetDataResponsePriority. LOW priority items implementing
+ * DateSortedTruncatablePayload are kept per payload type sorted by date, so truncation by maxItems only touches the
+ * most recent items. The serialized size of LOW priority items is computed once and cached as it is only used for
+ * the size limit check.
+ *
+ * Mutations are synchronized, reads iterate over the concurrent buckets without locking.
+ */
+@Slf4j
+class GetDataResponseIndex<T extends NetworkPayload> {
+    private final Function<T, ? extends NetworkPayload> asPayload;
+
+    private final Map<P2PDataStorage.ByteArray, Item<T>> itemsByHash = new ConcurrentHashMap<>();
+    private final Map<P2PDataStorage.ByteArray, Item<T>> highPrioItems = new ConcurrentHashMap<>();
+    private final Map<P2PDataStorage.ByteArray, Item<T>> midPrioItems = new ConcurrentHashMap<>();
+    private final Map<P2PDataStorage.ByteArray, Item<T>> lowPrioItems = new ConcurrentHashMap<>();
+    private final Map<Class<? extends NetworkPayload>, NavigableSet<Item<T>>> dateSortedItemsByType = new ConcurrentHashMap<>();
+
+    GetDataResponseIndex(Function<T, ? extends NetworkPayload> asPayload) {
+        this.asPayload = asPayload;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Mutations
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    void put(P2PDataStorage.ByteArray hash, T item) {
+        put(hash, item, null);
+    }
+
+    // Used for PersistableNetworkPayloads as items with the same hash have the same content, and we do not want to
+    // change the version of an already indexed historical item.
+    synchronized boolean putIfAbsent(P2PDataStorage.ByteArray hash, T item, @Nullable String version) {
+        if (itemsByHash.containsKey(hash)) {
+            return false;
+        }
+        put(hash, item, version);
+        return true;
+    }
+
+    /**
+     * @param version The version of the historical data store the item belongs to or null for live data.
+     */
+    synchronized void put(P2PDataStorage.ByteArray hash, T item, @Nullable String version) {
+        Item<T> previous = itemsByHash.get(hash);
+        if (previous != null) {
+            if (previous.item == item) {
+                return;
+            }
+            remove(hash);
+        }
+
+        add(new Item<>(hash, item, asPayload.apply(item), version));
+    }
+
+    // Copy used to add items for a single response. The items are shared, so their cached sizes are kept.
+    synchronized GetDataResponseIndex<T> copy() {
+        GetDataResponseIndex<T> copy = new GetDataResponseIndex<>(asPayload);
+        itemsByHash.values().forEach(copy::add);
+        return copy;
+    }
+
+    private void add(Item<T> indexedItem) {
+        P2PDataStorage.ByteArray hash = indexedItem.hash;
+        itemsByHash.put(hash, indexedItem);
+
+        GetDataResponsePriority priority = indexedItem.item.getGetDataResponsePriority();
+        if (priority == null) {
+            return;
+        }
+        switch (priority) {
+            case HIGH:
+                highPrioItems.put(hash, indexedItem);
+                break;
+            case MID:
+                midPrioItems.put(hash, indexedItem);
+                break;
+            case LOW:
+                if (indexedItem.payload instanceof DateSortedTruncatablePayload) {
+                    dateSortedItemsByType.computeIfAbsent(indexedItem.payload.getClass(),
+                            type -> new ConcurrentSkipListSet<>(Item.DATE_COMPARATOR)).add(indexedItem);
+                } else {
+                    lowPrioItems.put(hash, indexedItem);
+                }
+                break;
+        }
+    }
+
+    synchronized void remove(P2PDataStorage.ByteArray hash) {
+        Item<T> indexedItem = itemsByHash.remove(hash);
+        if (indexedItem == null) {
+            return;
+        }
+
+        highPrioItems.remove(hash);
+        midPrioItems.remove(hash);
+        lowPrioItems.remove(hash);
+        NavigableSet<Item<T>> dateSortedItems = dateSortedItemsByType.get(indexedItem.payload.getClass());
+        if (dateSortedItems != null) {
+            dateSortedItems.remove(indexedItem);
+        }
+    }
+
+    int size() {
+        return itemsByHash.size();
+    }
+
+    @Nullable
+    T get(P2PDataStorage.ByteArray hash) {
+        Item<T> indexedItem = itemsByHash.get(hash);
+        return indexedItem != null ? indexedItem.item : null;
+    }
+
+    /**
+     * Applies the consumer to all items of live data and of the historical data stores accepted by isVersionIncluded.
+     */
+    void forEach(Predicate<String> isVersionIncluded, BiConsumer<P2PDataStorage.ByteArray, T> consumer) {
+        Map<String, Boolean> includedByVersion = new HashMap<>();
+        itemsByHash.values().forEach(indexedItem -> {
+            if (indexedItem.version == null ||
+                    includedByVersion.computeIfAbsent(indexedItem.version, isVersionIncluded::test)) {
+                consumer.accept(indexedItem.hash, indexedItem.item);
+            }
+        });
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // GetDataResponse
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the items not known by the requester following the truncation rules:
+     * 1. Add all items with GetDataResponsePriority.MID
+     * 2. Add all items with GetDataResponsePriority.LOW && !DateSortedTruncatablePayload until the size limit is reached
+     * 3. If the size limit was not reached add the most recent items with GetDataResponsePriority.LOW &&
+     *    DateSortedTruncatablePayload per type until the size limit or maxItems of that type is reached. They are added
+     *    newest first so in case we cut off at the next step we cut off the oldest items.
+     * 4. Truncate the result if its size > maxEntries
+     * 5. Add all items with GetDataResponsePriority.HIGH
+     *
+     * @param knownHashes       The hashes the requester already has
+     * @param isVersionIncluded Applied to the version of items from historical data stores
+     * @param peerCapabilities  The capabilities of the requester
+     */
+    Set<T> getItemsForResponse(Set<P2PDataStorage.ByteArray> knownHashes,
+                               Predicate<String> isVersionIncluded,
+                               Capabilities peerCapabilities,
+                               int maxEntries,
+                               long limit,
+                               AtomicBoolean outTruncated) {
+        // The number of historical store versions is small, so we only evaluate the predicate once per version
+        Map<String, Boolean> includedByVersion = new HashMap<>();
+        Predicate<Item<T>> isMissing = indexedItem -> {
+            if (knownHashes.contains(indexedItem.hash)) {
+                return false;
+            }
+            if (indexedItem.version != null &&
+                    !includedByVersion.computeIfAbsent(indexedItem.version, isVersionIncluded::test)) {
+                return false;
+            }
+            return P2PDataStorage.shouldTransmitPayloadToPeer(peerCapabilities, indexedItem.payload);
+        };
+
+        List<T> resultItems = new ArrayList<>();
+        long totalSize = 0;
+        boolean exceededSizeLimit = false;
+
+        // 1. Add all items with GetDataResponsePriority.MID
+        int numMidPrioItems = addMissingItems(midPrioItems, isMissing, resultItems);
+        log.info("Number of items with GetDataResponsePriority.MID: {}", numMidPrioItems);
+
+        // 2. Add all items with GetDataResponsePriority.LOW && !DateSortedTruncatablePayload until the size limit is reached
+        int numLowPrioItems = 0;
+        for (Item<T> indexedItem : lowPrioItems.values()) {
+            if (!isMissing.test(indexedItem)) {
+                continue;
+            }
+            totalSize += indexedItem.getSerializedSize();
+            if (totalSize > limit) {
+                exceededSizeLimit = true;
+                break;
+            }
+            resultItems.add(indexedItem.item);
+            numLowPrioItems++;
+        }
+        log.info("Number of items with GetDataResponsePriority.LOW and !DateSortedTruncatablePayload: {}. " +
+                "Exceeded size limit: {}", numLowPrioItems, exceededSizeLimit);
+
+        // 3. Add the most recent items with GetDataResponsePriority.LOW && DateSortedTruncatablePayload
+        if (!exceededSizeLimit) {
+            for (NavigableSet<Item<T>> dateSortedItems : dateSortedItemsByType.values()) {
+                int numDateSortedItems = 0;
+                int maxItems = -1;
+                for (Item<T> indexedItem : dateSortedItems.descendingSet()) {
+                    if (!isMissing.test(indexedItem)) {
+                        continue;
+                    }
+                    if (maxItems < 0) {
+                        maxItems = ((DateSortedTruncatablePayload) indexedItem.payload).maxItems();
+                    }
+                    if (numDateSortedItems >= maxItems) {
+                        outTruncated.set(true);
+                        log.info("Removed oldest dateSortedItems as we exceeded {}", maxItems);
+                        break;
+                    }
+                    totalSize += indexedItem.getSerializedSize();
+                    if (totalSize > limit) {
+                        exceededSizeLimit = true;
+                        break;
+                    }
+                    resultItems.add(indexedItem.item);
+                    numDateSortedItems++;
+                }
+                log.info("Number of items with GetDataResponsePriority.LOW and DateSortedTruncatablePayload: {}. " +
+                        "Was truncated: {}", numDateSortedItems, outTruncated.get());
+                if (exceededSizeLimit) {
+                    break;
+                }
+            }
+        } else {
+            log.info("No dateSortedItems added as we exceeded already the exceededSizeLimit of {}", limit);
+        }
+
+        // 4. We truncate list if resultList size > maxEntries
+        int size = resultItems.size();
+        if (size > maxEntries) {
+            resultItems = resultItems.subList(0, maxEntries);
+            outTruncated.set(true);
+            log.info("Removed last {} items as we exceeded {}", size - maxEntries, maxEntries);
+        }
+
+        outTruncated.set(outTruncated.get() || exceededSizeLimit);
+
+        // 5. Add all items with GetDataResponsePriority.HIGH
+        Set<T> result = new HashSet<>(resultItems);
+        int numHighPrioItems = addMissingItems(highPrioItems, isMissing, result);
+        log.info("Number of items with GetDataResponsePriority.HIGH: {}", numHighPrioItems);
+        log.info("Number of result items we send to requester: {}", result.size());
+        return result;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private int addMissingItems(Map<P2PDataStorage.ByteArray, Item<T>> bucket,
+                                Predicate<Item<T>> isMissing,
+                                Collection<T> result) {
+        int numAdded = 0;
+        for (Item<T> indexedItem : bucket.values()) {
+            if (isMissing.test(indexedItem)) {
+                result.add(indexedItem.item);
+                numAdded++;
+            }
+        }
+        return numAdded;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Static class
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private static final class Item<T extends NetworkPayload> {
+        // Sorted by date and by hash for items with the same date
+        private static final Comparator<Item<?>> DATE_COMPARATOR = Comparator
+                .<Item<?>>comparingLong(item -> item.date)
+                .thenComparing((item1, item2) -> Arrays.compare(item1.hash.bytes, item2.hash.bytes));
+
+        private final P2PDataStorage.ByteArray hash;
+        private final T item;
+        private final NetworkPayload payload;
+        @Nullable
+        private final String version;
+        private final long date;
+        // Computed at first use. Concurrent requests might compute it twice which is harmless.
+        private int serializedSize = -1;
+
+        private Item(P2PDataStorage.ByteArray hash, T item, NetworkPayload payload, @Nullable String version) {
+            this.hash = hash;
+            this.item = item;
+            this.payload = payload;
+            this.version = version;
+            this.date = payload instanceof DateSortedTruncatablePayload ?
+                    ((DateSortedTruncatablePayload) payload).getDate().getTime() :
+                    0;
+        }
+
+        private int getSerializedSize() {
+            if (serializedSize < 0) {
+                serializedSize = item.toProtoMessage().getSerializedSize();
+            }
+            return serializedSize;
+        }
+    }
+}
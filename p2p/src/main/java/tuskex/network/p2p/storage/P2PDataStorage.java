@@ -18,6 +18,7 @@
 package tuskex.network.p2p.storage;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Maps;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
@@ -25,9 +26,12 @@ import com.google.protobuf.ByteString;
 import tuskex.common.Timer;
 import tuskex.common.UserThread;
 import tuskex.common.app.Capabilities;
+import tuskex.common.app.Version;
 import tuskex.common.crypto.CryptoException;
 import tuskex.common.crypto.Hash;
 import tuskex.common.crypto.Sig;
+import tuskex.common.metrics.Counter;
+import tuskex.common.metrics.Metrics;
 import tuskex.common.persistence.PersistenceManager;
 import tuskex.common.proto.network.GetDataResponsePriority;
 import tuskex.common.proto.network.NetworkEnvelope;
@@ -45,10 +49,15 @@ import tuskex.network.p2p.network.MessageListener;
 import tuskex.network.p2p.network.NetworkNode;
 import tuskex.network.p2p.peers.BroadcastHandler;
 import tuskex.network.p2p.peers.Broadcaster;
+import tuskex.network.p2p.peers.getdata.InvertibleBloomLookupTable;
 import tuskex.network.p2p.peers.getdata.messages.GetDataRequest;
 import tuskex.network.p2p.peers.getdata.messages.GetDataResponse;
+import tuskex.network.p2p.peers.getdata.messages.GetDataSketchRequest;
+import tuskex.network.p2p.peers.getdata.messages.GetUpdatedDataSketchRequest;
+import tuskex.network.p2p.peers.getdata.messages.GetDataSketchResponse;
 import tuskex.network.p2p.peers.getdata.messages.GetUpdatedDataRequest;
 import tuskex.network.p2p.peers.getdata.messages.PreliminaryGetDataRequest;
+import tuskex.network.p2p.peers.getdata.messages.PreliminaryGetDataSketchRequest;
 import tuskex.network.p2p.storage.messages.AddDataMessage;
 import tuskex.network.p2p.storage.messages.AddOncePayload;
 import tuskex.network.p2p.storage.messages.AddPersistableNetworkPayloadMessage;
@@ -85,18 +94,25 @@ import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
+import java.util.function.IntConsumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.SimpleBooleanProperty;
 import javax.annotation.Nullable;
@@ -119,6 +135,32 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
     @VisibleForTesting
     public static final int CHECK_TTL_INTERVAL_SEC = 60;
 
+    // Allowed numbers of cells of the sketch we send with a GetDataSketchRequest. The sketch is sized for the expected
+    // number of payloads we miss, a sketch with the smallest size can be decoded for a difference of a few hundred
+    // payloads. The sizes are powers of two times the 3 hash functions of the sketch. Requests with other sizes are
+    // rejected, so there are only a few sketches of our data and they are served from the cache.
+    @VisibleForTesting
+    static final int[] SKETCH_SIZES = {768, 1536, 3072, 6144, 12288, 24576};
+    // A sketch with 3 hash functions can be decoded with a high probability if it has 1.5 cells per differing hash
+    private static final double SKETCH_CELLS_PER_MISSING_PAYLOAD = 1.5;
+    // The rate at which new payloads are published is estimated from our payloads of that period
+    private static final long PUBLISH_RATE_PERIOD_MS = TimeUnit.DAYS.toMillis(30);
+    // Sketches are cached by number of cells and requesters version, requesters are mostly on one of two versions
+    private static final int MAX_CACHED_SKETCHES = SKETCH_SIZES.length * 2;
+
+    // Threads for verifying batches of ProtectedStorageEntries. Smaller batches are verified by the calling thread.
+    private static final int VERIFY_POOL_SIZE = Runtime.getRuntime().availableProcessors();
+    private static final int MIN_ITEMS_PER_VERIFY_TASK = 32;
+    private static final ExecutorService VERIFY_EXECUTOR = Utilities.getListeningExecutorService("P2PDataStorage.verify",
+            VERIFY_POOL_SIZE, VERIFY_POOL_SIZE, 60, new LinkedBlockingQueue<>());
+
+    private static final Counter ADDED_PROTECTED_STORAGE_ENTRIES = Metrics.counter(
+            "tuskex_p2p_storage_protected_entries_added_total", "ProtectedStorageEntries added or updated");
+    private static final Counter REMOVED_PROTECTED_STORAGE_ENTRIES = Metrics.counter(
+            "tuskex_p2p_storage_protected_entries_removed_total", "ProtectedStorageEntries removed");
+    private static final Counter ADDED_PERSISTABLE_NETWORK_PAYLOADS = Metrics.counter(
+            "tuskex_p2p_storage_persistable_payloads_added_total", "PersistableNetworkPayloads added");
+
     private boolean initialRequestApplied = false;
 
     private final Broadcaster broadcaster;
@@ -130,6 +172,18 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
     @Getter
     private final Map<ByteArray, ProtectedStorageEntry> map = new ConcurrentHashMap<>();
     private final Set<HashMapChangedListener> hashMapChangedListeners = new CopyOnWriteArraySet<>();
+    // Indices kept in sync with the map and the append-only stores for building the GetDataResponse
+    private final GetDataResponseIndex<ProtectedStorageEntry> protectedStorageEntryIndex =
+            new GetDataResponseIndex<>(ProtectedStorageEntry::getProtectedStoragePayload);
+    private final GetDataResponseIndex<PersistableNetworkPayload> persistableNetworkPayloadIndex =
+            new GetDataResponseIndex<>(Function.identity());
+    // Sketches of our PersistableNetworkPayloads used for responding to GetDataSketchRequests
+    private final Map<String, InvertibleBloomLookupTable> sketchCache = new LinkedHashMap<>(MAX_CACHED_SKETCHES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, InvertibleBloomLookupTable> eldest) {
+            return size() > MAX_CACHED_SKETCHES;
+        }
+    };
     private Timer removeExpiredEntriesTimer;
 
     private final PersistenceManager<SequenceNumberMap> persistenceManager;
@@ -178,6 +232,11 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
         networkNode.addConnectionListener(this);
 
         this.persistenceManager.initialize(sequenceNumberMap, PersistenceManager.Source.PRIVATE_LOW_PRIO);
+
+        Metrics.gauge("tuskex_p2p_storage_protected_entries", "ProtectedStorageEntries in the map", map::size);
+        Metrics.gauge("tuskex_p2p_storage_persistable_payloads", "PersistableNetworkPayloads in the live data of the data stores",
+                persistableNetworkPayloadIndex::size);
+        Metrics.gauge("tuskex_p2p_storage_sequence_numbers", "Entries of the sequence number map", sequenceNumberMap::size);
     }
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -218,10 +277,14 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
             }
         });
 
-        appendOnlyDataStoreService.readFromResources(postFix, () -> appendOnlyDataStoreServiceReady.set(true));
+        appendOnlyDataStoreService.readFromResources(postFix, () -> {
+            indexAppendOnlyDataStores();
+            appendOnlyDataStoreServiceReady.set(true);
+        });
         protectedDataStoreService.readFromResources(postFix, () -> {
             synchronized (map) {
                 map.putAll(protectedDataStoreService.getMap());
+                protectedDataStoreService.getMap().forEach(protectedStorageEntryIndex::put);
                 protectedDataStoreServiceReady.set(true);
             }
         });
@@ -237,6 +300,8 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
             resourceDataStoreService.readFromResourcesSync(postFix);
 
             map.putAll(protectedDataStoreService.getMap());
+            protectedDataStoreService.getMap().forEach(protectedStorageEntryIndex::put);
+            indexAppendOnlyDataStores();
         }
     }
 
@@ -247,6 +312,7 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
             ProtectedStoragePayload protectedStoragePayload = protectedStorageEntry.getProtectedStoragePayload();
             ByteArray hashOfPayload = get32ByteHashAsByteArray(protectedStoragePayload);
             map.put(hashOfPayload, protectedStorageEntry);
+            protectedStorageEntryIndex.put(hashOfPayload, protectedStorageEntry);
             //log.trace("## addProtectedMailboxStorageEntryToMap hashOfPayload={}, map={}", hashOfPayload, printMap());
         }
     }
@@ -284,6 +350,83 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
         return excludedKeys;
     }
 
+    /**
+     * Returns a PreliminaryGetDataSketchRequest that can be sent to a peer node supporting Capability.GET_DATA_SKETCH
+     * to request missing Payload data. Instead of the known PersistableNetworkPayload hashes it contains a sketch of
+     * them, sized for the data published since our newest payload.
+     */
+    public PreliminaryGetDataSketchRequest buildPreliminaryGetDataSketchRequest(int nonce) {
+        Map<ByteArray, PersistableNetworkPayload> mapForDataRequest = getMapForDataRequest();
+        long numMissingPayloads = estimateNumMissingPayloads(mapForDataRequest.values(), clock.millis());
+        return new PreliminaryGetDataSketchRequest(nonce,
+                getKeysAsByteSet(map),
+                buildSketch(mapForDataRequest, numMissingPayloads));
+    }
+
+    /**
+     * Returns a GetUpdatedDataSketchRequest that can be sent to a peer node supporting Capability.GET_DATA_SKETCH to
+     * request missing Payload data. It is sent after the preliminary request was answered, so we only miss the data
+     * published in between and the sketch has the minimum size.
+     */
+    public GetUpdatedDataSketchRequest buildGetUpdatedDataSketchRequest(NodeAddress senderNodeAddress, int nonce) {
+        return new GetUpdatedDataSketchRequest(senderNodeAddress,
+                nonce,
+                getKeysAsByteSet(map),
+                buildSketch(getMapForDataRequest(), 0));
+    }
+
+    private InvertibleBloomLookupTable buildSketch(Map<ByteArray, PersistableNetworkPayload> mapForDataRequest,
+                                                   long numMissingPayloads) {
+        InvertibleBloomLookupTable sketch = new InvertibleBloomLookupTable(getSketchSize(numMissingPayloads));
+        mapForDataRequest.keySet().stream()
+                .filter(hash -> hash.bytes.length <= InvertibleBloomLookupTable.MAX_KEY_LENGTH)
+                .forEach(hash -> sketch.insert(hash.bytes));
+        return sketch;
+    }
+
+    /**
+     * @return the smallest allowed number of cells of a sketch which can be decoded for the given number of missing
+     * payloads, or the largest allowed number of cells
+     */
+    @VisibleForTesting
+    static int getSketchSize(long numMissingPayloads) {
+        double numCells = Math.ceil(numMissingPayloads * SKETCH_CELLS_PER_MISSING_PAYLOAD);
+        for (int sketchSize : SKETCH_SIZES) {
+            if (sketchSize >= numCells) {
+                return sketchSize;
+            }
+        }
+        return SKETCH_SIZES[SKETCH_SIZES.length - 1];
+    }
+
+    @VisibleForTesting
+    static boolean isSketchSize(int numCells) {
+        return Arrays.stream(SKETCH_SIZES).anyMatch(sketchSize -> sketchSize == numCells);
+    }
+
+    /**
+     * Estimates the number of payloads published since our newest payload, from the rate at which our payloads were
+     * published before. Only DateSortedTruncatablePayloads have a date, the other payloads are assumed to be published
+     * in proportion to them. Without dated payloads the difference cannot be estimated and 0 is returned, so a sketch
+     * of the minimum size is sent and we fall back to a request with excluded keys if it cannot be decoded.
+     */
+    @VisibleForTesting
+    static long estimateNumMissingPayloads(Collection<PersistableNetworkPayload> payloads, long now) {
+        long[] dates = payloads.stream()
+                .filter(payload -> payload instanceof DateSortedTruncatablePayload)
+                .mapToLong(payload -> ((DateSortedTruncatablePayload) payload).getDate().getTime())
+                .toArray();
+        if (dates.length == 0) {
+            return 0;
+        }
+        long newestDate = Arrays.stream(dates).max().getAsLong();
+        long numPublishedInPeriod = Arrays.stream(dates)
+                .filter(date -> date > newestDate - PUBLISH_RATE_PERIOD_MS)
+                .count();
+        double publishedPerMs = (double) numPublishedInPeriod / PUBLISH_RATE_PERIOD_MS * payloads.size() / dates.length;
+        return (long) Math.ceil(publishedPerMs * Math.max(0, now - newestDate));
+    }
+
     /**
      * Returns a GetDataResponse object that contains the Payloads known locally, but not remotely.
      */
@@ -298,44 +441,153 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
                 P2PDataStorage.ByteArray.convertBytesSetToByteArraySet(getDataRequest.getExcludedKeys());
 
         // Pre v 1.4.0 requests do not have set the requesters version field so it is null.
-        // The methods in HistoricalDataStoreService will return all historical data in that case.
-        // mapForDataResponse contains the filtered by version data from HistoricalDataStoreService as well as all other
-        // maps of the remaining appendOnlyDataStoreServices.
-        Map<ByteArray, PersistableNetworkPayload> mapForDataResponse = getMapForDataResponse(getDataRequest.getVersion());
-
-        // Give a bit of tolerance for message overhead
-        double maxSize = Connection.getMaxPermittedMessageSize() * 0.6;
-
-        // 25% of space is allocated for PersistableNetworkPayloads
-        long limit = Math.round(maxSize * 0.25);
-        Set<PersistableNetworkPayload> filteredPersistableNetworkPayloads = filterKnownHashes(
-                mapForDataResponse,
-                Function.identity(),
+        // In that case we deliver all historical data, otherwise only the data of historical stores newer than the
+        // requesters version.
+        String requestersVersion = getDataRequest.getVersion();
+
+        log.info("Filter PersistableNetworkPayload data based on {} knownHashes", excludedKeysAsByteArray.size());
+        Predicate<String> isVersionIncluded = storeVersion ->
+                HistoricalDataStoreService.isStoreVersionRequested(storeVersion, requestersVersion);
+        GetDataResponseIndex<PersistableNetworkPayload> index = getIndexForResponse(excludedKeysAsByteArray, isVersionIncluded);
+        Set<PersistableNetworkPayload> filteredPersistableNetworkPayloads = index.getItemsForResponse(
                 excludedKeysAsByteArray,
+                isVersionIncluded,
                 peerCapabilities,
                 maxEntriesPerType,
-                limit,
-                wasPersistableNetworkPayloadsTruncated,
-                true);
+                getPersistableNetworkPayloadsSizeLimit(),
+                wasPersistableNetworkPayloadsTruncated);
         log.info("{} PersistableNetworkPayload entries remained after filtered by excluded keys. " +
-                "Original map had {} entries.",
-                filteredPersistableNetworkPayloads.size(), mapForDataResponse.size());
+                "Original index had {} entries.",
+                filteredPersistableNetworkPayloads.size(), index.size());
+
+        return buildGetDataResponse(getDataRequest,
+                excludedKeysAsByteArray,
+                filteredPersistableNetworkPayloads,
+                getDataRequest instanceof GetUpdatedDataRequest,
+                maxEntriesPerType,
+                wasPersistableNetworkPayloadsTruncated,
+                wasProtectedStorageEntriesTruncated,
+                peerCapabilities);
+    }
+
+    /**
+     * Returns a GetDataSketchResponse containing the PersistableNetworkPayloads found by decoding the difference of
+     * our sketch and the requesters sketch. If the difference is too large to be decoded the response does not contain
+     * data, and the requester has to fall back to a request with excluded keys.
+     */
+    public GetDataSketchResponse buildGetDataSketchResponse(
+            GetDataSketchRequest getDataSketchRequest,
+            int maxEntriesPerType,
+            AtomicBoolean wasPersistableNetworkPayloadsTruncated,
+            AtomicBoolean wasProtectedStorageEntriesTruncated,
+            Capabilities peerCapabilities) {
+        int nonce = getDataSketchRequest.getNonce();
+        int numCells = getDataSketchRequest.getSketch().getNumCells();
+        if (!isSketchSize(numCells)) {
+            log.warn("The sketch of the requester has an invalid number of cells {}. The requester will fall back to " +
+                    "a request with excluded keys.", numCells);
+            return new GetDataSketchResponse(nonce, null);
+        }
+
+        Optional<InvertibleBloomLookupTable.DecodeResult> decodeResult = subtractFromOwnSketch(
+                getDataSketchRequest.getSketch(),
+                getDataSketchRequest.getVersion())
+                .decode();
+        if (decodeResult.isEmpty()) {
+            log.info("The sketch of the requester could not be decoded. The requester will fall back to a request " +
+                    "with excluded keys.");
+            return new GetDataSketchResponse(nonce, null);
+        }
+
+        // The keys only known by the requester are data we might miss. We do not request them as the requester will
+        // broadcast new data anyway, but it is useful to see how far the nodes are out of sync.
+        List<byte[]> localOnlyKeys = decodeResult.get().getLocalOnlyKeys();
+        log.info("Decoded sketch of requester. We have {} PersistableNetworkPayload entries the requester is missing. " +
+                        "The requester has {} entries we do not have.",
+                localOnlyKeys.size(), decodeResult.get().getRemoteOnlyKeys().size());
+
+        GetDataResponseIndex<PersistableNetworkPayload> missingItemsIndex = new GetDataResponseIndex<>(Function.identity());
+        localOnlyKeys.forEach(key -> {
+            ByteArray hash = new ByteArray(key);
+            PersistableNetworkPayload payload = findPersistableNetworkPayload(hash);
+            if (payload != null) {
+                missingItemsIndex.put(hash, payload);
+            }
+        });
+        Set<PersistableNetworkPayload> filteredPersistableNetworkPayloads = missingItemsIndex.getItemsForResponse(
+                Collections.emptySet(),
+                storeVersion -> true,
+                peerCapabilities,
+                maxEntriesPerType,
+                getPersistableNetworkPayloadsSizeLimit(),
+                wasPersistableNetworkPayloadsTruncated);
+
+        GetDataResponse getDataResponse = buildGetDataResponse(getDataSketchRequest,
+                ByteArray.convertBytesSetToByteArraySet(getDataSketchRequest.getExcludedKeys()),
+                filteredPersistableNetworkPayloads,
+                getDataSketchRequest.isGetUpdatedDataRequest(),
+                maxEntriesPerType,
+                wasPersistableNetworkPayloadsTruncated,
+                wasProtectedStorageEntriesTruncated,
+                peerCapabilities);
+        return new GetDataSketchResponse(nonce, getDataResponse);
+    }
+
+    // The index only contains live data. If the requester has an older version we add the missing payloads of the
+    // requested historical stores to a copy of the index. Only those payloads get decoded.
+    private GetDataResponseIndex<PersistableNetworkPayload> getIndexForResponse(Set<ByteArray> knownHashes,
+                                                                                Predicate<String> isVersionIncluded) {
+        List<Map<ByteArray, PersistableNetworkPayload>> historicalMaps = new ArrayList<>();
+        List<String> versions = new ArrayList<>();
+        getHistoricalDataStoreServices().forEach(service -> service.getMapsByVersion().forEach((version, map) -> {
+            if (isVersionIncluded.test(version)) {
+                historicalMaps.add(map);
+                versions.add(version);
+            }
+        }));
+        if (historicalMaps.isEmpty()) {
+            return persistableNetworkPayloadIndex;
+        }
+
+        GetDataResponseIndex<PersistableNetworkPayload> index = persistableNetworkPayloadIndex.copy();
+        int numHistoricalItems = 0;
+        for (int i = 0; i < historicalMaps.size(); i++) {
+            Map<ByteArray, PersistableNetworkPayload> map = historicalMaps.get(i);
+            for (ByteArray hash : map.keySet()) {
+                if (!knownHashes.contains(hash) && index.get(hash) == null) {
+                    index.putIfAbsent(hash, map.get(hash), versions.get(i));
+                    numHistoricalItems++;
+                }
+            }
+        }
+        log.info("We added {} entries of historical data stores with versions {} to the index for the response",
+                numHistoricalItems, versions);
+        return index;
+    }
+
+    private GetDataResponse buildGetDataResponse(GetDataRequest getDataRequest,
+                                                 Set<ByteArray> excludedKeysAsByteArray,
+                                                 Set<PersistableNetworkPayload> filteredPersistableNetworkPayloads,
+                                                 boolean isGetUpdatedDataResponse,
+                                                 int maxEntriesPerType,
+                                                 AtomicBoolean wasPersistableNetworkPayloadsTruncated,
+                                                 AtomicBoolean wasProtectedStorageEntriesTruncated,
+                                                 Capabilities peerCapabilities) {
         log.trace("## buildGetDataResponse filteredPersistableNetworkPayloadHashes={}",
                 filteredPersistableNetworkPayloads.stream()
                         .map(e -> Utilities.encodeToHex(e.getHash()))
                         .toArray());
 
         // We give 75% space to ProtectedStorageEntries as they contain MailBoxMessages and those can be larger.
-        limit = Math.round(maxSize * 0.75);
-        Set<ProtectedStorageEntry> filteredProtectedStorageEntries = filterKnownHashes(
-                map,
-                ProtectedStorageEntry::getProtectedStoragePayload,
+        long limit = Math.round(getMaxDataResponseSize() * 0.75);
+        log.info("Filter ProtectedStorageEntry data based on {} knownHashes", excludedKeysAsByteArray.size());
+        Set<ProtectedStorageEntry> filteredProtectedStorageEntries = protectedStorageEntryIndex.getItemsForResponse(
                 excludedKeysAsByteArray,
+                storeVersion -> true,
                 peerCapabilities,
                 maxEntriesPerType,
                 limit,
-                wasProtectedStorageEntriesTruncated,
-                false);
+                wasProtectedStorageEntriesTruncated);
         log.info("{} ProtectedStorageEntry entries remained after filtered by excluded keys. " +
                         "Original map had {} entries.",
                 filteredProtectedStorageEntries.size(), map.size());
@@ -349,10 +601,78 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
                 filteredProtectedStorageEntries,
                 filteredPersistableNetworkPayloads,
                 getDataRequest.getNonce(),
-                getDataRequest instanceof GetUpdatedDataRequest,
+                isGetUpdatedDataResponse,
                 wasTruncated);
     }
 
+    // Give a bit of tolerance for message overhead
+    private static double getMaxDataResponseSize() {
+        return Connection.getMaxPermittedMessageSize() * 0.6;
+    }
+
+    // 25% of space is allocated for PersistableNetworkPayloads
+    private static long getPersistableNetworkPayloadsSizeLimit() {
+        return Math.round(getMaxDataResponseSize() * 0.25);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Sketch of our PersistableNetworkPayloads
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // Subtracts the requesters sketch from the sketch of our data matching the requesters version. Our sketches are
+    // cached by number of cells and requesters version and updated when new data gets added. The number of cells is
+    // one of the SKETCH_SIZES.
+    private InvertibleBloomLookupTable subtractFromOwnSketch(InvertibleBloomLookupTable requestersSketch,
+                                                             @Nullable String requestersVersion) {
+        Predicate<String> isVersionIncluded = storeVersion ->
+                HistoricalDataStoreService.isStoreVersionRequested(storeVersion, requestersVersion);
+        String includedVersions = Version.HISTORICAL_RESOURCE_FILE_VERSION_TAGS.stream()
+                .filter(isVersionIncluded)
+                .collect(Collectors.joining(","));
+        String cacheKey = requestersSketch.getNumCells() + "/" + includedVersions;
+        synchronized (sketchCache) {
+            InvertibleBloomLookupTable sketch = sketchCache.get(cacheKey);
+            if (sketch == null) {
+                InvertibleBloomLookupTable newSketch = new InvertibleBloomLookupTable(requestersSketch.getNumCells());
+                persistableNetworkPayloadIndex.forEach(isVersionIncluded, (hash, payload) -> insertIntoSketch(newSketch, hash));
+                // The historical hashes are read from the mapped stores without decoding the payloads. A hash must
+                // only be inserted once, so we skip those of live data and of the stores inserted before.
+                List<Map<ByteArray, PersistableNetworkPayload>> insertedMaps = new ArrayList<>();
+                getHistoricalDataStoreServices().forEach(service -> service.getMapsByVersion().forEach((version, map) -> {
+                    if (!isVersionIncluded.test(version)) {
+                        return;
+                    }
+                    for (ByteArray hash : map.keySet()) {
+                        if (persistableNetworkPayloadIndex.get(hash) == null &&
+                                insertedMaps.stream().noneMatch(insertedMap -> insertedMap.containsKey(hash))) {
+                            insertIntoSketch(newSketch, hash);
+                        }
+                    }
+                    insertedMaps.add(map);
+                }));
+                sketchCache.put(cacheKey, newSketch);
+                sketch = newSketch;
+            }
+            return sketch.subtract(requestersSketch);
+        }
+    }
+
+    private static void insertIntoSketch(InvertibleBloomLookupTable sketch, ByteArray hash) {
+        if (hash.bytes.length <= InvertibleBloomLookupTable.MAX_KEY_LENGTH) {
+            sketch.insert(hash.bytes);
+        }
+    }
+
+    // New PersistableNetworkPayloads are live data which is contained in all our sketches
+    private void addToSketches(ByteArray hash) {
+        if (hash.bytes.length > InvertibleBloomLookupTable.MAX_KEY_LENGTH) {
+            return;
+        }
+        synchronized (sketchCache) {
+            sketchCache.values().forEach(sketch -> sketch.insert(hash.bytes));
+        }
+    }
+
     ///////////////////////////////////////////////////////////////////////////////////////////
     // Utils for collecting the exclude hashes
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -395,135 +715,45 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
         return map;
     }
 
-    /**
-     * Generic function that can be used to filter a Map<ByteArray, ProtectedStorageEntry || PersistableNetworkPayload>
-     * by a given set of keys and peer capabilities.
-     */
-    static private <T extends NetworkPayload> Set<T> filterKnownHashes(
-            Map<ByteArray, T> toFilter,
-            Function<T, ? extends NetworkPayload> asPayload,
-            Set<ByteArray> knownHashes,
-            Capabilities peerCapabilities,
-            int maxEntries,
-            long limit,
-            AtomicBoolean outTruncated,
-            boolean isPersistableNetworkPayload) {
-        log.info("Filter {} data based on {} knownHashes",
-                isPersistableNetworkPayload ? "PersistableNetworkPayload" : "ProtectedStorageEntry",
-                knownHashes.size());
-
-        AtomicLong totalSize = new AtomicLong();
-        AtomicBoolean exceededSizeLimit = new AtomicBoolean();
-
-        Set<Map.Entry<ByteArray, T>> entries = toFilter.entrySet();
-        Map<String, AtomicInteger> numItemsByClassName = new HashMap<>();
-        entries.forEach(entry -> {
-            String name = asPayload.apply(entry.getValue()).getClass().getSimpleName();
-            numItemsByClassName.putIfAbsent(name, new AtomicInteger());
-            numItemsByClassName.get(name).incrementAndGet();
-        });
-        log.info("numItemsByClassName: {}", numItemsByClassName);
-
-        // Map.Entry.value can be ProtectedStorageEntry or PersistableNetworkPayload. We call it item in the steam iterations.
-        List<T> filteredItems = entries.stream()
-                .filter(entry -> !knownHashes.contains(entry.getKey()))
-                .map(Map.Entry::getValue)
-                .filter(item -> shouldTransmitPayloadToPeer(peerCapabilities, asPayload.apply(item)))
-                .collect(Collectors.toList());
-        List<T> resultItems = new ArrayList<>();
-
-        // Truncation follows this rules
-        // 1. Add all payloads with GetDataResponsePriority.MID
-        // 2. Add all payloads with GetDataResponsePriority.LOW && !DateSortedTruncatablePayload until exceededSizeLimit is reached
-        // 3. if(!exceededSizeLimit) Add all payloads with GetDataResponsePriority.LOW && DateSortedTruncatablePayload until
-        //    exceededSizeLimit is reached and truncate by maxItems (sorted by date). We add the sublist to our resultItems in
-        //    reverse order so in case we cut off at next step we cut off oldest items.
-        // 4. We truncate list if resultList size > maxEntries
-        // 5. Add all payloads with GetDataResponsePriority.HIGH
-
-        // 1. Add all payloads with GetDataResponsePriority.MID
-        List<T> midPrioItems = filteredItems.stream()
-                .filter(item -> item.getGetDataResponsePriority() == GetDataResponsePriority.MID)
-                .collect(Collectors.toList());
-        resultItems.addAll(midPrioItems);
-        log.info("Number of items with GetDataResponsePriority.MID: {}", midPrioItems.size());
-
-        // 2. Add all payloads with GetDataResponsePriority.LOW && !DateSortedTruncatablePayload until exceededSizeLimit is reached
-        List<T> lowPrioItems = filteredItems.stream()
-                .filter(item -> item.getGetDataResponsePriority() == GetDataResponsePriority.LOW)
-                .filter(item -> !(asPayload.apply(item) instanceof DateSortedTruncatablePayload))
-                .filter(item -> {
-                    if (exceededSizeLimit.get()) {
-                        return false;
-                    }
-                    if (totalSize.addAndGet(item.toProtoMessage().getSerializedSize()) > limit) {
-                        exceededSizeLimit.set(true);
-                        return false;
+    // Fills the persistableNetworkPayloadIndex with the live data of the append-only stores. The historical stores are
+    // not indexed as they are only needed for requesters with an older version. Their payloads stay in the mapped
+    // stores and are decoded when such a request is handled.
+    private void indexAppendOnlyDataStores() {
+        appendOnlyDataStoreService.getServices()
+                .forEach(service -> {
+                    if (service instanceof HistoricalDataStoreService) {
+                        var historicalDataStoreService = (HistoricalDataStoreService<? extends PersistableNetworkPayloadStore>) service;
+                        historicalDataStoreService.getMapOfLiveData().forEach((hash, payload) ->
+                                persistableNetworkPayloadIndex.putIfAbsent(hash, payload, null));
+                    } else {
+                        service.getMap().forEach((hash, payload) ->
+                                persistableNetworkPayloadIndex.putIfAbsent(hash, payload, null));
                     }
-                    return true;
-                })
-                .collect(Collectors.toList());
-        resultItems.addAll(lowPrioItems);
-        log.info("Number of items with GetDataResponsePriority.LOW and !DateSortedTruncatablePayload: {}. Exceeded size limit: {}", lowPrioItems.size(), exceededSizeLimit.get());
-
-        // 3. if(!exceededSizeLimit) Add all payloads with GetDataResponsePriority.LOW && DateSortedTruncatablePayload until
-        //    exceededSizeLimit is reached and truncate by maxItems (sorted by date). We add the sublist to our resultItems in
-        //    reverse order so in case we cut off at next step we cut off oldest items.
-        if (!exceededSizeLimit.get()) {
-            List<T> dateSortedItems = filteredItems.stream()
-                    .filter(item -> item.getGetDataResponsePriority() == GetDataResponsePriority.LOW)
-                    .filter(item -> asPayload.apply(item) instanceof DateSortedTruncatablePayload)
-                    .filter(item -> {
-                        if (exceededSizeLimit.get()) {
-                            return false;
-                        }
-                        if (totalSize.addAndGet(item.toProtoMessage().getSerializedSize()) > limit) {
-                            exceededSizeLimit.set(true);
-                            return false;
-                        }
-                        return true;
-                    })
-                    .sorted(Comparator.comparing(item -> ((DateSortedTruncatablePayload) asPayload.apply(item)).getDate()))
-                    .collect(Collectors.toList());
-            if (!dateSortedItems.isEmpty()) {
-                int maxItems = ((DateSortedTruncatablePayload) asPayload.apply(dateSortedItems.get(0))).maxItems();
-                int size = dateSortedItems.size();
-                if (size > maxItems) {
-                    int fromIndex = size - maxItems;
-                    dateSortedItems = dateSortedItems.subList(fromIndex, size);
-                    outTruncated.set(true);
-                    log.info("Num truncated dateSortedItems {}", size);
-                    log.info("Removed oldest {} dateSortedItems as we exceeded {}", fromIndex, maxItems);
-                }
-            }
-            log.info("Number of items with GetDataResponsePriority.LOW and DateSortedTruncatablePayload: {}. Was truncated: {}", dateSortedItems.size(), outTruncated.get());
-
-            // We reverse sorting so in case we get truncated we cut off the older items
-            Comparator<T> comparator = Comparator.comparing(item -> ((DateSortedTruncatablePayload) asPayload.apply(item)).getDate());
-            dateSortedItems.sort(comparator.reversed());
-            resultItems.addAll(dateSortedItems);
-        } else {
-            log.info("No dateSortedItems added as we exceeded already the exceededSizeLimit of {}", limit);
-        }
-
-        // 4. We truncate list if resultList size > maxEntries
-        int size = resultItems.size();
-        if (size > maxEntries) {
-            resultItems = resultItems.subList(0, maxEntries);
-            outTruncated.set(true);
-            log.info("Removed last {} items as we exceeded {}", size - maxEntries, maxEntries);
+                });
+        synchronized (sketchCache) {
+            sketchCache.clear();
         }
+        log.info("We have indexed {} PersistableNetworkPayload entries for building data responses",
+                persistableNetworkPayloadIndex.size());
+    }
 
-        outTruncated.set(outTruncated.get() || exceededSizeLimit.get());
+    private Stream<HistoricalDataStoreService<?>> getHistoricalDataStoreServices() {
+        return appendOnlyDataStoreService.getServices().stream()
+                .filter(service -> service instanceof HistoricalDataStoreService)
+                .map(service -> (HistoricalDataStoreService<?>) service);
+    }
 
-        // 5. Add all payloads with GetDataResponsePriority.HIGH
-        List<T> highPrioItems = filteredItems.stream()
-                .filter(item -> item.getGetDataResponsePriority() == GetDataResponsePriority.HIGH)
-                .collect(Collectors.toList());
-        resultItems.addAll(highPrioItems);
-        log.info("Number of items with GetDataResponsePriority.HIGH: {}", highPrioItems.size());
-        log.info("Number of result items we send to requester: {}", resultItems.size());
-        return new HashSet<>(resultItems);
+    @Nullable
+    private PersistableNetworkPayload findPersistableNetworkPayload(ByteArray hash) {
+        PersistableNetworkPayload payload = persistableNetworkPayloadIndex.get(hash);
+        if (payload != null) {
+            return payload;
+        }
+        return getHistoricalDataStoreServices()
+                .map(service -> service.getFromHistoricalData(hash))
+                .filter(Objects::nonNull)
+                .findAny()
+                .orElse(null);
     }
 
     public Collection<PersistableNetworkPayload> getPersistableNetworkPayloadCollection() {
@@ -539,7 +769,7 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
     /**
      * Returns true if a Payload should be transmit to a peer given the peer's supported capabilities.
      */
-    private static boolean shouldTransmitPayloadToPeer(Capabilities peerCapabilities, NetworkPayload payload) {
+    static boolean shouldTransmitPayloadToPeer(Capabilities peerCapabilities, NetworkPayload payload) {
 
         // Sanity check to ensure this isn't used outside P2PDataStorage
         if (!(payload instanceof ProtectedStoragePayload || payload instanceof PersistableNetworkPayload))
@@ -576,11 +806,9 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
                     broadcaster.broadcast(new AddDataMessage(protectedStorageEntry), sender, null);
                 }, 60);
             }
-
-            // We don't broadcast here (last param) as we are only connected to the seed node and would be pointless
-            addProtectedStorageEntry(protectedStorageEntry, sender, null, false);
-
         });
+        // We don't broadcast here (last param) as we are only connected to the seed node and would be pointless
+        addProtectedStorageEntries(protectedStorageEntries, sender, false);
         log.info("Processing {} protectedStorageEntries took {} ms.", protectedStorageEntries.size(), this.clock.millis() - ts);
 
         ts = this.clock.millis();
@@ -676,6 +904,27 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
         }
     }
 
+    // Consecutive AddDataMessages of a bundle are added as batch, other messages are handled one by one in order
+    @Override
+    public void onMessages(List<NetworkEnvelope> networkEnvelopes, Connection connection) {
+        Optional<NodeAddress> peersNodeAddress = connection.getPeersNodeAddressOptional();
+        List<ProtectedStorageEntry> batch = new ArrayList<>();
+        for (NetworkEnvelope networkEnvelope : networkEnvelopes) {
+            if (networkEnvelope instanceof AddDataMessage && peersNodeAddress.isPresent()) {
+                batch.add(((AddDataMessage) networkEnvelope).getProtectedStorageEntry());
+                continue;
+            }
+            if (!batch.isEmpty()) {
+                addProtectedStorageEntries(batch, peersNodeAddress.get(), true);
+                batch.clear();
+            }
+            onMessage(networkEnvelope, connection);
+        }
+        if (!batch.isEmpty()) {
+            addProtectedStorageEntries(batch, peersNodeAddress.get(), true);
+        }
+    }
+
     ///////////////////////////////////////////////////////////////////////////////////////////
     // ConnectionListener implementation
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -750,7 +999,7 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
         }
 
         ByteArray hashAsByteArray = new ByteArray(payload.getHash());
-        boolean payloadHashAlreadyInStore = appendOnlyDataStoreService.getMap(payload).containsKey(hashAsByteArray);
+        boolean payloadHashAlreadyInStore = appendOnlyDataStoreService.containsKey(hashAsByteArray, payload);
 
         // Store already knows about this payload. Ignore it unless the caller specifically requests a republish.
         if (payloadHashAlreadyInStore && !reBroadcast) {
@@ -771,6 +1020,10 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
         if (!payloadHashAlreadyInStore) {
             wasAdded = appendOnlyDataStoreService.put(hashAsByteArray, payload);
             if (wasAdded) {
+                if (persistableNetworkPayloadIndex.putIfAbsent(hashAsByteArray, payload, null)) {
+                    addToSketches(hashAsByteArray);
+                }
+                ADDED_PERSISTABLE_NETWORK_PAYLOADS.inc();
                 appendOnlyDataStoreListeners.forEach(e -> e.onAdded(payload));
             }
         }
@@ -791,7 +1044,12 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
         byte[] hash = payload.getHash();
         if (payload.verifyHashSize()) {
             ByteArray hashAsByteArray = new ByteArray(hash);
-            appendOnlyDataStoreService.put(hashAsByteArray, payload);
+            // The index only contains live data, so we check the historical stores which is a cheap lookup by hash
+            if (!appendOnlyDataStoreService.containsKey(hashAsByteArray, payload) &&
+                    appendOnlyDataStoreService.put(hashAsByteArray, payload) &&
+                    persistableNetworkPayloadIndex.putIfAbsent(hashAsByteArray, payload, null)) {
+                addToSketches(hashAsByteArray);
+            }
         } else {
             log.warn("We got a hash exceeding our permitted size");
         }
@@ -822,62 +1080,14 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
 
             //log.trace("## call addProtectedStorageEntry hash={}, map={}", hashOfPayload, printMap());
 
-            // We do that check early as it is a very common case for returning, so we return early
-            // If we have seen a more recent operation for this payload and we have a payload locally, ignore it
-            ProtectedStorageEntry storedEntry = map.get(hashOfPayload);
-            if (storedEntry != null && !hasSequenceNrIncreased(protectedStorageEntry.getSequenceNumber(), hashOfPayload)) {
-                log.trace("## hasSequenceNrIncreased is false. hash={}", hashOfPayload);
-                return false;
-            }
-
-            if (hasAlreadyRemovedAddOncePayload(protectedStoragePayload, hashOfPayload)) {
-                log.trace("## We have already removed that AddOncePayload by a previous removeDataMessage. " +
-                        "We ignore that message. ProtectedStoragePayload: {}", protectedStoragePayload.toString());
-                return false;
-            }
-
-            // To avoid that expired data get stored and broadcast we check for expire date.
-            if (protectedStorageEntry.isExpired(clock)) {
-                String peer = sender != null ? sender.getFullAddress() : "sender is null";
-                log.trace("## We received an expired protectedStorageEntry from peer {}. ProtectedStoragePayload={}",
-                        peer, protectedStorageEntry.getProtectedStoragePayload().getClass().getSimpleName());
-                return false;
-            }
-
-            // We want to allow add operations for equal sequence numbers if we don't have the payload locally. This is
-            // the case for non-persistent Payloads that need to be reconstructed from peer and seed nodes each startup.
-            MapValue sequenceNumberMapValue = sequenceNumberMap.get(hashOfPayload);
-            if (sequenceNumberMapValue != null &&
-                    protectedStorageEntry.getSequenceNumber() < sequenceNumberMapValue.sequenceNr) {
-                log.trace("## sequenceNr too low hash={}", hashOfPayload);
-                return false;
-            }
-
-            // Verify the ProtectedStorageEntry is well formed and valid for the add operation
-            if (!protectedStorageEntry.isValidForAddOperation()) {
-                log.trace("## !isValidForAddOperation hash={}", hashOfPayload);
-                return false;
-            }
-
-            // If we have already seen an Entry with the same hash, verify the metadata is equal
-            if (storedEntry != null && !protectedStorageEntry.matchesRelevantPubKey(storedEntry)) {
-                log.trace("## !matchesRelevantPubKey hash={}", hashOfPayload);
-                return false;
-            }
-
-            // Test against filterPredicate set from FilterManager
-            if (filterPredicate != null &&
-                    !filterPredicate.test(protectedStorageEntry.getProtectedStoragePayload())) {
-                log.debug("filterPredicate test failed. hashOfPayload={}", hashOfPayload);
+            if (!canApplyAddOperation(protectedStorageEntry, hashOfPayload) ||
+                    !isValidForAddOperation(protectedStorageEntry, hashOfPayload, sender)) {
                 return false;
             }
 
             // This is an updated entry. Record it and signal listeners.
-            map.put(hashOfPayload, protectedStorageEntry);
+            applyAddOperation(protectedStorageEntry, hashOfPayload);
             hashMapChangedListeners.forEach(e -> e.onAdded(Collections.singletonList(protectedStorageEntry)));
-
-            // Record the updated sequence number and persist it. Higher delay so we can batch more items.
-            sequenceNumberMap.put(hashOfPayload, new MapValue(protectedStorageEntry.getSequenceNumber(), this.clock.millis()));
             requestPersistence();
 
             //log.trace("## ProtectedStorageEntry added to map. hash={}, map={}", hashOfPayload, printMap());
@@ -887,14 +1097,57 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
                 broadcaster.broadcast(new AddDataMessage(protectedStorageEntry), sender, listener);
                 log.trace("## broadcasted ProtectedStorageEntry. hash={}", hashOfPayload);
             }
-            // Persist ProtectedStorageEntries carrying PersistablePayload payloads
-            if (protectedStoragePayload instanceof PersistablePayload)
-                protectedDataStoreService.put(hashOfPayload, protectedStorageEntry);
-
             return true;
         }
     }
 
+    /**
+     * Adds a batch of ProtectedStorageEntries like {@link #addProtectedStorageEntry}. The payloads are hashed and the
+     * signatures verified in parallel without holding the lock of the map. The valid entries are then applied in
+     * order in one critical section and the listeners are notified once with all added entries.
+     *
+     * @param protectedStorageEntries the entries to add
+     * @param sender Senders nodeAddress, if available
+     * @param allowBroadcast Flag to allow broadcast of the added entries
+     * @return the added entries
+     */
+    public List<ProtectedStorageEntry> addProtectedStorageEntries(Collection<ProtectedStorageEntry> protectedStorageEntries,
+                                                                  @Nullable NodeAddress sender,
+                                                                  boolean allowBroadcast) {
+        List<ProtectedStorageEntry> entries = new ArrayList<>(protectedStorageEntries);
+        ByteArray[] hashes = new ByteArray[entries.size()];
+        boolean[] isValid = new boolean[entries.size()];
+        forEachInParallel(entries.size(), i -> {
+            ProtectedStorageEntry protectedStorageEntry = entries.get(i);
+            hashes[i] = get32ByteHashAsByteArray(protectedStorageEntry.getProtectedStoragePayload());
+            // Entries we have already stored with the same or a higher sequence number are rejected without
+            // verifying the signature. That is the common case for broadcast data we get from multiple peers.
+            ProtectedStorageEntry storedEntry = map.get(hashes[i]);
+            isValid[i] = (storedEntry == null || protectedStorageEntry.getSequenceNumber() > storedEntry.getSequenceNumber()) &&
+                    isValidForAddOperation(protectedStorageEntry, hashes[i], sender);
+        });
+
+        List<ProtectedStorageEntry> addedEntries = new ArrayList<>();
+        synchronized (map) {
+            for (int i = 0; i < entries.size(); i++) {
+                if (isValid[i] && canApplyAddOperation(entries.get(i), hashes[i])) {
+                    applyAddOperation(entries.get(i), hashes[i]);
+                    addedEntries.add(entries.get(i));
+                }
+            }
+            if (!addedEntries.isEmpty()) {
+                hashMapChangedListeners.forEach(e -> e.onAdded(addedEntries));
+                requestPersistence();
+            }
+        }
+
+        if (allowBroadcast) {
+            addedEntries.forEach(protectedStorageEntry ->
+                    broadcaster.broadcast(new AddDataMessage(protectedStorageEntry), sender, null));
+        }
+        return addedEntries;
+    }
+
     /**
      * We do not do all checks as it is used for republishing existing mailbox messages from seed nodes which
      * only got stored if they had been valid when we received them.
@@ -965,6 +1218,7 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
 
                 // Update the hash map with the updated entry
                 map.put(hashOfPayload, updatedEntry);
+                protectedStorageEntryIndex.put(hashOfPayload, updatedEntry);
 
                 // Record the latest sequence number and persist it
                 sequenceNumberMap.put(hashOfPayload, new MapValue(updatedEntry.getSequenceNumber(), this.clock.millis()));
@@ -1121,6 +1375,8 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
 
                 //log.trace("## removeFromMapAndDataStore: hashOfPayload={}, map before remove={}", hashOfPayload, printMap());
                 map.remove(hashOfPayload);
+                protectedStorageEntryIndex.remove(hashOfPayload);
+                REMOVED_PROTECTED_STORAGE_ENTRIES.inc();
                 //log.trace("## removeFromMapAndDataStore: map after remove={}", printMap());
 
                 // We inform listeners even the entry was not found in our map
@@ -1138,6 +1394,116 @@ public class P2PDataStorage implements MessageListener, ConnectionListener, Pers
         }
     }
 
+    // Checks of an entry for the add operation which depend on the stored data. Must be called while holding the lock
+    // of the map.
+    private boolean canApplyAddOperation(ProtectedStorageEntry protectedStorageEntry, ByteArray hashOfPayload) {
+        // We do that check early as it is a very common case for returning, so we return early
+        // If we have seen a more recent operation for this payload and we have a payload locally, ignore it
+        ProtectedStorageEntry storedEntry = map.get(hashOfPayload);
+        if (storedEntry != null && !hasSequenceNrIncreased(protectedStorageEntry.getSequenceNumber(), hashOfPayload)) {
+            log.trace("## hasSequenceNrIncreased is false. hash={}", hashOfPayload);
+            return false;
+        }
+
+        ProtectedStoragePayload protectedStoragePayload = protectedStorageEntry.getProtectedStoragePayload();
+        if (hasAlreadyRemovedAddOncePayload(protectedStoragePayload, hashOfPayload)) {
+            log.trace("## We have already removed that AddOncePayload by a previous removeDataMessage. " +
+                    "We ignore that message. ProtectedStoragePayload: {}", protectedStoragePayload.toString());
+            return false;
+        }
+
+        // We want to allow add operations for equal sequence numbers if we don't have the payload locally. This is
+        // the case for non-persistent Payloads that need to be reconstructed from peer and seed nodes each startup.
+        MapValue sequenceNumberMapValue = sequenceNumberMap.get(hashOfPayload);
+        if (sequenceNumberMapValue != null &&
+                protectedStorageEntry.getSequenceNumber() < sequenceNumberMapValue.sequenceNr) {
+            log.trace("## sequenceNr too low hash={}", hashOfPayload);
+            return false;
+        }
+
+        // If we have already seen an Entry with the same hash, verify the metadata is equal
+        if (storedEntry != null && !protectedStorageEntry.matchesRelevantPubKey(storedEntry)) {
+            log.trace("## !matchesRelevantPubKey hash={}", hashOfPayload);
+            return false;
+        }
+        return true;
+    }
+
+    // Checks of an entry for the add operation which only depend on the entry, so they can run without holding the lock
+    // of the map. Verifying the signature is the expensive part of adding an entry.
+    private boolean isValidForAddOperation(ProtectedStorageEntry protectedStorageEntry,
+                                           ByteArray hashOfPayload,
+                                           @Nullable NodeAddress sender) {
+        // To avoid that expired data get stored and broadcast we check for expire date.
+        if (protectedStorageEntry.isExpired(clock)) {
+            String peer = sender != null ? sender.getFullAddress() : "sender is null";
+            log.trace("## We received an expired protectedStorageEntry from peer {}. ProtectedStoragePayload={}",
+                    peer, protectedStorageEntry.getProtectedStoragePayload().getClass().getSimpleName());
+            return false;
+        }
+
+        // Verify the ProtectedStorageEntry is well formed and valid for the add operation
+        if (!protectedStorageEntry.isValidForAddOperation()) {
+            log.trace("## !isValidForAddOperation hash={}", hashOfPayload);
+            return false;
+        }
+
+        // Test against filterPredicate set from FilterManager
+        if (filterPredicate != null &&
+                !filterPredicate.test(protectedStorageEntry.getProtectedStoragePayload())) {
+            log.debug("filterPredicate test failed. hashOfPayload={}", hashOfPayload);
+            return false;
+        }
+        return true;
+    }
+
+    // Must be called while holding the lock of the map
+    private void applyAddOperation(ProtectedStorageEntry protectedStorageEntry, ByteArray hashOfPayload) {
+        map.put(hashOfPayload, protectedStorageEntry);
+        protectedStorageEntryIndex.put(hashOfPayload, protectedStorageEntry);
+        ADDED_PROTECTED_STORAGE_ENTRIES.inc();
+
+        // Record the updated sequence number. Persistence is requested by the caller, with a higher delay so we can
+        // batch more items.
+        sequenceNumberMap.put(hashOfPayload, new MapValue(protectedStorageEntry.getSequenceNumber(), this.clock.millis()));
+
+        // Persist ProtectedStorageEntries carrying PersistablePayload payloads
+        if (protectedStorageEntry.getProtectedStoragePayload() instanceof PersistablePayload)
+            protectedDataStoreService.put(hashOfPayload, protectedStorageEntry);
+    }
+
+    // Runs the task for the indices 0 to size - 1, split into chunks which run in parallel if there are enough indices
+    private static void forEachInParallel(int size, IntConsumer task) {
+        int numChunks = Math.min(VERIFY_POOL_SIZE, size / MIN_ITEMS_PER_VERIFY_TASK);
+        if (numChunks <= 1) {
+            for (int i = 0; i < size; i++) task.accept(i);
+            return;
+        }
+
+        int chunkSize = (size + numChunks - 1) / numChunks;
+        List<Future<?>> futures = new ArrayList<>();
+        for (int chunkStart = chunkSize; chunkStart < size; chunkStart += chunkSize) {
+            int from = chunkStart;
+            int to = Math.min(chunkStart + chunkSize, size);
+            futures.add(VERIFY_EXECUTOR.submit(() -> {
+                for (int i = from; i < to; i++) task.accept(i);
+            }));
+        }
+        // The calling thread processes the first chunk
+        for (int i = 0; i < chunkSize; i++) task.accept(i);
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                Throwables.throwIfUnchecked(e.getCause());
+                throw new RuntimeException(e.getCause());
+            }
+        }
+    }
+
     private boolean hasSequenceNrIncreased(int newSequenceNumber, ByteArray hashOfData) {
         if (sequenceNumberMap.containsKey(hashOfData)) {
             int storedSequenceNumber = sequenceNumberMap.get(hashOfData).sequenceNr;
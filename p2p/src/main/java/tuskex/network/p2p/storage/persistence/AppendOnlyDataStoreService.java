@@ -83,6 +83,14 @@ public class AppendOnlyDataStoreService {
                 .orElse(new HashMap<>());
     }
 
+    public boolean containsKey(P2PDataStorage.ByteArray hashAsByteArray, PersistableNetworkPayload payload) {
+        return findService(payload)
+                .map(service -> service instanceof HistoricalDataStoreService ?
+                        ((HistoricalDataStoreService<?>) service).anyMapContainsKey(hashAsByteArray) :
+                        service.getMap().containsKey(hashAsByteArray))
+                .orElse(false);
+    }
+
     public boolean put(P2PDataStorage.ByteArray hashAsByteArray, PersistableNetworkPayload payload) {
         Optional<MapStoreService<? extends PersistableNetworkPayloadStore<? extends PersistableNetworkPayload>, PersistableNetworkPayload>> optionalService = findService(payload);
         optionalService.ifPresent(service -> service.putIfAbsent(hashAsByteArray, payload));
@@ -17,30 +17,47 @@
 
 package tuskex.network.p2p.storage.persistence;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import tuskex.common.UserThread;
 import tuskex.common.app.DevEnv;
 import tuskex.common.app.Version;
 import tuskex.common.persistence.PersistenceManager;
+import tuskex.common.proto.persistable.PersistenceProtoResolver;
+import tuskex.common.util.GcUtil;
+import tuskex.common.util.Utilities;
 import tuskex.network.p2p.storage.P2PDataStorage;
 import tuskex.network.p2p.storage.payload.PersistableNetworkPayload;
 import lombok.extern.slf4j.Slf4j;
 
+import javax.annotation.Nullable;
 import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 /**
  * Manages historical data stores tagged with the release versions.
  * New data is added to the default map in the store (live data). Historical data is created from resource files.
  * For initial data requests we only use the live data as the users version is sent with the
  * request so the responding (seed)node can figure out if we miss any of the historical data.
+ *
+ * The historical data is not kept on the heap but in memory-mapped index files (see {@link MappedPayloadMap}) which
+ * are created from the resource files at the first start. Lookups by hash don't decode the payloads. Clients should
+ * use streamAllData or the maps by version instead of getMapOfAllData, which copies all historical data to the heap.
  */
 @Slf4j
 public abstract class HistoricalDataStoreService<T extends PersistableNetworkPayloadStore<? extends PersistableNetworkPayload>> extends MapStoreService<T, PersistableNetworkPayload> {
-    private ImmutableMap<String, PersistableNetworkPayloadStore<? extends PersistableNetworkPayload>> storesByVersion;
-    // Cache to avoid that we have to recreate the historical data at each request
-    private ImmutableMap<P2PDataStorage.ByteArray, PersistableNetworkPayload> allHistoricalPayloads;
+    private static final int MAX_READ_THREADS = 4;
+
+    private ImmutableMap<String, Map<P2PDataStorage.ByteArray, PersistableNetworkPayload>> mapsByVersion = ImmutableMap.of();
+    // The historical maps are disjoint in practice and lookups are cheap, so we check them one by one instead of
+    // merging them into one map
+    private ImmutableList<Map<P2PDataStorage.ByteArray, PersistableNetworkPayload>> historicalMaps = ImmutableList.of();
 
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -63,27 +80,9 @@ public abstract class HistoricalDataStoreService<T extends PersistableNetworkPay
         Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> result = new HashMap<>(store.getMap());
 
         // If we have a store with a newer version than the requesters version we will add those as well.
-        storesByVersion.entrySet().stream()
-                .filter(entry -> {
-                    // Old nodes not sending the version will get delivered all data
-                    if (requestersVersion == null) {
-                        log.info("The requester did not send a version. This is expected for not updated nodes.");
-                        return true;
-                    }
-
-                    // Otherwise we only add data if the requesters version is older then
-                    // the version of the particular store.
-                    String storeVersion = entry.getKey();
-                    boolean newVersion = Version.isNewVersion(storeVersion, requestersVersion);
-                    String details = newVersion ?
-                            "As our historical store is a newer version we add the data to our result map." :
-                            "As the requester version is not older as our historical store we do not " +
-                                    "add the data to the result map.";
-                    log.trace("The requester had version {}. Our historical data store has version {}.\n{}",
-                            requestersVersion, storeVersion, details);
-                    return newVersion;
-                })
-                .map(e -> e.getValue().getMap())
+        mapsByVersion.entrySet().stream()
+                .filter(entry -> isStoreVersionRequested(entry.getKey(), requestersVersion))
+                .map(Map.Entry::getValue)
                 .forEach(result::putAll);
 
         log.info("We found {} entries since requesters version {}",
@@ -91,16 +90,69 @@ public abstract class HistoricalDataStoreService<T extends PersistableNetworkPay
         return result;
     }
 
+    // Old nodes not sending the version will get delivered all data. Otherwise we only deliver data if the requesters
+    // version is older than the version of the particular store.
+    public static boolean isStoreVersionRequested(String storeVersion, String requestersVersion) {
+        if (requestersVersion == null) {
+            log.info("The requester did not send a version. This is expected for not updated nodes.");
+            return true;
+        }
+
+        boolean newVersion = Version.isNewVersion(storeVersion, requestersVersion);
+        String details = newVersion ?
+                "As our historical store is a newer version we add the data to our result map." :
+                "As the requester version is not older as our historical store we do not " +
+                        "add the data to the result map.";
+        log.trace("The requester had version {}. Our historical data store has version {}.\n{}",
+                requestersVersion, storeVersion, details);
+        return newVersion;
+    }
+
+    // The maps are read-only and decode the payloads on access
+    public Map<String, Map<P2PDataStorage.ByteArray, PersistableNetworkPayload>> getMapsByVersion() {
+        return mapsByVersion;
+    }
+
     public Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> getMapOfLiveData() {
         return store.getMap();
     }
 
     public Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> getMapOfAllData() {
         Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> result = new HashMap<>(getMapOfLiveData());
-        result.putAll(allHistoricalPayloads);
+        historicalMaps.forEach(result::putAll);
         return result;
     }
 
+    // Historical payloads are decoded while the stream is consumed and are not retained by the stream
+    public Stream<PersistableNetworkPayload> streamAllData() {
+        return Stream.concat(Stream.of(getMapOfLiveData()), historicalMaps.stream())
+                .flatMap(map -> map.values().stream());
+    }
+
+    @Nullable
+    public PersistableNetworkPayload getFromHistoricalData(P2PDataStorage.ByteArray hash) {
+        for (Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> historicalMap : historicalMaps) {
+            PersistableNetworkPayload payload = historicalMap.get(hash);
+            if (payload != null) {
+                return payload;
+            }
+        }
+        return null;
+    }
+
+    // Prefer that over getMapOfAllData().containsKey as it does not decode the historical data
+    public boolean anyMapContainsKey(P2PDataStorage.ByteArray hash) {
+        if (getMapOfLiveData().containsKey(hash)) {
+            return true;
+        }
+        for (Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> historicalMap : historicalMaps) {
+            if (historicalMap.containsKey(hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
 
     ///////////////////////////////////////////////////////////////////////////////////////////
     // MapStoreService
@@ -144,19 +196,24 @@ public abstract class HistoricalDataStoreService<T extends PersistableNetworkPay
             log.debug("We have created the {} store for the live data and filled it with {} entries from the persisted data.",
                     getFileName(), getMapOfLiveData().size());
 
-            // Now we add our historical data stores.
-            Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> allHistoricalPayloads = new HashMap<>();
-            Map<String, PersistableNetworkPayloadStore<? extends PersistableNetworkPayload>> storesByVersion = new HashMap<>();
-            AtomicInteger numFiles = new AtomicInteger(Version.HISTORICAL_RESOURCE_FILE_VERSION_TAGS.size());
+            // Now we add our historical data stores. They are read in parallel as creating a missing index file needs
+            // to parse the store.
+            int numVersions = Version.HISTORICAL_RESOURCE_FILE_VERSION_TAGS.size();
+            int numThreads = Math.max(1, Math.min(numVersions, MAX_READ_THREADS));
+            ExecutorService executor = Utilities.getThreadPoolExecutor("HistoricalDataStoreService-" + getFileName(),
+                    numThreads, numThreads, Math.max(1, numVersions), 10);
+            Map<String, Map<P2PDataStorage.ByteArray, PersistableNetworkPayload>> mapsByVersion = new HashMap<>();
+            AtomicInteger numFiles = new AtomicInteger(numVersions);
             Version.HISTORICAL_RESOURCE_FILE_VERSION_TAGS.forEach(version -> readHistoricalStoreFromResources(version,
                     postFix,
-                    allHistoricalPayloads,
-                    storesByVersion,
+                    executor,
+                    mapsByVersion,
                     () -> {
                         if (numFiles.decrementAndGet() == 0) {
-                            // At last iteration we set the immutable map
-                            this.allHistoricalPayloads = ImmutableMap.copyOf(allHistoricalPayloads);
-                            this.storesByVersion = ImmutableMap.copyOf(storesByVersion);
+                            // At last iteration we set the immutable maps
+                            executor.shutdown();
+                            this.mapsByVersion = ImmutableMap.copyOf(mapsByVersion);
+                            this.historicalMaps = ImmutableList.copyOf(mapsByVersion.values());
                             completeHandler.run();
                         }
                     }));
@@ -170,29 +227,63 @@ public abstract class HistoricalDataStoreService<T extends PersistableNetworkPay
 
     private void readHistoricalStoreFromResources(String version,
                                                   String postFix,
-                                                  Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> allHistoricalPayloads,
-                                                  Map<String, PersistableNetworkPayloadStore<? extends PersistableNetworkPayload>> storesByVersion,
+                                                  Executor executor,
+                                                  Map<String, Map<P2PDataStorage.ByteArray, PersistableNetworkPayload>> mapsByVersion,
                                                   Runnable completeHandler) {
 
         String fileName = getFileName() + "_" + version;
-        boolean wasCreatedFromResources = makeFileFromResourceFile(fileName, postFix);
+        makeFileFromResourceFile(fileName, postFix);
 
         // If resource file does not exist we do not create a new store as it would never get filled.
-        persistenceManager.readPersisted(fileName, persisted -> {
-                    storesByVersion.put(version, persisted);
-                    allHistoricalPayloads.putAll(persisted.getMap());
-                    log.debug("We have read from {} {} historical items.", fileName, persisted.getMap().size());
-                    pruneStore(persisted, version);
-                    completeHandler.run();
-                },
-                completeHandler::run);
+        File storeFile = new File(absolutePathOfStorageDir, fileName);
+        if (!storeFile.exists()) {
+            completeHandler.run();
+            return;
+        }
+
+        executor.execute(() -> {
+            Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> historicalMap = readHistoricalMap(fileName, storeFile);
+            UserThread.execute(() -> {
+                if (historicalMap != null) {
+                    mapsByVersion.put(version, historicalMap);
+                    log.debug("We have read from {} {} historical items.", fileName, historicalMap.size());
+                    pruneStore(historicalMap, version);
+                    GcUtil.maybeReleaseMemory();
+                }
+                completeHandler.run();
+            });
+        });
     }
 
-    private void pruneStore(PersistableNetworkPayloadStore<? extends PersistableNetworkPayload> historicalStore,
+    // Maps the index file of the store. If it does not exist or is outdated we parse the store and create it.
+    @Nullable
+    private Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> readHistoricalMap(String fileName, File storeFile) {
+        File indexFile = new File(absolutePathOfStorageDir, fileName + MappedPayloadMap.FILE_SUFFIX);
+        PersistenceProtoResolver persistenceProtoResolver = persistenceManager.getPersistenceProtoResolver();
+        MappedPayloadMap mappedMap = MappedPayloadMap.open(indexFile, storeFile, persistenceProtoResolver);
+        if (mappedMap != null) {
+            return mappedMap;
+        }
+
+        T persisted = persistenceManager.getPersisted(fileName);
+        if (persisted == null) {
+            return null;
+        }
+        try {
+            MappedPayloadMap.write(indexFile, storeFile, persisted.getMap());
+            mappedMap = MappedPayloadMap.open(indexFile, storeFile, persistenceProtoResolver);
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Could not create index file for {}: {}", fileName, e.toString());
+        }
+        // If we could not create the index file we keep the parsed data on the heap
+        return mappedMap != null ? mappedMap : ImmutableMap.copyOf(persisted.getMap());
+    }
+
+    private void pruneStore(Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> historicalMap,
                             String version) {
         Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> mapOfLiveData = getMapOfLiveData();
         int preLive = mapOfLiveData.size();
-        mapOfLiveData.keySet().removeAll(historicalStore.getMap().keySet());
+        mapOfLiveData.keySet().removeIf(historicalMap::containsKey);
         int postLive = mapOfLiveData.size();
         if (preLive > postLive) {
             log.debug("We pruned data from our live data store which are already contained in the historical data store with version {}. " +
@@ -203,8 +294,4 @@ public abstract class HistoricalDataStoreService<T extends PersistableNetworkPay
         }
         requestPersistence();
     }
-
-    private boolean anyMapContainsKey(P2PDataStorage.ByteArray hash) {
-        return getMapOfLiveData().containsKey(hash) || allHistoricalPayloads.containsKey(hash);
-    }
 }
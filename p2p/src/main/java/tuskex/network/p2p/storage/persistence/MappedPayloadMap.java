@@ -0,0 +1,275 @@
+/*
+ * This file is part of Tuskex.
+ *
+ * Tuskex is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Tuskex is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Tuskex. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.network.p2p.storage.persistence;
+
+import tuskex.common.proto.persistable.PersistenceProtoResolver;
+import tuskex.network.p2p.storage.P2PDataStorage;
+import tuskex.network.p2p.storage.payload.PersistableNetworkPayload;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Read-only map of historical payloads backed by a memory-mapped index file, so the payloads need not be held on the
+ * heap. Membership checks do a binary search over the sorted hashes and payloads are only decoded when they are read.
+ *
+ * The index file is created from the parsed resource store and is only used as long as the resource store it was
+ * created from did not change. The store is only copied from the resources if it does not exist, so its length and
+ * modification time are checked, which does not need to read it at each start:
+ *
+ * <pre>
+ * header:  magic (int), source length (long), source last modified (long), count (int), key length (int)
+ * keys:    count hashes of key length bytes, sorted unsigned
+ * offsets: count record offsets (int)
+ * records: count records of length (int) and the PersistableNetworkPayload proto bytes
+ * </pre>
+ */
+@Slf4j
+class MappedPayloadMap extends AbstractMap<P2PDataStorage.ByteArray, PersistableNetworkPayload> {
+    static final String FILE_SUFFIX = ".index";
+
+    private static final int MAGIC = 0x54484932; // THI2
+    private static final int HEADER_SIZE = 28;
+
+    private final MappedByteBuffer buffer;
+    private final PersistenceProtoResolver persistenceProtoResolver;
+    private final int count;
+    private final int keyLength;
+    private final int offsetsPosition;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Write the index file for a store.
+     *
+     * @param indexFile the index file
+     * @param sourceFile the store file the map was read from
+     * @param map the map of the store
+     * @throws IllegalArgumentException if the hashes differ in length
+     */
+    static void write(File indexFile, File sourceFile, Map<P2PDataStorage.ByteArray, PersistableNetworkPayload> map)
+            throws IOException {
+        List<P2PDataStorage.ByteArray> keys = map.keySet().stream()
+                .sorted((key1, key2) -> Arrays.compareUnsigned(key1.bytes, key2.bytes))
+                .collect(Collectors.toList());
+        int keyLength = keys.isEmpty() ? 0 : keys.get(0).bytes.length;
+        if (keys.stream().anyMatch(key -> key.bytes.length != keyLength))
+            throw new IllegalArgumentException("Hashes of historical store differ in length");
+
+        // records are written before the offsets are known, so we serialize them first
+        byte[][] records = new byte[keys.size()][];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = map.get(keys.get(i)).toProtoMessage().toByteArray();
+        }
+
+        File tempFile = new File(indexFile.getParentFile(), indexFile.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeLong(sourceFile.length());
+            out.writeLong(sourceFile.lastModified());
+            out.writeInt(keys.size());
+            out.writeInt(keyLength);
+            for (P2PDataStorage.ByteArray key : keys) {
+                out.write(key.bytes);
+            }
+            long offset = HEADER_SIZE + (long) keys.size() * (keyLength + Integer.BYTES);
+            for (byte[] record : records) {
+                if (offset > Integer.MAX_VALUE) throw new IOException("Historical store is too large to be mapped");
+                out.writeInt((int) offset);
+                offset += Integer.BYTES + record.length;
+            }
+            for (byte[] record : records) {
+                out.writeInt(record.length);
+                out.write(record);
+            }
+        }
+        Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Map an index file.
+     *
+     * @param indexFile the index file
+     * @param sourceFile the store file the index file must have been created from
+     * @param persistenceProtoResolver the resolver to decode the payloads
+     * @return the map or null if the index file does not exist, is invalid or was created from another source file
+     */
+    @Nullable
+    static MappedPayloadMap open(File indexFile, File sourceFile, PersistenceProtoResolver persistenceProtoResolver) {
+        if (!indexFile.exists()) return null;
+        try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) return null;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != MAGIC ||
+                    buffer.getLong(4) != sourceFile.length() ||
+                    buffer.getLong(12) != sourceFile.lastModified()) {
+                log.info("Index file {} is outdated", indexFile.getName());
+                return null;
+            }
+            return new MappedPayloadMap(buffer, persistenceProtoResolver);
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Could not map index file {}: {}", indexFile.getName(), e.toString());
+            return null;
+        }
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof P2PDataStorage.ByteArray && indexOf(((P2PDataStorage.ByteArray) key).bytes) >= 0;
+    }
+
+    @Override
+    public PersistableNetworkPayload get(Object key) {
+        if (!(key instanceof P2PDataStorage.ByteArray)) return null;
+        int index = indexOf(((P2PDataStorage.ByteArray) key).bytes);
+        return index < 0 ? null : decode(index);
+    }
+
+    @Override
+    public Set<P2PDataStorage.ByteArray> keySet() {
+        return new View<>(this::getKey) {
+            @Override
+            public boolean contains(Object o) {
+                return containsKey(o);
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<P2PDataStorage.ByteArray, PersistableNetworkPayload>> entrySet() {
+        return new View<>(index -> new SimpleImmutableEntry<>(getKey(index), decode(index)));
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private MappedPayloadMap(MappedByteBuffer buffer, PersistenceProtoResolver persistenceProtoResolver) {
+        this.buffer = buffer;
+        this.persistenceProtoResolver = persistenceProtoResolver;
+        count = buffer.getInt(20);
+        keyLength = buffer.getInt(24);
+        if (count < 0 || keyLength < 0 || HEADER_SIZE + (long) count * (keyLength + Integer.BYTES) > buffer.capacity())
+            throw new IllegalArgumentException("Invalid header");
+        offsetsPosition = HEADER_SIZE + count * keyLength;
+    }
+
+    private int indexOf(byte[] key) {
+        if (key.length != keyLength) return -1;
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int result = compareKey(mid, key);
+            if (result < 0) {
+                low = mid + 1;
+            } else if (result > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int compareKey(int index, byte[] key) {
+        int position = HEADER_SIZE + index * keyLength;
+        for (int i = 0; i < keyLength; i++) {
+            int result = Byte.compareUnsigned(buffer.get(position + i), key[i]);
+            if (result != 0) return result;
+        }
+        return 0;
+    }
+
+    private P2PDataStorage.ByteArray getKey(int index) {
+        byte[] key = new byte[keyLength];
+        buffer.get(HEADER_SIZE + index * keyLength, key);
+        return new P2PDataStorage.ByteArray(key);
+    }
+
+    private PersistableNetworkPayload decode(int index) {
+        int offset = buffer.getInt(offsetsPosition + index * Integer.BYTES);
+        int length = buffer.getInt(offset);
+        ByteBuffer record = buffer.slice(offset + Integer.BYTES, length);
+        try {
+            return (PersistableNetworkPayload) persistenceProtoResolver.fromProto(protobuf.PersistableNetworkPayload.parseFrom(record));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not decode historical payload at index " + index, e);
+        }
+    }
+
+    private class View<E> extends AbstractSet<E> {
+        private final IntFunction<E> elementAtIndex;
+
+        private View(IntFunction<E> elementAtIndex) {
+            this.elementAtIndex = elementAtIndex;
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return new Iterator<>() {
+                private int index;
+
+                @Override
+                public boolean hasNext() {
+                    return index < count;
+                }
+
+                @Override
+                public E next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    return elementAtIndex.apply(index++);
+                }
+            };
+        }
+    }
+}
@@ -17,13 +17,14 @@
 
 package tuskex.network.p2p.storage.persistence;
 
-import tuskex.common.proto.persistable.PersistableEnvelope;
+import tuskex.common.proto.persistable.JournaledPersistableEnvelope;
 import tuskex.network.p2p.storage.P2PDataStorage;
 import lombok.Getter;
-import lombok.Setter;
 
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
@@ -32,11 +33,14 @@ import java.util.stream.Collectors;
  * in protobuffer the map construct can't be anything, so the straightforward mapping was not possible.
  * Hence this Persistable class.
  */
-public class SequenceNumberMap implements PersistableEnvelope {
+public class SequenceNumberMap implements JournaledPersistableEnvelope {
     @Getter
-    @Setter
     private Map<P2PDataStorage.ByteArray, P2PDataStorage.MapValue> map = new ConcurrentHashMap<>();
 
+    // changes since the last persisted delta
+    private final Set<P2PDataStorage.ByteArray> changedKeys = ConcurrentHashMap.newKeySet();
+    private volatile boolean isSnapshotRequired = true;
+
     public SequenceNumberMap() {
     }
 
@@ -62,6 +66,26 @@ public class SequenceNumberMap implements PersistableEnvelope {
                 .build();
     }
 
+    @Override
+    public protobuf.PersistableEnvelope toPersistableDelta() {
+        if (isSnapshotRequired) {
+            isSnapshotRequired = false;
+            changedKeys.clear();
+            return null;
+        }
+        protobuf.SequenceNumberMap.Builder delta = protobuf.SequenceNumberMap.newBuilder();
+        for (Iterator<P2PDataStorage.ByteArray> iterator = changedKeys.iterator(); iterator.hasNext(); ) {
+            P2PDataStorage.ByteArray key = iterator.next();
+            iterator.remove();
+            P2PDataStorage.MapValue value = map.get(key);
+            if (value == null) continue;
+            delta.addSequenceNumberEntries(protobuf.SequenceNumberEntry.newBuilder()
+                    .setBytes(key.toProtoMessage())
+                    .setMapValue(value.toProtoMessage()));
+        }
+        return protobuf.PersistableEnvelope.newBuilder().setSequenceNumberMap(delta).build();
+    }
+
     public static SequenceNumberMap fromProto(protobuf.SequenceNumberMap proto) {
         HashMap<P2PDataStorage.ByteArray, P2PDataStorage.MapValue> map = new HashMap<>();
         proto.getSequenceNumberEntriesList()
@@ -89,5 +113,12 @@ public class SequenceNumberMap implements PersistableEnvelope {
 
     public void put(P2PDataStorage.ByteArray key, P2PDataStorage.MapValue value) {
         map.put(key, value);
+        changedKeys.add(key);
+    }
+
+    // Replacing the map can remove entries, so the next persist writes a snapshot
+    public void setMap(Map<P2PDataStorage.ByteArray, P2PDataStorage.MapValue> map) {
+        this.map = map;
+        isSnapshotRequired = true;
     }
 }
@@ -0,0 +1,177 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.network.p2p.network;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.EOFException;
+import java.io.StreamCorruptedException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class NioChannelTest {
+    private static final int MAX_FRAME_SIZE = 1024 * 1024;
+
+    private final List<byte[]> frames = new ArrayList<>();
+    private NioSelectorPool selectorPool;
+
+    // Collects the frames and the exception of a channel, called from the selector thread
+    private static class QueueHandler implements NioChannel.Handler {
+        private final BlockingQueue<byte[]> frames = new LinkedBlockingQueue<>();
+        private final BlockingQueue<Throwable> exceptions = new LinkedBlockingQueue<>();
+
+        @Override
+        public void onFrame(byte[] frame) {
+            frames.add(frame);
+        }
+
+        @Override
+        public void onException(Throwable throwable) {
+            exceptions.add(throwable);
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (selectorPool != null) selectorPool.shutDown();
+    }
+
+    @Test
+    public void testFramesSplitAcrossBuffers() throws Exception {
+        NioChannel.FrameDecoder decoder = new NioChannel.FrameDecoder(1000);
+        byte[] data = new byte[300];
+        for (int i = 0; i < data.length; i++) data[i] = (byte) i;
+        byte[] stream = concat(new byte[]{(byte) 0xAC, 0x02}, data); // varint 300
+
+        for (byte b : stream) {
+            decoder.decode(ByteBuffer.wrap(new byte[]{b}), frames::add);
+        }
+
+        assertEquals(1, frames.size());
+        assertArrayEquals(data, frames.get(0));
+    }
+
+    @Test
+    public void testMultipleFramesInOneBuffer() throws Exception {
+        NioChannel.FrameDecoder decoder = new NioChannel.FrameDecoder(1000);
+
+        decoder.decode(ByteBuffer.wrap(new byte[]{2, 1, 2, 0, 1, 3}), frames::add);
+
+        assertEquals(3, frames.size());
+        assertArrayEquals(new byte[]{1, 2}, frames.get(0));
+        assertArrayEquals(new byte[0], frames.get(1));
+        assertArrayEquals(new byte[]{3}, frames.get(2));
+    }
+
+    @Test
+    public void testEmptyFrameAtEndOfBuffer() throws Exception {
+        NioChannel.FrameDecoder decoder = new NioChannel.FrameDecoder(1000);
+
+        decoder.decode(ByteBuffer.wrap(new byte[]{1, 7, 0}), frames::add);
+        assertEquals(2, frames.size());
+        assertArrayEquals(new byte[0], frames.get(1));
+
+        decoder.decode(ByteBuffer.wrap(new byte[]{0}), frames::add);
+        assertEquals(3, frames.size());
+        assertArrayEquals(new byte[0], frames.get(2));
+    }
+
+    @Test
+    public void testFramesAreSentAndReceivedOverSocket() throws Exception {
+        selectorPool = new NioSelectorPool("NioChannelTest", 2, 2, TimeUnit.MINUTES.toMillis(1));
+        QueueHandler serverHandler = new QueueHandler();
+        QueueHandler clientHandler = new QueueHandler();
+        BlockingQueue<NioChannel> serverChannels = new LinkedBlockingQueue<>();
+
+        ServerSocketChannel serverSocketChannel = ServerSocketChannel.open();
+        serverSocketChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        selectorPool.listen(serverSocketChannel, socketChannel -> {
+            try {
+                serverChannels.add(selectorPool.register(socketChannel, serverHandler, MAX_FRAME_SIZE, 0, 0));
+            } catch (Exception e) {
+                serverHandler.onException(e);
+            }
+        });
+        NioChannel clientChannel = selectorPool.register(SocketChannel.open(serverSocketChannel.getLocalAddress()),
+                clientHandler, MAX_FRAME_SIZE, 0, 0);
+
+        // an empty envelope, small envelopes and one larger than the read buffer
+        List<protobuf.NetworkEnvelope> envelopes = new ArrayList<>();
+        envelopes.add(protobuf.NetworkEnvelope.getDefaultInstance());
+        for (int i = 0; i < 100; i++) envelopes.add(ping(i));
+        envelopes.add(protobuf.NetworkEnvelope.newBuilder().setMessageVersion("x".repeat(200_000)).build());
+        envelopes.add(protobuf.NetworkEnvelope.getDefaultInstance());
+        for (protobuf.NetworkEnvelope envelope : envelopes) clientChannel.send(NioChannel.toFrame(envelope));
+
+        for (protobuf.NetworkEnvelope envelope : envelopes) {
+            byte[] frame = serverHandler.frames.poll(10, TimeUnit.SECONDS);
+            assertNotNull(frame);
+            assertEquals(envelope, protobuf.NetworkEnvelope.parseFrom(frame));
+        }
+
+        // the accepted channel sends back to the client
+        NioChannel serverChannel = serverChannels.poll(10, TimeUnit.SECONDS);
+        assertNotNull(serverChannel);
+        serverChannel.send(NioChannel.toFrame(ping(1000)));
+        assertEquals(ping(1000), protobuf.NetworkEnvelope.parseFrom(clientHandler.frames.poll(10, TimeUnit.SECONDS)));
+
+        // closing the client is reported at the server
+        clientChannel.close();
+        assertInstanceOf(EOFException.class, serverHandler.exceptions.poll(10, TimeUnit.SECONDS));
+        serverSocketChannel.close();
+    }
+
+    @Test
+    public void testFrameExceedingLimit() {
+        NioChannel.FrameDecoder decoder = new NioChannel.FrameDecoder(100);
+
+        assertThrows(StreamCorruptedException.class,
+                () -> decoder.decode(ByteBuffer.wrap(new byte[]{(byte) 0xAC, 0x02}), frames::add));
+        assertThrows(StreamCorruptedException.class,
+                () -> new NioChannel.FrameDecoder(100).decode(ByteBuffer.wrap(new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 1}), frames::add));
+    }
+
+    private static protobuf.NetworkEnvelope ping(int nonce) {
+        return protobuf.NetworkEnvelope.newBuilder()
+                .setMessageVersion("1")
+                .setPing(protobuf.Ping.newBuilder().setNonce(nonce))
+                .build();
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] result = new byte[a.length + b.length];
+        System.arraycopy(a, 0, result, 0, a.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * This file is part of Tuskex.
+ *
+ * Tuskex is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Tuskex is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Tuskex. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.network.p2p.peers.getdata;
+
+import tuskex.common.crypto.Hash;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class InvertibleBloomLookupTableTest {
+
+    private static byte[] key(int i) {
+        return Hash.getSha256Ripemd160hash(ByteBuffer.allocate(4).putInt(i).array());
+    }
+
+    @Test
+    public void decode_smallDifference() {
+        InvertibleBloomLookupTable local = new InvertibleBloomLookupTable(600);
+        InvertibleBloomLookupTable remote = new InvertibleBloomLookupTable(600);
+        for (int i = 0; i < 5000; i++) {
+            local.insert(key(i));
+            remote.insert(key(i));
+        }
+        local.insert(key(5000));
+        local.insert(key(5001));
+        remote.insert(key(6000));
+
+        Optional<InvertibleBloomLookupTable.DecodeResult> result = local.subtract(remote).decode();
+
+        assertTrue(result.isPresent());
+        assertEquals(2, result.get().getLocalOnlyKeys().size());
+        assertEquals(1, result.get().getRemoteOnlyKeys().size());
+        assertArrayEquals(key(6000), result.get().getRemoteOnlyKeys().get(0));
+    }
+
+    @Test
+    public void decode_largeDifferenceFails() {
+        InvertibleBloomLookupTable local = new InvertibleBloomLookupTable(60);
+        InvertibleBloomLookupTable remote = new InvertibleBloomLookupTable(60);
+        for (int i = 0; i < 1000; i++) {
+            local.insert(key(i));
+        }
+
+        assertTrue(local.subtract(remote).decode().isEmpty());
+    }
+
+    @Test
+    public void protoRoundTrip() {
+        InvertibleBloomLookupTable table = new InvertibleBloomLookupTable(100);
+        table.insert(key(1));
+        table.insert(key(2));
+
+        assertEquals(table, InvertibleBloomLookupTable.fromProto(table.toProtoMessage()));
+    }
+}
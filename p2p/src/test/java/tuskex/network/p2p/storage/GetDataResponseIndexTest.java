@@ -0,0 +1,133 @@
+/*
+ * This file is part of Tuskex.
+ *
+ * Tuskex is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Tuskex is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Tuskex. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.network.p2p.storage;
+
+import tuskex.common.app.Capabilities;
+import tuskex.network.p2p.storage.mocks.PersistableNetworkPayloadStub;
+import tuskex.network.p2p.storage.payload.DateSortedTruncatablePayload;
+import tuskex.network.p2p.storage.payload.PersistableNetworkPayload;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GetDataResponseIndexTest {
+    private GetDataResponseIndex<PersistableNetworkPayload> index;
+
+    static class DateSortedPayloadStub extends PersistableNetworkPayloadStub implements DateSortedTruncatablePayload {
+        private final Date date;
+
+        DateSortedPayloadStub(byte[] hash, long date) {
+            super(hash);
+            this.date = new Date(date);
+        }
+
+        @Override
+        public Date getDate() {
+            return date;
+        }
+
+        @Override
+        public int maxItems() {
+            return 2;
+        }
+    }
+
+    @BeforeEach
+    public void setUp() {
+        index = new GetDataResponseIndex<>(Function.identity());
+    }
+
+    private Set<PersistableNetworkPayload> getItemsForResponse(Set<P2PDataStorage.ByteArray> knownHashes,
+                                                               boolean isVersionIncluded,
+                                                               AtomicBoolean outTruncated) {
+        return index.getItemsForResponse(knownHashes,
+                version -> isVersionIncluded,
+                new Capabilities(),
+                100,
+                Long.MAX_VALUE,
+                outTruncated);
+    }
+
+    private void put(PersistableNetworkPayload payload, String version) {
+        index.putIfAbsent(new P2PDataStorage.ByteArray(payload.getHash()), payload, version);
+    }
+
+    @Test
+    public void getItemsForResponse_knownHashesAreExcluded() {
+        PersistableNetworkPayload known = new PersistableNetworkPayloadStub(new byte[]{1});
+        PersistableNetworkPayload unknown = new PersistableNetworkPayloadStub(new byte[]{2});
+        put(known, null);
+        put(unknown, null);
+
+        Set<P2PDataStorage.ByteArray> knownHashes = new HashSet<>();
+        knownHashes.add(new P2PDataStorage.ByteArray(known.getHash()));
+        AtomicBoolean outTruncated = new AtomicBoolean();
+        Set<PersistableNetworkPayload> result = getItemsForResponse(knownHashes, true, outTruncated);
+
+        assertEquals(Set.of(unknown), result);
+        assertFalse(outTruncated.get());
+    }
+
+    @Test
+    public void getItemsForResponse_dateSortedItemsKeepMostRecent() {
+        PersistableNetworkPayload oldest = new DateSortedPayloadStub(new byte[]{1}, 1000);
+        PersistableNetworkPayload middle = new DateSortedPayloadStub(new byte[]{2}, 2000);
+        PersistableNetworkPayload newest = new DateSortedPayloadStub(new byte[]{3}, 3000);
+        put(middle, null);
+        put(newest, null);
+        put(oldest, null);
+
+        AtomicBoolean outTruncated = new AtomicBoolean();
+        Set<PersistableNetworkPayload> result = getItemsForResponse(new HashSet<>(), true, outTruncated);
+
+        assertEquals(Set.of(middle, newest), result);
+        assertTrue(outTruncated.get());
+    }
+
+    @Test
+    public void getItemsForResponse_removedItemsAreExcluded() {
+        PersistableNetworkPayload payload = new DateSortedPayloadStub(new byte[]{1}, 1000);
+        put(payload, null);
+        index.remove(new P2PDataStorage.ByteArray(payload.getHash()));
+
+        AtomicBoolean outTruncated = new AtomicBoolean();
+        assertTrue(getItemsForResponse(new HashSet<>(), true, outTruncated).isEmpty());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void getItemsForResponse_historicalItemsFilteredByVersion() {
+        PersistableNetworkPayload live = new PersistableNetworkPayloadStub(new byte[]{1});
+        PersistableNetworkPayload historical = new PersistableNetworkPayloadStub(new byte[]{2});
+        put(live, null);
+        put(historical, "1.0.0");
+
+        AtomicBoolean outTruncated = new AtomicBoolean();
+        assertEquals(Set.of(live), getItemsForResponse(new HashSet<>(), false, outTruncated));
+        assertEquals(Set.of(live, historical), getItemsForResponse(new HashSet<>(), true, outTruncated));
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * This file is part of Bisq.
+ *
+ * Bisq is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bisq is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bisq. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.network.p2p.storage;
+
+import tuskex.common.proto.network.NetworkEnvelope;
+import tuskex.network.p2p.NodeAddress;
+import tuskex.network.p2p.TestUtils;
+import tuskex.network.p2p.network.Connection;
+import tuskex.network.p2p.storage.messages.AddDataMessage;
+import tuskex.network.p2p.storage.mocks.ProtectedStoragePayloadStub;
+import tuskex.network.p2p.storage.payload.ProtectedStorageEntry;
+import tuskex.network.p2p.storage.payload.ProtectedStoragePayload;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class P2PDataStorageAddBatchTest {
+    private TestState testState;
+    private NodeAddress peerNodeAddress;
+
+    @BeforeEach
+    public void setUp() {
+        this.testState = new TestState();
+        this.peerNodeAddress = new NodeAddress("peer", 8080);
+    }
+
+    private static ProtectedStorageEntry getProtectedStorageEntryForAdd(boolean isValid) throws NoSuchAlgorithmException {
+        KeyPair ownerKeys = TestUtils.generateKeyPair();
+        ProtectedStoragePayload protectedStoragePayload = new ProtectedStoragePayloadStub(ownerKeys.getPublic());
+
+        ProtectedStorageEntry stub = mock(ProtectedStorageEntry.class);
+        when(stub.getOwnerPubKey()).thenReturn(ownerKeys.getPublic());
+        when(stub.isValidForAddOperation()).thenReturn(isValid);
+        when(stub.matchesRelevantPubKey(any(ProtectedStorageEntry.class))).thenReturn(true);
+        when(stub.getSequenceNumber()).thenReturn(1);
+        when(stub.getProtectedStoragePayload()).thenReturn(protectedStoragePayload);
+        return stub;
+    }
+
+    // TESTCASE: Valid entries of a large batch are added in order and listeners are signaled once
+    @Test
+    public void addProtectedStorageEntries_addsValidEntries() throws NoSuchAlgorithmException {
+        List<ProtectedStorageEntry> entries = new ArrayList<>();
+        List<ProtectedStorageEntry> validEntries = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            ProtectedStorageEntry entry = getProtectedStorageEntryForAdd(i % 10 != 0);
+            entries.add(entry);
+            if (i % 10 != 0) validEntries.add(entry);
+        }
+
+        List<ProtectedStorageEntry> addedEntries = this.testState.mockedStorage.addProtectedStorageEntries(entries, this.peerNodeAddress, true);
+
+        assertEquals(validEntries, addedEntries);
+        validEntries.forEach(entry -> assertEquals(entry,
+                this.testState.mockedStorage.getMap().get(P2PDataStorage.get32ByteHashAsByteArray(entry.getProtectedStoragePayload()))));
+        verify(this.testState.hashMapChangedListener).onAdded(validEntries);
+        verify(this.testState.mockBroadcaster, times(validEntries.size()))
+                .broadcast(any(AddDataMessage.class), eq(this.peerNodeAddress), isNull());
+    }
+
+    // TESTCASE: Entries which are already stored are not added again
+    @Test
+    public void addProtectedStorageEntries_duplicatesDoNothing() throws NoSuchAlgorithmException {
+        List<ProtectedStorageEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            entries.add(getProtectedStorageEntryForAdd(true));
+        }
+        this.testState.mockedStorage.addProtectedStorageEntries(entries, this.peerNodeAddress, false);
+
+        assertTrue(this.testState.mockedStorage.addProtectedStorageEntries(entries, this.peerNodeAddress, false).isEmpty());
+        assertEquals(entries.size(), this.testState.mockedStorage.getMap().size());
+    }
+
+    // TESTCASE: AddDataMessages of a bundle are added as batch
+    @Test
+    public void onMessages_addsAddDataMessagesAsBatch() throws NoSuchAlgorithmException {
+        Connection connection = mock(Connection.class);
+        when(connection.getPeersNodeAddressOptional()).thenReturn(Optional.of(this.peerNodeAddress));
+        List<NetworkEnvelope> envelopes = new ArrayList<>();
+        List<ProtectedStorageEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ProtectedStorageEntry entry = getProtectedStorageEntryForAdd(true);
+            entries.add(entry);
+            envelopes.add(new AddDataMessage(entry));
+        }
+
+        this.testState.mockedStorage.onMessages(envelopes, connection);
+
+        verify(this.testState.hashMapChangedListener).onAdded(entries);
+        assertEquals(entries.size(), this.testState.mockedStorage.getMap().size());
+    }
+}
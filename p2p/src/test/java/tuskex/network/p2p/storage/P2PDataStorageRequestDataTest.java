@@ -21,8 +21,11 @@ import tuskex.common.app.Capabilities;
 import tuskex.common.app.Capability;
 import tuskex.network.p2p.NodeAddress;
 import tuskex.network.p2p.TestUtils;
+import tuskex.network.p2p.peers.getdata.messages.GetDataSketchRequest;
 import tuskex.network.p2p.peers.getdata.messages.GetUpdatedDataRequest;
+import tuskex.network.p2p.peers.getdata.messages.GetUpdatedDataSketchRequest;
 import tuskex.network.p2p.peers.getdata.messages.PreliminaryGetDataRequest;
+import tuskex.network.p2p.peers.getdata.messages.PreliminaryGetDataSketchRequest;
 import tuskex.network.p2p.storage.mocks.PersistableNetworkPayloadStub;
 import tuskex.network.p2p.storage.mocks.ProtectedStoragePayloadStub;
 import tuskex.network.p2p.storage.payload.PersistableNetworkPayload;
@@ -33,9 +36,14 @@ import org.junit.jupiter.api.Test;
 
 import java.security.KeyPair;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.mock;
@@ -165,4 +173,88 @@ public class P2PDataStorageRequestDataTest {
         assertTrue(byteSetContains(getDataRequest.getExcludedKeys(),
                 P2PDataStorage.get32ByteHash(toAdd4.getProtectedStoragePayload())));
     }
+
+    // TESTCASE: The sketch request replacing the GetUpdatedDataRequest contains the senders node address and keeps it
+    // in the protobuf message
+    @Test
+    public void buildGetUpdatedDataSketchRequest_ContainsSenderNodeAddress() {
+        this.testState.mockedStorage.addPersistableNetworkPayload(
+                new PersistableNetworkPayloadStub(new byte[]{1}), this.localNodeAddress, false);
+
+        GetUpdatedDataSketchRequest getDataRequest =
+                this.testState.mockedStorage.buildGetUpdatedDataSketchRequest(this.localNodeAddress, 1);
+
+        assertEquals(1, getDataRequest.getNonce());
+        assertEquals(this.localNodeAddress, getDataRequest.getSenderNodeAddress());
+        assertTrue(getDataRequest.isGetUpdatedDataRequest());
+
+        GetDataSketchRequest fromProto = GetDataSketchRequest.fromProto(
+                getDataRequest.toProtoNetworkEnvelope().getGetDataSketchRequest(), getDataRequest.getMessageVersion());
+
+        GetUpdatedDataSketchRequest getUpdatedDataSketchRequest =
+                assertInstanceOf(GetUpdatedDataSketchRequest.class, fromProto);
+        assertEquals(this.localNodeAddress, getUpdatedDataSketchRequest.getSenderNodeAddress());
+        assertEquals(1, getUpdatedDataSketchRequest.getNonce());
+    }
+
+    // TESTCASE: The sketch request replacing the PreliminaryGetDataRequest stays anonymous
+    @Test
+    public void buildPreliminaryGetDataSketchRequest_IsAnonymous() {
+        PreliminaryGetDataSketchRequest getDataRequest =
+                this.testState.mockedStorage.buildPreliminaryGetDataSketchRequest(1);
+
+        assertFalse(getDataRequest.isGetUpdatedDataRequest());
+        assertEquals(Capabilities.app, getDataRequest.getSupportedCapabilities());
+
+        GetDataSketchRequest fromProto = GetDataSketchRequest.fromProto(
+                getDataRequest.toProtoNetworkEnvelope().getGetDataSketchRequest(), getDataRequest.getMessageVersion());
+
+        assertInstanceOf(PreliminaryGetDataSketchRequest.class, fromProto);
+    }
+
+    // TESTCASE: Sketches are sized with one of the few allowed numbers of cells, so they can be served from the cache
+    @Test
+    public void getSketchSize() {
+        assertEquals(768, P2PDataStorage.getSketchSize(0));
+        assertEquals(768, P2PDataStorage.getSketchSize(512));
+        assertEquals(1536, P2PDataStorage.getSketchSize(513));
+        assertEquals(24576, P2PDataStorage.getSketchSize(1_000_000));
+        for (long numMissingPayloads = 0; numMissingPayloads < 20_000; numMissingPayloads += 97) {
+            assertTrue(P2PDataStorage.isSketchSize(P2PDataStorage.getSketchSize(numMissingPayloads)));
+        }
+        assertFalse(P2PDataStorage.isSketchSize(600));
+        assertFalse(P2PDataStorage.isSketchSize(769));
+    }
+
+    // TESTCASE: The number of missing payloads is estimated from the publish rate of our payloads and the time since
+    // our newest payload
+    @Test
+    public void estimateNumMissingPayloads() {
+        long now = System.currentTimeMillis();
+        long newestDate = now - TimeUnit.DAYS.toMillis(3);
+        // 10 payloads per day during the last 30 days before our newest payload
+        List<PersistableNetworkPayload> payloads = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            long date = newestDate - i * TimeUnit.DAYS.toMillis(1) / 10;
+            payloads.add(new GetDataResponseIndexTest.DateSortedPayloadStub(new byte[]{(byte) i, (byte) (i >> 8)}, date));
+        }
+
+        assertEquals(30, P2PDataStorage.estimateNumMissingPayloads(payloads, now));
+
+        // Undated payloads are assumed to be published at the same rate as the dated ones
+        for (int i = 0; i < 300; i++) {
+            payloads.add(new PersistableNetworkPayloadStub(new byte[]{1, (byte) i, (byte) (i >> 8)}));
+        }
+
+        assertEquals(60, P2PDataStorage.estimateNumMissingPayloads(payloads, now));
+    }
+
+    // TESTCASE: Without dated payloads the difference cannot be estimated
+    @Test
+    public void estimateNumMissingPayloads_NoDatedPayloads() {
+        List<PersistableNetworkPayload> payloads = List.of(new PersistableNetworkPayloadStub(new byte[]{1}));
+
+        assertEquals(0, P2PDataStorage.estimateNumMissingPayloads(payloads, System.currentTimeMillis()));
+        assertEquals(0, P2PDataStorage.estimateNumMissingPayloads(List.of(), System.currentTimeMillis()));
+    }
 }
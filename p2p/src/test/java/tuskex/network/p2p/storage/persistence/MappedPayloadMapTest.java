@@ -0,0 +1,155 @@
+/*
+ * This file is part of Tuskex.
+ *
+ * Tuskex is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Tuskex is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Tuskex. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.network.p2p.storage.persistence;
+
+import com.google.protobuf.ByteString;
+import tuskex.common.proto.persistable.PersistenceProtoResolver;
+import tuskex.network.p2p.storage.P2PDataStorage.ByteArray;
+import tuskex.network.p2p.storage.payload.PersistableNetworkPayload;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class MappedPayloadMapTest {
+
+    @TempDir
+    File dir;
+
+    private final PersistenceProtoResolver resolver = mock(PersistenceProtoResolver.class);
+    private final Map<ByteArray, PersistableNetworkPayload> map = new HashMap<>();
+    private File sourceFile;
+    private File indexFile;
+
+    private static class Payload implements PersistableNetworkPayload {
+        private final byte[] hash;
+        private final long date;
+
+        private Payload(byte[] hash, long date) {
+            this.hash = hash;
+            this.date = date;
+        }
+
+        @Override
+        public protobuf.PersistableNetworkPayload toProtoMessage() {
+            return protobuf.PersistableNetworkPayload.newBuilder()
+                    .setAccountAgeWitness(protobuf.AccountAgeWitness.newBuilder()
+                            .setHash(ByteString.copyFrom(hash))
+                            .setDate(date))
+                    .build();
+        }
+
+        @Override
+        public byte[] getHash() {
+            return hash;
+        }
+
+        @Override
+        public boolean verifyHashSize() {
+            return true;
+        }
+    }
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        when(resolver.fromProto(any(protobuf.PersistableNetworkPayload.class))).thenAnswer(invocation -> {
+            protobuf.AccountAgeWitness proto = ((protobuf.PersistableNetworkPayload) invocation.getArgument(0)).getAccountAgeWitness();
+            return new Payload(proto.getHash().toByteArray(), proto.getDate());
+        });
+        for (int i = 0; i < 100; i++) {
+            byte[] hash = new byte[]{(byte) (i * 37), (byte) i};
+            map.put(new ByteArray(hash), new Payload(hash, i));
+        }
+        sourceFile = new File(dir, "Store_0.0.1");
+        indexFile = new File(dir, "Store_0.0.1" + MappedPayloadMap.FILE_SUFFIX);
+        write(sourceFile, new byte[]{1, 2, 3});
+    }
+
+    @Test
+    public void testLookupAndIteration() throws IOException {
+        MappedPayloadMap.write(indexFile, sourceFile, map);
+        MappedPayloadMap mappedMap = MappedPayloadMap.open(indexFile, sourceFile, resolver);
+
+        assertNotNull(mappedMap);
+        assertEquals(100, mappedMap.size());
+        map.forEach((hash, payload) -> {
+            assertTrue(mappedMap.containsKey(hash));
+            assertEquals(((Payload) payload).date, ((Payload) mappedMap.get(hash)).date);
+        });
+        assertFalse(mappedMap.containsKey(new ByteArray(new byte[]{1, 2})));
+        assertFalse(mappedMap.containsKey(new ByteArray(new byte[]{1})));
+        assertNull(mappedMap.get(new ByteArray(new byte[]{1, 2})));
+        assertEquals(map.keySet(), new HashSet<>(mappedMap.keySet()));
+        mappedMap.forEach((hash, payload) -> assertArrayEquals(hash.bytes, payload.getHash()));
+    }
+
+    @Test
+    public void testChangedSourceInvalidatesIndex() throws IOException {
+        MappedPayloadMap.write(indexFile, sourceFile, map);
+        long lastModified = sourceFile.lastModified();
+        write(sourceFile, new byte[]{1, 2, 4});
+        assertTrue(sourceFile.setLastModified(lastModified + 1000));
+
+        assertNull(MappedPayloadMap.open(indexFile, sourceFile, resolver));
+    }
+
+    @Test
+    public void testKeysAreReadWithoutDecoding() throws IOException {
+        MappedPayloadMap.write(indexFile, sourceFile, map);
+        MappedPayloadMap mappedMap = MappedPayloadMap.open(indexFile, sourceFile, resolver);
+
+        assertNotNull(mappedMap);
+        assertEquals(map.keySet(), new HashSet<>(mappedMap.keySet()));
+        map.keySet().forEach(hash -> assertTrue(mappedMap.containsKey(hash)));
+        verify(resolver, never()).fromProto(any(protobuf.PersistableNetworkPayload.class));
+    }
+
+    @Test
+    public void testEmptyMap() throws IOException {
+        MappedPayloadMap.write(indexFile, sourceFile, new HashMap<>());
+        MappedPayloadMap mappedMap = MappedPayloadMap.open(indexFile, sourceFile, resolver);
+
+        assertNotNull(mappedMap);
+        assertTrue(mappedMap.isEmpty());
+        assertFalse(mappedMap.containsKey(new ByteArray(new byte[]{1})));
+    }
+
+    private static void write(File file, byte[] bytes) throws IOException {
+        try (FileOutputStream fileOutputStream = new FileOutputStream(file)) {
+            fileOutputStream.write(bytes);
+        }
+    }
+}
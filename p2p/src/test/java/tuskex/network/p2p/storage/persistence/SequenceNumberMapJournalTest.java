@@ -0,0 +1,149 @@
+/*
+ * This file is part of Tuskex.
+ *
+ * Tuskex is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Tuskex is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Tuskex. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tuskex.network.p2p.storage.persistence;
+
+import tuskex.common.file.CorruptedStorageFileHandler;
+import tuskex.common.persistence.PersistenceManager;
+import tuskex.common.proto.persistable.PersistenceProtoResolver;
+import tuskex.network.p2p.storage.P2PDataStorage.ByteArray;
+import tuskex.network.p2p.storage.P2PDataStorage.MapValue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SequenceNumberMapJournalTest {
+
+    @TempDir
+    File dir;
+
+    private final PersistenceProtoResolver resolver = mock(PersistenceProtoResolver.class);
+
+    private static ByteArray key(int i) {
+        return new ByteArray(new byte[]{(byte) i});
+    }
+
+    private static MapValue value(int sequenceNr) {
+        return MapValue.fromProto(protobuf.MapValue.newBuilder().setSequenceNr(sequenceNr).setTimeStamp(1000).build());
+    }
+
+    private PersistenceManager<SequenceNumberMap> persistenceManager(SequenceNumberMap sequenceNumberMap) {
+        PersistenceManager<SequenceNumberMap> persistenceManager = new PersistenceManager<>(dir, resolver, new CorruptedStorageFileHandler(), null);
+        persistenceManager.initialize(sequenceNumberMap, "SequenceNumberMap", PersistenceManager.Source.NETWORK);
+        return persistenceManager;
+    }
+
+    private static void persist(PersistenceManager<SequenceNumberMap> persistenceManager) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        persistenceManager.persistNow(latch::countDown);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    private SequenceNumberMap read() {
+        PersistenceManager.reset();
+        return persistenceManager(new SequenceNumberMap()).getPersisted();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        when(resolver.fromProto(any(protobuf.PersistableEnvelope.class)))
+                .thenAnswer(invocation -> SequenceNumberMap.fromProto(((protobuf.PersistableEnvelope) invocation.getArgument(0)).getSequenceNumberMap()));
+        PersistenceManager.onAllServicesInitialized();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        PersistenceManager.reset();
+    }
+
+    @Test
+    public void testChangesAreJournaledAndReplayed() throws Exception {
+        SequenceNumberMap sequenceNumberMap = new SequenceNumberMap();
+        PersistenceManager<SequenceNumberMap> persistenceManager = persistenceManager(sequenceNumberMap);
+        sequenceNumberMap.put(key(1), value(1));
+        persist(persistenceManager); // snapshot
+        long snapshotSize = new File(dir, "SequenceNumberMap").length();
+
+        sequenceNumberMap.put(key(2), value(1));
+        persist(persistenceManager);
+        sequenceNumberMap.put(key(1), value(2));
+        persist(persistenceManager);
+
+        assertEquals(snapshotSize, new File(dir, "SequenceNumberMap").length());
+        SequenceNumberMap persisted = read();
+        assertEquals(2, persisted.size());
+        assertEquals(2, persisted.get(key(1)).sequenceNr);
+        assertEquals(1, persisted.get(key(2)).sequenceNr);
+    }
+
+    @Test
+    public void testSnapshotAfterReplaceIgnoresOldJournal() throws Exception {
+        SequenceNumberMap sequenceNumberMap = new SequenceNumberMap();
+        PersistenceManager<SequenceNumberMap> persistenceManager = persistenceManager(sequenceNumberMap);
+        sequenceNumberMap.put(key(1), value(1));
+        persist(persistenceManager);
+        sequenceNumberMap.put(key(2), value(1));
+        persist(persistenceManager);
+
+        HashMap<ByteArray, MapValue> purged = new HashMap<>();
+        purged.put(key(3), value(1));
+        sequenceNumberMap.setMap(purged);
+        persist(persistenceManager);
+
+        SequenceNumberMap persisted = read();
+        assertEquals(1, persisted.size());
+        assertEquals(1, persisted.get(key(3)).sequenceNr);
+    }
+
+    @Test
+    public void testIncompleteRecordIsDropped() throws Exception {
+        SequenceNumberMap sequenceNumberMap = new SequenceNumberMap();
+        PersistenceManager<SequenceNumberMap> persistenceManager = persistenceManager(sequenceNumberMap);
+        sequenceNumberMap.put(key(1), value(1));
+        persist(persistenceManager);
+        sequenceNumberMap.put(key(1), value(2));
+        persist(persistenceManager);
+
+        File journalFile = new File(dir, "SequenceNumberMap.journal");
+        long journalSize = journalFile.length();
+        appendGarbage(journalFile);
+
+        SequenceNumberMap persisted = read();
+        assertEquals(2, persisted.get(key(1)).sequenceNr);
+        assertEquals(journalSize, journalFile.length());
+    }
+
+    private static void appendGarbage(File file) throws IOException {
+        try (FileOutputStream fileOutputStream = new FileOutputStream(file, true)) {
+            fileOutputStream.write(new byte[]{0, 0, 0, 100, 1, 2, 3});
+        }
+    }
+}